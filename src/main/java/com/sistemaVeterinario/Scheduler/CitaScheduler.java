@@ -1,16 +1,22 @@
 package com.sistemaVeterinario.Scheduler;
 
 import com.sistemaVeterinario.service.CitaService;
+import com.sistemaVeterinario.service.LiderazgoService;
+import com.sistemaVeterinario.service.RecordatorioService;
+import com.sistemaVeterinario.service.TransicionCitasService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
  * Componente programado para ejecutar tareas automáticas relacionadas con citas veterinarias.
  *
- * <p>Realiza operaciones periódicas de mantenimiento sobre el estado de las citas.</p>
+ * <p>Realiza operaciones periódicas de mantenimiento sobre el estado de las citas.
+ * Con varias instancias de la aplicación, solo la que tiene el liderazgo
+ * ({@link LiderazgoService}) ejecuta estas tareas.</p>
  *
  * <p>Anotado con {@link Component} para ser detectado por el contenedor de Spring.</p>
  */
@@ -24,17 +30,80 @@ public class CitaScheduler {
     @Autowired
     private CitaService citaActualizacionService;
 
+    // Rueda de vencimientos de las citas programadas
+    @Autowired
+    private TransicionCitasService transicionCitasService;
+
+    // Envío de recordatorios por correo
+    @Autowired
+    private RecordatorioService recordatorioService;
+
+    // Elección de la instancia que ejecuta las tareas
+    @Autowired
+    private LiderazgoService liderazgoService;
+
+    /**
+     * Al obtener el liderazgo (también al iniciar una sola instancia) completa las citas que
+     * terminaron mientras ninguna instancia las atendía y carga en la rueda las citas
+     * programadas próximas. Se ejecuta en el hilo de tareas del liderazgo, no en el de renovación.
+     */
+    @EventListener(LiderazgoService.LiderazgoAdquirido.class)
+    public void inicializarRueda() {
+        actualizarEstadoCitas();
+        transicionCitasService.reconstruir();
+    }
+
+    /**
+     * Tarea automática que se ejecuta al inicio de cada minuto.
+     * Marca como "Completadas" las citas cuyo horario terminó en el último minuto.
+     */
+    @Scheduled(cron = "0 * * * * *")
+    public void completarCitasVencidas() {
+        if (liderazgoService.esLider()) {
+            transicionCitasService.avanzar();
+        }
+    }
+
+    /**
+     * Tarea automática que se ejecuta cada 5 minutos.
+     * Recarga la rueda para incluir las citas agendadas o movidas en otras instancias.
+     */
+    @Scheduled(cron = "0 */5 * * * *")
+    public void sincronizarRueda() {
+        if (liderazgoService.esLider()) {
+            transicionCitasService.reconstruir();
+        }
+    }
+
     /**
-     * Tarea automática que se ejecuta cada 30 minutos.
-     * Busca citas pasadas y las marca como "Completadas".
+     * Tarea automática que se ejecuta cada 10 minutos.
+     * Encola los recordatorios por correo de las citas de las próximas 24 horas.
+     */
+    @Scheduled(cron = "0 */10 * * * *")
+    public void encolarRecordatorios() {
+        if (liderazgoService.esLider()) {
+            recordatorioService.encolarPendientes();
+        }
+    }
+
+    /**
+     * Tarea automática que se ejecuta cada día poco después de medianoche.
+     * Busca citas pasadas que no hayan pasado por la rueda y las marca como "Completadas".
      * Muestra en el log cuántas citas se actualizaron.
      */
-    @Scheduled(fixedRate = 30 * 60 * 1000) // Cada 30 minutos
-    public void actualizarEstadoCitas() {
+    @Scheduled(cron = "0 5 0 * * *")
+    public void actualizarEstadoCitasDiario() {
+        if (liderazgoService.esLider()) {
+            actualizarEstadoCitas();
+        }
+    }
+
+    private void actualizarEstadoCitas() {
         logger.info("Comenzando actualización de citas...");
 
-        int citasActualizadas = citaActualizacionService.actualizarCitasPasadas();
+        // Se detiene entre lotes si otra instancia toma el liderazgo
+        int citasActualizadas = citaActualizacionService.actualizarCitasPasadas(liderazgoService::esLider);
 
         logger.info("Listo! Se actualizaron {} citas.", citasActualizadas);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,128 @@
+package com.sistemaVeterinario.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rueda jerárquica de temporizadores con resolución de un tick.
+ *
+ * <p>Tiene tres niveles de 64 casillas: el primero cubre los próximos 64 ticks, el segundo
+ * 64 × 64 y el tercero 64 × 64 × 64. Un elemento se guarda en el nivel más fino que alcanza
+ * su vencimiento y baja de nivel cuando el tick actual llega al inicio de su casilla, de modo
+ * que agregar y vencer elementos cuesta O(1) sin importar cuántos haya pendientes.
+ * Los vencimientos más lejanos que el último nivel se guardan en su última casilla y se
+ * reubican cada vez que esta se recorre.</p>
+ *
+ * <p>No es segura para hilos: quien la usa debe sincronizar el acceso.</p>
+ *
+ * @param <T> Tipo de los elementos programados
+ */
+public class RuedaTemporizadores<T> {
+
+    private static final int BITS_POR_NIVEL = 6;
+    private static final int CASILLAS = 1 << BITS_POR_NIVEL;
+    private static final int MASCARA = CASILLAS - 1;
+    private static final int NIVELES = 3;
+
+    private final List<List<Temporizador<T>>[]> niveles = new ArrayList<>(NIVELES);
+    private long tickActual;
+    private int tamanio;
+
+    /**
+     * Crea una rueda vacía.
+     * @param tickInicial El tick desde el que empieza a avanzar la rueda
+     */
+    @SuppressWarnings("unchecked")
+    public RuedaTemporizadores(long tickInicial) {
+        this.tickActual = tickInicial;
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            List<Temporizador<T>>[] casillas = new List[CASILLAS];
+            for (int i = 0; i < CASILLAS; i++) {
+                casillas[i] = new ArrayList<>();
+            }
+            niveles.add(casillas);
+        }
+    }
+
+    /**
+     * Programa un elemento para que venza en el tick indicado.
+     * Si el tick ya pasó, vence en el próximo avance.
+     * @param elemento El elemento a programar
+     * @param tick El tick de vencimiento
+     */
+    public void agregar(T elemento, long tick) {
+        ubicar(new Temporizador<>(elemento, Math.max(tick, tickActual + 1)));
+        tamanio++;
+    }
+
+    /**
+     * Avanza la rueda hasta el tick indicado y devuelve los elementos vencidos en el camino.
+     * @param hasta El tick hasta el que avanzar (inclusive)
+     * @return Elementos vencidos, en orden de vencimiento
+     */
+    public List<T> avanzar(long hasta) {
+        List<T> vencidos = new ArrayList<>();
+        while (tickActual < hasta) {
+            tickActual++;
+
+            // Baja a los niveles inferiores las casillas que empiezan en este tick
+            for (int nivel = NIVELES - 1; nivel > 0; nivel--) {
+                if ((tickActual & ((1L << (BITS_POR_NIVEL * nivel)) - 1)) == 0) {
+                    cascada(nivel);
+                }
+            }
+
+            List<Temporizador<T>> casilla = niveles.get(0)[(int) (tickActual & MASCARA)];
+            for (Temporizador<T> temporizador : casilla) {
+                vencidos.add(temporizador.elemento());
+            }
+            tamanio -= casilla.size();
+            casilla.clear();
+        }
+        return vencidos;
+    }
+
+    /**
+     * Tick hasta el que ha avanzado la rueda.
+     * @return El tick actual
+     */
+    public long getTickActual() {
+        return tickActual;
+    }
+
+    /**
+     * Cantidad de elementos programados, incluidos los que ya no sean vigentes para quien los usa.
+     * @return Número de elementos en la rueda
+     */
+    public int getTamanio() {
+        return tamanio;
+    }
+
+    private void cascada(int nivel) {
+        int indice = (int) ((tickActual >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+        List<Temporizador<T>> casilla = niveles.get(nivel)[indice];
+        List<Temporizador<T>> pendientes = new ArrayList<>(casilla);
+        casilla.clear();
+        for (Temporizador<T> temporizador : pendientes) {
+            ubicar(temporizador);
+        }
+    }
+
+    private void ubicar(Temporizador<T> temporizador) {
+        long tick = temporizador.tick();
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            int desplazamiento = BITS_POR_NIVEL * nivel;
+            if ((tick >>> desplazamiento) - (tickActual >>> desplazamiento) < CASILLAS) {
+                niveles.get(nivel)[(int) ((tick >>> desplazamiento) & MASCARA)].add(temporizador);
+                return;
+            }
+        }
+
+        // Más lejos que el último nivel: se reubica cuando se recorra esa casilla
+        int ultimo = BITS_POR_NIVEL * (NIVELES - 1);
+        niveles.get(NIVELES - 1)[(int) (((tickActual >>> ultimo) + MASCARA) & MASCARA)].add(temporizador);
+    }
+
+    private record Temporizador<T>(T elemento, long tick) {
+    }
+}
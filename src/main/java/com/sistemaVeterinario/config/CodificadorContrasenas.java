@@ -0,0 +1,303 @@
+package com.sistemaVeterinario.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Codificador BCrypt que calcula los hashes en un grupo de hilos propio y acotado.
+ *
+ * <p>Cada hash ocupa la CPU durante cientos de milisegundos. Al limitar cuántos se calculan a la
+ * vez, una ráfaga de inicios de sesión espera en la cola en lugar de ocupar todos los hilos de
+ * Tomcat, y el resto de las peticiones sigue atendiéndose. Si la cola se llena, la operación se
+ * rechaza de inmediato, y si el resultado no llega dentro del tiempo máximo, se abandona. La
+ * capacidad de la cola se calcula con {@link #calcularCapacidadCola} a partir de la espera
+ * aceptable, para que una operación encolada pueda terminar dentro de ese tiempo.</p>
+ *
+ * <p>El coste de BCrypt se calibra al iniciar la aplicación para que un hash tarde
+ * aproximadamente el tiempo objetivo en este servidor. {@link #upgradeEncoding(String)} indica
+ * qué hashes guardados usan un coste menor, para que se recalculen al iniciar sesión.</p>
+ *
+ * <p>Los lotes de {@link #codificarTodas(List)}, como una importación de usuarios, se calculan en
+ * un segundo grupo de hilos para no ocupar la cola de los inicios de sesión.</p>
+ */
+public class CodificadorContrasenas implements PasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodificadorContrasenas.class);
+
+    // Contraseña usada solo para medir el tiempo de cada coste
+    private static final String CONTRASENA_CALIBRACION = "calibracion-bcrypt";
+
+    // Tiempo máximo de espera cuando no se indica otro
+    private static final Duration TIEMPO_MAXIMO_PREDETERMINADO = Duration.ofSeconds(5);
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int coste;
+    private final ThreadPoolExecutor ejecutor;
+    private final ThreadPoolExecutor ejecutorLotes;
+    private final long tiempoMaximoNanos;
+
+    private final Timer esperaCodificar;
+    private final Timer esperaComparar;
+    private final Timer tiempoCodificar;
+    private final Timer tiempoComparar;
+    private final Counter rechazados;
+    private final Counter expirados;
+
+    /**
+     * @param coste Coste de BCrypt (logaritmo en base 2 de las rondas)
+     * @param hilos Hashes que se pueden calcular a la vez
+     * @param capacidadCola Operaciones que pueden esperar un hilo libre
+     * @param meterRegistry Registro de métricas
+     */
+    public CodificadorContrasenas(int coste, int hilos, int capacidadCola, MeterRegistry meterRegistry) {
+        this(coste, hilos, capacidadCola, hilos, TIEMPO_MAXIMO_PREDETERMINADO, meterRegistry);
+    }
+
+    /**
+     * @param coste Coste de BCrypt (logaritmo en base 2 de las rondas)
+     * @param hilos Hashes que se pueden calcular a la vez
+     * @param capacidadCola Operaciones que pueden esperar un hilo libre
+     * @param hilosLotes Hashes de lotes que se pueden calcular a la vez
+     * @param tiempoMaximo Tiempo máximo que una operación espera su resultado, incluido el hash
+     * @param meterRegistry Registro de métricas
+     */
+    public CodificadorContrasenas(int coste, int hilos, int capacidadCola, int hilosLotes,
+                                  Duration tiempoMaximo, MeterRegistry meterRegistry) {
+        this.bcrypt = new BCryptPasswordEncoder(coste);
+        this.coste = coste;
+        this.tiempoMaximoNanos = tiempoMaximo.toNanos();
+
+        AtomicInteger numero = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola), tarea -> {
+                    Thread hilo = new Thread(tarea, "hash-contrasenas-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+
+        // Los hilos de lotes terminan cuando no hay importaciones en curso
+        AtomicInteger numeroLote = new AtomicInteger();
+        this.ejecutorLotes = new ThreadPoolExecutor(hilosLotes, hilosLotes, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), tarea -> {
+                    Thread hilo = new Thread(tarea, "hash-lotes-" + numeroLote.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        this.ejecutorLotes.allowCoreThreadTimeOut(true);
+
+        String descripcionEspera = "Tiempo que cada operación esperó un hilo de hash libre";
+        String descripcionHash = "Tiempo de cálculo de cada hash";
+        esperaCodificar = temporizador("veterinaria.contrasenas.espera", descripcionEspera, "codificar", meterRegistry);
+        esperaComparar = temporizador("veterinaria.contrasenas.espera", descripcionEspera, "comparar", meterRegistry);
+        tiempoCodificar = temporizador("veterinaria.contrasenas.hash", descripcionHash, "codificar", meterRegistry);
+        tiempoComparar = temporizador("veterinaria.contrasenas.hash", descripcionHash, "comparar", meterRegistry);
+        rechazados = Counter.builder("veterinaria.contrasenas.rechazadas")
+                .description("Operaciones rechazadas porque la cola de hashes estaba llena")
+                .register(meterRegistry);
+        expirados = Counter.builder("veterinaria.contrasenas.expiradas")
+                .description("Operaciones abandonadas porque superaron el tiempo máximo de espera")
+                .register(meterRegistry);
+        Gauge.builder("veterinaria.contrasenas.cola", ejecutor, e -> e.getQueue().size())
+                .description("Operaciones esperando un hilo de hash")
+                .register(meterRegistry);
+        Gauge.builder("veterinaria.contrasenas.coste", this, c -> c.coste)
+                .description("Coste de BCrypt calibrado al iniciar")
+                .register(meterRegistry);
+
+        logger.info("Hash de contraseñas: {} hilos, cola de {} operaciones, tiempo máximo {} ms",
+                hilos, capacidadCola, tiempoMaximo.toMillis());
+    }
+
+    /**
+     * Busca el menor coste de BCrypt cuyo hash tarda al menos el tiempo objetivo en este servidor.
+     * @param objetivo Tiempo deseado por hash
+     * @param costeMinimo Coste por debajo del cual no se baja aunque el servidor sea rápido
+     * @param costeMaximo Coste que no se supera aunque el servidor sea lento
+     * @return Coste calibrado
+     */
+    public static int calibrarCoste(Duration objetivo, int costeMinimo, int costeMaximo) {
+        // Primer hash para cargar las clases y calentar el JIT
+        new BCryptPasswordEncoder(costeMinimo).encode(CONTRASENA_CALIBRACION);
+
+        int coste = costeMinimo;
+        long nanos = medir(coste);
+        while (nanos < objetivo.toNanos() && coste < costeMaximo) {
+            coste++;
+            nanos = medir(coste);
+        }
+        logger.info("Coste de BCrypt calibrado en {} ({} ms por hash, objetivo {} ms)",
+                coste, TimeUnit.NANOSECONDS.toMillis(nanos), objetivo.toMillis());
+        return coste;
+    }
+
+    /**
+     * Mide cuánto tarda un hash con un coste determinado en este servidor.
+     * @param coste Coste de BCrypt
+     * @return Duración de un hash
+     */
+    public static Duration medirHash(int coste) {
+        return Duration.ofNanos(medir(coste));
+    }
+
+    /**
+     * Calcula cuántas operaciones pueden esperar en la cola sin superar la espera aceptable:
+     * los hilos atienden {@code hilos / tiempoHash} operaciones por unidad de tiempo, así que en
+     * {@code esperaMaxima} se vacía una cola de {@code hilos × esperaMaxima / tiempoHash}.
+     * @param hilos Hashes que se calculan a la vez
+     * @param esperaMaxima Espera en cola aceptable para un inicio de sesión
+     * @param tiempoHash Duración de un hash
+     * @return Capacidad de la cola, al menos 1
+     */
+    public static int calcularCapacidadCola(int hilos, Duration esperaMaxima, Duration tiempoHash) {
+        long capacidad = hilos * esperaMaxima.toNanos() / Math.max(tiempoHash.toNanos(), 1);
+        return (int) Math.max(1, Math.min(capacidad, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Coste de BCrypt usado para los hashes nuevos.
+     * @return El coste calibrado
+     */
+    public int getCoste() {
+        return coste;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return ejecutar(() -> bcrypt.encode(rawPassword), esperaCodificar, tiempoCodificar);
+    }
+
+    /**
+     * Calcula los hashes de varias contraseñas en paralelo, en el grupo de hilos de lotes.
+     * @param contrasenas Contraseñas en texto plano
+     * @return Hashes en el mismo orden
+     */
+    public List<String> codificarTodas(List<? extends CharSequence> contrasenas) {
+        List<Future<String>> resultados = new ArrayList<>(contrasenas.size());
+        for (CharSequence contrasena : contrasenas) {
+            resultados.add(ejecutorLotes.submit(() -> {
+                long inicio = System.nanoTime();
+                try {
+                    return bcrypt.encode(contrasena);
+                } finally {
+                    tiempoCodificar.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+
+        List<String> hashes = new ArrayList<>(contrasenas.size());
+        try {
+            for (Future<String> resultado : resultados) {
+                hashes.add(resultado.get());
+            }
+        } catch (InterruptedException e) {
+            resultados.forEach(resultado -> resultado.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Se interrumpió el proceso de las contraseñas", e);
+        } catch (ExecutionException e) {
+            resultados.forEach(resultado -> resultado.cancel(true));
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return hashes;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return ejecutar(() -> bcrypt.matches(rawPassword, encodedPassword), esperaComparar, tiempoComparar);
+    }
+
+    /**
+     * Indica si el hash usa un coste menor al calibrado y debe recalcularse.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return bcrypt.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Detiene los hilos de hash al cerrar la aplicación.
+     */
+    public void cerrar() {
+        ejecutor.shutdownNow();
+        ejecutorLotes.shutdownNow();
+    }
+
+    /**
+     * Ejecuta la operación en el grupo de hilos y espera su resultado hasta el tiempo máximo.
+     * El hilo que llama no usa CPU mientras espera.
+     */
+    private <T> T ejecutar(Callable<T> operacion, Timer espera, Timer tiempo) {
+        long encolado = System.nanoTime();
+        Future<T> resultado;
+        try {
+            resultado = ejecutor.submit(() -> {
+                long inicio = System.nanoTime();
+                espera.record(inicio - encolado, TimeUnit.NANOSECONDS);
+                try {
+                    return operacion.call();
+                } finally {
+                    tiempo.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rechazados.increment();
+            throw new AuthenticationServiceException("Hay demasiadas contraseñas en proceso; intente de nuevo", e);
+        }
+
+        try {
+            return resultado.get(tiempoMaximoNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Si aún no empezó, se retira de la cola; si ya empezó, su resultado se descarta
+            resultado.cancel(true);
+            expirados.increment();
+            throw new AuthenticationServiceException("La contraseña tardó demasiado en procesarse; intente de nuevo", e);
+        } catch (InterruptedException e) {
+            resultado.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Se interrumpió el proceso de la contraseña", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static long medir(int coste) {
+        BCryptPasswordEncoder codificador = new BCryptPasswordEncoder(coste);
+        long inicio = System.nanoTime();
+        codificador.encode(CONTRASENA_CALIBRACION);
+        return System.nanoTime() - inicio;
+    }
+
+    private static Timer temporizador(String nombre, String descripcion, String operacion,
+                                      MeterRegistry meterRegistry) {
+        return Timer.builder(nombre)
+                .description(descripcion)
+                .tag("operacion", operacion)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,45 @@
+package com.sistemaVeterinario.config;
+
+import com.sistemaVeterinario.service.LimiteInicioSesionService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filtro que rechaza los envíos del formulario de inicio de sesión de una cuenta o IP que agotó
+ * sus intentos, antes de consultar al usuario y verificar la contraseña.
+ *
+ * <p>La IP es la de {@code getRemoteAddr()}; detrás de un proxy solo es la del cliente porque
+ * {@code server.forward-headers-strategy=native} la toma de {@code X-Forwarded-For}.</p>
+ */
+public class FiltroLimiteInicioSesion extends OncePerRequestFilter {
+
+    private static final RequestMatcher ENVIO_LOGIN = new AntPathRequestMatcher("/login", "POST");
+
+    private final LimiteInicioSesionService limiteInicioSesionService;
+
+    public FiltroLimiteInicioSesion(LimiteInicioSesionService limiteInicioSesionService) {
+        this.limiteInicioSesionService = limiteInicioSesionService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !ENVIO_LOGIN.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (limiteInicioSesionService.estaBloqueado(request.getParameter("username"), request.getRemoteAddr())) {
+            response.sendRedirect(request.getContextPath() + "/login?bloqueado");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
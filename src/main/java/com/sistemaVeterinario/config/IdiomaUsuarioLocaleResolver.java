@@ -0,0 +1,33 @@
+package com.sistemaVeterinario.config;
+
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
+import com.sistemaVeterinario.service.UsuarioService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.i18n.SessionLocaleResolver;
+
+import java.util.Locale;
+
+/**
+ * Mantiene el idioma en la sesión y, si el usuario está autenticado, también lo guarda en su
+ * registro, para que los correos que se le envían fuera de una petición usen el mismo idioma.
+ */
+public class IdiomaUsuarioLocaleResolver extends SessionLocaleResolver {
+
+    private final UsuarioService usuarioService;
+
+    public IdiomaUsuarioLocaleResolver(UsuarioService usuarioService) {
+        this.usuarioService = usuarioService;
+    }
+
+    @Override
+    public void setLocale(HttpServletRequest request, HttpServletResponse response, Locale locale) {
+        super.setLocale(request, response, locale);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof UsuarioPrincipal principal) {
+            usuarioService.registrarIdioma(principal.getIdUsuario(), locale);
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package com.sistemaVeterinario.config;
 
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
+import com.sistemaVeterinario.service.LimiteInicioSesionService;
+import com.sistemaVeterinario.service.UsuarioService;
+import jakarta.servlet.http.HttpSession;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.access.AccessDeniedHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.web.servlet.i18n.SessionLocaleResolver;
+
+import java.time.Duration;
+import java.util.Locale;
 
 /**
  * Define las reglas de acceso, autenticación y manejo de excepciones de seguridad.
@@ -20,6 +29,9 @@ import org.springframework.security.web.authentication.AuthenticationSuccessHand
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    private final LimiteInicioSesionService limiteInicioSesionService;
+    private final UsuarioService usuarioService;
+
     /**
      * Configura la cadena principal de filtros de seguridad.
      *
@@ -38,9 +50,10 @@ public class SecurityConfig {
                                         "/","/about-us","/register","/login",
                                         "/css/**","/js/**","/assets/**",
                                         "/webjars/**", "/error/**","/changeLanguage",
-                                        "/swagger-ui/**", "/v3/api-docs/**", "/swagger-resources/**").permitAll()
-                                // Rutas de administración solo para ADMIN
-                                .requestMatchers("/admin/**").hasRole("ADMIN")
+                                        "/swagger-ui/**", "/v3/api-docs/**", "/swagger-resources/**",
+                                        "/actuator/health").permitAll()
+                                // Rutas de administración y métricas solo para ADMIN
+                                .requestMatchers("/admin/**", "/actuator/**").hasRole("ADMIN")
                                 // Rutas comunes para ADMIN y USER
                                 .requestMatchers("/mascotas","/citas").hasAnyRole("ADMIN","USER")
                                 // Todas las demás rutas requieren autenticación
@@ -60,6 +73,9 @@ public class SecurityConfig {
                                 .deleteCookies("JSESSIONID")
                                 .permitAll()
                 )
+                // Rechaza los intentos de inicio de sesión de cuentas o IPs bloqueadas antes de verificar la contraseña
+                .addFilterBefore(new FiltroLimiteInicioSesion(limiteInicioSesionService),
+                        UsernamePasswordAuthenticationFilter.class)
                 // Manejo de excepciones de acceso
                 .exceptionHandling(exception -> {
                     exception.accessDeniedHandler(deniedHandler());
@@ -69,13 +85,21 @@ public class SecurityConfig {
     }
 
     /**
-     * Handler personalizado para redirección después de login exitoso.
+     * Handler personalizado para redirección después de login exitoso. Si el usuario eligió un
+     * idioma antes de iniciar sesión, se guarda en su registro.
      *
      * @return AuthenticationSuccessHandler configurado
      */
     @Bean
     public AuthenticationSuccessHandler successHandler() {
         return (request, response, authentication) -> {
+            HttpSession session = request.getSession(false);
+            Object idioma = session != null
+                    ? session.getAttribute(SessionLocaleResolver.LOCALE_SESSION_ATTRIBUTE_NAME) : null;
+            if (idioma instanceof Locale locale && authentication.getPrincipal() instanceof UsuarioPrincipal principal) {
+                usuarioService.registrarIdioma(principal.getIdUsuario(), locale);
+            }
+
             String redirectUrl = "/";
 
             // Determina la URL de redirección basada en el rol del usuario
@@ -105,12 +129,47 @@ public class SecurityConfig {
     }
 
     /**
-     * Configura el codificador de contraseñas BCrypt.
+     * Configura el codificador de contraseñas BCrypt. El coste se calibra al iniciar según la
+     * velocidad del servidor y los hashes se calculan en un grupo de hilos acotado, con una cola
+     * dimensionada para que ninguna operación espere más de la espera máxima.
      *
+     * @param meterRegistry Registro de métricas
+     * @param tiempoObjetivoMs Tiempo deseado por hash, en milisegundos
+     * @param costeMinimo Coste mínimo de BCrypt
+     * @param costeMaximo Coste máximo de BCrypt
+     * @param hilos Hashes simultáneos; 0 usa la mitad de los procesadores
+     * @param esperaMaximaMs Espera en cola aceptable para un inicio de sesión, en milisegundos
+     * @param capacidadCola Operaciones que pueden esperar un hilo libre; 0 la calcula a partir de
+     *                      los hilos, la espera máxima y el tiempo medido de un hash
+     * @param hilosLotes Hashes simultáneos de lotes como las importaciones; 0 usa los procesadores
+     *                   que no usan los inicios de sesión
      * @return PasswordEncoder con algoritmo BCrypt
      */
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Bean(destroyMethod = "cerrar")
+    public CodificadorContrasenas passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${veterinaria.contrasenas.tiempo-objetivo-ms:250}") long tiempoObjetivoMs,
+            @Value("${veterinaria.contrasenas.coste-minimo:10}") int costeMinimo,
+            @Value("${veterinaria.contrasenas.coste-maximo:14}") int costeMaximo,
+            @Value("${veterinaria.contrasenas.hilos:0}") int hilos,
+            @Value("${veterinaria.contrasenas.espera-maxima-ms:2000}") long esperaMaximaMs,
+            @Value("${veterinaria.contrasenas.cola:0}") int capacidadCola,
+            @Value("${veterinaria.contrasenas.hilos-lotes:0}") int hilosLotes) {
+        int coste = CodificadorContrasenas.calibrarCoste(
+                Duration.ofMillis(tiempoObjetivoMs), costeMinimo, costeMaximo);
+        if (hilos <= 0) {
+            hilos = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        if (hilosLotes <= 0) {
+            hilosLotes = Math.max(1, Runtime.getRuntime().availableProcessors() - hilos);
+        }
+        Duration tiempoHash = CodificadorContrasenas.medirHash(coste);
+        Duration esperaMaxima = Duration.ofMillis(esperaMaximaMs);
+        if (capacidadCola <= 0) {
+            capacidadCola = CodificadorContrasenas.calcularCapacidadCola(hilos, esperaMaxima, tiempoHash);
+        }
+        // La espera en cola más el propio hash
+        return new CodificadorContrasenas(coste, hilos, capacidadCola, hilosLotes,
+                esperaMaxima.plus(tiempoHash), meterRegistry);
     }
 }
\ No newline at end of file
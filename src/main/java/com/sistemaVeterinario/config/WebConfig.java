@@ -1,9 +1,12 @@
 package com.sistemaVeterinario.config;
 
+import com.sistemaVeterinario.service.UsuarioService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -11,10 +14,15 @@ import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 import org.springframework.web.servlet.i18n.SessionLocaleResolver;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Locale;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private UsuarioService usuarioService;
+
     /**
      * Configura los beans relacionados con la internacionalización y la codificación de la aplicación.
      * Esta clase define cómo manejar la localización, la carga de mensajes y la codificación de caracteres en la aplicación.
@@ -35,11 +43,12 @@ public class WebConfig implements WebMvcConfigurer {
     @Bean
     public LocaleResolver localeResolver() {
         /**
-         * Crea un resolver de localización que utiliza la sesión para mantener el idioma.
+         * Crea un resolver de localización que utiliza la sesión para mantener el idioma y lo
+         * guarda en el registro del usuario autenticado cuando lo cambia.
          *
          * @return un SessionLocaleResolver configurado con el idioma predeterminado en español.
          */
-        SessionLocaleResolver resolver = new SessionLocaleResolver();
+        SessionLocaleResolver resolver = new IdiomaUsuarioLocaleResolver(usuarioService);
         resolver.setDefaultLocale(new Locale("es"));
         return resolver;
     }
@@ -66,4 +75,15 @@ public class WebConfig implements WebMvcConfigurer {
         registry.addInterceptor(localeChangeInterceptor());
     }
 
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        /**
+         * Permite recibir el usuario autenticado como parámetro de tipo UsuarioPrincipal
+         * en los controladores, sin consultarlo en la base de datos.
+         *
+         * @param resolvers la lista de resolvers donde se agrega el nuevo resolver.
+         */
+        resolvers.add(new UsuarioActualArgumentResolver());
+    }
+
 }
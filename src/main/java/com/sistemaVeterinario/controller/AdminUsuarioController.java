@@ -1,11 +1,17 @@
 package com.sistemaVeterinario.controller;
 
+import com.sistemaVeterinario.dto.PaginaUsuariosDTO;
+import com.sistemaVeterinario.dto.ResultadoImportacionDTO;
+import com.sistemaVeterinario.dto.SugerenciaUsuarioDTO;
 import com.sistemaVeterinario.dto.UsuarioDTO;
 import com.sistemaVeterinario.models.Role;
 import com.sistemaVeterinario.models.Usuario;
 import com.sistemaVeterinario.service.AdminUsuarioService;
+import com.sistemaVeterinario.service.BusquedaUsuariosService;
+import com.sistemaVeterinario.service.ImportacionUsuariosService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -14,14 +20,21 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -31,16 +44,26 @@ import java.util.Set;
 @Tag(name = "Admin Usuario Controller", description = "Controlador administrativo para la gestión completa de usuarios del sistema")
 public class AdminUsuarioController {
 
+    // Mensaje cuando el codificador de contraseñas rechaza la operación por estar saturado
+    private static final String MENSAJE_CODIFICADOR_OCUPADO =
+            "El servidor está ocupado procesando contraseñas; intente guardar de nuevo en unos segundos";
+
     @Autowired
     private AdminUsuarioService adminUsuarioService;
 
+    @Autowired
+    private BusquedaUsuariosService busquedaUsuariosService;
+
+    @Autowired
+    private ImportacionUsuariosService importacionUsuariosService;
+
     /**
-     * Muestra el listado de usuarios con opción de búsqueda
+     * Muestra el listado de usuarios por páginas, con búsqueda y orden
      */
     @GetMapping
     @Operation(
             summary = "Listar usuarios",
-            description = "Muestra el listado completo de usuarios del sistema con funcionalidad de búsqueda opcional por nombre o email"
+            description = "Muestra los usuarios del sistema por páginas, con búsqueda opcional por el inicio del nombre, apellido, email o teléfono y orden por columna"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -51,25 +74,121 @@ public class AdminUsuarioController {
     })
     public String listarUsuarios(
             @Parameter(
-                    description = "Término de búsqueda para filtrar usuarios por nombre o email",
+                    description = "Inicio del nombre, apellido, email o teléfono de los usuarios buscados",
                     required = false,
-                    example = "juan@ejemplo.com"
+                    example = "juan"
             )
             @RequestParam(required = false) String search,
 
+            @Parameter(description = "Columna por la que se ordena la lista", example = "NOMBRE")
+            @RequestParam(defaultValue = "ID") AdminUsuarioService.OrdenUsuarios orden,
+
+            @Parameter(description = "Dirección del orden: asc o desc", example = "asc")
+            @RequestParam(defaultValue = "asc") String dir,
+
+            @Parameter(description = "Cursor de la página siguiente devuelto por la página anterior", required = false)
+            @RequestParam(required = false) String despues,
+
+            @Parameter(description = "Usuarios por página (entre 10 y 100)", example = "25")
+            @RequestParam(defaultValue = "25") int tamanio,
+
             @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
             Model model) {
-        List<Usuario> usuarios;
-        if (search != null && !search.isEmpty()) {
-            usuarios = adminUsuarioService.searchUsuarios(search);
-            model.addAttribute("search", search);
-        } else {
-            usuarios = adminUsuarioService.getAllUsuarios();
-        }
-        model.addAttribute("usuarios", usuarios);
+        boolean descendente = "desc".equalsIgnoreCase(dir);
+        PaginaUsuariosDTO pagina = adminUsuarioService.buscarUsuarios(search, orden, descendente, despues, tamanio);
+
+        model.addAttribute("usuarios", pagina.usuarios());
+        model.addAttribute("pagina", pagina);
+        model.addAttribute("search", search);
+        model.addAttribute("orden", orden);
+        model.addAttribute("dir", descendente ? "desc" : "asc");
+        model.addAttribute("tamanio", Math.max(AdminUsuarioService.TAMANIO_MINIMO,
+                Math.min(tamanio, AdminUsuarioService.TAMANIO_MAXIMO)));
+        model.addAttribute("mostrarPrimeraPagina", despues != null && !despues.isBlank());
         return "admin/lista";
     }
 
+    /**
+     * Devuelve sugerencias de usuarios mientras se escribe en el buscador
+     */
+    @GetMapping("/sugerencias")
+    @ResponseBody
+    @Operation(
+            summary = "Sugerir usuarios",
+            description = "Busca en memoria los usuarios que contienen cada palabra del texto en su nombre, apellido, email, teléfono o en el nombre de sus mascotas, ordenados por relevancia"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Sugerencias obtenidas exitosamente",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = SugerenciaUsuarioDTO.class)))
+            )
+    })
+    public List<SugerenciaUsuarioDTO> sugerirUsuarios(
+            @Parameter(
+                    description = "Texto escrito en el buscador",
+                    required = true,
+                    example = "jua per"
+            )
+            @RequestParam String q,
+
+            @Parameter(description = "Sugerencias deseadas (máximo 20)", example = "8")
+            @RequestParam(defaultValue = "8") int limite) {
+        return busquedaUsuariosService.buscar(q, limite);
+    }
+
+    /**
+     * Muestra el formulario para importar usuarios desde un archivo CSV
+     */
+    @GetMapping("/importar")
+    @Operation(
+            summary = "Mostrar formulario de importación",
+            description = "Presenta el formulario para subir un archivo CSV con los usuarios a crear"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Formulario de importación mostrado correctamente",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String mostrarFormularioImportar() {
+        return "admin/importar";
+    }
+
+    /**
+     * Crea los usuarios de un archivo CSV y muestra el resultado con los errores por fila
+     */
+    @PostMapping("/importar")
+    @Operation(
+            summary = "Importar usuarios desde CSV",
+            description = "Crea con el rol USER los usuarios de un archivo CSV en UTF-8 con las columnas nombre, apellido, email, telefono y contrasena. Cada fila se valida como en el formulario de creación; las filas inválidas o con email o teléfono repetido se informan sin detener la importación"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Importación procesada; muestra los usuarios creados, las filas rechazadas y las filas por segundo",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String importarUsuarios(
+            @Parameter(description = "Archivo CSV con cabecera", required = true)
+            @RequestParam("archivo") MultipartFile archivo,
+
+            @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
+            Model model) {
+        try (Reader lector = new BufferedReader(new InputStreamReader(archivo.getInputStream(), StandardCharsets.UTF_8))) {
+            ResultadoImportacionDTO resultado = importacionUsuariosService.importar(lector);
+            model.addAttribute("resultado", resultado);
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("error", e.getMessage());
+        } catch (IOException e) {
+            model.addAttribute("error", "No se pudo leer el archivo");
+        }
+        return "admin/importar";
+    }
+
     /**
      * Muestra el formulario para crear un nuevo usuario
      */
@@ -135,6 +254,9 @@ public class AdminUsuarioController {
         } catch (IllegalArgumentException e) {
             // Manejo para parámetros inválidos
             model.addAttribute("error", "Datos inválidos: " + e.getMessage());
+        } catch (AuthenticationServiceException e) {
+            // El codificador de contraseñas está saturado
+            model.addAttribute("error", MENSAJE_CODIFICADOR_OCUPADO);
         } catch (Exception e) {
             // Manejo genérico para otros errores
 
@@ -192,7 +314,7 @@ public class AdminUsuarioController {
             model.addAttribute("usuario", usuarioDTO);
             model.addAttribute("usuarioId", id);
             model.addAttribute("roles", adminUsuarioService.getAllRoles());
-            model.addAttribute("usuarioRoles", usuario.getRoles());
+            model.addAttribute("usuarioRoles", usuario.getRoles().stream().map(Role::getIdRol).toList());
             model.addAttribute("esNuevo", false);
 
             return "admin/formulario";
@@ -282,7 +404,9 @@ public class AdminUsuarioController {
             redirectAttributes.addFlashAttribute("mensaje", "Usuario actualizado exitosamente");
             return "redirect:/admin/usuarios";
         } catch (Exception e) {
-            model.addAttribute("error", "Error al actualizar el usuario: " + e.getMessage());
+            model.addAttribute("error", e instanceof AuthenticationServiceException
+                    ? MENSAJE_CODIFICADOR_OCUPADO
+                    : "Error al actualizar el usuario: " + e.getMessage());
             model.addAttribute("usuarioId", id);
             model.addAttribute("roles", adminUsuarioService.getAllRoles());
             model.addAttribute("esNuevo", false);
@@ -1,5 +1,6 @@
 package com.sistemaVeterinario.controller;
 
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
 import com.sistemaVeterinario.models.*;
 import com.sistemaVeterinario.repository.*;
 import com.sistemaVeterinario.service.*;
@@ -12,15 +13,21 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 @Controller
@@ -28,8 +35,11 @@ import java.util.*;
 @Tag(name = "Appointment Controller", description = "Controlador para la gestión completa de citas veterinarias por parte de los usuarios")
 public class AppointmentController {
 
-    @Autowired
-    private UsuarioService usuarioService;
+    // Máximo de días que se pueden consultar en una sola petición de rango
+    private static final int MAX_DIAS_RANGO = 31;
+
+    // Días ofrecidos en el formulario de reserva a partir de mañana
+    private static final int DIAS_RESERVABLES = 14;
 
     @Autowired
     private MascotaService mascotaService;
@@ -40,6 +50,12 @@ public class AppointmentController {
     @Autowired
     private CitaService citaService;
 
+    @Autowired
+    private DisponibilidadEventosService disponibilidadEventosService;
+
+    @Autowired
+    private AutorizacionService autorizacionService;
+
     @GetMapping("/agendar")
     @Operation(
             summary = "Mostrar formulario de agendamiento",
@@ -59,14 +75,12 @@ public class AppointmentController {
     })
     public String mostrarFormularioCita(
             @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
-            Model model) {
-        // Obtener usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
+            Model model,
 
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
         // Obtener mascotas del usuario
-        List<Mascota> mascotas = mascotaService.findByPropietario(usuarioActual);
+        List<Mascota> mascotas = mascotaService.findByPropietario(usuario.getIdUsuario());
 
         // Obtener servicios disponibles
         List<Servicio> servicios = servicioService.findAllActive();
@@ -86,7 +100,7 @@ public class AppointmentController {
     @ResponseBody
     @Operation(
             summary = "Obtener horarios disponibles",
-            description = "Devuelve los horarios disponibles para una fecha específica en formato JSON. Los horarios van de 8:00 a 12:00 y de 13:00 a 17:00 en intervalos de 30 minutos"
+            description = "Devuelve los horarios disponibles para una fecha específica en formato JSON. Los horarios salen del calendario de atención de la clínica (horario semanal, descansos, festivos y horarios por servicio) en intervalos de 30 minutos. La respuesta incluye un ETag que cambia solo cuando se ocupa o libera un horario del día, de modo que las peticiones condicionales reciben 304 sin recalcular la disponibilidad"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -97,13 +111,17 @@ public class AppointmentController {
                             schema = @Schema(description = "Objeto con horas disponibles y su estado de disponibilidad")
                     )
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "La disponibilidad no cambió desde la versión indicada en If-None-Match"
+            ),
             @ApiResponse(
                     responseCode = "400",
                     description = "Fecha inválida",
                     content = @Content(mediaType = "application/json")
             )
     })
-    public Map<String, Object> obtenerHorariosDisponibles(
+    public ResponseEntity<Map<String, Object>> obtenerHorariosDisponibles(
             @Parameter(
                     description = "Fecha para consultar horarios disponibles en formato ISO (YYYY-MM-DD)",
                     required = true,
@@ -111,6 +129,123 @@ public class AppointmentController {
             )
             @PathVariable("fecha") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
 
+            @Parameter(
+                    description = "ID del servicio para filtrar horarios específicos (opcional)",
+                    required = false,
+                    example = "1"
+            )
+            @RequestParam(required = false) Integer servicioId,
+
+            @Parameter(description = "Petición actual, usada para validar el ETag", hidden = true)
+            WebRequest request) {
+
+        // Si el cliente ya tiene la versión actual se responde 304 sin recalcular nada
+        String etag = citaService.obtenerEtagHorarios(fecha, servicioId);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+
+        // Plantilla compartida del día y máscara de horarios libres
+        CalendarioClinicaService.PlantillaHorario plantilla = citaService.obtenerPlantillaHorarios(fecha, servicioId);
+        long libres = citaService.obtenerHorariosLibres(fecha, servicioId);
+
+        Map<String, Boolean> disponibilidad = new LinkedHashMap<>();
+        for (int i = 0; i < plantilla.horas().size(); i++) {
+            int slot = DisponibilidadService.indiceSlot(plantilla.horas().get(i));
+            disponibilidad.put(plantilla.etiquetas().get(i), (libres & (1L << slot)) != 0);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("horas", plantilla.etiquetas());
+        result.put("disponibilidad", disponibilidad);
+
+        // no-cache: el navegador guarda la respuesta pero siempre la revalida con el ETag
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (etag != null) {
+            respuesta.eTag(etag);
+        }
+        return respuesta.body(result);
+    }
+
+    @GetMapping(value = "/horarios/{fecha}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    @Operation(
+            summary = "Suscribirse a cambios de disponibilidad",
+            description = "Abre un flujo Server-Sent Events que notifica cada vez que un horario de la fecha se ocupa o se libera. Los eventos 'horario' contienen la hora y su disponibilidad; el evento 'resincronizar' indica que el cliente debe recargar los horarios"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Flujo de eventos abierto",
+                    content = @Content(mediaType = "text/event-stream")
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Se alcanzó el límite de conexiones simultáneas, global o del usuario",
+                    content = @Content(mediaType = "text/event-stream")
+            )
+    })
+    public SseEmitter suscribirseHorarios(
+            @Parameter(
+                    description = "Fecha observada en formato ISO (YYYY-MM-DD)",
+                    required = true,
+                    example = "2025-06-15"
+            )
+            @PathVariable("fecha") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+
+            @Parameter(
+                    description = "ID del servicio observado (opcional, todos los servicios si se omite)",
+                    required = false,
+                    example = "1"
+            )
+            @RequestParam(required = false) Integer servicioId,
+
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+
+        SseEmitter emitter = disponibilidadEventosService.suscribir(fecha, servicioId, usuario.getIdUsuario());
+        if (emitter == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiadas conexiones abiertas");
+        }
+        return emitter;
+    }
+
+    @GetMapping("/horarios")
+    @ResponseBody
+    @Operation(
+            summary = "Obtener disponibilidad de un rango de fechas",
+            description = "Devuelve en una sola respuesta la matriz de disponibilidad de cada día del rango. Cada día se representa con una cadena de '1' (disponible), '0' (ocupado) y '-' (fuera del horario de atención) alineada con la lista de horas, e incluye la lista de días sin horarios libres"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Disponibilidad obtenida exitosamente",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(description = "Objeto con las horas, la matriz de disponibilidad por día y los días completos")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Rango de fechas inválido o superior a 31 días",
+                    content = @Content(mediaType = "application/json")
+            )
+    })
+    public Map<String, Object> obtenerDisponibilidadRango(
+            @Parameter(
+                    description = "Primera fecha del rango en formato ISO (YYYY-MM-DD)",
+                    required = true,
+                    example = "2025-06-15"
+            )
+            @RequestParam("desde") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+
+            @Parameter(
+                    description = "Última fecha del rango en formato ISO (YYYY-MM-DD)",
+                    required = true,
+                    example = "2025-06-28"
+            )
+            @RequestParam("hasta") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+
             @Parameter(
                     description = "ID del servicio para filtrar horarios específicos (opcional)",
                     required = false,
@@ -118,33 +253,48 @@ public class AppointmentController {
             )
             @RequestParam(required = false) Integer servicioId) {
 
-        // Obtener horarios disponibles para la fecha seleccionada
-        List<LocalTime> horariosDisponibles = citaService.obtenerHorariosDisponibles(fecha, servicioId);
+        if (hasta.isBefore(desde) || ChronoUnit.DAYS.between(desde, hasta) >= MAX_DIAS_RANGO) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rango de fechas inválido");
+        }
 
-        // Formatear horas para mostrar en la interfaz
-        List<String> horasFormateadas = new ArrayList<>();
-        Map<String, Boolean> disponibilidad = new HashMap<>();
+        // Una sola consulta al índice para todo el rango
+        Map<LocalDate, Long> ocupadosPorDia = citaService.obtenerOcupadosRango(desde, hasta, servicioId);
 
-        for (int i = 8; i < 12; i++) { // 8am a 12pm
-            for (int m = 0; m < 60; m += 30) { // Intervalos de 30 minutos
-                LocalTime hora = LocalTime.of(i, m);
-                String horaStr = hora.toString();
-                horasFormateadas.add(horaStr);
-                disponibilidad.put(horaStr, horariosDisponibles.contains(hora));
-            }
+        // Las columnas de la matriz son la unión de los horarios de atención del rango
+        Map<LocalDate, CalendarioClinicaService.PlantillaHorario> plantillas = new LinkedHashMap<>();
+        long columnas = 0L;
+        for (LocalDate fecha : ocupadosPorDia.keySet()) {
+            CalendarioClinicaService.PlantillaHorario plantilla = citaService.obtenerPlantillaHorarios(fecha, servicioId);
+            plantillas.put(fecha, plantilla);
+            columnas |= plantilla.mascara();
         }
-        for (int i = 13; i < 17; i++) { // 1pm a 5pm
-            for (int m = 0; m < 60; m += 30) { // Intervalos de 30 minutos
-                LocalTime hora = LocalTime.of(i, m);
-                String horaStr = hora.toString();
-                horasFormateadas.add(horaStr);
-                disponibilidad.put(horaStr, horariosDisponibles.contains(hora));
+
+        List<String> horasFormateadas = new ArrayList<>(Long.bitCount(columnas));
+        for (long resto = columnas; resto != 0; resto &= resto - 1) {
+            horasFormateadas.add(DisponibilidadService.horaDeSlot(Long.numberOfTrailingZeros(resto)).toString());
+        }
+
+        // '1' libre, '0' ocupado, '-' fuera del horario de atención de ese día
+        Map<String, String> dias = new LinkedHashMap<>();
+        List<String> completos = new ArrayList<>();
+        for (Map.Entry<LocalDate, Long> dia : ocupadosPorDia.entrySet()) {
+            long atencion = plantillas.get(dia.getKey()).mascara();
+            long libres = atencion & ~dia.getValue();
+            StringBuilder matriz = new StringBuilder(horasFormateadas.size());
+            for (long resto = columnas; resto != 0; resto &= resto - 1) {
+                long bit = Long.lowestOneBit(resto);
+                matriz.append((atencion & bit) == 0 ? '-' : (libres & bit) != 0 ? '1' : '0');
+            }
+            dias.put(dia.getKey().toString(), matriz.toString());
+            if (libres == 0) {
+                completos.add(dia.getKey().toString());
             }
         }
 
         Map<String, Object> result = new HashMap<>();
         result.put("horas", horasFormateadas);
-        result.put("disponibilidad", disponibilidad);
+        result.put("dias", dias);
+        result.put("completos", completos);
 
         return result;
     }
@@ -152,12 +302,12 @@ public class AppointmentController {
     @PostMapping("/guardar")
     @Operation(
             summary = "Guardar nueva cita",
-            description = "Procesa y guarda una nueva cita con la fecha, hora, mascota y servicio seleccionados. La cita se crea en estado 'Programada'"
+            description = "Procesa y guarda una nueva cita con la fecha, hora, mascota y servicio seleccionados. La cita se crea en estado 'Programada'. La mascota debe pertenecer al usuario autenticado"
     )
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "302",
-                    description = "Cita guardada exitosamente, redirige a mis citas con mensaje de éxito",
+                    description = "Cita guardada exitosamente, redirige a mis citas con mensaje de éxito. Si el horario ya fue reservado redirige al formulario con el parámetro 'ocupado', y si la clínica no atiende a esa hora con 'fueraHorario'",
                     content = @Content(mediaType = "text/html")
             ),
             @ApiResponse(
@@ -204,16 +354,26 @@ public class AppointmentController {
                     required = true,
                     example = "2"
             )
-            @RequestParam("servicioId") Integer servicioId) {
+            @RequestParam("servicioId") Integer servicioId,
+
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+
+        // Solo se puede agendar para una mascota propia
+        Mascota mascota = autorizacionService.mascotaPropia(mascotaId, usuario);
+        if (mascota == null) {
+            return "redirect:/citas/mis-citas?error";
+        }
 
         // Construir fecha y hora completa
         String[] partesHora = hora.split(":");
         LocalTime horaLocal = LocalTime.of(Integer.parseInt(partesHora[0]), Integer.parseInt(partesHora[1]));
         LocalDateTime fechaHora = LocalDateTime.of(fecha, horaLocal);
 
-        // Buscar mascota y servicio
-        Mascota mascota = mascotaService.findById(mascotaId);
         Servicio servicio = servicioService.findById(servicioId);
+        if (servicio == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Servicio inexistente");
+        }
 
         // Configurar cita
         cita.setMascota(mascota);
@@ -221,8 +381,18 @@ public class AppointmentController {
         cita.setFechaHora(fechaHora);
         cita.setEstado(Cita.EstadoCita.Programada);
 
-        // Guardar cita
-        citaService.save(cita);
+        // Reservar el horario; si otro usuario lo tomó primero o la clínica no atiende a esa
+        // hora se vuelve al formulario
+        CitaService.ResultadoReserva resultado = citaService.reservar(cita);
+        if (resultado == CitaService.ResultadoReserva.MASCOTA_ELIMINADA) {
+            return "redirect:/citas/mis-citas?error";
+        }
+        if (resultado == CitaService.ResultadoReserva.FUERA_DE_HORARIO) {
+            return "redirect:/citas/agendar?fueraHorario";
+        }
+        if (resultado != CitaService.ResultadoReserva.RESERVADA) {
+            return "redirect:/citas/agendar?ocupado";
+        }
 
         return "redirect:/citas/mis-citas?exito";
     }
@@ -246,15 +416,13 @@ public class AppointmentController {
     })
     public String misCitas(
             @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
-            Model model) {
-        // Obtener usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
+            Model model,
 
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
         // Obtener citas del usuario a través de sus mascotas
-        List<Cita> citas = citaService.findByPropietario(usuarioActual);
-        List<Mascota> mascotas = mascotaService.findByPropietario(usuarioActual);
+        List<Cita> citas = citaService.findByPropietario(usuario.getIdUsuario());
+        List<Mascota> mascotas = mascotaService.findByPropietario(usuario.getIdUsuario());
 
         model.addAttribute("citas", citas);
         model.addAttribute("mascotas", mascotas);
@@ -295,17 +463,13 @@ public class AppointmentController {
                     required = true,
                     example = "5"
             )
-            @PathVariable("id") Integer idCita) {
-        // Verificar que la cita pertenezca al usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
-
-        Cita cita = citaService.findById(idCita);
+            @PathVariable("id") Integer idCita,
 
-        // Verificar que la cita exista y pertenezca al usuario
-        if (cita != null && usuarioActual.isPresent() &&
-                cita.getMascota().getPropietario().getIdUsuario().equals(usuarioActual.get().getIdUsuario())) {
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+        // La cita solo se obtiene si existe y pertenece al usuario
+        Cita cita = autorizacionService.citaPropia(idCita, usuario);
+        if (cita != null) {
             // Cambiar estado a cancelada
             cita.setEstado(Cita.EstadoCita.Cancelada);
             citaService.save(cita);
@@ -351,17 +515,13 @@ public class AppointmentController {
             @PathVariable("id") Integer idCita,
 
             @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
-            Model model) {
-        // Verificar que la cita pertenezca al usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
+            Model model,
 
-        Cita cita = citaService.findById(idCita);
-
-        // Verificar que la cita exista y pertenezca al usuario
-        if (cita == null || !usuarioActual.isPresent() ||
-                !cita.getMascota().getPropietario().getIdUsuario().equals(usuarioActual.get().getIdUsuario())) {
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+        // La cita solo se obtiene si existe y pertenece al usuario
+        Cita cita = autorizacionService.citaPropia(idCita, usuario);
+        if (cita == null) {
             return "redirect:/citas/mis-citas?error";
         }
 
@@ -371,7 +531,7 @@ public class AppointmentController {
         }
 
         // Obtener mascotas del usuario
-        List<Mascota> mascotas = mascotaService.findByPropietario(usuarioActual);
+        List<Mascota> mascotas = mascotaService.findByPropietario(usuario.getIdUsuario());
 
         // Obtener servicios disponibles
         List<Servicio> servicios = servicioService.findAllActive();
@@ -453,18 +613,13 @@ public class AppointmentController {
                     required = true,
                     example = "1"
             )
-            @RequestParam("servicioId") Integer servicioId) {
-
-        // Verificar que la cita pertenezca al usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
+            @RequestParam("servicioId") Integer servicioId,
 
-        Cita cita = citaService.findById(idCita);
-
-        // Verificar que la cita exista y pertenezca al usuario
-        if (cita == null || !usuarioActual.isPresent() ||
-                !cita.getMascota().getPropietario().getIdUsuario().equals(usuarioActual.get().getIdUsuario())) {
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+        // La cita solo se obtiene si existe y pertenece al usuario
+        Cita cita = autorizacionService.citaPropia(idCita, usuario);
+        if (cita == null) {
             return "redirect:/citas/mis-citas?error";
         }
 
@@ -473,39 +628,52 @@ public class AppointmentController {
             return "redirect:/citas/mis-citas?noeditable";
         }
 
+        // La nueva mascota también debe ser propia; si no cambia se reutiliza la ya cargada
+        Mascota mascota = mascotaId != null && mascotaId.equals(cita.getMascota().getIdMascota())
+                ? cita.getMascota()
+                : autorizacionService.mascotaPropia(mascotaId, usuario);
+        if (mascota == null) {
+            return "redirect:/citas/mis-citas?error";
+        }
+
         // Construir fecha y hora completa
         String[] partesHora = hora.split(":");
         LocalTime horaLocal = LocalTime.of(Integer.parseInt(partesHora[0]), Integer.parseInt(partesHora[1]));
         LocalDateTime fechaHora = LocalDateTime.of(fecha, horaLocal);
 
-        // Buscar mascota y servicio
-        Mascota mascota = mascotaService.findById(mascotaId);
         Servicio servicio = servicioService.findById(servicioId);
+        if (servicio == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Servicio inexistente");
+        }
 
         // Configurar cita
         cita.setMascota(mascota);
         cita.setServicio(servicio);
         cita.setFechaHora(fechaHora);
 
-        // Guardar cita
-        citaService.save(cita);
+        // Reservar el nuevo horario; si otro usuario lo tomó primero o la clínica no atiende a
+        // esa hora se vuelve al formulario
+        CitaService.ResultadoReserva resultado = citaService.reservar(cita);
+        if (resultado == CitaService.ResultadoReserva.MASCOTA_ELIMINADA) {
+            return "redirect:/citas/mis-citas?error";
+        }
+        if (resultado == CitaService.ResultadoReserva.FUERA_DE_HORARIO) {
+            return "redirect:/citas/editar/" + idCita + "?fueraHorario";
+        }
+        if (resultado != CitaService.ResultadoReserva.RESERVADA) {
+            return "redirect:/citas/editar/" + idCita + "?ocupado";
+        }
 
         return "redirect:/citas/mis-citas?actualizada";
     }
 
     /**
-     * Metodo privado para generar fechas disponibles
+     * Metodo privado para generar fechas disponibles según el calendario de la clínica
      */
     private List<LocalDate> generarFechasDisponibles() {
-        List<LocalDate> fechas = new ArrayList<>();
-        LocalDate hoy = LocalDate.now();
-        LocalDate manana = hoy.plusDays(1);
-
-        // Generar 14 días desde mañana
-        for (int i = 0; i < 14; i++) {
-            fechas.add(manana.plusDays(i));
-        }
+        LocalDate manana = LocalDate.now().plusDays(1);
 
-        return fechas;
+        // Días con atención dentro de las 2 semanas desde mañana
+        return citaService.obtenerFechasReservables(manana, DIAS_RESERVABLES);
     }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.sistemaVeterinario.controller;
+
+import com.sistemaVeterinario.models.DiaFestivo;
+import com.sistemaVeterinario.models.HorarioAtencion;
+import com.sistemaVeterinario.service.CalendarioClinicaService;
+import com.sistemaVeterinario.service.ServicioService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+
+@Controller
+@RequestMapping("/admin/calendario")
+@Tag(name = "Calendario Controller", description = "Controlador administrativo para configurar el calendario de atención de la clínica")
+public class CalendarioController {
+
+    @Autowired
+    private CalendarioClinicaService calendarioClinicaService;
+
+    @Autowired
+    private ServicioService servicioService;
+
+    /**
+     * Muestra los horarios de atención y los días festivos
+     */
+    @GetMapping
+    @Operation(
+            summary = "Ver calendario de atención",
+            description = "Muestra los horarios semanales de atención (generales y por servicio) y los días festivos registrados"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Calendario mostrado correctamente",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String verCalendario(
+            @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
+            Model model) {
+        model.addAttribute("horarios", calendarioClinicaService.listarHorarios());
+        model.addAttribute("festivos", calendarioClinicaService.listarFestivos());
+        model.addAttribute("servicios", servicioService.findAllActive());
+        model.addAttribute("diasSemana", DayOfWeek.values());
+        model.addAttribute("estiloDia", TextStyle.FULL);
+        return "admin/calendario";
+    }
+
+    /**
+     * Guarda el horario de atención de un día de la semana
+     */
+    @PostMapping("/horarios")
+    @Operation(
+            summary = "Guardar horario de atención",
+            description = "Crea o reemplaza el horario de un día de la semana, general o para un servicio específico, y recompila las plantillas de horarios"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "302",
+                    description = "Horario guardado o error de validación, redirige al calendario con el mensaje correspondiente",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String guardarHorario(
+            @Parameter(description = "Día de la semana", required = true, example = "MONDAY")
+            @RequestParam DayOfWeek diaSemana,
+
+            @Parameter(description = "Hora de apertura", required = true, example = "08:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime horaApertura,
+
+            @Parameter(description = "Hora de cierre", required = true, example = "17:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime horaCierre,
+
+            @Parameter(description = "Inicio del descanso (opcional)", example = "12:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime inicioDescanso,
+
+            @Parameter(description = "Fin del descanso (opcional)", example = "13:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime finDescanso,
+
+            @Parameter(description = "ID del servicio al que aplica (opcional, horario general si se omite)", example = "1")
+            @RequestParam(required = false) Integer servicioId,
+
+            @Parameter(description = "Atributos para redirección", hidden = true)
+            RedirectAttributes redirectAttributes) {
+        HorarioAtencion horario = new HorarioAtencion();
+        horario.setDiaSemana(diaSemana);
+        horario.setHoraApertura(horaApertura);
+        horario.setHoraCierre(horaCierre);
+        horario.setInicioDescanso(inicioDescanso);
+        horario.setFinDescanso(finDescanso);
+        if (servicioId != null) {
+            horario.setServicio(servicioService.findById(servicioId));
+        }
+
+        try {
+            calendarioClinicaService.guardarHorario(horario);
+            redirectAttributes.addFlashAttribute("mensaje", "Horario guardado exitosamente");
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        }
+        return "redirect:/admin/calendario";
+    }
+
+    /**
+     * Elimina un horario de atención
+     */
+    @PostMapping("/horarios/eliminar/{id}")
+    @Operation(
+            summary = "Eliminar horario de atención",
+            description = "Elimina un horario; el día queda cerrado o, si era un horario por servicio, vuelve a aplicar el horario general"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "302",
+                    description = "Horario eliminado, redirige al calendario",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String eliminarHorario(
+            @Parameter(description = "ID del horario a eliminar", required = true, example = "1")
+            @PathVariable Integer id,
+
+            @Parameter(description = "Atributos para redirección", hidden = true)
+            RedirectAttributes redirectAttributes) {
+        calendarioClinicaService.eliminarHorario(id);
+        redirectAttributes.addFlashAttribute("mensaje", "Horario eliminado exitosamente");
+        return "redirect:/admin/calendario";
+    }
+
+    /**
+     * Registra un día festivo
+     */
+    @PostMapping("/festivos")
+    @Operation(
+            summary = "Registrar día festivo",
+            description = "Registra una fecha en la que la clínica no atiende y recompila el calendario"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "302",
+                    description = "Festivo registrado o error de validación, redirige al calendario con el mensaje correspondiente",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String guardarFestivo(
+            @Parameter(description = "Fecha del festivo en formato ISO", required = true, example = "2025-12-25")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+
+            @Parameter(description = "Descripción del festivo", example = "Navidad")
+            @RequestParam(required = false) String descripcion,
+
+            @Parameter(description = "Atributos para redirección", hidden = true)
+            RedirectAttributes redirectAttributes) {
+        DiaFestivo festivo = new DiaFestivo();
+        festivo.setFecha(fecha);
+        festivo.setDescripcion(descripcion);
+
+        try {
+            calendarioClinicaService.guardarFestivo(festivo);
+            redirectAttributes.addFlashAttribute("mensaje", "Día festivo registrado exitosamente");
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        }
+        return "redirect:/admin/calendario";
+    }
+
+    /**
+     * Elimina un día festivo
+     */
+    @PostMapping("/festivos/eliminar/{id}")
+    @Operation(
+            summary = "Eliminar día festivo",
+            description = "Elimina un día festivo; la fecha vuelve a seguir el horario semanal"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "302",
+                    description = "Festivo eliminado, redirige al calendario",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String eliminarFestivo(
+            @Parameter(description = "ID del festivo a eliminar", required = true, example = "1")
+            @PathVariable Integer id,
+
+            @Parameter(description = "Atributos para redirección", hidden = true)
+            RedirectAttributes redirectAttributes) {
+        calendarioClinicaService.eliminarFestivo(id);
+        redirectAttributes.addFlashAttribute("mensaje", "Día festivo eliminado exitosamente");
+        return "redirect:/admin/calendario";
+    }
+}
@@ -0,0 +1,114 @@
+package com.sistemaVeterinario.controller;
+
+import com.sistemaVeterinario.service.ExportacionService;
+import com.sistemaVeterinario.service.ExportacionService.FormatoExportacion;
+import com.sistemaVeterinario.service.ExportacionService.TipoExportacion;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+@Controller
+@RequestMapping("/admin/exportaciones")
+@Tag(name = "Exportacion Controller", description = "Controlador administrativo para exportar usuarios, mascotas y citas")
+public class ExportacionController {
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    /**
+     * Descarga los usuarios, mascotas o citas en CSV o JSON, escribiendo las filas a medida que
+     * se leen de la base de datos
+     */
+    @GetMapping("/{tipo}")
+    @Operation(
+            summary = "Exportar datos",
+            description = "Descarga usuarios (filtrados por fecha de registro), mascotas o citas (filtradas por fecha) en CSV o JSON, opcionalmente comprimidos con gzip. La respuesta se transmite por partes, sin cargar todas las filas en memoria"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Archivo exportado",
+                    content = {
+                            @Content(mediaType = "text/csv"),
+                            @Content(mediaType = "application/json"),
+                            @Content(mediaType = "application/gzip")
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Rango de fechas inválido",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Hay demasiadas exportaciones en curso",
+                    content = @Content
+            )
+    })
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @Parameter(description = "Datos a exportar: usuarios, mascotas o citas", required = true, example = "citas")
+            @PathVariable String tipo,
+
+            @Parameter(description = "Formato del archivo: csv o json", example = "csv")
+            @RequestParam(defaultValue = "csv") String formato,
+
+            @Parameter(description = "Si el archivo se comprime con gzip", example = "true")
+            @RequestParam(defaultValue = "false") boolean gzip,
+
+            @Parameter(description = "Primer día incluido en formato ISO (YYYY-MM-DD)", required = false, example = "2025-01-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+
+            @Parameter(description = "Último día incluido en formato ISO (YYYY-MM-DD)", required = false, example = "2025-12-31")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+
+        TipoExportacion tipoExportacion = valorDe(TipoExportacion.class, tipo);
+        FormatoExportacion formatoExportacion = valorDe(FormatoExportacion.class, formato);
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha inicial es posterior a la final");
+        }
+
+        StreamingResponseBody cuerpo = exportacionService.exportar(tipoExportacion, formatoExportacion, gzip, desde, hasta);
+        if (cuerpo == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Hay demasiadas exportaciones en curso");
+        }
+
+        String archivo = tipoExportacion.getNombre() + "-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "." + formatoExportacion.getExtension() + (gzip ? ".gz" : "");
+        MediaType tipoContenido = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : MediaType.parseMediaType(formatoExportacion.getTipoContenido() + ";charset=UTF-8");
+        return ResponseEntity.ok()
+                .contentType(tipoContenido)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(archivo).build().toString())
+                .body(cuerpo);
+    }
+
+    private static <E extends Enum<E>> E valorDe(Class<E> tipo, String valor) {
+        try {
+            return Enum.valueOf(tipo, valor.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Exportación no disponible: " + valor);
+        }
+    }
+}
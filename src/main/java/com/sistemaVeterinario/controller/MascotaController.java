@@ -1,7 +1,10 @@
 package com.sistemaVeterinario.controller;
 
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
+import com.sistemaVeterinario.models.Cita;
 import com.sistemaVeterinario.models.Mascota;
-import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.service.AutorizacionService;
+import com.sistemaVeterinario.service.CitaService;
 import com.sistemaVeterinario.service.MascotaService;
 import com.sistemaVeterinario.service.UsuarioService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,8 +16,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -23,7 +24,6 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Optional;
 
 @Controller
 @RequestMapping("/mascotas")
@@ -36,6 +36,12 @@ public class MascotaController {
     @Autowired
     private UsuarioService usuarioService;
 
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private AutorizacionService autorizacionService;
+
     @GetMapping
     @Operation(
             summary = "Listar mis mascotas",
@@ -55,13 +61,11 @@ public class MascotaController {
     })
     public String listarMascotas(
             @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
-            Model model) {
-        // Obtener el usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
+            Model model,
 
-        List<Mascota> mascotas = mascotaService.findByPropietario(usuarioActual);
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+        List<Mascota> mascotas = mascotaService.findByPropietario(usuario.getIdUsuario());
         model.addAttribute("mascotas", mascotas);
         return "mascotas/listaMascota";
     }
@@ -133,22 +137,21 @@ public class MascotaController {
             BindingResult result,
 
             @Parameter(description = "Atributos para redirección", hidden = true)
-            RedirectAttributes redirectAttributes) {
+            RedirectAttributes redirectAttributes,
+
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
         if (result.hasErrors()) {
             return "mascotas/formMascota";
         }
 
-        // Obtener el usuario autenticado y asignarlo como propietario
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
-
-        if (!usuarioActual.isPresent()) {
+        if (usuario == null) {
             redirectAttributes.addFlashAttribute("error", "Error al guardar la mascota: usuario no autenticado");
             return "redirect:/mascotas";
         }
 
-        mascota.setPropietario(usuarioActual.get());
+        // El usuario autenticado queda como propietario, sin volver a consultarlo
+        mascota.setPropietario(usuarioService.getReferencia(usuario.getIdUsuario()));
         mascota.setFechaNacimiento(fechaNacimiento);
 
         mascotaService.save(mascota);
@@ -200,22 +203,14 @@ public class MascotaController {
             Model model,
 
             @Parameter(description = "Atributos para redirección", hidden = true)
-            RedirectAttributes redirectAttributes) {
-        // Obtener el usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
-
-        Mascota mascota = mascotaService.findById(id);
+            RedirectAttributes redirectAttributes,
 
-        // Verificar que la mascota exista y pertenezca al usuario
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+        // La mascota solo se obtiene si existe y pertenece al usuario
+        Mascota mascota = autorizacionService.mascotaPropia(id, usuario);
         if (mascota == null) {
-            redirectAttributes.addFlashAttribute("error", "La mascota no existe");
-            return "redirect:/mascotas";
-        }
-
-        if (!usuarioActual.isPresent() || !mascota.getPropietario().getIdUsuario().equals(usuarioActual.get().getIdUsuario())) {
-            redirectAttributes.addFlashAttribute("error", "No tienes permiso para editar esta mascota");
+            redirectAttributes.addFlashAttribute("error", "La mascota no existe o no tienes permiso para editarla");
             return "redirect:/mascotas";
         }
 
@@ -228,7 +223,7 @@ public class MascotaController {
     @GetMapping("/eliminar/{id}")
     @Operation(
             summary = "Eliminar mascota",
-            description = "Elimina permanentemente una mascota del sistema. Solo el propietario puede eliminar su mascota"
+            description = "Elimina una mascota del sistema y cancela sus citas programadas. La mascota se archiva y se borra definitivamente con su historial tras el plazo de retención. Solo el propietario puede eliminar su mascota"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -266,26 +261,18 @@ public class MascotaController {
             @PathVariable Integer id,
 
             @Parameter(description = "Atributos para redirección", hidden = true)
-            RedirectAttributes redirectAttributes) {
-        // Obtener el usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
+            RedirectAttributes redirectAttributes,
 
-        Mascota mascota = mascotaService.findById(id);
-
-        // Verificar que la mascota exista y pertenezca al usuario
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+        // La mascota solo se obtiene si existe y pertenece al usuario
+        Mascota mascota = autorizacionService.mascotaPropia(id, usuario);
         if (mascota == null) {
-            redirectAttributes.addFlashAttribute("error", "La mascota no existe");
-            return "redirect:/mascotas";
-        }
-
-        if (!usuarioActual.isPresent() || !mascota.getPropietario().getIdUsuario().equals(usuarioActual.get().getIdUsuario())) {
-            redirectAttributes.addFlashAttribute("error", "No tienes permiso para eliminar esta mascota");
+            redirectAttributes.addFlashAttribute("error", "La mascota no existe o no tienes permiso para eliminarla");
             return "redirect:/mascotas";
         }
 
-        mascotaService.delete(id);
+        mascotaService.delete(mascota);
         redirectAttributes.addFlashAttribute("success", "Mascota eliminada con éxito");
         return "redirect:/mascotas";
     }
@@ -293,7 +280,7 @@ public class MascotaController {
     @GetMapping("/detalles/{id}")
     @Operation(
             summary = "Ver detalles de mascota",
-            description = "Muestra la información detallada de una mascota específica. Solo el propietario puede ver los detalles de su mascota"
+            description = "Muestra la información detallada de una mascota específica y su historial de citas, de la más reciente a la más antigua, por páginas y con filtros de estado y servicio. Solo el propietario puede ver los detalles de su mascota"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -330,30 +317,37 @@ public class MascotaController {
             )
             @PathVariable Integer id,
 
+            @Parameter(description = "Estado de las citas del historial (opcional)", example = "Completada")
+            @RequestParam(required = false) Cita.EstadoCita estado,
+
+            @Parameter(description = "ID del servicio de las citas del historial (opcional)", example = "1")
+            @RequestParam(required = false) Integer servicioId,
+
+            @Parameter(description = "Cursor de la página siguiente del historial, recibido en la página anterior")
+            @RequestParam(required = false) String despues,
+
             @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
             Model model,
 
             @Parameter(description = "Atributos para redirección", hidden = true)
-            RedirectAttributes redirectAttributes) {
-        // Obtener el usuario autenticado
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        Optional<Usuario> usuarioActual = usuarioService.findByEmail(email);
-
-        Mascota mascota = mascotaService.findById(id);
+            RedirectAttributes redirectAttributes,
 
-        // Verificar que la mascota exista y pertenezca al usuario
+            @Parameter(description = "Usuario autenticado", hidden = true)
+            UsuarioPrincipal usuario) {
+        // La mascota solo se obtiene si existe y pertenece al usuario
+        Mascota mascota = autorizacionService.mascotaPropia(id, usuario);
         if (mascota == null) {
-            redirectAttributes.addFlashAttribute("error", "La mascota no existe");
-            return "redirect:/mascotas";
-        }
-
-        if (!usuarioActual.isPresent() || !mascota.getPropietario().getIdUsuario().equals(usuarioActual.get().getIdUsuario())) {
-            redirectAttributes.addFlashAttribute("error", "No tienes permiso para ver esta mascota");
+            redirectAttributes.addFlashAttribute("error", "La mascota no existe o no tienes permiso para verla");
             return "redirect:/mascotas";
         }
 
         model.addAttribute("mascota", mascota);
+        model.addAttribute("historial", citaService.obtenerHistorial(id, estado, servicioId, despues));
+        model.addAttribute("serviciosHistorial", citaService.obtenerServiciosHistorial(id));
+        model.addAttribute("estados", Cita.EstadoCita.values());
+        model.addAttribute("estado", estado);
+        model.addAttribute("servicioId", servicioId);
+        model.addAttribute("mostrarPrimeraPagina", despues != null && !despues.isBlank());
         return "mascotas/detallesMascota";
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.sistemaVeterinario.controller;
+
+import com.sistemaVeterinario.service.ResumenOcupacionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.time.LocalDate;
+
+@Controller
+@RequestMapping("/admin/ocupacion")
+@Tag(name = "Ocupacion Controller", description = "Controlador administrativo para consultar la ocupación de los servicios")
+public class OcupacionController {
+
+    // Días mostrados cuando no se indica un rango
+    private static final int DIAS_POR_DEFECTO = 7;
+
+    // Días máximos de un rango, para que el panel siga leyendo pocas filas
+    private static final int DIAS_MAXIMOS = 92;
+
+    @Autowired
+    private ResumenOcupacionService resumenOcupacionService;
+
+    /**
+     * Muestra las citas programadas, canceladas y completadas por día y servicio
+     */
+    @GetMapping
+    @Operation(
+            summary = "Ver ocupación de servicios",
+            description = "Muestra por día y servicio las citas programadas, canceladas y completadas, y la hora con más citas. Los datos se leen del resumen por hora, sin recorrer la tabla de citas"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Panel de ocupación mostrado correctamente",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String verOcupacion(
+            @Parameter(description = "Primer día incluido en formato ISO (YYYY-MM-DD); por defecto hoy", example = "2025-06-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+
+            @Parameter(description = "Último día incluido en formato ISO (YYYY-MM-DD); por defecto una semana después", example = "2025-06-07")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+
+            @Parameter(description = "Modelo para pasar datos a la vista", hidden = true)
+            Model model) {
+        if (desde == null) {
+            desde = LocalDate.now();
+        }
+        if (hasta == null || hasta.isBefore(desde)) {
+            hasta = desde.plusDays(DIAS_POR_DEFECTO - 1);
+        }
+        if (hasta.isAfter(desde.plusDays(DIAS_MAXIMOS - 1))) {
+            hasta = desde.plusDays(DIAS_MAXIMOS - 1);
+        }
+
+        model.addAttribute("ocupacion", resumenOcupacionService.obtenerOcupacion(desde, hasta));
+        model.addAttribute("desde", desde);
+        model.addAttribute("hasta", hasta);
+        return "admin/ocupacion";
+    }
+
+    /**
+     * Recalcula el resumen de ocupación desde la tabla de citas
+     */
+    @PostMapping("/reconstruir")
+    @Operation(
+            summary = "Reconstruir resumen de ocupación",
+            description = "Vuelve a calcular el resumen por hora de todas las citas, en paralelo por bloques de días. Solo es necesario si el resumen quedó desactualizado"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "302",
+                    description = "Resumen reconstruido o ya en reconstrucción, redirige al panel con el mensaje correspondiente",
+                    content = @Content(mediaType = "text/html")
+            )
+    })
+    public String reconstruir(
+            @Parameter(description = "Atributos para redirección", hidden = true)
+            RedirectAttributes redirectAttributes) {
+        long inicio = System.currentTimeMillis();
+        int filas = resumenOcupacionService.reconstruir();
+        if (filas < 0) {
+            redirectAttributes.addFlashAttribute("error", "Ya hay una reconstrucción del resumen en curso");
+        } else {
+            redirectAttributes.addFlashAttribute("mensaje", "Resumen reconstruido: " + filas + " filas en "
+                    + (System.currentTimeMillis() - inicio) + " ms");
+        }
+        return "redirect:/admin/ocupacion";
+    }
+}
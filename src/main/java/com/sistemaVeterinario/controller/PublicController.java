@@ -15,6 +15,7 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -175,6 +176,11 @@ public class PublicController {
                         messageSource.getMessage("error.phone.existing", null, LocaleContextHolder.getLocale()));
             }
             return "public/registrationForm";
+        } catch (AuthenticationServiceException e) {
+            // El codificador de contraseñas está saturado: se pide repetir el envío
+            model.addAttribute("contrasenaError",
+                    messageSource.getMessage("error.password.busy", null, LocaleContextHolder.getLocale()));
+            return "public/registrationForm";
         }
     }
 }
\ No newline at end of file
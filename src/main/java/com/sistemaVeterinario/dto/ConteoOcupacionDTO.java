@@ -0,0 +1,28 @@
+package com.sistemaVeterinario.dto;
+
+import com.sistemaVeterinario.models.Cita;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+/**
+ * Cantidad de citas en un estado para un servicio, un día y una hora, calculada con una
+ * consulta agrupada sobre la tabla de citas.
+ */
+@Schema(description = "Citas de un servicio en un estado durante una hora")
+public record ConteoOcupacionDTO(
+        @Schema(description = "Día de las citas")
+        LocalDate fecha,
+
+        @Schema(description = "Hora del día (0 a 23)", example = "9")
+        Integer hora,
+
+        @Schema(description = "ID del servicio", example = "1")
+        Integer idServicio,
+
+        @Schema(description = "Estado de las citas", example = "Programada")
+        Cita.EstadoCita estado,
+
+        @Schema(description = "Número de citas", example = "3")
+        Long total) {
+}
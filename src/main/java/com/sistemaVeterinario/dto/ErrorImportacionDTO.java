@@ -0,0 +1,18 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Fila del archivo de importación que no se pudo importar.
+ */
+@Schema(description = "Error de una fila de la importación de usuarios")
+public record ErrorImportacionDTO(
+        @Schema(description = "Número de la fila en el archivo, contando la cabecera como 1", example = "7")
+        long fila,
+
+        @Schema(description = "Email de la fila, si se pudo leer", example = "juan.perez@example.com")
+        String email,
+
+        @Schema(description = "Motivo por el que no se importó la fila")
+        String mensaje) {
+}
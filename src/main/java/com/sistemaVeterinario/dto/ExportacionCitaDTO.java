@@ -0,0 +1,36 @@
+package com.sistemaVeterinario.dto;
+
+import com.sistemaVeterinario.models.Cita;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de la exportación de citas, con la mascota, su propietario y el servicio.
+ */
+@Schema(description = "Cita exportada")
+public record ExportacionCitaDTO(
+        @Schema(description = "ID de la cita", example = "1")
+        Integer idCita,
+
+        @Schema(description = "Fecha y hora de la cita")
+        LocalDateTime fechaHora,
+
+        @Schema(description = "Estado de la cita", example = "Completada")
+        Cita.EstadoCita estado,
+
+        @Schema(description = "ID de la mascota", example = "1")
+        Integer idMascota,
+
+        @Schema(description = "Nombre de la mascota", example = "Firulais")
+        String nombreMascota,
+
+        @Schema(description = "ID del propietario de la mascota", example = "1")
+        Integer idPropietario,
+
+        @Schema(description = "ID del servicio", example = "1")
+        Integer idServicio,
+
+        @Schema(description = "Nombre del servicio", example = "Consulta general")
+        String nombreServicio) {
+}
@@ -0,0 +1,33 @@
+package com.sistemaVeterinario.dto;
+
+import com.sistemaVeterinario.models.Mascota;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+/**
+ * Fila de la exportación de mascotas, con el ID de su propietario.
+ */
+@Schema(description = "Mascota exportada")
+public record ExportacionMascotaDTO(
+        @Schema(description = "ID de la mascota", example = "1")
+        Integer idMascota,
+
+        @Schema(description = "Nombre de la mascota", example = "Firulais")
+        String nombre,
+
+        @Schema(description = "Especie de la mascota", example = "Perro")
+        String especie,
+
+        @Schema(description = "Raza de la mascota", example = "Labrador")
+        String raza,
+
+        @Schema(description = "Fecha de nacimiento de la mascota", example = "2020-03-15")
+        LocalDate fechaNacimiento,
+
+        @Schema(description = "Sexo de la mascota", example = "Macho")
+        Mascota.SexoMascota sexo,
+
+        @Schema(description = "ID del usuario propietario", example = "1")
+        Integer idPropietario) {
+}
@@ -0,0 +1,29 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de la exportación de usuarios. No incluye la contraseña ni los roles.
+ */
+@Schema(description = "Usuario exportado")
+public record ExportacionUsuarioDTO(
+        @Schema(description = "ID del usuario", example = "1")
+        Integer idUsuario,
+
+        @Schema(description = "Nombre del usuario", example = "Juan")
+        String nombre,
+
+        @Schema(description = "Apellido del usuario", example = "Pérez")
+        String apellido,
+
+        @Schema(description = "Email del usuario", example = "juan@ejemplo.com")
+        String email,
+
+        @Schema(description = "Teléfono del usuario", example = "3001234567")
+        String telefono,
+
+        @Schema(description = "Fecha y hora de registro")
+        LocalDateTime fechaRegistro) {
+}
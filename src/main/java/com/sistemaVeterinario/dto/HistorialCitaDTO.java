@@ -0,0 +1,28 @@
+package com.sistemaVeterinario.dto;
+
+import com.sistemaVeterinario.models.Cita;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección de una cita del historial de una mascota. Solo contiene lo que muestra la
+ * página de detalles, sin cargar la mascota ni el servicio como entidades.
+ */
+@Schema(description = "Cita del historial de una mascota")
+public record HistorialCitaDTO(
+        @Schema(description = "ID de la cita", example = "1")
+        Integer idCita,
+
+        @Schema(description = "Fecha y hora de la cita")
+        LocalDateTime fechaHora,
+
+        @Schema(description = "Estado de la cita", example = "Completada")
+        Cita.EstadoCita estado,
+
+        @Schema(description = "ID del servicio", example = "1")
+        Integer idServicio,
+
+        @Schema(description = "Nombre del servicio", example = "Consulta general")
+        String nombreServicio) {
+}
@@ -0,0 +1,21 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección mínima de una cita que ocupa un horario. Solo contiene las columnas
+ * necesarias para calcular la disponibilidad, sin cargar mascota, propietario ni servicio.
+ */
+@Schema(description = "Horario ocupado por una cita no cancelada")
+public record HorarioOcupadoDTO(
+        @Schema(description = "ID de la cita", example = "1")
+        Integer idCita,
+
+        @Schema(description = "ID del servicio de la cita", example = "1")
+        Integer idServicio,
+
+        @Schema(description = "Fecha y hora de la cita")
+        LocalDateTime fechaHora) {
+}
@@ -0,0 +1,15 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Proyección mínima de una mascota para el índice de búsqueda de usuarios.
+ */
+@Schema(description = "Nombre de una mascota y su propietario")
+public record NombreMascotaDTO(
+        @Schema(description = "ID del usuario propietario", example = "1")
+        Integer idPropietario,
+
+        @Schema(description = "Nombre de la mascota", example = "Firulais")
+        String nombre) {
+}
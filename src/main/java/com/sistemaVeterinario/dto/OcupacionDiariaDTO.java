@@ -0,0 +1,39 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+/**
+ * Ocupación de un servicio durante un día, sumada a partir del resumen por hora.
+ */
+@Schema(description = "Ocupación diaria de un servicio")
+public record OcupacionDiariaDTO(
+        @Schema(description = "Día")
+        LocalDate fecha,
+
+        @Schema(description = "ID del servicio", example = "1")
+        Integer idServicio,
+
+        @Schema(description = "Nombre del servicio", example = "Consulta general")
+        String servicio,
+
+        @Schema(description = "Citas programadas", example = "12")
+        long programadas,
+
+        @Schema(description = "Citas canceladas", example = "2")
+        long canceladas,
+
+        @Schema(description = "Citas completadas", example = "8")
+        long completadas,
+
+        @Schema(description = "Hora con más citas no canceladas, o null si no hay", example = "10")
+        Integer horaPico) {
+
+    /**
+     * @return Citas agendadas en el día, incluidas las canceladas
+     */
+    public long total() {
+        return programadas + canceladas + completadas;
+    }
+}
@@ -0,0 +1,17 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Página del historial de citas de una mascota, paginada por clave.
+ */
+@Schema(description = "Página del historial de citas de una mascota, de la más reciente a la más antigua")
+public record PaginaHistorialDTO(
+        @Schema(description = "Citas de la página")
+        List<HistorialCitaDTO> citas,
+
+        @Schema(description = "Cursor para pedir la página siguiente, o null si es la última")
+        String siguiente) {
+}
@@ -0,0 +1,24 @@
+package com.sistemaVeterinario.dto;
+
+import com.sistemaVeterinario.models.Usuario;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Página de la búsqueda de usuarios del administrador, paginada por clave.
+ */
+@Schema(description = "Página de resultados de la búsqueda de usuarios")
+public record PaginaUsuariosDTO(
+        @Schema(description = "Usuarios de la página")
+        List<Usuario> usuarios,
+
+        @Schema(description = "Cursor para pedir la página siguiente, o null si es la última")
+        String siguiente,
+
+        @Schema(description = "Total de usuarios que cumplen el filtro, contado hasta un máximo", example = "240")
+        long total,
+
+        @Schema(description = "Indica si hay más usuarios que el total contado")
+        boolean totalSuperado) {
+}
@@ -0,0 +1,32 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * Datos necesarios para redactar el recordatorio de una cita, leídos en una sola consulta.
+ */
+@Schema(description = "Datos del recordatorio por correo de una cita")
+public record RecordatorioCitaDTO(
+        @Schema(description = "ID de la cita", example = "1")
+        Integer idCita,
+
+        @Schema(description = "Correo del propietario", example = "juan.perez@example.com")
+        String email,
+
+        @Schema(description = "Nombre del propietario", example = "Juan")
+        String nombrePropietario,
+
+        @Schema(description = "Nombre de la mascota", example = "Firulais")
+        String nombreMascota,
+
+        @Schema(description = "Nombre del servicio", example = "Consulta general")
+        String nombreServicio,
+
+        @Schema(description = "Fecha y hora de la cita")
+        LocalDateTime fechaHora,
+
+        @Schema(description = "Idioma elegido por el propietario, o null si nunca eligió uno", example = "es")
+        String idioma) {
+}
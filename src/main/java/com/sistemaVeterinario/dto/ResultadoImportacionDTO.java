@@ -0,0 +1,33 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Resumen de una importación masiva de usuarios.
+ */
+@Schema(description = "Resultado de la importación de usuarios desde CSV")
+public record ResultadoImportacionDTO(
+        @Schema(description = "Filas de datos leídas, sin la cabecera", example = "5000")
+        long filas,
+
+        @Schema(description = "Usuarios creados", example = "4985")
+        long importados,
+
+        @Schema(description = "Filas rechazadas", example = "15")
+        long rechazados,
+
+        @Schema(description = "Errores por fila; se incluyen como máximo los primeros 1000")
+        List<ErrorImportacionDTO> errores,
+
+        @Schema(description = "Duración de la importación en milisegundos", example = "12500")
+        long milisegundos) {
+
+    /**
+     * @return Filas procesadas por segundo
+     */
+    public long filasPorSegundo() {
+        return milisegundos > 0 ? filas * 1000 / milisegundos : filas;
+    }
+}
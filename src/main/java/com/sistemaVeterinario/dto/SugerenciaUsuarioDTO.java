@@ -0,0 +1,37 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Usuario sugerido por la búsqueda instantánea, con los nombres de sus mascotas.
+ * Se guarda tal cual en el índice en memoria de {@code BusquedaUsuariosService}.
+ */
+@Schema(description = "Usuario sugerido por la búsqueda instantánea")
+public record SugerenciaUsuarioDTO(
+        @Schema(description = "ID del usuario", example = "1")
+        Integer idUsuario,
+
+        @Schema(description = "Nombre del usuario", example = "Juan")
+        String nombre,
+
+        @Schema(description = "Apellido del usuario", example = "Pérez")
+        String apellido,
+
+        @Schema(description = "Email del usuario", example = "juan@ejemplo.com")
+        String email,
+
+        @Schema(description = "Teléfono del usuario", example = "3001234567")
+        String telefono,
+
+        @Schema(description = "Nombres de las mascotas del usuario")
+        List<String> mascotas) {
+
+    /**
+     * Constructor usado por la consulta que recorre los usuarios, sin mascotas.
+     */
+    public SugerenciaUsuarioDTO(Integer idUsuario, String nombre, String apellido, String email, String telefono) {
+        this(idUsuario, nombre, apellido, email, telefono, List.of());
+    }
+}
@@ -0,0 +1,91 @@
+package com.sistemaVeterinario.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Usuario autenticado guardado en la sesión. Conserva el ID y el nombre del usuario para
+ * que los controladores no tengan que consultarlo en la base de datos en cada petición.
+ */
+@Schema(description = "Usuario autenticado de la sesión actual")
+public class UsuarioPrincipal implements UserDetails, CredentialsContainer {
+
+    private final Integer idUsuario;
+    private final String email;
+    private final String nombre;
+    private String contrasena;
+    private final List<? extends GrantedAuthority> authorities;
+
+    public UsuarioPrincipal(Integer idUsuario, String email, String nombre, String contrasena,
+                            List<? extends GrantedAuthority> authorities) {
+        this.idUsuario = idUsuario;
+        this.email = email;
+        this.nombre = nombre;
+        this.contrasena = contrasena;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    public Integer getIdUsuario() {
+        return idUsuario;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Indica si el usuario tiene un rol.
+     * @param rol Nombre del rol sin el prefijo ROLE_
+     * @return true si el usuario tiene el rol
+     */
+    public boolean tieneRol(String rol) {
+        return authorities.stream().anyMatch(a -> ("ROLE_" + rol).equals(a.getAuthority()));
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return contrasena;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    /**
+     * Descarta la contraseña una vez autenticado, para no guardarla en la sesión.
+     */
+    @Override
+    public void eraseCredentials() {
+        contrasena = null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof UsuarioPrincipal otro && email.equals(otro.email);
+    }
+
+    @Override
+    public int hashCode() {
+        return email.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "UsuarioPrincipal[idUsuario=" + idUsuario + ", email=" + email + "]";
+    }
+}
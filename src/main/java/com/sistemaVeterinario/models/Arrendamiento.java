@@ -0,0 +1,30 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "arrendamientos")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Entidad que representa un arrendamiento temporal que otorga a una instancia el derecho exclusivo a ejecutar tareas")
+public class Arrendamiento {
+
+    @Id
+    @Column(name = "nombre", length = 50)
+    @Schema(description = "Nombre único del arrendamiento", example = "planificador")
+    private String nombre;
+
+    @Column(name = "propietario", nullable = false, length = 100)
+    @Schema(description = "Identificador de la instancia que lo posee", example = "servidor-1-3f2a9c1b")
+    private String propietario;
+
+    @Column(name = "expiracion", nullable = false)
+    @Schema(description = "Fecha/hora en la que vence si no se renueva")
+    private LocalDateTime expiracion;
+}
@@ -7,7 +7,14 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "citas")
+@Table(name = "citas", uniqueConstraints = {
+        @UniqueConstraint(name = Cita.RESTRICCION_CLAVE_RESERVA, columnNames = "clave_reserva")
+}, indexes = {
+        // Cubre la consulta de horarios ocupados sin leer las filas completas
+        @Index(name = "idx_citas_fecha_hora", columnList = "fecha_hora, estado, id_servicio"),
+        // Historial de una mascota ordenado por fecha, paginado por clave
+        @Index(name = "idx_citas_mascota_fecha", columnList = "id_mascota, fecha_hora, id_cita")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,18 +22,21 @@ import java.time.LocalDateTime;
 @Schema(description = "Entidad que representa una cita agendada para una mascota")
 public class Cita {
 
+    // Restricción única que impide dos citas activas en el mismo horario de un servicio
+    public static final String RESTRICCION_CLAVE_RESERVA = "uk_citas_clave_reserva";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id_cita")
     @Schema(description = "ID autogenerado de la cita", example = "1")
     private Integer idCita;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_mascota", nullable = false)
     @Schema(description = "Mascota asociada a la cita")
     private Mascota mascota;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_servicio", nullable = false)
     @Schema(description = "Servicio solicitado para la cita")
     private Servicio servicio;
@@ -40,6 +50,38 @@ public class Cita {
     @Schema(description = "Estado actual de la cita", example = "Programada")
     private EstadoCita estado = EstadoCita.Programada;
 
+    @Column(name = "recordatorio_enviado", nullable = false)
+    @Schema(description = "Indica si ya se envió el recordatorio por correo del horario actual", example = "false")
+    private Boolean recordatorioEnviado = false;
+
+    @Column(name = "clave_reserva", length = 40)
+    @Schema(description = "Clave única del horario ocupado (servicio y fecha/hora). Es nula en citas canceladas para liberar el horario", accessMode = Schema.AccessMode.READ_ONLY)
+    private String claveReserva;
+
+    /**
+     * Calcula la clave única del horario que ocupa la cita.
+     * Las citas canceladas no ocupan horario, por lo que su clave es nula.
+     */
+    @PrePersist
+    @PreUpdate
+    public void actualizarClaveReserva() {
+        if (estado == EstadoCita.Cancelada || servicio == null || fechaHora == null) {
+            claveReserva = null;
+        } else {
+            claveReserva = claveReserva(servicio.getIdServicio(), fechaHora);
+        }
+    }
+
+    /**
+     * Construye la clave única de un horario de un servicio.
+     * @param idServicio ID del servicio
+     * @param fechaHora Fecha y hora del horario
+     * @return La clave de reserva
+     */
+    public static String claveReserva(Integer idServicio, LocalDateTime fechaHora) {
+        return idServicio + "|" + fechaHora;
+    }
+
     @Schema(description = "Enumeración de los posibles estados de una cita")
     public enum EstadoCita {
         Programada, Completada, Cancelada
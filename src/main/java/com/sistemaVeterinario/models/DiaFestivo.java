@@ -0,0 +1,31 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "dias_festivos")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Entidad que representa un día festivo en el que la clínica no atiende")
+public class DiaFestivo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_festivo")
+    @Schema(description = "ID autogenerado del día festivo", example = "1")
+    private Integer idFestivo;
+
+    @Column(name = "fecha", nullable = false, unique = true)
+    @Schema(description = "Fecha del día festivo", example = "2025-12-25")
+    private LocalDate fecha;
+
+    @Column(length = 100)
+    @Schema(description = "Descripción del día festivo", example = "Navidad")
+    private String descripcion;
+}
@@ -0,0 +1,62 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "eventos_cita")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Evento del ciclo de vida de una cita pendiente de entregar a sus suscriptores (bandeja de salida)")
+public class EventoCita {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_evento")
+    @Schema(description = "ID autogenerado del evento; define el orden de entrega", example = "1")
+    private Long idEvento;
+
+    @Column(name = "id_cita", nullable = false)
+    @Schema(description = "ID de la cita que generó el evento", example = "1")
+    private Integer idCita;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 20)
+    @Schema(description = "Tipo de evento", example = "AGENDADA")
+    private TipoEvento tipo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    @Schema(description = "Estado de la cita al generarse el evento", example = "Programada")
+    private Cita.EstadoCita estado;
+
+    @Column(name = "fecha_hora", nullable = false)
+    @Schema(description = "Fecha y hora de la cita al generarse el evento")
+    private LocalDateTime fechaHora;
+
+    @Column(name = "fecha_hora_anterior")
+    @Schema(description = "Fecha y hora de la cita antes de reprogramarla; nula si no cambió")
+    private LocalDateTime fechaHoraAnterior;
+
+    @Column(name = "id_servicio", nullable = false)
+    @Schema(description = "ID del servicio de la cita", example = "1")
+    private Integer idServicio;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    @Schema(description = "Fecha y hora en que se registró el evento")
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "intentos", nullable = false)
+    @Schema(description = "Entregas fallidas del evento", example = "0")
+    private Integer intentos = 0;
+
+    @Schema(description = "Enumeración de los tipos de evento de una cita")
+    public enum TipoEvento {
+        AGENDADA, ACTUALIZADA, CANCELADA
+    }
+}
@@ -0,0 +1,52 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+@Entity
+@Table(name = "horarios_atencion", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_horario_dia_servicio", columnNames = {"dia_semana", "id_servicio"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Entidad que representa el horario de atención de la clínica para un día de la semana, general o específico de un servicio")
+public class HorarioAtencion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_horario")
+    @Schema(description = "ID autogenerado del horario", example = "1")
+    private Integer idHorario;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dia_semana", length = 10, nullable = false)
+    @Schema(description = "Día de la semana al que aplica el horario", example = "MONDAY")
+    private DayOfWeek diaSemana;
+
+    @Column(name = "hora_apertura", nullable = false)
+    @Schema(description = "Hora de apertura", example = "08:00")
+    private LocalTime horaApertura;
+
+    @Column(name = "hora_cierre", nullable = false)
+    @Schema(description = "Hora de cierre", example = "17:00")
+    private LocalTime horaCierre;
+
+    @Column(name = "inicio_descanso")
+    @Schema(description = "Hora de inicio del descanso del mediodía (opcional)", example = "12:00")
+    private LocalTime inicioDescanso;
+
+    @Column(name = "fin_descanso")
+    @Schema(description = "Hora de fin del descanso del mediodía (opcional)", example = "13:00")
+    private LocalTime finDescanso;
+
+    @ManyToOne
+    @JoinColumn(name = "id_servicio")
+    @Schema(description = "Servicio al que aplica el horario. Nulo para el horario general de la clínica")
+    private Servicio servicio;
+}
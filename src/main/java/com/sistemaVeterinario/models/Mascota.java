@@ -3,13 +3,20 @@ package com.sistemaVeterinario.models;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "mascotas")
+@Table(name = "mascotas", indexes = {
+        // Mascotas archivadas pendientes de purga, por fecha de eliminación
+        @Index(name = "idx_mascotas_eliminacion", columnList = "fecha_eliminacion")
+})
+// Las mascotas archivadas quedan fuera de todas las consultas hasta que se purgan
+@SQLRestriction("fecha_eliminacion IS NULL")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -49,11 +56,15 @@ public class Mascota {
         Macho, Hembra
     }
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_propietario", nullable = false)
     @Schema(description = "Usuario propietario de la mascota")
     private Usuario propietario;
 
+    @Column(name = "fecha_eliminacion")
+    @Schema(description = "Fecha en que el propietario eliminó la mascota; null si sigue activa", example = "2025-06-01T10:00:00")
+    private LocalDateTime fechaEliminacion;
+
     @OneToMany(mappedBy = "mascota", cascade = CascadeType.ALL)
     @Schema(description = "Conjunto de citas asociadas a esta mascota")
     private Set<Cita> citas = new HashSet<>();
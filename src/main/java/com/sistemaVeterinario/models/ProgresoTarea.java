@@ -0,0 +1,46 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "progreso_tareas")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Entidad que guarda el avance de una tarea por lotes para poder reanudarla")
+public class ProgresoTarea {
+
+    @Id
+    @Column(name = "nombre", length = 50)
+    @Schema(description = "Nombre único de la tarea", example = "actualizar-citas-pasadas")
+    private String nombre;
+
+    @Column(name = "ultimo_id", nullable = false)
+    @Schema(description = "Último ID procesado por la tarea", example = "1000")
+    private Integer ultimoId = 0;
+
+    @Column(name = "id_maximo", nullable = false)
+    @Schema(description = "ID más alto que procesará la ejecución actual", example = "250000")
+    private Integer idMaximo = 0;
+
+    @Column(name = "fecha_referencia")
+    @Schema(description = "Fecha/hora de corte de la ejecución actual")
+    private LocalDateTime fechaReferencia;
+
+    @Column(name = "filas_actualizadas", nullable = false)
+    @Schema(description = "Filas actualizadas en la ejecución actual", example = "120")
+    private Long filasActualizadas = 0L;
+
+    @Column(name = "terminada", nullable = false)
+    @Schema(description = "Indica si la última ejecución terminó", example = "true")
+    private Boolean terminada = true;
+
+    @Column(name = "fecha_actualizacion")
+    @Schema(description = "Fecha/hora del último lote procesado")
+    private LocalDateTime fechaActualizacion;
+}
@@ -0,0 +1,45 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "resumen_ocupacion", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_resumen_ocupacion_hora_servicio", columnNames = {"hora", "id_servicio"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Cantidad de citas por estado de un servicio en una hora; resumen mantenido a partir de la tabla de citas")
+public class ResumenOcupacion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_resumen")
+    @Schema(description = "ID autogenerado de la fila", example = "1")
+    private Long idResumen;
+
+    @Column(name = "hora", nullable = false)
+    @Schema(description = "Inicio de la hora resumida")
+    private LocalDateTime hora;
+
+    @Column(name = "id_servicio", nullable = false)
+    @Schema(description = "ID del servicio", example = "1")
+    private Integer idServicio;
+
+    @Column(name = "programadas", nullable = false)
+    @Schema(description = "Citas programadas de la hora", example = "3")
+    private Integer programadas = 0;
+
+    @Column(name = "canceladas", nullable = false)
+    @Schema(description = "Citas canceladas de la hora", example = "1")
+    private Integer canceladas = 0;
+
+    @Column(name = "completadas", nullable = false)
+    @Schema(description = "Citas completadas de la hora", example = "2")
+    private Integer completadas = 0;
+}
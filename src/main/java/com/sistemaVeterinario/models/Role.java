@@ -1,5 +1,6 @@
 package com.sistemaVeterinario.models;
 
+import com.sistemaVeterinario.service.RoleService;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.*;
@@ -13,6 +14,7 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name="roles")
+@EntityListeners(RoleService.CambiosRolListener.class)
 @Schema(description = "Entidad que representa un rol del sistema, como ADMIN o CLIENTE")
 public class Role {
 
@@ -13,7 +13,13 @@ import java.util.Set;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name="usuarios")
+@Table(name="usuarios", indexes = {
+        // Búsqueda por prefijo y orden de la lista de usuarios del administrador
+        @Index(name = "idx_usuarios_nombre", columnList = "nombre"),
+        @Index(name = "idx_usuarios_apellido", columnList = "apellido"),
+        // Cambios recientes que cada instancia incorpora a su índice de búsqueda
+        @Index(name = "idx_usuarios_fecha_actualizacion", columnList = "fecha_actualizacion")
+})
 @Schema(description = "Entidad que representa a un usuario del sistema veterinario")
 public class Usuario {
 
@@ -47,7 +53,15 @@ public class Usuario {
     @Schema(description = "Fecha y hora en que se registró el usuario")
     private LocalDateTime fechaRegistro;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @Column(name = "fecha_actualizacion")
+    @Schema(description = "Fecha y hora del último cambio del usuario o de sus mascotas")
+    private LocalDateTime fechaActualizacion;
+
+    @Column(length = 10)
+    @Schema(description = "Último idioma elegido por el usuario en la aplicación, usado en sus correos", example = "es")
+    private String idioma;
+
+    @ManyToMany
     @JoinTable(
             name = "usuario_rol",
             joinColumns = @JoinColumn(name = "id_usuario"),
@@ -63,5 +77,11 @@ public class Usuario {
     @PrePersist
     public void prePersist(){
         fechaRegistro = LocalDateTime.now();
+        fechaActualizacion = fechaRegistro;
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        fechaActualizacion = LocalDateTime.now();
     }
 }
@@ -0,0 +1,27 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Table(name = "versiones_calendario")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Versión compartida del calendario de atención; cambia cada vez que se guarda o elimina un horario o un festivo")
+public class VersionCalendario {
+
+    /** ID de la única fila de la tabla. */
+    public static final int ID = 1;
+
+    @Id
+    @Column(name = "id")
+    @Schema(description = "Identificador de la fila, siempre 1", example = "1")
+    private Integer id;
+
+    @Column(name = "version", nullable = false)
+    @Schema(description = "Número de cambios registrados en el calendario", example = "3")
+    private Long version;
+}
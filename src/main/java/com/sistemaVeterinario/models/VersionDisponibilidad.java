@@ -0,0 +1,26 @@
+package com.sistemaVeterinario.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "versiones_disponibilidad")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Versión de la disponibilidad de un día; cambia cada vez que una cita ocupa o libera un horario de ese día")
+public class VersionDisponibilidad {
+
+    @Id
+    @Column(name = "fecha")
+    @Schema(description = "Día al que corresponde la versión", example = "2025-05-20")
+    private LocalDate fecha;
+
+    @Column(name = "version", nullable = false)
+    @Schema(description = "Número de cambios registrados para el día", example = "12")
+    private Long version;
+}
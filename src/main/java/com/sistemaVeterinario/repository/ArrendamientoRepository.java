@@ -0,0 +1,63 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.Arrendamiento;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repositorio para los arrendamientos que coordinan a varias instancias de la aplicación.
+ */
+public interface ArrendamientoRepository extends JpaRepository<Arrendamiento, String> {
+
+    /**
+     * Renueva el arrendamiento si la instancia ya lo posee, o lo toma si está vencido.
+     * La condición se evalúa en la misma sentencia, por lo que solo una instancia puede ganarlo.
+     *
+     * @param nombre Nombre del arrendamiento
+     * @param propietario Identificador de la instancia que lo solicita
+     * @param expiracion Nueva fecha/hora de vencimiento
+     * @param ahora Fecha/hora actual
+     * @return 1 si la instancia quedó como propietaria, 0 en caso contrario
+     */
+    @Modifying
+    @Query("UPDATE Arrendamiento a SET a.propietario = :propietario, a.expiracion = :expiracion " +
+            "WHERE a.nombre = :nombre AND (a.propietario = :propietario OR a.expiracion < :ahora)")
+    int renovarOTomar(@Param("nombre") String nombre,
+                      @Param("propietario") String propietario,
+                      @Param("expiracion") LocalDateTime expiracion,
+                      @Param("ahora") LocalDateTime ahora);
+
+    /**
+     * Crea el arrendamiento. Falla por clave duplicada si otra instancia lo creó antes,
+     * a diferencia de {@code save}, que lo sobrescribiría.
+     *
+     * @param nombre Nombre del arrendamiento
+     * @param propietario Identificador de la instancia que lo crea
+     * @param expiracion Fecha/hora de vencimiento
+     * @return Número de registros insertados
+     */
+    @Modifying
+    @Query("INSERT INTO Arrendamiento (nombre, propietario, expiracion) VALUES (:nombre, :propietario, :expiracion)")
+    int crear(@Param("nombre") String nombre,
+              @Param("propietario") String propietario,
+              @Param("expiracion") LocalDateTime expiracion);
+
+    /**
+     * Libera el arrendamiento dejándolo vencido, solo si la instancia lo posee.
+     *
+     * @param nombre Nombre del arrendamiento
+     * @param propietario Identificador de la instancia que lo libera
+     * @param ahora Fecha/hora actual
+     * @return 1 si se liberó, 0 si la instancia no lo poseía
+     */
+    @Modifying
+    @Query("UPDATE Arrendamiento a SET a.expiracion = :ahora " +
+            "WHERE a.nombre = :nombre AND a.propietario = :propietario")
+    int liberar(@Param("nombre") String nombre,
+                @Param("propietario") String propietario,
+                @Param("ahora") LocalDateTime ahora);
+}
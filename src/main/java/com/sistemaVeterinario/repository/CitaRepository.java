@@ -1,15 +1,27 @@
 package com.sistemaVeterinario.repository;
 
+import com.sistemaVeterinario.dto.ConteoOcupacionDTO;
+import com.sistemaVeterinario.dto.ExportacionCitaDTO;
+import com.sistemaVeterinario.dto.HistorialCitaDTO;
+import com.sistemaVeterinario.dto.HorarioOcupadoDTO;
+import com.sistemaVeterinario.dto.RecordatorioCitaDTO;
 import com.sistemaVeterinario.models.Cita;
-import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.models.Servicio;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para gestionar las operaciones de base de datos relacionadas con las citas veterinarias.
@@ -17,12 +29,34 @@ import java.util.Optional;
 public interface CitaRepository extends JpaRepository<Cita, Integer> {
 
     /**
-     * Busca citas por el propietario de la mascota asociada.
+     * Busca citas por el ID del propietario de la mascota asociada, sin cargar al usuario.
+     * La mascota y el servicio de cada cita se cargan en la misma consulta.
      *
-     * @param propietario El propietario de la mascota (opcional)
+     * @param idUsuario ID del propietario de la mascota
      * @return Lista de citas asociadas al propietario
      */
-    List<Cita> findByMascotaPropietario(Optional<Usuario> propietario);
+    @EntityGraph(attributePaths = {"mascota", "servicio"})
+    List<Cita> findByMascotaPropietarioIdUsuario(Integer idUsuario);
+
+    /**
+     * Busca una cita con su mascota y su servicio cargados en la misma consulta.
+     *
+     * @param idCita ID de la cita
+     * @return La cita, o vacío si no existe
+     */
+    @EntityGraph(attributePaths = {"mascota", "servicio"})
+    Optional<Cita> findConDetallesByIdCita(Integer idCita);
+
+    /**
+     * Busca una cita con su mascota y su servicio solo si la mascota pertenece al propietario
+     * indicado. La comprobación se hace en la misma consulta, sin cargar al usuario.
+     *
+     * @param idCita ID de la cita
+     * @param idUsuario ID del usuario que debe ser propietario de la mascota
+     * @return La cita, o vacío si no existe o pertenece a otro usuario
+     */
+    @EntityGraph(attributePaths = {"mascota", "servicio"})
+    Optional<Cita> findConDetallesByIdCitaAndMascotaPropietarioIdUsuario(Integer idCita, Integer idUsuario);
 
     /**
      * Busca citas por fecha y hora exactas.
@@ -69,16 +103,326 @@ public interface CitaRepository extends JpaRepository<Cita, Integer> {
             @Param("servicioId") Integer servicioId);
 
     /**
-     * Actualiza el estado de citas que cumplen con los criterios especificados.
+     * Obtiene en una sola consulta los horarios ocupados por citas no canceladas de un rango,
+     * ordenados por fecha y hora. Solo lee columnas del índice {@code idx_citas_fecha_hora},
+     * sin cargar las entidades relacionadas.
+     *
+     * @param inicio Fecha/hora de inicio del rango
+     * @param fin Fecha/hora de fin del rango
+     * @return Lista ordenada de horarios ocupados dentro del rango especificado
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.HorarioOcupadoDTO(c.idCita, c.servicio.idServicio, c.fechaHora) " +
+            "FROM Cita c WHERE c.fechaHora BETWEEN :inicio AND :fin " +
+            "AND c.estado != 'Cancelada' ORDER BY c.fechaHora")
+    List<HorarioOcupadoDTO> findHorariosOcupados(
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fin") LocalDateTime fin);
+
+    /**
+     * Obtiene los horarios de las citas en un estado dentro de un rango, sin cargar
+     * las entidades relacionadas.
+     *
+     * @param inicio Fecha/hora de inicio del rango
+     * @param fin Fecha/hora de fin del rango
+     * @param estado Estado de las citas a buscar
+     * @return Lista de horarios de las citas en ese estado dentro del rango especificado
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.HorarioOcupadoDTO(c.idCita, c.servicio.idServicio, c.fechaHora) " +
+            "FROM Cita c WHERE c.fechaHora BETWEEN :inicio AND :fin AND c.estado = :estado")
+    List<HorarioOcupadoDTO> findHorariosPorEstado(
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fin") LocalDateTime fin,
+            @Param("estado") Cita.EstadoCita estado);
+
+    /**
+     * Actualiza el estado de un lote de citas por su ID, siempre que sigan en el estado
+     * esperado y hayan comenzado antes de la fecha indicada.
+     *
+     * @param ids IDs de las citas a actualizar
+     * @param nuevoEstado Nuevo estado a asignar
+     * @param estadoActual Estado actual que deben tener las citas
+     * @param inicioMaximo Fecha/hora de inicio más tardía aceptada
+     * @return Número de registros actualizados
+     */
+    @Modifying
+    @Query("UPDATE Cita c SET c.estado = :nuevoEstado WHERE c.idCita IN :ids " +
+            "AND c.estado = :estadoActual AND c.fechaHora <= :inicioMaximo")
+    int completarCitas(@Param("ids") List<Integer> ids,
+                       @Param("nuevoEstado") Cita.EstadoCita nuevoEstado,
+                       @Param("estadoActual") Cita.EstadoCita estadoActual,
+                       @Param("inicioMaximo") LocalDateTime inicioMaximo);
+
+    /**
+     * Obtiene los IDs de las citas de una mascota que tienen un estado determinado.
+     * Filtra por la clave foránea, sin unir la tabla de mascotas.
+     *
+     * @param idMascota ID de la mascota
+     * @param estado Estado de las citas
+     * @return IDs de las citas
+     */
+    @Query("SELECT c.idCita FROM Cita c WHERE c.mascota.idMascota = :idMascota AND c.estado = :estado")
+    List<Integer> findIdsByMascotaAndEstado(@Param("idMascota") Integer idMascota,
+                                            @Param("estado") Cita.EstadoCita estado);
+
+    /**
+     * Cancela en una sola sentencia un lote de citas que siguen en el estado indicado y
+     * libera su clave de reserva, como lo haría guardar cada cita cancelada.
+     *
+     * @param ids IDs de las citas a cancelar
+     * @param estadoActual Estado actual que deben tener las citas
+     * @return Número de registros actualizados
+     */
+    @Modifying
+    @Query("UPDATE Cita c SET c.estado = com.sistemaVeterinario.models.Cita.EstadoCita.Cancelada, " +
+            "c.claveReserva = NULL WHERE c.idCita IN :ids AND c.estado = :estadoActual")
+    int cancelarCitas(@Param("ids") List<Integer> ids, @Param("estadoActual") Cita.EstadoCita estadoActual);
+
+    /**
+     * Obtiene un lote de IDs de las citas de varias mascotas.
+     * Filtra por la clave foránea, por lo que también encuentra las citas de mascotas archivadas.
+     *
+     * @param idsMascota IDs de las mascotas
+     * @param pageable Tamaño del lote
+     * @return IDs de las citas
+     */
+    @Query("SELECT c.idCita FROM Cita c WHERE c.mascota.idMascota IN :idsMascota ORDER BY c.idCita")
+    List<Integer> findIdsByMascotas(@Param("idsMascota") List<Integer> idsMascota, Pageable pageable);
+
+    /**
+     * Elimina un lote de citas en una sola sentencia.
+     *
+     * @param ids IDs de las citas a eliminar
+     * @return Número de registros eliminados
+     */
+    @Modifying
+    @Query("DELETE FROM Cita c WHERE c.idCita IN :ids")
+    int eliminarCitas(@Param("ids") List<Integer> ids);
+
+    /**
+     * Obtiene los datos de recordatorio de las citas programadas de un rango que aún no
+     * tienen recordatorio enviado, ordenadas por fecha y hora.
+     *
+     * @param inicio Fecha/hora de inicio del rango
+     * @param fin Fecha/hora de fin del rango
+     * @param estado Estado de las citas a recordar
+     * @param pageable Límite de resultados
+     * @return Lista de recordatorios pendientes dentro del rango especificado
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.RecordatorioCitaDTO(c.idCita, u.email, u.nombre, " +
+            "m.nombre, s.nombre, c.fechaHora, u.idioma) " +
+            "FROM Cita c JOIN c.mascota m JOIN m.propietario u JOIN c.servicio s " +
+            "WHERE c.fechaHora BETWEEN :inicio AND :fin AND c.estado = :estado " +
+            "AND c.recordatorioEnviado = false ORDER BY c.fechaHora")
+    List<RecordatorioCitaDTO> findRecordatoriosPendientes(
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fin") LocalDateTime fin,
+            @Param("estado") Cita.EstadoCita estado,
+            Pageable pageable);
+
+    /**
+     * Marca como enviado el recordatorio de un lote de citas.
+     *
+     * @param ids IDs de las citas
+     * @return Número de registros actualizados
+     */
+    @Modifying
+    @Query("UPDATE Cita c SET c.recordatorioEnviado = true WHERE c.idCita IN :ids")
+    int marcarRecordatorioEnviado(@Param("ids") List<Integer> ids);
+
+    /**
+     * Obtiene el ID más alto de la tabla de citas.
+     *
+     * @return El ID más alto, o null si no hay citas
+     */
+    @Query("SELECT MAX(c.idCita) FROM Cita c")
+    Integer findMaxIdCita();
+
+    /**
+     * Actualiza el estado de las citas de un rango de IDs que cumplen con los criterios
+     * especificados. Al acotar por clave primaria cada sentencia bloquea pocas filas.
      *
      * @param nuevoEstado Nuevo estado a asignar
      * @param estadoActual Estado actual que deben tener las citas
      * @param fechaReferencia Fecha límite para considerar las citas
+     * @param desdeId ID a partir del cual actualizar (exclusivo)
+     * @param hastaId ID hasta el cual actualizar (inclusive)
      * @return Número de registros actualizados
      */
     @Modifying
-    @Query("UPDATE Cita c SET c.estado = :nuevoEstado WHERE c.estado = :estadoActual AND c.fechaHora < :fechaReferencia")
+    @Query("UPDATE Cita c SET c.estado = :nuevoEstado WHERE c.idCita > :desdeId AND c.idCita <= :hastaId " +
+            "AND c.estado = :estadoActual AND c.fechaHora < :fechaReferencia")
     int actualizarCitasPasadas(@Param("nuevoEstado") Cita.EstadoCita nuevoEstado,
                                @Param("estadoActual") Cita.EstadoCita estadoActual,
-                               @Param("fechaReferencia") LocalDateTime fechaReferencia);
-}
\ No newline at end of file
+                               @Param("fechaReferencia") LocalDateTime fechaReferencia,
+                               @Param("desdeId") Integer desdeId,
+                               @Param("hastaId") Integer hastaId);
+
+    /**
+     * Recorre las citas de un rango de fechas para exportarlas, en orden cronológico y leyendo
+     * las filas por lotes. El rango usa el índice de fecha, por lo que ambos límites son
+     * obligatorios. Debe consumirse dentro de una transacción y cerrarse al terminar.
+     *
+     * @param desde Inicio del rango (inclusive)
+     * @param hasta Fin del rango (exclusivo)
+     * @return Flujo de citas con su mascota, propietario y servicio
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.sistemaVeterinario.dto.ExportacionCitaDTO(c.idCita, c.fechaHora, c.estado, m.idMascota, " +
+            "m.nombre, m.propietario.idUsuario, s.idServicio, s.nombre) " +
+            "FROM Cita c JOIN c.mascota m JOIN c.servicio s " +
+            "WHERE c.fechaHora >= :desde AND c.fechaHora < :hasta ORDER BY c.fechaHora")
+    Stream<ExportacionCitaDTO> exportar(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Cuenta las citas de un rango de fechas agrupadas por día, hora, servicio y estado.
+     *
+     * @param desde Inicio del rango (inclusive)
+     * @param hasta Fin del rango (exclusivo)
+     * @return Conteos del rango
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.ConteoOcupacionDTO(cast(c.fechaHora as LocalDate), " +
+            "extract(hour from c.fechaHora), c.servicio.idServicio, c.estado, COUNT(c)) " +
+            "FROM Cita c WHERE c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "GROUP BY cast(c.fechaHora as LocalDate), extract(hour from c.fechaHora), c.servicio.idServicio, c.estado")
+    List<ConteoOcupacionDTO> contarOcupacion(@Param("desde") LocalDateTime desde,
+                                             @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Obtiene la fecha y hora guardada de una cita.
+     *
+     * @param idCita ID de la cita
+     * @return La fecha y hora, o vacío si la cita no existe
+     */
+    @Query("SELECT c.fechaHora FROM Cita c WHERE c.idCita = :idCita")
+    Optional<LocalDateTime> findFechaHoraByIdCita(@Param("idCita") Integer idCita);
+
+    /**
+     * Obtiene las fechas y horas distintas de un lote de citas.
+     *
+     * @param ids IDs de las citas
+     * @return Fechas y horas de las citas
+     */
+    @Query("SELECT DISTINCT c.fechaHora FROM Cita c WHERE c.idCita IN :ids")
+    List<LocalDateTime> findFechasHora(@Param("ids") List<Integer> ids);
+
+    /**
+     * Obtiene las fechas y horas distintas de las citas de un lote que {@link #completarCitas}
+     * modificaría con los mismos criterios.
+     *
+     * @param ids IDs de las citas
+     * @param estadoActual Estado actual que deben tener las citas
+     * @param inicioMaximo Fecha/hora de inicio más tardía aceptada
+     * @return Fechas y horas de las citas
+     */
+    @Query("SELECT DISTINCT c.fechaHora FROM Cita c WHERE c.idCita IN :ids " +
+            "AND c.estado = :estadoActual AND c.fechaHora <= :inicioMaximo")
+    List<LocalDateTime> findFechasHoraACompletar(@Param("ids") List<Integer> ids,
+                                                 @Param("estadoActual") Cita.EstadoCita estadoActual,
+                                                 @Param("inicioMaximo") LocalDateTime inicioMaximo);
+
+    /**
+     * Obtiene las fechas y horas distintas de las citas de un rango de IDs que
+     * {@link #actualizarCitasPasadas} modificaría con los mismos criterios.
+     *
+     * @param estadoActual Estado actual que deben tener las citas
+     * @param fechaReferencia Fecha límite para considerar las citas
+     * @param desdeId ID a partir del cual buscar (exclusivo)
+     * @param hastaId ID hasta el cual buscar (inclusive)
+     * @return Fechas y horas de las citas
+     */
+    @Query("SELECT DISTINCT c.fechaHora FROM Cita c WHERE c.idCita > :desdeId AND c.idCita <= :hastaId " +
+            "AND c.estado = :estadoActual AND c.fechaHora < :fechaReferencia")
+    List<LocalDateTime> findFechasHoraPasadas(@Param("estadoActual") Cita.EstadoCita estadoActual,
+                                              @Param("fechaReferencia") LocalDateTime fechaReferencia,
+                                              @Param("desdeId") Integer desdeId,
+                                              @Param("hastaId") Integer hastaId);
+
+    /**
+     * Obtiene la fecha y hora de la cita más antigua.
+     *
+     * @return La fecha y hora, o null si no hay citas
+     */
+    @Query("SELECT MIN(c.fechaHora) FROM Cita c")
+    LocalDateTime findFechaHoraMinima();
+
+    /**
+     * Obtiene la fecha y hora de la cita más reciente.
+     *
+     * @return La fecha y hora, o null si no hay citas
+     */
+    @Query("SELECT MAX(c.fechaHora) FROM Cita c")
+    LocalDateTime findFechaHoraMaxima();
+
+    /**
+     * Obtiene una página del historial de citas de una mascota, de la más reciente a la más
+     * antigua. La página siguiente continúa después de la última cita recibida (fecha y ID), sin
+     * recorrer las anteriores, por lo que el costo no depende del largo del historial.
+     *
+     * @param idMascota ID de la mascota
+     * @param estado Estado de las citas, o null para todos
+     * @param idServicio ID del servicio, o null para todos
+     * @param fechaHora Fecha y hora de la última cita de la página anterior, o null para la primera
+     * @param idCita ID de la última cita de la página anterior, o null para la primera
+     * @param pageable Límite de resultados
+     * @return Citas de la página
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.HistorialCitaDTO(c.idCita, c.fechaHora, c.estado, " +
+            "s.idServicio, s.nombre) " +
+            "FROM Cita c JOIN c.servicio s " +
+            "WHERE c.mascota.idMascota = :idMascota " +
+            "AND (:estado IS NULL OR c.estado = :estado) " +
+            "AND (:idServicio IS NULL OR s.idServicio = :idServicio) " +
+            "AND (:fechaHora IS NULL OR c.fechaHora < :fechaHora " +
+            "OR (c.fechaHora = :fechaHora AND c.idCita < :idCita)) " +
+            "ORDER BY c.fechaHora DESC, c.idCita DESC")
+    List<HistorialCitaDTO> findHistorial(@Param("idMascota") Integer idMascota,
+                                         @Param("estado") Cita.EstadoCita estado,
+                                         @Param("idServicio") Integer idServicio,
+                                         @Param("fechaHora") LocalDateTime fechaHora,
+                                         @Param("idCita") Integer idCita,
+                                         Pageable pageable);
+
+    /**
+     * Obtiene los servicios que aparecen en el historial de una mascota.
+     *
+     * @param idMascota ID de la mascota
+     * @return Servicios ordenados por nombre
+     */
+    @Query("SELECT DISTINCT s FROM Cita c JOIN c.servicio s WHERE c.mascota.idMascota = :idMascota " +
+            "ORDER BY s.nombre")
+    List<Servicio> findServiciosDeMascota(@Param("idMascota") Integer idMascota);
+
+    /**
+     * Obtiene por bloques, en orden de ID, las citas no canceladas sin clave de reserva,
+     * guardadas antes de que existiera la columna.
+     *
+     * @param despuesDe ID a partir del cual se buscan (exclusivo)
+     * @param pageable Límite de resultados
+     * @return Horarios de las citas sin clave
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.HorarioOcupadoDTO(c.idCita, c.servicio.idServicio, c.fechaHora) " +
+            "FROM Cita c WHERE c.claveReserva IS NULL AND c.idCita > :despuesDe " +
+            "AND (c.estado IS NULL OR c.estado <> com.sistemaVeterinario.models.Cita.EstadoCita.Cancelada) " +
+            "ORDER BY c.idCita")
+    List<HorarioOcupadoDTO> findSinClaveReserva(@Param("despuesDe") Integer despuesDe, Pageable pageable);
+
+    /**
+     * Obtiene cuáles de las claves de reserva indicadas ya están asignadas a alguna cita.
+     *
+     * @param claves Claves a comprobar
+     * @return Claves ya asignadas
+     */
+    @Query("SELECT c.claveReserva FROM Cita c WHERE c.claveReserva IN :claves")
+    List<String> findClavesReservaAsignadas(@Param("claves") Collection<String> claves);
+
+    /**
+     * Asigna la clave de reserva a una cita que todavía no la tiene.
+     *
+     * @param idCita ID de la cita
+     * @param clave Clave de reserva calculada
+     * @return Número de registros actualizados
+     */
+    @Modifying
+    @Query("UPDATE Cita c SET c.claveReserva = :clave WHERE c.idCita = :idCita AND c.claveReserva IS NULL")
+    int asignarClaveReserva(@Param("idCita") Integer idCita, @Param("clave") String clave);
+}
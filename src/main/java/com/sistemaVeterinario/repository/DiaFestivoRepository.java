@@ -0,0 +1,20 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.DiaFestivo;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+
+/**
+ * Repositorio para la gestión de los días festivos en los que la clínica no atiende.
+ */
+public interface DiaFestivoRepository extends JpaRepository<DiaFestivo, Integer> {
+
+    /**
+     * Verifica si una fecha ya está registrada como festivo.
+     *
+     * @param fecha La fecha a verificar
+     * @return true si la fecha ya es festivo, false en caso contrario
+     */
+    boolean existsByFecha(LocalDate fecha);
+}
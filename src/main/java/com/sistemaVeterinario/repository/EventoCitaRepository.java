@@ -0,0 +1,74 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.EventoCita;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio de la bandeja de salida de eventos de citas.
+ */
+public interface EventoCitaRepository extends JpaRepository<EventoCita, Long> {
+
+    /**
+     * Obtiene los eventos pendientes de entrega en el orden en que se registraron,
+     * omitiendo los que agotaron sus intentos.
+     *
+     * @param maxIntentos Intentos a partir de los cuales un evento se descarta
+     * @param pageable Límite de resultados
+     * @return Lista ordenada de eventos pendientes
+     */
+    @Query("SELECT e FROM EventoCita e WHERE e.intentos < :maxIntentos ORDER BY e.idEvento")
+    List<EventoCita> findPendientes(@Param("maxIntentos") int maxIntentos, Pageable pageable);
+
+    /**
+     * Registra un intento fallido de entrega, sin pasar del máximo de intentos.
+     *
+     * @param idEvento ID del evento
+     * @param maxIntentos Intentos a partir de los cuales un evento se descarta
+     * @return Número de registros actualizados
+     */
+    @Modifying
+    @Query("UPDATE EventoCita e SET e.intentos = e.intentos + 1 " +
+            "WHERE e.idEvento = :idEvento AND e.intentos < :maxIntentos")
+    int incrementarIntentos(@Param("idEvento") Long idEvento, @Param("maxIntentos") int maxIntentos);
+
+    /**
+     * Cuenta los eventos que agotaron sus intentos y quedaron sin entregar.
+     *
+     * @param maxIntentos Intentos a partir de los cuales un evento se descarta
+     * @return Número de eventos agotados
+     */
+    @Query("SELECT COUNT(e) FROM EventoCita e WHERE e.intentos >= :maxIntentos")
+    long contarAgotados(@Param("maxIntentos") int maxIntentos);
+
+    /**
+     * Devuelve a la cola de entrega los eventos que agotaron sus intentos.
+     *
+     * @param maxIntentos Intentos a partir de los cuales un evento se descarta
+     * @return Número de eventos reiniciados
+     */
+    @Modifying
+    @Query("UPDATE EventoCita e SET e.intentos = 0 WHERE e.intentos >= :maxIntentos")
+    int reiniciarAgotados(@Param("maxIntentos") int maxIntentos);
+
+    /**
+     * Registra en una sola sentencia el evento de cancelación de las citas de un lote que ya
+     * están canceladas, a partir de su fila. Debe llamarse en la misma transacción que las
+     * cancela, después de cancelarlas.
+     *
+     * @param ids IDs de las citas canceladas
+     * @param fecha Fecha de registro de los eventos
+     * @return Número de eventos registrados
+     */
+    @Modifying
+    @Query(value = "INSERT INTO eventos_cita (id_cita, tipo, estado, fecha_hora, id_servicio, fecha_creacion, intentos) " +
+            "SELECT id_cita, 'CANCELADA', 'Cancelada', fecha_hora, id_servicio, :fecha, 0 FROM citas " +
+            "WHERE id_cita IN (:ids) AND estado = 'Cancelada' ORDER BY id_cita", nativeQuery = true)
+    int registrarCancelaciones(@Param("ids") List<Integer> ids, @Param("fecha") LocalDateTime fecha);
+}
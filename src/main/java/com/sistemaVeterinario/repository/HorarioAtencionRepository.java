@@ -0,0 +1,11 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.HorarioAtencion;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repositorio para la gestión de los horarios de atención de la clínica.
+ * Proporciona operaciones de acceso a datos para entidades de tipo {@link HorarioAtencion}.
+ */
+public interface HorarioAtencionRepository extends JpaRepository<HorarioAtencion, Integer> {
+}
@@ -1,11 +1,23 @@
 package com.sistemaVeterinario.repository;
 
+import com.sistemaVeterinario.dto.ExportacionMascotaDTO;
+import com.sistemaVeterinario.dto.NombreMascotaDTO;
 import com.sistemaVeterinario.models.Mascota;
-import com.sistemaVeterinario.models.Usuario;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para gestionar las operaciones de persistencia relacionadas con las mascotas.
@@ -15,10 +27,110 @@ public interface MascotaRepository extends JpaRepository<Mascota, Integer> {
 
     /**
      * Busca todas las mascotas asociadas a un propietario específico.
+     * Filtra por la clave foránea, por lo que no carga al usuario.
      *
-     * @param propietario El objeto Usuario que representa al propietario de las mascotas
+     * @param idUsuario El ID del usuario propietario de las mascotas
      * @return Lista de mascotas pertenecientes al propietario especificado.
      *         La lista puede estar vacía si el propietario no tiene mascotas registradas.
      */
-    List<Mascota> findByPropietario(Usuario propietario);
+    List<Mascota> findByPropietarioIdUsuario(Integer idUsuario);
+
+    /**
+     * Busca una mascota solo si pertenece al propietario indicado.
+     * Filtra por la clave primaria y la clave foránea en la misma consulta, sin cargar al usuario.
+     *
+     * @param idMascota El ID de la mascota
+     * @param idUsuario El ID del usuario que debe ser su propietario
+     * @return La mascota, o vacío si no existe o pertenece a otro usuario
+     */
+    Optional<Mascota> findByIdMascotaAndPropietarioIdUsuario(Integer idMascota, Integer idUsuario);
+
+    /**
+     * Archiva una mascota marcando su fecha de eliminación. Las mascotas archivadas dejan de
+     * aparecer en las consultas y se eliminan físicamente más tarde.
+     *
+     * @param idMascota El ID de la mascota
+     * @param fecha Fecha de eliminación
+     * @return Número de registros actualizados (0 si ya estaba archivada)
+     */
+    @Modifying
+    @Query("UPDATE Mascota m SET m.fechaEliminacion = :fecha " +
+            "WHERE m.idMascota = :idMascota AND m.fechaEliminacion IS NULL")
+    int archivar(@Param("idMascota") Integer idMascota, @Param("fecha") LocalDateTime fecha);
+
+    /**
+     * Bloquea en modo compartido la fila de una mascota no archivada hasta el final de la
+     * transacción. Una reserva que la bloquea no se cruza con el archivado de la mascota: el
+     * archivado espera a que la reserva se confirme, o la reserva espera al archivado y ya no
+     * encuentra la mascota.
+     *
+     * @param idMascota El ID de la mascota
+     * @return La mascota, o vacío si no existe o está archivada
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT m FROM Mascota m WHERE m.idMascota = :idMascota")
+    Optional<Mascota> bloquearActiva(@Param("idMascota") Integer idMascota);
+
+    /**
+     * Obtiene un lote de IDs de mascotas archivadas antes de una fecha.
+     * Es una consulta nativa porque las consultas JPQL excluyen las mascotas archivadas.
+     *
+     * @param limite Fecha de eliminación máxima (exclusiva)
+     * @param tamanio Tamaño del lote
+     * @return IDs de las mascotas archivadas, en orden
+     */
+    @Query(value = "SELECT id_mascota FROM mascotas WHERE fecha_eliminacion < :limite " +
+            "ORDER BY id_mascota LIMIT :tamanio", nativeQuery = true)
+    List<Integer> findIdsArchivadasAntesDe(@Param("limite") LocalDateTime limite, @Param("tamanio") int tamanio);
+
+    /**
+     * Elimina físicamente un lote de mascotas archivadas. Sus citas deben haberse eliminado antes.
+     *
+     * @param ids IDs de las mascotas
+     * @return Número de registros eliminados
+     */
+    @Modifying
+    @Query(value = "DELETE FROM mascotas WHERE id_mascota IN (:ids) AND fecha_eliminacion IS NOT NULL",
+            nativeQuery = true)
+    int eliminarArchivadas(@Param("ids") List<Integer> ids);
+
+    /**
+     * Obtiene solo los nombres de las mascotas de un propietario.
+     *
+     * @param idUsuario El ID del usuario propietario
+     * @return Nombres de sus mascotas
+     */
+    @Query("SELECT m.nombre FROM Mascota m WHERE m.propietario.idUsuario = :idUsuario")
+    List<String> findNombresByPropietario(@Param("idUsuario") Integer idUsuario);
+
+    /**
+     * Obtiene el nombre y el propietario de las mascotas de varios propietarios.
+     *
+     * @param ids IDs de los usuarios propietarios
+     * @return Nombres de sus mascotas con el ID de su propietario
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.NombreMascotaDTO(m.propietario.idUsuario, m.nombre) " +
+            "FROM Mascota m WHERE m.propietario.idUsuario IN :ids")
+    List<NombreMascotaDTO> findNombresByPropietarios(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Recorre el nombre y el propietario de todas las mascotas, leyendo las filas por lotes.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     *
+     * @return Flujo de nombres de mascotas con el ID de su propietario
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.sistemaVeterinario.dto.NombreMascotaDTO(m.propietario.idUsuario, m.nombre) FROM Mascota m")
+    Stream<NombreMascotaDTO> recorrerNombres();
+
+    /**
+     * Recorre todas las mascotas para exportarlas, en orden de ID y leyendo las filas por lotes.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     *
+     * @return Flujo de mascotas con el ID de su propietario
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.sistemaVeterinario.dto.ExportacionMascotaDTO(m.idMascota, m.nombre, m.especie, m.raza, " +
+            "m.fechaNacimiento, m.sexo, m.propietario.idUsuario) FROM Mascota m ORDER BY m.idMascota")
+    Stream<ExportacionMascotaDTO> exportar();
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.ProgresoTarea;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repositorio para guardar el avance de las tareas por lotes.
+ */
+public interface ProgresoTareaRepository extends JpaRepository<ProgresoTarea, String> {
+}
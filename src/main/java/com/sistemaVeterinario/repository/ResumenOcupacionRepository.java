@@ -0,0 +1,50 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.ResumenOcupacion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio del resumen de ocupación por hora y servicio.
+ */
+public interface ResumenOcupacionRepository extends JpaRepository<ResumenOcupacion, Long> {
+
+    /**
+     * Obtiene las filas del resumen de un rango de horas, en orden cronológico.
+     *
+     * @param desde Primera hora incluida
+     * @param hasta Fin del rango (exclusivo)
+     * @return Filas del resumen dentro del rango
+     */
+    @Query("SELECT r FROM ResumenOcupacion r WHERE r.hora >= :desde AND r.hora < :hasta " +
+            "ORDER BY r.hora, r.idServicio")
+    List<ResumenOcupacion> findEnRango(@Param("desde") LocalDateTime desde,
+                                       @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Elimina las filas del resumen de un rango de horas.
+     *
+     * @param desde Primera hora incluida
+     * @param hasta Fin del rango (exclusivo)
+     * @return Número de filas eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM ResumenOcupacion r WHERE r.hora >= :desde AND r.hora < :hasta")
+    int eliminarRango(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Elimina las filas del resumen que quedan fuera de un rango de horas.
+     *
+     * @param desde Primera hora conservada
+     * @param hasta Fin del rango conservado (exclusivo)
+     * @return Número de filas eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM ResumenOcupacion r WHERE r.hora < :desde OR r.hora >= :hasta")
+    int eliminarFueraDeRango(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+}
@@ -1,27 +1,63 @@
 package com.sistemaVeterinario.repository;
 
+import com.sistemaVeterinario.dto.ExportacionUsuarioDTO;
+import com.sistemaVeterinario.dto.SugerenciaUsuarioDTO;
 import com.sistemaVeterinario.models.Usuario;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para la gestión de usuarios del sistema veterinario.
  * Proporciona métodos para operaciones CRUD y consultas personalizadas de usuarios.
+ * La búsqueda del administrador usa filtros {@link UsuarioSpecifications}.
  */
 @Repository
-public interface UsuarioRepository extends JpaRepository<Usuario, Integer> {
+public interface UsuarioRepository extends JpaRepository<Usuario, Integer>,
+        JpaSpecificationExecutor<Usuario>, UsuarioRepositoryCustom {
 
     /**
-     * Busca un usuario por su dirección de email.
+     * Busca un usuario por su dirección de email, con sus roles cargados en la misma consulta.
      *
      * @param email La dirección de email a buscar (case-sensitive)
      * @return {@link Optional} conteniendo el usuario si existe,
      *         o vacío si no se encuentra ningún usuario con ese email
      */
+    @EntityGraph(attributePaths = "roles")
     Optional<Usuario> findByEmail(String email);
 
+    /**
+     * Busca un usuario por su ID con sus roles cargados en la misma consulta.
+     *
+     * @param idUsuario El ID del usuario
+     * @return El usuario, o vacío si no existe
+     */
+    @EntityGraph(attributePaths = "roles")
+    Optional<Usuario> findConRolesByIdUsuario(Integer idUsuario);
+
+    /**
+     * Carga los roles de varios usuarios con una sola consulta. Los usuarios ya presentes en el
+     * contexto de persistencia actual quedan con su colección de roles inicializada.
+     *
+     * @param ids IDs de los usuarios
+     * @return Los usuarios con sus roles
+     */
+    @Query("SELECT DISTINCT u FROM Usuario u LEFT JOIN FETCH u.roles WHERE u.idUsuario IN :ids")
+    List<Usuario> cargarRoles(@Param("ids") Collection<Integer> ids);
+
     /**
      * Verifica si existe un usuario registrado con el email especificado.
      *
@@ -37,4 +73,94 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Integer> {
      * @return true si existe un usuario con ese teléfono, false en caso contrario
      */
     boolean existsByTelefono(String telefono);
+
+    /**
+     * Obtiene cuáles de los emails indicados ya están registrados.
+     *
+     * @param emails Emails a verificar
+     * @return Emails registrados, tal como están guardados
+     */
+    @Query("SELECT u.email FROM Usuario u WHERE u.email IN :emails")
+    List<String> findEmailsRegistrados(@Param("emails") Collection<String> emails);
+
+    /**
+     * Obtiene cuáles de los teléfonos indicados ya están registrados.
+     *
+     * @param telefonos Teléfonos a verificar
+     * @return Teléfonos registrados
+     */
+    @Query("SELECT u.telefono FROM Usuario u WHERE u.telefono IN :telefonos")
+    List<String> findTelefonosRegistrados(@Param("telefonos") Collection<String> telefonos);
+
+    /**
+     * Guarda el idioma elegido por un usuario, sin escribir si ya era el mismo.
+     *
+     * @param idUsuario El ID del usuario
+     * @param idioma Código del idioma, por ejemplo "es"
+     * @return Número de filas actualizadas
+     */
+    @Modifying
+    @Query("UPDATE Usuario u SET u.idioma = :idioma " +
+            "WHERE u.idUsuario = :idUsuario AND (u.idioma IS NULL OR u.idioma <> :idioma)")
+    int actualizarIdioma(@Param("idUsuario") Integer idUsuario, @Param("idioma") String idioma);
+
+    /**
+     * Reemplaza el hash de la contraseña de un usuario.
+     *
+     * @param email El email del usuario
+     * @param contrasena El nuevo hash de la contraseña
+     * @return Número de filas actualizadas
+     */
+    @Modifying
+    @Query("UPDATE Usuario u SET u.contrasena = :contrasena WHERE u.email = :email")
+    int actualizarContrasena(@Param("email") String email, @Param("contrasena") String contrasena);
+
+    /**
+     * Marca un usuario como modificado, para que las demás instancias actualicen su índice de
+     * búsqueda aunque el cambio haya sido en sus mascotas.
+     *
+     * @param idUsuario El ID del usuario
+     * @param fecha Fecha y hora del cambio
+     * @return Número de filas actualizadas
+     */
+    @Modifying
+    @Query("UPDATE Usuario u SET u.fechaActualizacion = :fecha WHERE u.idUsuario = :idUsuario")
+    int marcarActualizado(@Param("idUsuario") Integer idUsuario, @Param("fecha") LocalDateTime fecha);
+
+    /**
+     * Obtiene los usuarios modificados desde una fecha, con solo los campos del índice de búsqueda.
+     *
+     * @param desde Fecha y hora desde la que se buscan cambios (inclusive)
+     * @return Usuarios sin mascotas
+     */
+    @Query("SELECT new com.sistemaVeterinario.dto.SugerenciaUsuarioDTO(u.idUsuario, u.nombre, u.apellido, u.email, u.telefono) " +
+            "FROM Usuario u WHERE u.fechaActualizacion >= :desde")
+    List<SugerenciaUsuarioDTO> findParaBusquedaActualizadosDesde(@Param("desde") LocalDateTime desde);
+
+    /**
+     * Recorre todos los usuarios con solo los campos del índice de búsqueda, leyendo las filas
+     * por lotes en lugar de cargar la tabla completa. Debe consumirse dentro de una transacción
+     * y cerrarse al terminar.
+     *
+     * @return Flujo de usuarios sin mascotas
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.sistemaVeterinario.dto.SugerenciaUsuarioDTO(u.idUsuario, u.nombre, u.apellido, u.email, u.telefono) " +
+            "FROM Usuario u")
+    Stream<SugerenciaUsuarioDTO> recorrerParaBusqueda();
+
+    /**
+     * Recorre los usuarios registrados dentro de un rango para exportarlos, en orden de ID y
+     * leyendo las filas por lotes. Debe consumirse dentro de una transacción y cerrarse al terminar.
+     *
+     * @param desde Inicio del rango de registro (inclusive), o null para no limitarlo
+     * @param hasta Fin del rango de registro (exclusivo), o null para no limitarlo
+     * @return Flujo de usuarios sin contraseña ni roles
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.sistemaVeterinario.dto.ExportacionUsuarioDTO(u.idUsuario, u.nombre, u.apellido, " +
+            "u.email, u.telefono, u.fechaRegistro) FROM Usuario u " +
+            "WHERE (:desde IS NULL OR u.fechaRegistro >= :desde) AND (:hasta IS NULL OR u.fechaRegistro < :hasta) " +
+            "ORDER BY u.idUsuario")
+    Stream<ExportacionUsuarioDTO> exportar(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
 }
\ No newline at end of file
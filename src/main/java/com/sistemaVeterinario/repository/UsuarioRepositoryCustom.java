@@ -0,0 +1,31 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.Usuario;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Consultas de usuarios que no se pueden expresar con los métodos derivados de Spring Data.
+ */
+public interface UsuarioRepositoryCustom {
+
+    /**
+     * Cuenta los usuarios que cumplen un filtro sin pasar de un límite, para no recorrer
+     * toda la tabla cuando solo se necesita una estimación.
+     *
+     * @param filtro Filtro de usuarios (puede ser null)
+     * @param limite Máximo de usuarios a contar
+     * @return Número de usuarios que cumplen el filtro, como máximo {@code limite}
+     */
+    long contarHasta(Specification<Usuario> filtro, int limite);
+
+    /**
+     * Inserta varios usuarios nuevos y sus roles con sentencias JDBC por lotes, en la conexión y
+     * transacción actuales. Los usuarios no quedan administrados por JPA; se les asigna el ID
+     * generado y la fecha de registro.
+     *
+     * @param usuarios Usuarios sin ID, con la contraseña ya cifrada
+     */
+    void insertarLote(List<Usuario> usuarios);
+}
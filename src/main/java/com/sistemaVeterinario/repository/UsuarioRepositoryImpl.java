@@ -0,0 +1,103 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.Role;
+import com.sistemaVeterinario.models.Usuario;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Implementación de {@link UsuarioRepositoryCustom}.
+ */
+class UsuarioRepositoryImpl implements UsuarioRepositoryCustom {
+
+    private static final String INSERTAR_USUARIO = "INSERT INTO usuarios " +
+            "(nombre, apellido, email, telefono, contrasena, fecha_registro, fecha_actualizacion) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERTAR_ROL = "INSERT INTO usuario_rol (id_usuario, id_rol) VALUES (?, ?)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public long contarHasta(Specification<Usuario> filtro, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Integer> query = cb.createQuery(Integer.class);
+        Root<Usuario> root = query.from(Usuario.class);
+        query.select(root.get("idUsuario"));
+        if (filtro != null) {
+            Predicate predicado = filtro.toPredicate(root, query, cb);
+            if (predicado != null) {
+                query.where(predicado);
+            }
+        }
+        // Solo se leen IDs y como máximo el límite, en lugar de un COUNT sobre toda la tabla
+        return entityManager.createQuery(query)
+                .setMaxResults(limite)
+                .getResultList()
+                .size();
+    }
+
+    /**
+     * Hibernate no agrupa las inserciones de entidades con ID {@code IDENTITY}, porque necesita el
+     * ID de cada fila al persistirla; por eso se usan lotes JDBC y los IDs generados del lote.
+     */
+    @Override
+    public void insertarLote(List<Usuario> usuarios) {
+        if (usuarios.isEmpty()) {
+            return;
+        }
+        // Las operaciones pendientes del contexto de persistencia se escriben antes que el lote
+        entityManager.flush();
+        Timestamp fechaRegistro = Timestamp.valueOf(LocalDateTime.now());
+        entityManager.unwrap(Session.class).doWork(conexion -> {
+            try (PreparedStatement insercion = conexion.prepareStatement(INSERTAR_USUARIO,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (Usuario usuario : usuarios) {
+                    insercion.setString(1, usuario.getNombre());
+                    insercion.setString(2, usuario.getApellido());
+                    insercion.setString(3, usuario.getEmail());
+                    insercion.setString(4, usuario.getTelefono());
+                    insercion.setString(5, usuario.getContrasena());
+                    insercion.setTimestamp(6, fechaRegistro);
+                    insercion.setTimestamp(7, fechaRegistro);
+                    insercion.addBatch();
+                }
+                insercion.executeBatch();
+                try (ResultSet claves = insercion.getGeneratedKeys()) {
+                    for (Usuario usuario : usuarios) {
+                        if (!claves.next()) {
+                            throw new IllegalStateException("La base de datos no devolvió el ID de cada usuario insertado");
+                        }
+                        usuario.setIdUsuario(claves.getInt(1));
+                        usuario.setFechaRegistro(fechaRegistro.toLocalDateTime());
+                        usuario.setFechaActualizacion(fechaRegistro.toLocalDateTime());
+                    }
+                }
+            }
+
+            try (PreparedStatement insercion = conexion.prepareStatement(INSERTAR_ROL)) {
+                for (Usuario usuario : usuarios) {
+                    for (Role rol : usuario.getRoles()) {
+                        insercion.setInt(1, usuario.getIdUsuario());
+                        insercion.setInt(2, rol.getIdRol());
+                        insercion.addBatch();
+                    }
+                }
+                insercion.executeBatch();
+            }
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.Usuario;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filtros de consulta de usuarios para la búsqueda paginada del administrador.
+ */
+public final class UsuarioSpecifications {
+
+    private UsuarioSpecifications() {
+    }
+
+    /**
+     * Usuarios cuyo nombre, apellido, email o teléfono comienzan con el término. Se busca por
+     * prefijo para que la base de datos use los índices de esas columnas; la intercalación de
+     * MySQL no distingue mayúsculas de minúsculas.
+     *
+     * @param termino Texto buscado
+     * @return Filtro por prefijo en las cuatro columnas
+     */
+    public static Specification<Usuario> comienzaCon(String termino) {
+        String patron = escaparLike(termino.trim()) + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(root.get("nombre"), patron, '\\'),
+                cb.like(root.get("apellido"), patron, '\\'),
+                cb.like(root.get("email"), patron, '\\'),
+                cb.like(root.get("telefono"), patron, '\\'));
+    }
+
+    /**
+     * Usuarios posteriores a la última fila de la página anterior según el orden indicado.
+     * El ID desempata los valores repetidos de la columna de orden.
+     *
+     * @param campo Atributo por el que se ordena
+     * @param descendente Si el orden es descendente
+     * @param valor Valor de la columna de orden en la última fila
+     * @param idUsuario ID de la última fila
+     * @return Filtro de la página siguiente
+     */
+    public static Specification<Usuario> despuesDe(String campo, boolean descendente, String valor, Integer idUsuario) {
+        return (root, query, cb) -> {
+            if ("idUsuario".equals(campo)) {
+                return descendente
+                        ? cb.lessThan(root.get("idUsuario"), idUsuario)
+                        : cb.greaterThan(root.get("idUsuario"), idUsuario);
+            }
+            if (descendente) {
+                return cb.or(
+                        cb.lessThan(root.get(campo), valor),
+                        cb.and(cb.equal(root.get(campo), valor), cb.lessThan(root.get("idUsuario"), idUsuario)));
+            }
+            return cb.or(
+                    cb.greaterThan(root.get(campo), valor),
+                    cb.and(cb.equal(root.get(campo), valor), cb.greaterThan(root.get("idUsuario"), idUsuario)));
+        };
+    }
+
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,44 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.VersionCalendario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+/**
+ * Repositorio de la versión compartida con la que cada instancia detecta los cambios del
+ * calendario de atención hechos por las demás.
+ */
+public interface VersionCalendarioRepository extends JpaRepository<VersionCalendario, Integer> {
+
+    /**
+     * Incrementa la versión del calendario, creándola si no existe.
+     *
+     * @return Número de registros insertados o actualizados
+     */
+    @Modifying
+    @Query(value = "INSERT INTO versiones_calendario (id, version) VALUES (1, 1) " +
+            "ON DUPLICATE KEY UPDATE version = version + 1", nativeQuery = true)
+    int incrementar();
+
+    /**
+     * Crea la fila de la versión con valor 0 si no existe, o la bloquea sin cambiarla. Otra
+     * transacción que haga lo mismo espera hasta que esta termine.
+     *
+     * @return Número de registros insertados o actualizados
+     */
+    @Modifying
+    @Query(value = "INSERT INTO versiones_calendario (id, version) VALUES (1, 0) " +
+            "ON DUPLICATE KEY UPDATE version = version", nativeQuery = true)
+    int bloquear();
+
+    /**
+     * Obtiene la versión actual del calendario.
+     *
+     * @return La versión, o vacío si el calendario nunca cambió
+     */
+    @Query("SELECT v.version FROM VersionCalendario v WHERE v.id = " + VersionCalendario.ID)
+    Optional<Long> obtenerVersion();
+}
@@ -0,0 +1,67 @@
+package com.sistemaVeterinario.repository;
+
+import com.sistemaVeterinario.models.VersionDisponibilidad;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio de las versiones por día con las que cada instancia detecta los cambios de
+ * disponibilidad hechos por las demás.
+ */
+public interface VersionDisponibilidadRepository extends JpaRepository<VersionDisponibilidad, LocalDate> {
+
+    /**
+     * Incrementa la versión de un día, creándola si no existe.
+     *
+     * @param fecha Día modificado
+     * @return Número de registros insertados o actualizados
+     */
+    @Modifying
+    @Query(value = "INSERT INTO versiones_disponibilidad (fecha, version) VALUES (:fecha, 1) " +
+            "ON DUPLICATE KEY UPDATE version = version + 1", nativeQuery = true)
+    int incrementar(@Param("fecha") LocalDate fecha);
+
+    /**
+     * Incrementa en una sola sentencia la versión de los días de un lote de citas que caen
+     * dentro de un rango, creando las que no existen.
+     *
+     * @param ids IDs de las citas modificadas
+     * @param inicio Fecha/hora de inicio del rango
+     * @param fin Fecha/hora de fin del rango (exclusiva)
+     * @return Número de registros insertados o actualizados
+     */
+    @Modifying
+    @Query(value = "INSERT INTO versiones_disponibilidad (fecha, version) " +
+            "SELECT DISTINCT CAST(fecha_hora AS DATE), 1 FROM citas " +
+            "WHERE id_cita IN (:ids) AND fecha_hora >= :inicio AND fecha_hora < :fin " +
+            "ON DUPLICATE KEY UPDATE version = version + 1", nativeQuery = true)
+    int incrementarPorCitas(@Param("ids") Collection<Integer> ids,
+                            @Param("inicio") LocalDateTime inicio,
+                            @Param("fin") LocalDateTime fin);
+
+    /**
+     * Obtiene las versiones de un rango de días.
+     *
+     * @param desde Primer día incluido
+     * @param hasta Último día incluido
+     * @return Versiones de los días que tuvieron algún cambio
+     */
+    List<VersionDisponibilidad> findByFechaBetween(LocalDate desde, LocalDate hasta);
+
+    /**
+     * Elimina las versiones de los días anteriores a una fecha.
+     *
+     * @param fecha Primer día que se conserva
+     * @return Número de registros eliminados
+     */
+    @Modifying
+    @Query("DELETE FROM VersionDisponibilidad v WHERE v.fecha < :fecha")
+    int eliminarAnteriores(@Param("fecha") LocalDate fecha);
+}
@@ -0,0 +1,160 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.ProgresoTarea;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.ProgresoTareaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tarea por lotes que marca como "Completada" las citas programadas que ya terminaron.
+ *
+ * <p>Recorre la tabla de citas por clave primaria en rangos acotados y confirma cada rango en
+ * su propia transacción, de modo que ninguna sentencia bloquea muchas filas ni por mucho tiempo
+ * y las reservas siguen atendiéndose mientras se ejecuta. El avance se guarda junto con cada lote
+ * en la tabla {@code progreso_tareas}: si la aplicación se detiene, la siguiente ejecución continúa
+ * desde el último rango confirmado con la misma fecha de corte.</p>
+ */
+@Service
+public class ActualizacionCitasPasadasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActualizacionCitasPasadasService.class);
+
+    private static final String NOMBRE_TAREA = "actualizar-citas-pasadas";
+
+    // IDs recorridos por cada lote
+    private static final int TAMANIO_LOTE = 1000;
+
+    // Cada cuántos lotes se informa el avance en el log
+    private static final int LOTES_POR_REPORTE = 100;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private ProgresoTareaRepository progresoTareaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ResumenOcupacionService resumenOcupacionService;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean();
+
+    /**
+     * Ejecuta la tarea o reanuda la ejecución interrumpida.
+     * @param fechaReferencia Fecha de corte para una ejecución nueva: se completan las citas
+     *                        que comenzaron antes de ella
+     * @return Número de citas actualizadas en esta llamada, o 0 si la tarea ya estaba en ejecución
+     */
+    public int ejecutar(LocalDateTime fechaReferencia) {
+        return ejecutar(fechaReferencia, () -> true);
+    }
+
+    /**
+     * Ejecuta la tarea o reanuda la ejecución interrumpida, deteniéndose entre lotes en cuanto
+     * la condición deja de cumplirse. El avance queda guardado y la siguiente ejecución continúa.
+     * @param fechaReferencia Fecha de corte para una ejecución nueva
+     * @param continuar Condición comprobada antes de cada lote, por ejemplo seguir siendo líder
+     * @return Número de citas actualizadas en esta llamada, o 0 si la tarea ya estaba en ejecución
+     */
+    public int ejecutar(LocalDateTime fechaReferencia, BooleanSupplier continuar) {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            logger.info("La actualización de citas pasadas ya está en ejecución");
+            return 0;
+        }
+        try {
+            return procesar(iniciarOReanudar(fechaReferencia), continuar);
+        } finally {
+            enEjecucion.set(false);
+        }
+    }
+
+    private ProgresoTarea iniciarOReanudar(LocalDateTime fechaReferencia) {
+        ProgresoTarea progreso = progresoTareaRepository.findById(NOMBRE_TAREA).orElse(null);
+        if (progreso != null && !progreso.getTerminada()) {
+            logger.info("Reanudando actualización de citas desde el ID {} de {}",
+                    progreso.getUltimoId(), progreso.getIdMaximo());
+            return progreso;
+        }
+
+        if (progreso == null) {
+            progreso = new ProgresoTarea();
+            progreso.setNombre(NOMBRE_TAREA);
+        }
+        Integer idMaximo = citaRepository.findMaxIdCita();
+        progreso.setUltimoId(0);
+        progreso.setIdMaximo(idMaximo != null ? idMaximo : 0);
+        progreso.setFechaReferencia(fechaReferencia);
+        progreso.setFilasActualizadas(0L);
+        progreso.setTerminada(false);
+        progreso.setFechaActualizacion(LocalDateTime.now());
+        return progresoTareaRepository.save(progreso);
+    }
+
+    private int procesar(ProgresoTarea progreso, BooleanSupplier continuar) {
+        long inicio = System.nanoTime();
+        int actualizadas = 0;
+        int lotes = 0;
+
+        while (progreso.getUltimoId() < progreso.getIdMaximo()) {
+            if (!continuar.getAsBoolean()) {
+                logger.info("Actualización de citas detenida en el ID {} de {}; se reanudará en la siguiente ejecución",
+                        progreso.getUltimoId(), progreso.getIdMaximo());
+                return actualizadas;
+            }
+            int desde = progreso.getUltimoId();
+            int hasta = (int) Math.min((long) desde + TAMANIO_LOTE, progreso.getIdMaximo());
+
+            // La actualización del rango y el registro del avance se confirman juntos
+            List<LocalDateTime> horas = new ArrayList<>();
+            Integer filas = transactionTemplate.execute(estado -> {
+                horas.addAll(citaRepository.findFechasHoraPasadas(
+                        Cita.EstadoCita.Programada, progreso.getFechaReferencia(), desde, hasta));
+                int n = citaRepository.actualizarCitasPasadas(
+                        Cita.EstadoCita.Completada,
+                        Cita.EstadoCita.Programada,
+                        progreso.getFechaReferencia(),
+                        desde,
+                        hasta);
+                progreso.setUltimoId(hasta);
+                progreso.setFilasActualizadas(progreso.getFilasActualizadas() + n);
+                progreso.setFechaActualizacion(LocalDateTime.now());
+                progresoTareaRepository.save(progreso);
+                return n;
+            });
+            actualizadas += filas != null ? filas : 0;
+            // El resumen se actualiza con cada lote ya confirmado, no al final de la tarea
+            resumenOcupacionService.registrarTransiciones(horas);
+
+            if (++lotes % LOTES_POR_REPORTE == 0) {
+                logger.info("Actualización de citas: ID {} de {}, {} filas ({} filas/s)",
+                        hasta, progreso.getIdMaximo(), actualizadas, filasPorSegundo(actualizadas, inicio));
+            }
+        }
+
+        progreso.setTerminada(true);
+        progreso.setFechaActualizacion(LocalDateTime.now());
+        progresoTareaRepository.save(progreso);
+
+        logger.info("Actualización de citas terminada: {} filas en {} lotes ({} filas/s)",
+                actualizadas, lotes, filasPorSegundo(actualizadas, inicio));
+        return actualizadas;
+    }
+
+    private static long filasPorSegundo(int filas, long inicioNanos) {
+        long nanos = Math.max(System.nanoTime() - inicioNanos, 1);
+        return filas * 1_000_000_000L / nanos;
+    }
+}
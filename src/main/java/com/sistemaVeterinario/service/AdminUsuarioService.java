@@ -1,16 +1,22 @@
 package com.sistemaVeterinario.service;
 
+import com.sistemaVeterinario.dto.PaginaUsuariosDTO;
 import com.sistemaVeterinario.dto.UsuarioDTO;
 import com.sistemaVeterinario.models.Role;
 import com.sistemaVeterinario.models.Usuario;
-import com.sistemaVeterinario.repository.RoleRepository;
 import com.sistemaVeterinario.repository.UsuarioRepository;
+import com.sistemaVeterinario.repository.UsuarioSpecifications;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.HashSet;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -23,48 +29,106 @@ import java.util.stream.Collectors;
 @Service
 public class AdminUsuarioService {
 
+    // Límites del tamaño de página de la lista de usuarios
+    public static final int TAMANIO_MINIMO = 10;
+    public static final int TAMANIO_MAXIMO = 100;
+
+    // Usuarios contados como máximo para el total de la búsqueda
+    private static final int MAX_CONTEO = 1000;
+
     @Autowired
     private UsuarioRepository usuarioRepository;
 
     @Autowired
-    private RoleRepository roleRepository;
+    private RoleService roleService;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private BusquedaUsuariosService busquedaUsuariosService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
-     * Obtiene todos los usuarios registrados
-     * @return Lista completa de usuarios
+     * Columnas por las que se puede ordenar la lista de usuarios
      */
-    public List<Usuario> getAllUsuarios() {
-        return usuarioRepository.findAll();
+    public enum OrdenUsuarios {
+        ID("idUsuario"), NOMBRE("nombre"), APELLIDO("apellido"), EMAIL("email");
+
+        private final String campo;
+
+        OrdenUsuarios(String campo) {
+            this.campo = campo;
+        }
+
+        /**
+         * Atributo de Usuario por el que se ordena
+         * @return Nombre del atributo
+         */
+        public String getCampo() {
+            return campo;
+        }
     }
 
     /**
-     * Busca usuarios por nombre o email
-     * @param searchTerm Término de búsqueda
-     * @return Lista de usuarios que coinciden con el término
+     * Busca usuarios en la base de datos por páginas, continuando desde la última fila de la
+     * página anterior en lugar de saltar filas con OFFSET
+     * @param termino Prefijo de nombre, apellido, email o teléfono (opcional)
+     * @param orden Columna de orden
+     * @param descendente Si el orden es descendente
+     * @param cursor Cursor de la página anterior, o null para la primera página
+     * @param tamanio Usuarios por página; se limita entre el mínimo y el máximo permitidos
+     * @return Página de usuarios con sus roles, el cursor de la siguiente y el total estimado
      */
-    public List<Usuario> searchUsuarios(String searchTerm) {
-        if (searchTerm == null || searchTerm.isEmpty()) {
-            return getAllUsuarios();
+    @Transactional(readOnly = true)
+    public PaginaUsuariosDTO buscarUsuarios(String termino, OrdenUsuarios orden, boolean descendente,
+                                            String cursor, int tamanio) {
+        int limite = Math.max(TAMANIO_MINIMO, Math.min(tamanio, TAMANIO_MAXIMO));
+
+        Specification<Usuario> filtro = Specification.where(null);
+        if (termino != null && !termino.isBlank()) {
+            filtro = filtro.and(UsuarioSpecifications.comienzaCon(termino));
+        }
+
+        long contados = usuarioRepository.contarHasta(filtro, MAX_CONTEO + 1);
+
+        Specification<Usuario> pagina = filtro;
+        String[] posicion = decodificarCursor(cursor);
+        if (posicion != null) {
+            pagina = pagina.and(UsuarioSpecifications.despuesDe(
+                    orden.getCampo(), descendente, posicion[1], Integer.valueOf(posicion[0])));
         }
 
-        String term = searchTerm.toLowerCase();
-        return usuarioRepository.findAll().stream()
-                .filter(usuario ->
-                        usuario.getNombre().toLowerCase().contains(term) ||
-                                usuario.getEmail().toLowerCase().contains(term))
-                .collect(Collectors.toList());
+        Sort.Direction direccion = descendente ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = orden == OrdenUsuarios.ID
+                ? Sort.by(direccion, "idUsuario")
+                : Sort.by(direccion, orden.getCampo(), "idUsuario");
+
+        // Se pide una fila de más para saber si existe una página siguiente
+        List<Usuario> usuarios = new ArrayList<>(usuarioRepository.findBy(pagina,
+                consulta -> consulta.sortBy(sort).limit(limite + 1).all()));
+        String siguiente = null;
+        if (usuarios.size() > limite) {
+            usuarios = usuarios.subList(0, limite);
+            siguiente = codificarCursor(usuarios.get(limite - 1), orden);
+        }
+        // Los roles de toda la página en una consulta, en lugar de una por usuario al mostrarla
+        if (!usuarios.isEmpty()) {
+            usuarioRepository.cargarRoles(usuarios.stream().map(Usuario::getIdUsuario).toList());
+        }
+
+        return new PaginaUsuariosDTO(usuarios, siguiente, Math.min(contados, MAX_CONTEO), contados > MAX_CONTEO);
     }
 
     /**
-     * Obtiene un usuario específico por ID
+     * Obtiene un usuario específico por ID, con sus roles
      * @param id ID del usuario
      * @return Usuario encontrado (opcional)
      */
     public Optional<Usuario> getUsuarioById(Integer id) {
-        return usuarioRepository.findById(id);
+        return usuarioRepository.findConRolesByIdUsuario(id);
     }
 
     /**
@@ -82,12 +146,14 @@ public class AdminUsuarioService {
     }
 
     /**
-     * Crea un nuevo usuario con roles asignados
+     * Crea un nuevo usuario con roles asignados. La contraseña se cifra antes de abrir la
+     * transacción.
      * @param usuarioDTO Datos del usuario
      * @param rolesIds IDs de roles a asignar
      * @return Usuario creado
+     * @throws org.springframework.security.authentication.AuthenticationServiceException Si el
+     *         codificador de contraseñas está saturado y rechaza la operación
      */
-    @Transactional
     public Usuario createUsuario(UsuarioDTO usuarioDTO, Set<Integer> rolesIds) {
         Usuario usuario = new Usuario();
         usuario.setNombre(usuarioDTO.getNombre());
@@ -96,58 +162,88 @@ public class AdminUsuarioService {
         usuario.setTelefono(usuarioDTO.getTelefono());
         usuario.setContrasena(passwordEncoder.encode(usuarioDTO.getContrasena()));
 
-        Set<Role> roles = new HashSet<>();
-        if (rolesIds != null && !rolesIds.isEmpty()) {
-            for (Integer roleId : rolesIds) {
-                Optional<Role> role = roleRepository.findById(roleId);
-                role.ifPresent(roles::add);
-            }
-        }
-        usuario.setRoles(roles);
-
-        return usuarioRepository.save(usuario);
+        return transactionTemplate.execute(estado -> {
+            usuario.setRoles(roleService.findAllById(rolesIds));
+            Usuario guardado = usuarioRepository.save(usuario);
+            busquedaUsuariosService.usuarioGuardado(guardado);
+            return guardado;
+        });
     }
 
     /**
-     * Actualiza un usuario existente
+     * Actualiza un usuario existente. La nueva contraseña, si la hay, se cifra antes de abrir
+     * la transacción.
      * @param id ID del usuario a actualizar
      * @param usuarioDTO Nuevos datos del usuario
      * @param rolesIds Nuevos roles a asignar
      * @return Usuario actualizado o null si no existe
+     * @throws org.springframework.security.authentication.AuthenticationServiceException Si el
+     *         codificador de contraseñas está saturado y rechaza la operación
      */
-    @Transactional
     public Usuario updateUsuario(Integer id, Usuario usuarioDTO, Set<Integer> rolesIds) {
-        Optional<Usuario> optionalUsuario = usuarioRepository.findById(id);
-        if (optionalUsuario.isPresent()) {
-            Usuario usuario = optionalUsuario.get();
-            usuario.setNombre(usuarioDTO.getNombre());
-            usuario.setApellido(usuarioDTO.getApellido());
-            usuario.setEmail(usuarioDTO.getEmail());
-            usuario.setTelefono(usuarioDTO.getTelefono());
-
-            if (usuarioDTO.getContrasena() != null && !usuarioDTO.getContrasena().isEmpty()) {
-                usuario.setContrasena(passwordEncoder.encode(usuarioDTO.getContrasena()));
-            }
+        String contrasena = usuarioDTO.getContrasena() != null && !usuarioDTO.getContrasena().isEmpty()
+                ? passwordEncoder.encode(usuarioDTO.getContrasena()) : null;
+
+        return transactionTemplate.execute(estado -> {
+            Optional<Usuario> optionalUsuario = usuarioRepository.findById(id);
+            if (optionalUsuario.isPresent()) {
+                Usuario usuario = optionalUsuario.get();
+                usuario.setNombre(usuarioDTO.getNombre());
+                usuario.setApellido(usuarioDTO.getApellido());
+                usuario.setEmail(usuarioDTO.getEmail());
+                usuario.setTelefono(usuarioDTO.getTelefono());
+
+                if (contrasena != null) {
+                    usuario.setContrasena(contrasena);
+                }
 
-            if (rolesIds != null && !rolesIds.isEmpty()) {
-                Set<Role> roles = new HashSet<>();
-                for (Integer roleId : rolesIds) {
-                    Optional<Role> role = roleRepository.findById(roleId);
-                    role.ifPresent(roles::add);
+                if (rolesIds != null && !rolesIds.isEmpty()) {
+                    usuario.setRoles(roleService.findAllById(rolesIds));
                 }
-                usuario.setRoles(roles);
+
+                usuario = usuarioRepository.save(usuario);
+                busquedaUsuariosService.usuarioGuardado(usuario);
+                return usuario;
             }
+            return null;
+        });
+    }
 
-            return usuarioRepository.save(usuario);
+    /**
+     * El cursor guarda el ID y el valor de la columna de orden de la última fila
+     */
+    private static String codificarCursor(Usuario ultimo, OrdenUsuarios orden) {
+        String valor = switch (orden) {
+            case ID -> "";
+            case NOMBRE -> ultimo.getNombre();
+            case APELLIDO -> ultimo.getApellido();
+            case EMAIL -> ultimo.getEmail();
+        };
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((ultimo.getIdUsuario() + "|" + valor).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return ID y valor de la columna de orden, o null si el cursor falta o no es válido
+     */
+    private static String[] decodificarCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            Integer.parseInt(partes[0]);
+            return partes.length == 2 ? partes : null;
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-        return null;
     }
 
     /**
-     * Obtiene todos los roles disponibles
+     * Obtiene todos los roles disponibles desde el registro en memoria
      * @return Lista completa de roles
      */
     public List<Role> getAllRoles() {
-        return roleRepository.findAll();
+        return roleService.findAll();
     }
 }
\ No newline at end of file
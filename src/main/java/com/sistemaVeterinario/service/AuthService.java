@@ -1,6 +1,7 @@
 package com.sistemaVeterinario.service;
 
 import com.sistemaVeterinario.dto.UsuarioDTO;
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
 import com.sistemaVeterinario.models.Role;
 import com.sistemaVeterinario.models.Usuario;
 import com.sistemaVeterinario.repository.UsuarioRepository;
@@ -8,13 +9,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Collections;
 import java.util.HashSet;
@@ -24,14 +26,18 @@ import java.util.stream.Collectors;
 /**
  * Servicio de autenticación que implementa la interfaz UserDetailsService de Spring Security.
  * Maneja el registro de usuarios y la carga de detalles de usuario para autenticación.
+ * También actualiza los hashes de contraseña guardados con un coste de BCrypt antiguo
+ * cuando el usuario inicia sesión.
  */
 @Service
-public class AuthService implements UserDetailsService {
+public class AuthService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
     private final RoleService roleService;
     private final MessageSource messageSource;
+    private final BusquedaUsuariosService busquedaUsuariosService;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Constructor para inyección de dependencias
@@ -39,23 +45,29 @@ public class AuthService implements UserDetailsService {
      * @param passwordEncoder Codificador de contraseñas
      * @param roleService Servicio de roles
      * @param messageSource Fuente de mensajes internacionalizados
+     * @param busquedaUsuariosService Índice de búsqueda de usuarios
+     * @param transactionTemplate Plantilla de transacciones
      */
     @Autowired
     public AuthService(
             UsuarioRepository usuarioRepository,
             PasswordEncoder passwordEncoder,
             RoleService roleService,
-            MessageSource messageSource) {
+            MessageSource messageSource,
+            BusquedaUsuariosService busquedaUsuariosService,
+            TransactionTemplate transactionTemplate) {
         this.usuarioRepository = usuarioRepository;
         this.passwordEncoder = passwordEncoder;
         this.roleService = roleService;
         this.messageSource = messageSource;
+        this.busquedaUsuariosService = busquedaUsuariosService;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
      * Carga los detalles del usuario por email para la autenticación
      * @param email Email del usuario a buscar
-     * @return UserDetails con la información del usuario
+     * @return UsuarioPrincipal con el ID, nombre y roles del usuario
      * @throws UsernameNotFoundException Si el usuario no existe
      */
     @Override
@@ -71,48 +83,74 @@ public class AuthService implements UserDetailsService {
                 .map(role -> new SimpleGrantedAuthority("ROLE_" + role.getNombreRol()))
                 .collect(Collectors.toList());
 
-        return new User(usuario.getEmail(), usuario.getContrasena(), authorities);
+        return new UsuarioPrincipal(usuario.getIdUsuario(), usuario.getEmail(), usuario.getNombre(),
+                usuario.getContrasena(), authorities);
     }
 
     /**
-     * Registra un nuevo usuario en el sistema
+     * Guarda el nuevo hash de la contraseña tras un inicio de sesión correcto. Spring Security
+     * lo llama cuando el hash guardado usa un coste menor al configurado.
+     * @param user Usuario autenticado
+     * @param newPassword Contraseña codificada con el coste actual
+     * @return El usuario con el nuevo hash
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        usuarioRepository.actualizarContrasena(user.getUsername(), newPassword);
+        if (user instanceof UsuarioPrincipal principal) {
+            return new UsuarioPrincipal(principal.getIdUsuario(), principal.getEmail(), principal.getNombre(),
+                    newPassword, List.copyOf(principal.getAuthorities()));
+        }
+        return user;
+    }
+
+    /**
+     * Registra un nuevo usuario en el sistema. La contraseña se cifra antes de abrir la
+     * transacción, para no retener una conexión mientras espera al codificador.
      * @param registroDTO DTO con los datos de registro
      * @return Usuario registrado
      * @throws IllegalArgumentException Si el email o teléfono ya existen
+     * @throws org.springframework.security.authentication.AuthenticationServiceException Si el
+     *         codificador de contraseñas está saturado y rechaza la operación
      */
-    @Transactional
     public Usuario registrarUsuario(UsuarioDTO registroDTO) {
-        // Verifica si el email ya existe
-        if (usuarioRepository.existsByEmail(registroDTO.getEmail())) {
-            throw new IllegalArgumentException(
-                    messageSource.getMessage("error.email.existing",
-                            null,
-                            LocaleContextHolder.getLocale()));
-        }
+        // Encripta la contraseña
+        String contrasena = passwordEncoder.encode(registroDTO.getContrasena());
 
-        // Verifica si el teléfono ya existe
-        if (usuarioRepository.existsByTelefono(registroDTO.getTelefono())) {
-            throw new IllegalArgumentException(
-                    messageSource.getMessage("error.phone.existing",
-                            null,
-                            LocaleContextHolder.getLocale()));
-        }
+        return transactionTemplate.execute(estado -> {
+            // Verifica si el email ya existe
+            if (usuarioRepository.existsByEmail(registroDTO.getEmail())) {
+                throw new IllegalArgumentException(
+                        messageSource.getMessage("error.email.existing",
+                                null,
+                                LocaleContextHolder.getLocale()));
+            }
 
-        // Crea nuevo usuario
-        Usuario usuario = new Usuario();
-        usuario.setNombre(registroDTO.getNombre());
-        usuario.setApellido(registroDTO.getApellido());
-        usuario.setEmail(registroDTO.getEmail());
-        usuario.setTelefono(registroDTO.getTelefono());
+            // Verifica si el teléfono ya existe
+            if (usuarioRepository.existsByTelefono(registroDTO.getTelefono())) {
+                throw new IllegalArgumentException(
+                        messageSource.getMessage("error.phone.existing",
+                                null,
+                                LocaleContextHolder.getLocale()));
+            }
 
-        // Encripta la contraseña
-        usuario.setContrasena(passwordEncoder.encode(registroDTO.getContrasena()));
+            // Crea nuevo usuario
+            Usuario usuario = new Usuario();
+            usuario.setNombre(registroDTO.getNombre());
+            usuario.setApellido(registroDTO.getApellido());
+            usuario.setEmail(registroDTO.getEmail());
+            usuario.setTelefono(registroDTO.getTelefono());
+            usuario.setContrasena(contrasena);
 
-        // Asigna rol de usuario por defecto
-        Role rolUsuario = roleService.obtenerRolUsuario();
-        usuario.setRoles(new HashSet<>(Collections.singletonList(rolUsuario)));
+            // Asigna rol de usuario por defecto
+            Role rolUsuario = roleService.obtenerRolUsuario();
+            usuario.setRoles(new HashSet<>(Collections.singletonList(rolUsuario)));
 
-        // Guarda en la base de datos
-        return usuarioRepository.save(usuario);
+            // Guarda en la base de datos y lo agrega al índice de búsqueda al confirmar
+            usuario = usuarioRepository.save(usuario);
+            busquedaUsuariosService.usuarioGuardado(usuario);
+            return usuario;
+        });
     }
-}
\ No newline at end of file
+}
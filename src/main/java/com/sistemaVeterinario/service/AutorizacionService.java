@@ -0,0 +1,55 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Servicio que resuelve en una sola consulta si un usuario puede acceder a una mascota o a una
+ * cita y, si puede, la devuelve. La propiedad se comprueba en la base de datos por la clave
+ * foránea del propietario, de modo que no se recorre {@code getMascota().getPropietario()}.
+ *
+ * <p>Una mascota o cita ajena se trata igual que una inexistente, para no revelar qué IDs
+ * existen.</p>
+ */
+@Service
+public class AutorizacionService {
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    /**
+     * Obtiene una mascota del usuario autenticado.
+     * @param idMascota El ID de la mascota
+     * @param usuario El usuario autenticado
+     * @return La mascota, o null si no existe, pertenece a otro usuario o no hay usuario
+     */
+    public Mascota mascotaPropia(Integer idMascota, UsuarioPrincipal usuario) {
+        if (idMascota == null || usuario == null) {
+            return null;
+        }
+        return mascotaRepository.findByIdMascotaAndPropietarioIdUsuario(idMascota, usuario.getIdUsuario())
+                .orElse(null);
+    }
+
+    /**
+     * Obtiene una cita de una mascota del usuario autenticado, con su mascota y su servicio.
+     * @param idCita El ID de la cita
+     * @param usuario El usuario autenticado
+     * @return La cita, o null si no existe, pertenece a otro usuario o no hay usuario
+     */
+    public Cita citaPropia(Integer idCita, UsuarioPrincipal usuario) {
+        if (idCita == null || usuario == null) {
+            return null;
+        }
+        return citaRepository.findConDetallesByIdCitaAndMascotaPropietarioIdUsuario(idCita, usuario.getIdUsuario())
+                .orElse(null);
+    }
+}
@@ -0,0 +1,894 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.NombreMascotaDTO;
+import com.sistemaVeterinario.dto.SugerenciaUsuarioDTO;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Búsqueda instantánea de usuarios por una parte de su nombre, apellido, email, teléfono o del
+ * nombre de sus mascotas, resuelta en memoria con un índice de trigramas.
+ *
+ * <p>El índice se construye al iniciar la aplicación recorriendo las tablas por lotes y se
+ * actualiza cuando se confirma el registro o la edición de un usuario o un cambio en sus
+ * mascotas. Las consultas no van a la base de datos. El estado vive en cada instancia de la
+ * aplicación; los cambios hechos en otra instancia se incorporan periódicamente leyendo los
+ * usuarios cuya {@code fecha_actualizacion} es posterior a la última lectura, con un margen para
+ * las transacciones que se confirman tarde y la diferencia entre relojes. Un cambio de otra
+ * instancia aparece en las búsquedas como mucho un intervalo de sincronización después.</p>
+ */
+@Service
+public class BusquedaUsuariosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusquedaUsuariosService.class);
+
+    /** Sugerencias devueltas como máximo por consulta. */
+    public static final int MAX_SUGERENCIAS = 20;
+
+    // Margen hacia atrás de cada sincronización, para cambios marcados antes de confirmarse
+    private static final Duration MARGEN_SINCRONIZACION = Duration.ofMinutes(2);
+
+    // Propietarios cuyas mascotas se leen en cada consulta de la sincronización
+    private static final int LOTE_SINCRONIZACION = 1000;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile IndiceTrigramas indice;
+
+    // Momento de la última lectura de la base de datos; protegido por construccion
+    private LocalDateTime ultimaSincronizacion;
+
+    // Evita dos reconstrucciones a la vez
+    private final Object construccion = new Object();
+
+    // Cambios recibidos mientras se reconstruye el índice; protegido por this
+    private List<Consumer<IndiceTrigramas>> pendientes;
+
+    private Timer consultas;
+
+    /**
+     * Tamaño del índice.
+     * @param usuarios Usuarios indexados
+     * @param trigramas Trigramas distintos
+     * @param bytes Memoria estimada del índice
+     */
+    public record EstadisticasIndice(int usuarios, int trigramas, long bytes) {
+
+        /**
+         * @return Memoria estimada por usuario indexado
+         */
+        public long bytesPorUsuario() {
+            return usuarios == 0 ? 0 : bytes / usuarios;
+        }
+    }
+
+    @PostConstruct
+    public void registrarMetricas() {
+        consultas = Timer.builder("veterinaria.busqueda.consultas")
+                .description("Tiempo de cada búsqueda instantánea de usuarios")
+                .register(meterRegistry);
+        Gauge.builder("veterinaria.busqueda.usuarios", this, s -> s.estadisticas().usuarios())
+                .description("Usuarios en el índice de búsqueda")
+                .register(meterRegistry);
+        Gauge.builder("veterinaria.busqueda.memoria", this, s -> s.estadisticas().bytes())
+                .description("Memoria estimada del índice de búsqueda")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Construye el índice apenas la aplicación está lista.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        reconstruir();
+    }
+
+    /**
+     * Vuelve a construir el índice desde la base de datos. Las búsquedas siguen usando el índice
+     * anterior mientras tanto, y los cambios confirmados durante la construcción se aplican
+     * también al nuevo.
+     */
+    public void reconstruir() {
+        synchronized (construccion) {
+            synchronized (this) {
+                pendientes = new ArrayList<>();
+            }
+            long inicio = System.nanoTime();
+            LocalDateTime lectura = LocalDateTime.now();
+            IndiceTrigramas nuevo = new IndiceTrigramas();
+            try {
+                transactionTemplate.executeWithoutResult(estado -> {
+                    Map<Integer, List<String>> mascotas = new HashMap<>();
+                    try (Stream<NombreMascotaDTO> nombres = mascotaRepository.recorrerNombres()) {
+                        nombres.forEach(m -> mascotas.computeIfAbsent(m.idPropietario(), id -> new ArrayList<>(1))
+                                .add(m.nombre()));
+                    }
+                    try (Stream<SugerenciaUsuarioDTO> usuarios = usuarioRepository.recorrerParaBusqueda()) {
+                        usuarios.forEach(u -> nuevo.guardar(conMascotas(u,
+                                mascotas.getOrDefault(u.idUsuario(), List.of()))));
+                    }
+                });
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pendientes = null;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                pendientes.forEach(cambio -> cambio.accept(nuevo));
+                pendientes = null;
+                indice = nuevo;
+            }
+            ultimaSincronizacion = lectura;
+
+            EstadisticasIndice estadisticas = nuevo.estadisticas();
+            logger.info("Índice de búsqueda de usuarios cargado en {} ms: {} usuarios, {} trigramas, {} KB ({} bytes por usuario)",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), estadisticas.usuarios(),
+                    estadisticas.trigramas(), estadisticas.bytes() / 1024, estadisticas.bytesPorUsuario());
+        }
+    }
+
+    /**
+     * Incorpora al índice los usuarios modificados, incluso en otras instancias, desde la
+     * última lectura de la base de datos.
+     */
+    @Scheduled(fixedDelayString = "${veterinaria.busqueda.sincronizacion-ms:30000}",
+            initialDelayString = "${veterinaria.busqueda.sincronizacion-ms:30000}")
+    public void sincronizar() {
+        synchronized (construccion) {
+            if (indice == null) {
+                return;
+            }
+            LocalDateTime lectura = LocalDateTime.now();
+            List<SugerenciaUsuarioDTO> usuarios = usuarioRepository.findParaBusquedaActualizadosDesde(
+                    ultimaSincronizacion.minus(MARGEN_SINCRONIZACION));
+            Map<Integer, List<String>> mascotas = new HashMap<>();
+            for (int i = 0; i < usuarios.size(); i += LOTE_SINCRONIZACION) {
+                List<Integer> ids = usuarios.subList(i, Math.min(i + LOTE_SINCRONIZACION, usuarios.size()))
+                        .stream().map(SugerenciaUsuarioDTO::idUsuario).toList();
+                mascotaRepository.findNombresByPropietarios(ids).forEach(m ->
+                        mascotas.computeIfAbsent(m.idPropietario(), id -> new ArrayList<>(1)).add(m.nombre()));
+            }
+            // Un dato leído antes que un cambio local se corrige en la siguiente sincronización
+            for (SugerenciaUsuarioDTO usuario : usuarios) {
+                SugerenciaUsuarioDTO datos = conMascotas(usuario, mascotas.getOrDefault(usuario.idUsuario(), List.of()));
+                aplicar(i -> i.guardar(datos));
+            }
+            ultimaSincronizacion = lectura;
+            logger.debug("Índice de búsqueda sincronizado: {} usuarios modificados", usuarios.size());
+        }
+    }
+
+    /**
+     * Busca usuarios cuyas palabras contienen cada palabra del texto. Las palabras de una o dos
+     * letras solo coinciden con el inicio de una palabra. No distingue mayúsculas ni tildes.
+     * @param texto Texto escrito por el usuario
+     * @param limite Sugerencias deseadas; se limita a {@link #MAX_SUGERENCIAS}
+     * @return Usuarios ordenados por relevancia
+     */
+    public List<SugerenciaUsuarioDTO> buscar(String texto, int limite) {
+        if (texto == null || texto.isBlank() || limite <= 0) {
+            return List.of();
+        }
+        long inicio = System.nanoTime();
+        try {
+            return indice().buscar(texto, Math.min(limite, MAX_SUGERENCIAS));
+        } finally {
+            consultas.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Obtiene el tamaño actual del índice.
+     * @return Usuarios, trigramas y memoria estimada
+     */
+    public EstadisticasIndice estadisticas() {
+        IndiceTrigramas actual = indice;
+        return actual != null ? actual.estadisticas() : new EstadisticasIndice(0, 0, 0);
+    }
+
+    /**
+     * Actualiza los datos de un usuario en el índice cuando se confirme la transacción actual.
+     * Conserva los nombres de sus mascotas ya indexados.
+     * @param usuario Usuario guardado, con su ID asignado
+     */
+    public void usuarioGuardado(Usuario usuario) {
+        SugerenciaUsuarioDTO datos = new SugerenciaUsuarioDTO(usuario.getIdUsuario(), usuario.getNombre(),
+                usuario.getApellido(), usuario.getEmail(), usuario.getTelefono());
+        despuesDeConfirmar(() -> aplicar(i -> i.actualizarUsuario(datos)));
+    }
+
+    /**
+     * Actualiza los nombres de las mascotas de un usuario en el índice cuando se confirme la
+     * transacción actual. Los nombres se leen ahora, incluyendo los cambios aún no confirmados,
+     * y el usuario se marca como modificado para que las demás instancias también los lean.
+     * @param idPropietario ID del propietario de las mascotas modificadas
+     */
+    public void mascotasCambiadas(Integer idPropietario) {
+        transactionTemplate.executeWithoutResult(estado ->
+                usuarioRepository.marcarActualizado(idPropietario, LocalDateTime.now()));
+        List<String> nombres = List.copyOf(mascotaRepository.findNombresByPropietario(idPropietario));
+        despuesDeConfirmar(() -> aplicar(i -> i.actualizarMascotas(idPropietario, nombres)));
+    }
+
+    private IndiceTrigramas indice() {
+        IndiceTrigramas actual = indice;
+        if (actual == null) {
+            synchronized (construccion) {
+                if (indice == null) {
+                    reconstruir();
+                }
+                actual = indice;
+            }
+        }
+        return actual;
+    }
+
+    // Si aún no hay índice ni se está construyendo, el cambio se leerá de la base de datos al construirlo
+    private synchronized void aplicar(Consumer<IndiceTrigramas> cambio) {
+        if (pendientes != null) {
+            pendientes.add(cambio);
+        }
+        if (indice != null) {
+            cambio.accept(indice);
+        }
+    }
+
+    private static void despuesDeConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private static SugerenciaUsuarioDTO conMascotas(SugerenciaUsuarioDTO usuario, List<String> mascotas) {
+        return new SugerenciaUsuarioDTO(usuario.idUsuario(), usuario.nombre(), usuario.apellido(),
+                usuario.email(), usuario.telefono(), List.copyOf(mascotas));
+    }
+    /**
+     * Índice invertido de trigramas con claves primitivas.
+     *
+     * <p>Cada palabra de un usuario se normaliza (minúsculas y sin tildes), se rodea con dos
+     * espacios al inicio y uno al final y se divide en trigramas, de modo que los trigramas de los
+     * bordes indican dónde empieza y termina la palabra. Cada trigrama se codifica en un
+     * {@code long} (tres caracteres de 16 bits) y apunta a los IDs de los usuarios que lo
+     * contienen: un {@code int[]} ordenado o, si el trigrama es tan frecuente que ocupa menos así,
+     * un mapa de bits indexado por ID. Todo se guarda en una tabla de direccionamiento abierto,
+     * sin objetos por entrada.</p>
+     *
+     * <p>Una búsqueda intersecta los IDs de los trigramas del texto, empezando por el más raro, y
+     * calcula con los trigramas de borde una cota del puntaje de cada candidato. Solo se lee el
+     * texto de los candidatos que todavía pueden entrar en el resultado.</p>
+     */
+    static final class IndiceTrigramas {
+
+        private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+        private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+        private static final String RELLENO = "  ";
+        private static final int CAPACIDAD_INICIAL = 1024;
+        private static final int PUNTOS_PALABRA = 3;
+
+        // Largo desde el que una lista puede pasar a mapa de bits
+        private static final int LARGO_MINIMO_MAPA = 256;
+
+        private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+        private final Map<Integer, Documento> documentos = new HashMap<>();
+
+        // Tabla trigrama -> IDs; la clave 0 marca una posición vacía y cada posición usa una lista o un mapa
+        private long[] claves = new long[CAPACIDAD_INICIAL];
+        private int[][] listas = new int[CAPACIDAD_INICIAL][];
+        private long[][] mapas = new long[CAPACIDAD_INICIAL][];
+        private int[] tamanios = new int[CAPACIDAD_INICIAL];
+        private int ocupadas;
+        private int idMaximo;
+
+        /**
+         * Datos devueltos al buscar y su texto normalizado, con las palabras separadas y
+         * rodeadas por un espacio.
+         */
+        private record Documento(SugerenciaUsuarioDTO datos, String texto) {
+        }
+
+        private record Puntuado(int id, int puntos, Documento documento) {
+        }
+
+        /**
+         * Agrega o reemplaza un usuario con todos sus datos.
+         */
+        void guardar(SugerenciaUsuarioDTO datos) {
+            cerrojo.writeLock().lock();
+            try {
+                int id = datos.idUsuario();
+                idMaximo = Math.max(idMaximo, id);
+                Documento anterior = documentos.get(id);
+                Documento nuevo = new Documento(datos, textoNormalizado(datos));
+                long[] anteriores = anterior != null ? trigramas(anterior.texto()) : new long[0];
+                long[] nuevos = trigramas(nuevo.texto());
+                // Solo se tocan los trigramas que cambian
+                for (long clave : anteriores) {
+                    if (Arrays.binarySearch(nuevos, clave) < 0) {
+                        quitar(clave, id);
+                    }
+                }
+                for (long clave : nuevos) {
+                    if (Arrays.binarySearch(anteriores, clave) < 0) {
+                        insertar(clave, id);
+                    }
+                }
+                documentos.put(id, nuevo);
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Actualiza los datos propios de un usuario conservando sus mascotas.
+         */
+        void actualizarUsuario(SugerenciaUsuarioDTO datos) {
+            cerrojo.writeLock().lock();
+            try {
+                Documento anterior = documentos.get(datos.idUsuario());
+                guardar(conMascotas(datos, anterior != null ? anterior.datos().mascotas() : List.of()));
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Reemplaza los nombres de las mascotas de un usuario ya indexado.
+         */
+        void actualizarMascotas(Integer idUsuario, List<String> mascotas) {
+            cerrojo.writeLock().lock();
+            try {
+                Documento anterior = documentos.get(idUsuario);
+                if (anterior != null) {
+                    guardar(conMascotas(anterior.datos(), mascotas));
+                }
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Busca los usuarios que contienen todas las palabras del texto, ordenados por puntaje y,
+         * a igual puntaje, por ID.
+         */
+        List<SugerenciaUsuarioDTO> buscar(String texto, int limite) {
+            String[] palabras = palabras(texto);
+            if (palabras.length == 0) {
+                return List.of();
+            }
+            long[] requeridos = trigramasConsulta(palabras);
+
+            cerrojo.readLock().lock();
+            try {
+                int[] posiciones = new int[requeridos.length];
+                for (int i = 0; i < requeridos.length; i++) {
+                    posiciones[i] = posicionNoVacia(requeridos[i]);
+                    if (posiciones[i] < 0) {
+                        return List.of();
+                    }
+                }
+                int[] ids = candidatos(posiciones);
+                if (ids.length == 0) {
+                    return List.of();
+                }
+                int[] cotas = cotas(ids, palabras);
+
+                // Candidatos de mayor a menor cota y, dentro de cada cota, por ID creciente
+                int maximo = PUNTOS_PALABRA * palabras.length;
+                int[] inicioGrupo = new int[maximo + 2];
+                for (int cota : cotas) {
+                    inicioGrupo[maximo - cota + 1]++;
+                }
+                for (int i = 1; i < inicioGrupo.length; i++) {
+                    inicioGrupo[i] += inicioGrupo[i - 1];
+                }
+                int[] orden = new int[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    orden[inicioGrupo[maximo - cotas[i]]++] = i;
+                }
+
+                String[] inicios = new String[palabras.length];
+                for (int i = 0; i < palabras.length; i++) {
+                    inicios[i] = " " + palabras[i];
+                }
+                // El peor de los guardados queda en la cima del montículo
+                PriorityQueue<Puntuado> mejores = new PriorityQueue<>(limite + 1,
+                        Comparator.comparingInt(Puntuado::puntos).thenComparing(Puntuado::id, Comparator.reverseOrder()));
+                for (int i : orden) {
+                    int id = ids[i];
+                    if (mejores.size() == limite) {
+                        Puntuado peor = mejores.peek();
+                        // Los candidatos restantes tienen menor cota, o la misma y un ID mayor
+                        if (peor.puntos() > cotas[i] || (peor.puntos() == cotas[i] && peor.id() < id)) {
+                            break;
+                        }
+                    }
+                    Documento documento = documentos.get(id);
+                    int puntos = puntuar(documento.texto(), palabras, inicios);
+                    if (puntos == 0) {
+                        continue;
+                    }
+                    if (mejores.size() < limite) {
+                        mejores.add(new Puntuado(id, puntos, documento));
+                    } else if (puntos > mejores.peek().puntos()
+                            || (puntos == mejores.peek().puntos() && id < mejores.peek().id())) {
+                        mejores.poll();
+                        mejores.add(new Puntuado(id, puntos, documento));
+                    }
+                }
+
+                List<SugerenciaUsuarioDTO> resultado = new ArrayList<>(mejores.size());
+                while (!mejores.isEmpty()) {
+                    resultado.add(mejores.poll().documento().datos());
+                }
+                return resultado.reversed();
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+        }
+
+        /**
+         * Cuenta usuarios y trigramas y estima la memoria del índice, suponiendo referencias
+         * comprimidas y cadenas de un byte por carácter.
+         */
+        EstadisticasIndice estadisticas() {
+            cerrojo.readLock().lock();
+            try {
+                long bytes = 16L + claves.length * 8L + 2 * (16L + claves.length * 4L) + 16L + tamanios.length * 4L;
+                int trigramas = 0;
+                for (int i = 0; i < claves.length; i++) {
+                    if (listas[i] != null) {
+                        bytes += 16L + listas[i].length * 4L;
+                    }
+                    if (mapas[i] != null) {
+                        bytes += 16L + mapas[i].length * 8L;
+                    }
+                    if (tamanios[i] > 0) {
+                        trigramas++;
+                    }
+                }
+                for (Documento documento : documentos.values()) {
+                    SugerenciaUsuarioDTO datos = documento.datos();
+                    // Nodo del mapa, Integer, Documento y registro de datos
+                    bytes += 32 + 16 + 16 + 32;
+                    bytes += bytesTexto(documento.texto()) + bytesTexto(datos.nombre()) + bytesTexto(datos.apellido())
+                            + bytesTexto(datos.email()) + bytesTexto(datos.telefono());
+                    bytes += 16L + datos.mascotas().size() * 4L;
+                    for (String mascota : datos.mascotas()) {
+                        bytes += bytesTexto(mascota);
+                    }
+                }
+                bytes += 48L + documentos.size() * 8L;
+                return new EstadisticasIndice(documentos.size(), trigramas, bytes);
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+        }
+
+        /**
+         * IDs presentes en todas las posiciones. Se parte de la más pequeña; si es un mapa de bits,
+         * los demás mapas se combinan palabra a palabra antes de extraer los IDs.
+         */
+        private int[] candidatos(int[] posiciones) {
+            // Pocas posiciones: basta una ordenación por inserción según el tamaño
+            for (int i = 1; i < posiciones.length; i++) {
+                int actual = posiciones[i];
+                int j = i - 1;
+                while (j >= 0 && tamanios[posiciones[j]] > tamanios[actual]) {
+                    posiciones[j + 1] = posiciones[j];
+                    j--;
+                }
+                posiciones[j + 1] = actual;
+            }
+
+            int primera = posiciones[0];
+            int[] ids;
+            int total;
+            boolean[] usadas = new boolean[posiciones.length];
+            if (mapas[primera] == null) {
+                ids = Arrays.copyOf(listas[primera], tamanios[primera]);
+                total = ids.length;
+            } else {
+                long[] mapa = mapas[primera].clone();
+                for (int k = 1; k < posiciones.length; k++) {
+                    long[] otro = mapas[posiciones[k]];
+                    if (otro != null) {
+                        for (int w = 0; w < mapa.length; w++) {
+                            mapa[w] &= w < otro.length ? otro[w] : 0;
+                        }
+                        usadas[k] = true;
+                    }
+                }
+                ids = new int[tamanios[primera]];
+                total = 0;
+                for (int w = 0; w < mapa.length; w++) {
+                    long bits = mapa[w];
+                    while (bits != 0) {
+                        ids[total++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+
+            for (int k = 1; k < posiciones.length && total > 0; k++) {
+                int posicion = posiciones[k];
+                if (usadas[k]) {
+                    continue;
+                }
+                if (mapas[posicion] != null) {
+                    int quedan = 0;
+                    for (int i = 0; i < total; i++) {
+                        if (contiene(posicion, ids[i])) {
+                            ids[quedan++] = ids[i];
+                        }
+                    }
+                    total = quedan;
+                } else {
+                    total = intersectar(ids, total, listas[posicion], tamanios[posicion]);
+                }
+            }
+            return Arrays.copyOf(ids, total);
+        }
+
+        /**
+         * Cota superior del puntaje de cada candidato según los trigramas de borde de cada
+         * palabra: si tiene los del inicio, la palabra puede ser el inicio de una palabra del
+         * usuario, y si además tiene el del final, puede ser una palabra completa.
+         */
+        private int[] cotas(int[] ids, String[] palabras) {
+            int[] cotas = new int[ids.length];
+            for (String palabra : palabras) {
+                String conBordes = RELLENO + palabra + " ";
+                int inicio1 = posicionNoVacia(codificar(conBordes, 0));
+                int inicio2 = palabra.length() >= 2 ? posicionNoVacia(codificar(conBordes, 1)) : inicio1;
+                int fin = posicionNoVacia(codificar(conBordes, conBordes.length() - 3));
+                for (int i = 0; i < ids.length; i++) {
+                    int id = ids[i];
+                    if (inicio1 >= 0 && inicio2 >= 0 && contiene(inicio1, id) && contiene(inicio2, id)) {
+                        cotas[i] += fin >= 0 && contiene(fin, id) ? PUNTOS_PALABRA : 2;
+                    } else {
+                        cotas[i] += 1;
+                    }
+                }
+            }
+            return cotas;
+        }
+
+        /**
+         * {@link #PUNTOS_PALABRA} por palabra igual a una palabra del usuario, dos si es su inicio
+         * y uno si aparece dentro. Devuelve 0 si alguna palabra no aparece.
+         * @param inicios Cada palabra precedida de un espacio
+         */
+        private static int puntuar(String texto, String[] palabras, String[] inicios) {
+            int puntos = 0;
+            for (int i = 0; i < palabras.length; i++) {
+                int posicion = texto.indexOf(inicios[i]);
+                if (posicion < 0) {
+                    if (palabras[i].length() < 3 || !texto.contains(palabras[i])) {
+                        return 0;
+                    }
+                    puntos += 1;
+                    continue;
+                }
+                int mejor = 2;
+                int fin = inicios[i].length();
+                // El texto termina en espacio, así que después de una coincidencia siempre hay un carácter
+                while (posicion >= 0) {
+                    if (texto.charAt(posicion + fin) == ' ') {
+                        mejor = PUNTOS_PALABRA;
+                        break;
+                    }
+                    posicion = texto.indexOf(inicios[i], posicion + 1);
+                }
+                puntos += mejor;
+            }
+            return puntos;
+        }
+
+        /**
+         * Deja en {@code ids} los elementos presentes en ambas listas ordenadas. Cada ID se busca
+         * en la otra lista con saltos que se duplican desde la posición anterior, así que el coste
+         * depende sobre todo del largo de {@code ids} y no del de la otra lista.
+         * @return Elementos que quedan
+         */
+        private static int intersectar(int[] ids, int total, int[] otra, int largoOtra) {
+            int quedan = 0;
+            int desde = 0;
+            for (int i = 0; i < total && desde < largoOtra; i++) {
+                int id = ids[i];
+                int bajo = desde;
+                int paso = 1;
+                while (bajo + paso < largoOtra && otra[bajo + paso] < id) {
+                    bajo += paso;
+                    paso <<= 1;
+                }
+                int posicion = Arrays.binarySearch(otra, bajo, Math.min(bajo + paso + 1, largoOtra), id);
+                if (posicion >= 0) {
+                    ids[quedan++] = id;
+                    desde = posicion + 1;
+                } else {
+                    desde = ~posicion;
+                }
+            }
+            return quedan;
+        }
+
+        private boolean contiene(int posicion, int id) {
+            long[] mapa = mapas[posicion];
+            if (mapa != null) {
+                int palabra = id >>> 6;
+                return palabra < mapa.length && (mapa[palabra] & (1L << id)) != 0;
+            }
+            return Arrays.binarySearch(listas[posicion], 0, tamanios[posicion], id) >= 0;
+        }
+
+        private void insertar(long clave, int id) {
+            if ((ocupadas + 1) * 2 > claves.length) {
+                redimensionar();
+            }
+            int posicion = buscarPosicion(clave);
+            if (posicion < 0) {
+                posicion = ~posicion;
+                claves[posicion] = clave;
+                ocupadas++;
+            }
+
+            long[] mapa = mapas[posicion];
+            if (mapa != null) {
+                int palabra = id >>> 6;
+                if (palabra >= mapa.length) {
+                    mapa = Arrays.copyOf(mapa, Math.max(palabra + 1, mapa.length + (mapa.length >> 1)));
+                    mapas[posicion] = mapa;
+                }
+                if ((mapa[palabra] & (1L << id)) == 0) {
+                    mapa[palabra] |= 1L << id;
+                    tamanios[posicion]++;
+                }
+                return;
+            }
+
+            int[] lista = listas[posicion];
+            int tamanio = tamanios[posicion];
+            int indice = lista != null ? Arrays.binarySearch(lista, 0, tamanio, id) : -1;
+            if (indice >= 0) {
+                return;
+            }
+            indice = ~indice;
+            if (lista == null) {
+                lista = new int[2];
+            } else if (tamanio == lista.length) {
+                lista = Arrays.copyOf(lista, tamanio + (tamanio >> 1) + 1);
+            }
+            System.arraycopy(lista, indice, lista, indice + 1, tamanio - indice);
+            lista[indice] = id;
+            listas[posicion] = lista;
+            tamanios[posicion] = ++tamanio;
+
+            // Un mapa ocupa un bit por ID posible y la lista 32 bits por ID presente
+            if (tamanio >= LARGO_MINIMO_MAPA && tamanio > idMaximo >>> 5) {
+                mapa = new long[(idMaximo >>> 6) + 1];
+                for (int i = 0; i < tamanio; i++) {
+                    mapa[lista[i] >>> 6] |= 1L << lista[i];
+                }
+                mapas[posicion] = mapa;
+                listas[posicion] = null;
+            }
+        }
+
+        // La posición queda en la tabla aunque se vacíe, para no romper el sondeo
+        private void quitar(long clave, int id) {
+            int posicion = buscarPosicion(clave);
+            if (posicion < 0) {
+                return;
+            }
+            long[] mapa = mapas[posicion];
+            if (mapa != null) {
+                if (contiene(posicion, id)) {
+                    mapa[id >>> 6] &= ~(1L << id);
+                    tamanios[posicion]--;
+                }
+                return;
+            }
+            int[] lista = listas[posicion];
+            int tamanio = tamanios[posicion];
+            int indice = lista != null ? Arrays.binarySearch(lista, 0, tamanio, id) : -1;
+            if (indice < 0) {
+                return;
+            }
+            System.arraycopy(lista, indice + 1, lista, indice, tamanio - indice - 1);
+            tamanios[posicion] = tamanio - 1;
+            if (tamanio - 1 == 0) {
+                listas[posicion] = null;
+            }
+        }
+
+        /**
+         * @return La posición de la clave si tiene algún ID, o -1
+         */
+        private int posicionNoVacia(long clave) {
+            int posicion = buscarPosicion(clave);
+            return posicion >= 0 && tamanios[posicion] > 0 ? posicion : -1;
+        }
+
+        /**
+         * @return La posición de la clave, o el complemento de la posición libre donde iría
+         */
+        private int buscarPosicion(long clave) {
+            int mascara = claves.length - 1;
+            int posicion = (int) ((clave * 0x9E3779B97F4A7C15L) >>> 40) & mascara;
+            while (claves[posicion] != 0) {
+                if (claves[posicion] == clave) {
+                    return posicion;
+                }
+                posicion = (posicion + 1) & mascara;
+            }
+            return ~posicion;
+        }
+
+        private void redimensionar() {
+            long[] clavesAnteriores = claves;
+            int[][] listasAnteriores = listas;
+            long[][] mapasAnteriores = mapas;
+            int[] tamaniosAnteriores = tamanios;
+            claves = new long[clavesAnteriores.length * 2];
+            listas = new int[claves.length][];
+            mapas = new long[claves.length][];
+            tamanios = new int[claves.length];
+            ocupadas = 0;
+            for (int i = 0; i < clavesAnteriores.length; i++) {
+                // Las posiciones vacías se descartan al redimensionar
+                if (clavesAnteriores[i] != 0 && tamaniosAnteriores[i] > 0) {
+                    int posicion = ~buscarPosicion(clavesAnteriores[i]);
+                    claves[posicion] = clavesAnteriores[i];
+                    listas[posicion] = listasAnteriores[i];
+                    mapas[posicion] = mapasAnteriores[i];
+                    tamanios[posicion] = tamaniosAnteriores[i];
+                    ocupadas++;
+                }
+            }
+        }
+
+        private static String textoNormalizado(SugerenciaUsuarioDTO datos) {
+            StringBuilder texto = new StringBuilder(" ");
+            agregarPalabras(texto, datos.nombre());
+            agregarPalabras(texto, datos.apellido());
+            agregarPalabras(texto, datos.email());
+            agregarPalabras(texto, datos.telefono());
+            for (String mascota : datos.mascotas()) {
+                agregarPalabras(texto, mascota);
+            }
+            return texto.toString();
+        }
+
+        private static void agregarPalabras(StringBuilder texto, String valor) {
+            for (String palabra : palabras(valor)) {
+                texto.append(palabra).append(' ');
+            }
+        }
+
+        /**
+         * Trigramas distintos y ordenados de las palabras de un texto normalizado, con los bordes
+         * de cada palabra marcados.
+         */
+        private static long[] trigramas(String texto) {
+            long[] resultado = new long[texto.length() * 2];
+            int total = 0;
+            for (String palabra : texto.trim().split(" ")) {
+                if (palabra.isEmpty()) {
+                    continue;
+                }
+                String conBordes = RELLENO + palabra + " ";
+                for (int i = 0; i + 3 <= conBordes.length(); i++) {
+                    resultado[total++] = codificar(conBordes, i);
+                }
+            }
+            return distintos(resultado, total);
+        }
+
+        /**
+         * Las palabras de tres o más letras pueden aparecer en cualquier parte de una palabra;
+         * las más cortas solo al inicio.
+         */
+        private static long[] trigramasConsulta(String[] palabras) {
+            int capacidad = 0;
+            for (String palabra : palabras) {
+                capacidad += palabra.length() + 2;
+            }
+            long[] resultado = new long[capacidad];
+            int total = 0;
+            for (String palabra : palabras) {
+                String base = palabra.length() >= 3 ? palabra : RELLENO + palabra;
+                for (int i = 0; i + 3 <= base.length(); i++) {
+                    resultado[total++] = codificar(base, i);
+                }
+            }
+            return distintos(resultado, total);
+        }
+
+        private static long[] distintos(long[] valores, int total) {
+            Arrays.sort(valores, 0, total);
+            int unicos = 0;
+            for (int i = 0; i < total; i++) {
+                if (unicos == 0 || valores[unicos - 1] != valores[i]) {
+                    valores[unicos++] = valores[i];
+                }
+            }
+            return Arrays.copyOf(valores, unicos);
+        }
+
+        private static long codificar(String texto, int inicio) {
+            return ((long) texto.charAt(inicio) << 32) | ((long) texto.charAt(inicio + 1) << 16) | texto.charAt(inicio + 2);
+        }
+
+        /**
+         * Palabras de un texto en minúsculas y sin tildes.
+         */
+        static String[] palabras(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return new String[0];
+            }
+            String normalizado = MARCAS.matcher(Normalizer.normalize(valor, Normalizer.Form.NFD)).replaceAll("")
+                    .toLowerCase(Locale.ROOT);
+            return Arrays.stream(SEPARADORES.split(normalizado))
+                    .filter(palabra -> !palabra.isEmpty())
+                    .toArray(String[]::new);
+        }
+
+        private static long bytesTexto(String texto) {
+            return texto != null ? 40 + texto.length() : 0;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.DiaFestivo;
+import com.sistemaVeterinario.models.HorarioAtencion;
+import com.sistemaVeterinario.repository.DiaFestivoRepository;
+import com.sistemaVeterinario.repository.HorarioAtencionRepository;
+import com.sistemaVeterinario.repository.VersionCalendarioRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio que mantiene el calendario de atención de la clínica.
+ *
+ * <p>El calendario (horarios semanales, descansos, festivos y horarios específicos por
+ * servicio) se guarda en la base de datos y se compila en plantillas de horarios inmutables
+ * al iniciar la aplicación y cada vez que cambia. Las plantillas se comparten entre todas
+ * las peticiones, por lo que calcular la disponibilidad de un día solo combina máscaras de
+ * bits sin generar listas nuevas.</p>
+ *
+ * <p>Cada cambio incrementa en su transacción la versión compartida de
+ * {@code versiones_calendario}. Las reservas comparan esa versión antes de validarse y vuelven a
+ * compilar si otra instancia cambió el calendario; el resto de las consultas la comparan cada
+ * {@code veterinaria.disponibilidad.sincronizacion-ms}.</p>
+ */
+@Service
+public class CalendarioClinicaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalendarioClinicaService.class);
+
+    @Autowired
+    private HorarioAtencionRepository horarioAtencionRepository;
+
+    @Autowired
+    private DiaFestivoRepository diaFestivoRepository;
+
+    @Autowired
+    private VersionCalendarioRepository versionCalendarioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Calendario compilado vigente; se reemplaza completo en cada cambio
+    private volatile CalendarioCompilado calendario = CalendarioCompilado.VACIO;
+
+    /**
+     * Plantilla inmutable con los horarios de atención de un día.
+     * @param mascara Máscara de bits con los intervalos de atención (ver {@link DisponibilidadService#indiceSlot})
+     * @param horas Horas de inicio de cada intervalo, en orden
+     * @param etiquetas Horas formateadas (HH:mm) de cada intervalo, en el mismo orden
+     */
+    public record PlantillaHorario(long mascara, List<LocalTime> horas, List<String> etiquetas) {
+
+        /** Plantilla de un día sin atención. */
+        public static final PlantillaHorario CERRADO = new PlantillaHorario(0L, List.of(), List.of());
+
+        /**
+         * Indica si la clínica atiende en el intervalo indicado.
+         * @param slot Índice del intervalo
+         * @return true si el intervalo pertenece al horario de atención
+         */
+        public boolean incluye(int slot) {
+            return (mascara & (1L << slot)) != 0;
+        }
+
+        static PlantillaHorario desdeMascara(long mascara) {
+            List<LocalTime> horas = new ArrayList<>(Long.bitCount(mascara));
+            List<String> etiquetas = new ArrayList<>(Long.bitCount(mascara));
+            for (long resto = mascara; resto != 0; resto &= resto - 1) {
+                LocalTime hora = DisponibilidadService.horaDeSlot(Long.numberOfTrailingZeros(resto));
+                horas.add(hora);
+                etiquetas.add(hora.toString());
+            }
+            return new PlantillaHorario(mascara, List.copyOf(horas), List.copyOf(etiquetas));
+        }
+    }
+
+    /**
+     * Compila el calendario al iniciar, creando el horario por defecto si la tabla está vacía.
+     *
+     * <p>El horario general tiene el servicio nulo, por lo que la restricción única no evita
+     * que dos instancias que arrancan a la vez lo creen dos veces. La creación se hace en una
+     * transacción que primero crea o bloquea la fila de {@code versiones_calendario}: la segunda
+     * instancia espera en esa fila y, al continuar, ve el horario ya creado. Solo se crea mientras
+     * la versión es 0, de modo que un calendario vaciado por el administrador no se repone.</p>
+     */
+    @PostConstruct
+    public void inicializar() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            versionCalendarioRepository.bloquear();
+            if (versionCalendarioRepository.obtenerVersion().orElse(0L) == 0
+                    && horarioAtencionRepository.count() == 0) {
+                crearHorarioPorDefecto();
+                versionCalendarioRepository.incrementar();
+            }
+        });
+        compilar();
+    }
+
+    /**
+     * Compara periódicamente la versión compartida para recoger los cambios hechos desde otras
+     * instancias.
+     */
+    @Scheduled(fixedDelayString = "${veterinaria.disponibilidad.sincronizacion-ms:30000}",
+            initialDelayString = "${veterinaria.disponibilidad.sincronizacion-ms:30000}")
+    public void recompilarPeriodicamente() {
+        sincronizar();
+    }
+
+    /**
+     * Vuelve a compilar el calendario si otra instancia lo cambió. Es una consulta por clave
+     * primaria, pensada para hacerse antes de validar una reserva.
+     */
+    public void sincronizar() {
+        if (versionCalendarioRepository.obtenerVersion().orElse(0L) != calendario.version()) {
+            compilar();
+        }
+    }
+
+    /**
+     * Obtiene la plantilla de horarios que aplica a una fecha y servicio.
+     * @param fecha La fecha consultada
+     * @param servicioId El ID del servicio, o null para el horario general
+     * @return Plantilla compartida con los intervalos de atención del día
+     */
+    public PlantillaHorario obtenerPlantilla(LocalDate fecha, Integer servicioId) {
+        return calendario.plantilla(fecha, servicioId);
+    }
+
+    /**
+     * Indica si la clínica atiende algún servicio en una fecha.
+     * @param fecha La fecha consultada
+     * @return true si hay al menos un intervalo de atención ese día
+     */
+    public boolean estaAbierto(LocalDate fecha) {
+        return calendario.abierto(fecha);
+    }
+
+    /**
+     * Obtiene las fechas con atención dentro de un número de días a partir de una fecha.
+     * @param desde Primera fecha a considerar
+     * @param dias Cantidad de días a revisar
+     * @return Fechas en las que la clínica atiende, en orden
+     */
+    public List<LocalDate> obtenerFechasReservables(LocalDate desde, int dias) {
+        List<LocalDate> fechas = new ArrayList<>(dias);
+        for (int i = 0; i < dias; i++) {
+            LocalDate fecha = desde.plusDays(i);
+            if (estaAbierto(fecha)) {
+                fechas.add(fecha);
+            }
+        }
+        return fechas;
+    }
+
+    /**
+     * Versión compartida del calendario compilado; es la misma en todas las instancias que
+     * compilaron los mismos datos.
+     * @return Número de versión del calendario vigente
+     */
+    public long getVersion() {
+        return calendario.version();
+    }
+
+    /**
+     * Obtiene todos los horarios de atención registrados.
+     * @return Lista de horarios
+     */
+    public List<HorarioAtencion> listarHorarios() {
+        return horarioAtencionRepository.findAll();
+    }
+
+    /**
+     * Obtiene todos los días festivos registrados.
+     * @return Lista de festivos
+     */
+    public List<DiaFestivo> listarFestivos() {
+        return diaFestivoRepository.findAll();
+    }
+
+    /**
+     * Guarda un horario de atención, reemplazando el existente del mismo día y servicio,
+     * y recompila el calendario.
+     * @param horario El horario a guardar
+     * @return El horario guardado
+     * @throws IllegalArgumentException Si las horas no son coherentes
+     */
+    public HorarioAtencion guardarHorario(HorarioAtencion horario) {
+        validarHorario(horario);
+
+        Integer servicioId = horario.getServicio() != null ? horario.getServicio().getIdServicio() : null;
+        HorarioAtencion guardado = transactionTemplate.execute(estado -> {
+            for (HorarioAtencion existente : horarioAtencionRepository.findAll()) {
+                Integer existenteServicioId = existente.getServicio() != null
+                        ? existente.getServicio().getIdServicio() : null;
+                if (existente.getDiaSemana() == horario.getDiaSemana()
+                        && Objects.equals(existenteServicioId, servicioId)
+                        && !existente.getIdHorario().equals(horario.getIdHorario())) {
+                    horario.setIdHorario(existente.getIdHorario());
+                }
+            }
+            HorarioAtencion resultado = horarioAtencionRepository.save(horario);
+            versionCalendarioRepository.incrementar();
+            return resultado;
+        });
+        compilar();
+        return guardado;
+    }
+
+    /**
+     * Elimina un horario de atención y recompila el calendario.
+     * @param id El ID del horario
+     */
+    public void eliminarHorario(Integer id) {
+        transactionTemplate.executeWithoutResult(estado -> {
+            horarioAtencionRepository.deleteById(id);
+            versionCalendarioRepository.incrementar();
+        });
+        compilar();
+    }
+
+    /**
+     * Registra un día festivo y recompila el calendario.
+     * @param festivo El festivo a registrar
+     * @return El festivo guardado
+     * @throws IllegalArgumentException Si la fecha ya es festivo
+     */
+    public DiaFestivo guardarFestivo(DiaFestivo festivo) {
+        if (festivo.getFecha() == null) {
+            throw new IllegalArgumentException("La fecha del festivo es obligatoria");
+        }
+        if (diaFestivoRepository.existsByFecha(festivo.getFecha())) {
+            throw new IllegalArgumentException("La fecha ya está registrada como festivo");
+        }
+        DiaFestivo guardado = transactionTemplate.execute(estado -> {
+            DiaFestivo resultado = diaFestivoRepository.save(festivo);
+            versionCalendarioRepository.incrementar();
+            return resultado;
+        });
+        compilar();
+        return guardado;
+    }
+
+    /**
+     * Elimina un día festivo y recompila el calendario.
+     * @param id El ID del festivo
+     */
+    public void eliminarFestivo(Integer id) {
+        transactionTemplate.executeWithoutResult(estado -> {
+            diaFestivoRepository.deleteById(id);
+            versionCalendarioRepository.incrementar();
+        });
+        compilar();
+    }
+
+    /**
+     * Lee el calendario de la base de datos y lo compila en plantillas compartidas.
+     * Plantillas con los mismos intervalos se reutilizan.
+     */
+    public synchronized void compilar() {
+        // La versión se lee antes que los datos: un cambio intermedio se recompila en la siguiente comparación
+        long version = versionCalendarioRepository.obtenerVersion().orElse(0L);
+
+        Map<Long, PlantillaHorario> plantillas = new HashMap<>();
+        plantillas.put(0L, PlantillaHorario.CERRADO);
+
+        Map<DayOfWeek, PlantillaHorario> general = new EnumMap<>(DayOfWeek.class);
+        Map<Integer, Map<DayOfWeek, PlantillaHorario>> porServicio = new HashMap<>();
+
+        for (HorarioAtencion horario : horarioAtencionRepository.findAll()) {
+            PlantillaHorario plantilla = plantillas.computeIfAbsent(
+                    calcularMascara(horario), PlantillaHorario::desdeMascara);
+            if (horario.getServicio() == null) {
+                general.put(horario.getDiaSemana(), plantilla);
+            } else {
+                porServicio.computeIfAbsent(horario.getServicio().getIdServicio(),
+                        id -> new EnumMap<>(DayOfWeek.class)).put(horario.getDiaSemana(), plantilla);
+            }
+        }
+
+        Set<LocalDate> festivos = diaFestivoRepository.findAll().stream()
+                .map(DiaFestivo::getFecha)
+                .collect(Collectors.toUnmodifiableSet());
+
+        CalendarioCompilado anterior = calendario;
+        calendario = new CalendarioCompilado(general, porServicio, festivos, version);
+        if (!calendario.mismoContenido(anterior)) {
+            logger.info("Calendario de la clínica compilado: {} plantillas distintas, {} festivos",
+                    plantillas.size(), festivos.size());
+        }
+    }
+
+    /**
+     * Calcula la máscara de intervalos de atención de un horario, excluyendo el descanso.
+     */
+    private static long calcularMascara(HorarioAtencion horario) {
+        long mascara = 0L;
+        int apertura = minutoDelDia(horario.getHoraApertura());
+        int cierre = minutoDelDia(horario.getHoraCierre());
+        int inicioDescanso = horario.getInicioDescanso() != null ? minutoDelDia(horario.getInicioDescanso()) : -1;
+        int finDescanso = horario.getFinDescanso() != null ? minutoDelDia(horario.getFinDescanso()) : -1;
+
+        for (int minuto = apertura; minuto + DisponibilidadService.MINUTOS_POR_SLOT <= cierre;
+             minuto += DisponibilidadService.MINUTOS_POR_SLOT) {
+            boolean enDescanso = minuto < finDescanso && minuto + DisponibilidadService.MINUTOS_POR_SLOT > inicioDescanso;
+            if (!enDescanso) {
+                mascara |= 1L << (minuto / DisponibilidadService.MINUTOS_POR_SLOT);
+            }
+        }
+        return mascara;
+    }
+
+    private static int minutoDelDia(LocalTime hora) {
+        return hora.getHour() * 60 + hora.getMinute();
+    }
+
+    /**
+     * Indica si una hora cae en el inicio de un intervalo de agenda. Una hora intermedia
+     * dejaría fuera de la plantilla el intervalo parcial sin avisar al administrador.
+     */
+    private static boolean alineada(LocalTime hora) {
+        return hora.getSecond() == 0 && hora.getNano() == 0
+                && minutoDelDia(hora) % DisponibilidadService.MINUTOS_POR_SLOT == 0;
+    }
+
+    private static void validarHorario(HorarioAtencion horario) {
+        if (horario.getDiaSemana() == null || horario.getHoraApertura() == null || horario.getHoraCierre() == null) {
+            throw new IllegalArgumentException("El día, la hora de apertura y la hora de cierre son obligatorios");
+        }
+        if (!alineada(horario.getHoraApertura()) || !alineada(horario.getHoraCierre())
+                || (horario.getInicioDescanso() != null && !alineada(horario.getInicioDescanso()))
+                || (horario.getFinDescanso() != null && !alineada(horario.getFinDescanso()))) {
+            throw new IllegalArgumentException("Las horas deben coincidir con el inicio de un intervalo de "
+                    + DisponibilidadService.MINUTOS_POR_SLOT + " minutos (por ejemplo 08:00 u 08:30)");
+        }
+        if (!horario.getHoraApertura().isBefore(horario.getHoraCierre())) {
+            throw new IllegalArgumentException("La hora de apertura debe ser anterior a la hora de cierre");
+        }
+        if ((horario.getInicioDescanso() == null) != (horario.getFinDescanso() == null)) {
+            throw new IllegalArgumentException("El descanso debe tener hora de inicio y de fin");
+        }
+        if (horario.getInicioDescanso() != null
+                && (!horario.getInicioDescanso().isBefore(horario.getFinDescanso())
+                || horario.getInicioDescanso().isBefore(horario.getHoraApertura())
+                || horario.getFinDescanso().isAfter(horario.getHoraCierre()))) {
+            throw new IllegalArgumentException("El descanso debe estar dentro del horario de atención");
+        }
+    }
+
+    /**
+     * Crea el horario histórico de la clínica: lunes a viernes de 8:00 a 17:00 con descanso de 12:00 a 13:00.
+     */
+    private void crearHorarioPorDefecto() {
+        for (DayOfWeek dia : List.of(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY,
+                DayOfWeek.THURSDAY, DayOfWeek.FRIDAY)) {
+            HorarioAtencion horario = new HorarioAtencion();
+            horario.setDiaSemana(dia);
+            horario.setHoraApertura(LocalTime.of(8, 0));
+            horario.setHoraCierre(LocalTime.of(17, 0));
+            horario.setInicioDescanso(LocalTime.of(12, 0));
+            horario.setFinDescanso(LocalTime.of(13, 0));
+            horarioAtencionRepository.save(horario);
+        }
+        logger.info("Se creó el horario de atención por defecto");
+    }
+
+    /**
+     * Calendario compilado e inmutable.
+     */
+    private record CalendarioCompilado(Map<DayOfWeek, PlantillaHorario> general,
+                                       Map<Integer, Map<DayOfWeek, PlantillaHorario>> porServicio,
+                                       Set<LocalDate> festivos,
+                                       long version) {
+
+        static final CalendarioCompilado VACIO = new CalendarioCompilado(Map.of(), Map.of(), Set.of(), 0L);
+
+        PlantillaHorario plantilla(LocalDate fecha, Integer servicioId) {
+            if (festivos.contains(fecha)) {
+                return PlantillaHorario.CERRADO;
+            }
+            DayOfWeek dia = fecha.getDayOfWeek();
+            if (servicioId != null) {
+                Map<DayOfWeek, PlantillaHorario> propios = porServicio.get(servicioId);
+                if (propios != null && propios.containsKey(dia)) {
+                    return propios.get(dia);
+                }
+            }
+            return general.getOrDefault(dia, PlantillaHorario.CERRADO);
+        }
+
+        boolean abierto(LocalDate fecha) {
+            if (festivos.contains(fecha)) {
+                return false;
+            }
+            DayOfWeek dia = fecha.getDayOfWeek();
+            if (general.getOrDefault(dia, PlantillaHorario.CERRADO).mascara() != 0) {
+                return true;
+            }
+            for (Map<DayOfWeek, PlantillaHorario> propios : porServicio.values()) {
+                if (propios.getOrDefault(dia, PlantillaHorario.CERRADO).mascara() != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean mismoContenido(CalendarioCompilado otro) {
+            return general.equals(otro.general) && porServicio.equals(otro.porServicio)
+                    && festivos.equals(otro.festivos);
+        }
+    }
+}
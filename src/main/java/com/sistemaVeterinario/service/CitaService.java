@@ -1,19 +1,32 @@
 package com.sistemaVeterinario.service;
 
+import com.sistemaVeterinario.dto.HistorialCitaDTO;
+import com.sistemaVeterinario.dto.PaginaHistorialDTO;
 import com.sistemaVeterinario.models.Cita;
-import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.models.Servicio;
 import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * Servicio para la gestión de citas veterinarias.
@@ -22,34 +35,219 @@ import java.util.stream.Collectors;
 @Service
 public class CitaService {
 
+    // Cantidad de candados usados para serializar reservas del mismo horario
+    private static final int CANDADOS_RESERVA = 64;
+
+    // Citas por página del historial de una mascota
+    static final int TAMANIO_HISTORIAL = 10;
+
     @Autowired
     private CitaRepository citaRepository;
 
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private DisponibilidadService disponibilidadService;
+
+    @Autowired
+    private CalendarioClinicaService calendarioClinicaService;
+
+    @Autowired
+    private TransicionCitasService transicionCitasService;
+
+    @Autowired
+    private ActualizacionCitasPasadasService actualizacionCitasPasadasService;
+
+    @Autowired
+    private EventosCitaService eventosCitaService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Candados por franja: solo compiten entre sí las reservas que caen en la misma
+    private final Lock[] candadosReserva = new Lock[CANDADOS_RESERVA];
+
+    {
+        for (int i = 0; i < CANDADOS_RESERVA; i++) {
+            candadosReserva[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Resultado de intentar reservar un horario.
+     */
+    public enum ResultadoReserva {
+        RESERVADA, HORARIO_OCUPADO, FUERA_DE_HORARIO, MASCOTA_ELIMINADA
+    }
+
     /**
-     * Guarda una cita en la base de datos.
+     * Guarda una cita en la base de datos junto con su evento del ciclo de vida
+     * ({@link EventosCitaService}) y actualiza el índice de disponibilidad y el
+     * vencimiento de la cita.
      * @param cita La entidad Cita a guardar
      * @return La cita guardada
      */
     public Cita save(Cita cita) {
-        return citaRepository.save(cita);
+        return guardar(cita, false);
+    }
+
+    /**
+     * Guarda una cita como {@link #save(Cita)}, comprobando si se pide que su mascota no esté
+     * eliminada. La mascota queda bloqueada hasta confirmar, para no cruzarse con su eliminación.
+     * @return La cita guardada, o null si la mascota fue eliminada
+     */
+    private Cita guardar(Cita cita, boolean exigirMascotaActiva) {
+        cita.actualizarClaveReserva();
+        boolean nueva = cita.getIdCita() == null;
+
+        // La cita y su evento en la bandeja de salida se confirman juntos
+        Cita guardada = transactionTemplate.execute(estado -> {
+            // Sin mascota, la columna obligatoria rechaza la cita al guardarla
+            if (exigirMascotaActiva && cita.getMascota() != null
+                    && mascotaRepository.bloquearActiva(cita.getMascota().getIdMascota()).isEmpty()) {
+                return null;
+            }
+            // Horario guardado antes del cambio, para que los suscriptores actualicen también el anterior
+            LocalDateTime anterior = nueva ? null : citaRepository.findFechaHoraByIdCita(cita.getIdCita()).orElse(null);
+            // Solo un horario nuevo necesita su propio recordatorio
+            if (anterior != null && !anterior.equals(cita.getFechaHora())) {
+                cita.setRecordatorioEnviado(false);
+            }
+            Cita resultado = citaRepository.save(cita);
+            eventosCitaService.registrar(resultado, nueva, anterior);
+            disponibilidadService.marcarCambio(resultado.getFechaHora(), anterior);
+            return resultado;
+        });
+        if (guardada == null) {
+            return null;
+        }
+        disponibilidadService.registrar(guardada);
+        transicionCitasService.programar(guardada);
+        return guardada;
+    }
+
+    /**
+     * Reserva de forma atómica el horario de una cita nueva o reprogramada.
+     * Las reservas del mismo horario se serializan con un candado por franja y,
+     * como respaldo entre instancias, la restricción única sobre la clave de
+     * reserva impide que la base de datos acepte dos citas activas en él.
+     * @param cita La cita con fecha/hora y servicio ya asignados
+     * @return RESERVADA si se guardó, HORARIO_OCUPADO si otra cita ocupa el horario,
+     *         FUERA_DE_HORARIO si la hora no es el inicio de un intervalo o la clínica no
+     *         atiende el servicio a esa hora, MASCOTA_ELIMINADA si la mascota se eliminó mientras
+     *         tanto
+     */
+    public ResultadoReserva reservar(Cita cita) {
+        Integer servicioId = cita.getServicio().getIdServicio();
+        // La clave de reserva usa la hora exacta: solo se aceptan inicios de intervalo
+        LocalTime hora = cita.getFechaHora().toLocalTime();
+        if (!hora.equals(DisponibilidadService.horaDeSlot(DisponibilidadService.indiceSlot(hora)))) {
+            return ResultadoReserva.FUERA_DE_HORARIO;
+        }
+        // Recoge los cambios de calendario que otra instancia hizo desde la última comparación
+        calendarioClinicaService.sincronizar();
+        if (!calendarioClinicaService.obtenerPlantilla(cita.getFechaHora().toLocalDate(), servicioId)
+                .incluye(DisponibilidadService.indiceSlot(cita.getFechaHora().toLocalTime()))) {
+            return ResultadoReserva.FUERA_DE_HORARIO;
+        }
+
+        Lock candado = candadosReserva[Math.floorMod(
+                Objects.hash(servicioId, cita.getFechaHora()), CANDADOS_RESERVA)];
+
+        candado.lock();
+        try {
+            // Recoge los cambios que otra instancia hizo en el día desde la última sincronización
+            disponibilidadService.sincronizar(cita.getFechaHora().toLocalDate());
+            if (disponibilidadService.estaOcupado(cita.getIdCita(), cita.getFechaHora(), servicioId)) {
+                return ResultadoReserva.HORARIO_OCUPADO;
+            }
+            if (guardar(cita, true) == null) {
+                return ResultadoReserva.MASCOTA_ELIMINADA;
+            }
+            return ResultadoReserva.RESERVADA;
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia reservó el mismo horario antes que esta; cualquier otra violación es un error
+            if (!violaClaveReserva(e)) {
+                throw e;
+            }
+            return ResultadoReserva.HORARIO_OCUPADO;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Indica si una violación de integridad se debe a la restricción única de la clave de
+     * reserva. El nombre de la restricción lo extrae Hibernate del mensaje de cada base de datos,
+     * con o sin el nombre de la tabla como prefijo.
+     */
+    private static boolean violaClaveReserva(DataIntegrityViolationException e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ConstraintViolationException violacion && violacion.getConstraintName() != null) {
+                return violacion.getConstraintName().toLowerCase(Locale.ROOT).contains(Cita.RESTRICCION_CLAVE_RESERVA);
+            }
+        }
+        return false;
     }
 
     /**
-     * Busca una cita por su ID.
+     * Busca una cita por su ID, con su mascota y su servicio.
      * @param id El ID de la cita
      * @return La cita encontrada o null si no existe
      */
     public Cita findById(Integer id) {
-        return citaRepository.findById(id).orElse(null);
+        return citaRepository.findConDetallesByIdCita(id).orElse(null);
     }
 
     /**
      * Obtiene las citas asociadas a un propietario específico.
-     * @param propietario El propietario de las mascotas (opcional)
+     * @param idUsuario El ID del propietario de las mascotas
      * @return Lista de citas del propietario
      */
-    public List<Cita> findByPropietario(Optional<Usuario> propietario) {
-        return citaRepository.findByMascotaPropietario(propietario);
+    public List<Cita> findByPropietario(Integer idUsuario) {
+        return citaRepository.findByMascotaPropietarioIdUsuario(idUsuario);
+    }
+
+    /**
+     * Obtiene una página del historial de citas de una mascota, de la más reciente a la más
+     * antigua, paginada por clave: la consulta lee solo las filas de la página.
+     * @param idMascota ID de la mascota
+     * @param estado Estado de las citas, o null para todos
+     * @param idServicio ID del servicio, o null para todos
+     * @param cursor Cursor de la página anterior, o null para la primera
+     * @return Citas de la página y cursor de la siguiente
+     */
+    public PaginaHistorialDTO obtenerHistorial(Integer idMascota, Cita.EstadoCita estado, Integer idServicio,
+                                               String cursor) {
+        LocalDateTime fechaHora = null;
+        Integer idCita = null;
+        String[] posicion = decodificarCursor(cursor);
+        if (posicion != null) {
+            fechaHora = LocalDateTime.parse(posicion[0]);
+            idCita = Integer.valueOf(posicion[1]);
+        }
+
+        // Se pide una fila de más para saber si existe una página siguiente
+        List<HistorialCitaDTO> citas = citaRepository.findHistorial(idMascota, estado, idServicio,
+                fechaHora, idCita, PageRequest.of(0, TAMANIO_HISTORIAL + 1));
+        String siguiente = null;
+        if (citas.size() > TAMANIO_HISTORIAL) {
+            citas = citas.subList(0, TAMANIO_HISTORIAL);
+            HistorialCitaDTO ultima = citas.get(TAMANIO_HISTORIAL - 1);
+            siguiente = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (ultima.fechaHora() + "|" + ultima.idCita()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new PaginaHistorialDTO(citas, siguiente);
+    }
+
+    /**
+     * Obtiene los servicios que aparecen en el historial de una mascota, para filtrar por ellos.
+     * @param idMascota ID de la mascota
+     * @return Servicios ordenados por nombre
+     */
+    public List<Servicio> obtenerServiciosHistorial(Integer idMascota) {
+        return citaRepository.findServiciosDeMascota(idMascota);
     }
 
     /**
@@ -59,47 +257,109 @@ public class CitaService {
      * @return Lista de horarios disponibles
      */
     public List<LocalTime> obtenerHorariosDisponibles(LocalDate fecha, Integer servicioId) {
-        // Generar todos los horarios posibles (cada 30 minutos de 8:00 a 17:00)
-        List<LocalTime> todosLosHorarios = new ArrayList<>();
-        for (int hora = 8; hora < 17; hora++) {
-            todosLosHorarios.add(LocalTime.of(hora, 0));
-            todosLosHorarios.add(LocalTime.of(hora, 30));
+        CalendarioClinicaService.PlantillaHorario plantilla = calendarioClinicaService.obtenerPlantilla(fecha, servicioId);
+        long libres = obtenerHorariosLibres(fecha, servicioId);
+
+        List<LocalTime> disponibles = new ArrayList<>(Long.bitCount(libres));
+        for (LocalTime horario : plantilla.horas()) {
+            if ((libres & (1L << DisponibilidadService.indiceSlot(horario))) != 0) {
+                disponibles.add(horario);
+            }
         }
+        return disponibles;
+    }
 
-        // Obtiene el rango completo del día
-        LocalDateTime inicioDia = LocalDateTime.of(fecha, LocalTime.of(0, 0));
-        LocalDateTime finDia = LocalDateTime.of(fecha, LocalTime.of(23, 59));
+    /**
+     * Obtiene la plantilla de horarios de atención de una fecha.
+     * @param fecha La fecha consultada
+     * @param servicioId El ID del servicio (opcional para usar el horario general)
+     * @return Plantilla compartida con los horarios de atención del día
+     */
+    public CalendarioClinicaService.PlantillaHorario obtenerPlantillaHorarios(LocalDate fecha, Integer servicioId) {
+        return calendarioClinicaService.obtenerPlantilla(fecha, servicioId);
+    }
 
-        // Consulta citas existentes
-        List<Cita> citasProgramadas;
-        if (servicioId != null) {
-            citasProgramadas = citaRepository.findByFechaHoraBetweenAndServicioIdServicio(inicioDia, finDia, servicioId);
-        } else {
-            citasProgramadas = citaRepository.findByFechaHoraBetween(inicioDia, finDia);
-        }
+    /**
+     * Calcula los intervalos libres de una fecha: los de atención que no están ocupados.
+     * @param fecha La fecha consultada
+     * @param servicioId El ID del servicio (opcional para filtrar por servicio)
+     * @return Máscara de bits con los intervalos libres
+     */
+    public long obtenerHorariosLibres(LocalDate fecha, Integer servicioId) {
+        long atencion = calendarioClinicaService.obtenerPlantilla(fecha, servicioId).mascara();
+        return atencion & ~disponibilidadService.obtenerOcupados(fecha, servicioId);
+    }
 
-        // Extrae horarios ocupados
-        List<LocalTime> horariosOcupados = citasProgramadas.stream()
-                .map(cita -> cita.getFechaHora().toLocalTime())
-                .collect(Collectors.toList());
+    /**
+     * Obtiene las fechas en las que se pueden agendar citas, según el calendario de la clínica.
+     * @param desde Primera fecha a considerar
+     * @param dias Cantidad de días a revisar
+     * @return Fechas con atención dentro del rango
+     */
+    public List<LocalDate> obtenerFechasReservables(LocalDate desde, int dias) {
+        return calendarioClinicaService.obtenerFechasReservables(desde, dias);
+    }
 
-        // Filtra horarios disponibles
-        return todosLosHorarios.stream()
-                .filter(horario -> !horariosOcupados.contains(horario))
-                .collect(Collectors.toList());
+    /**
+     * Obtiene la versión actual de la disponibilidad de una fecha para validar cachés HTTP.
+     * @param fecha La fecha consultada
+     * @param servicioId El ID del servicio (opcional para filtrar por servicio)
+     * @return ETag fuerte de la disponibilidad, o null si la fecha no se puede versionar
+     */
+    public String obtenerEtagHorarios(LocalDate fecha, Integer servicioId) {
+        return disponibilidadService.obtenerEtag(fecha, servicioId);
     }
 
     /**
-     * Actualiza automáticamente el estado de citas pasadas a "Completada".
+     * Obtiene los intervalos ocupados de cada día de un rango de fechas.
+     * @param desde Primera fecha del rango (inclusive)
+     * @param hasta Última fecha del rango (inclusive)
+     * @param servicioId El ID del servicio (opcional para filtrar por servicio)
+     * @return Mapa ordenado por fecha con la máscara de intervalos ocupados
+     */
+    public Map<LocalDate, Long> obtenerOcupadosRango(LocalDate desde, LocalDate hasta, Integer servicioId) {
+        return disponibilidadService.obtenerOcupadosRango(desde, hasta, servicioId);
+    }
+
+    /**
+     * Actualiza automáticamente el estado de citas terminadas a "Completada".
+     * Es el respaldo de {@link TransicionCitasService} para las citas que quedaron
+     * fuera de la rueda, por ejemplo mientras la aplicación estaba detenida.
+     * Se ejecuta por lotes con {@link ActualizacionCitasPasadasService}.
      * @return Número de citas actualizadas
      */
-    @Transactional
     public int actualizarCitasPasadas() {
-        LocalDateTime ahora = LocalDateTime.now();
+        return actualizarCitasPasadas(() -> true);
+    }
 
-        return citaRepository.actualizarCitasPasadas(
-                Cita.EstadoCita.Completada,
-                Cita.EstadoCita.Programada,
-                ahora);
+    /**
+     * Actualiza las citas terminadas deteniéndose entre lotes si la condición deja de cumplirse.
+     * @param continuar Condición comprobada antes de cada lote, por ejemplo seguir siendo líder
+     * @return Número de citas actualizadas
+     */
+    public int actualizarCitasPasadas(BooleanSupplier continuar) {
+        LocalDateTime inicioMaximo = LocalDateTime.now().minusMinutes(DisponibilidadService.MINUTOS_POR_SLOT);
+
+        return actualizacionCitasPasadasService.ejecutar(inicioMaximo, continuar);
+    }
+
+    /**
+     * @return Fecha/hora e ID de la última cita, o null si el cursor falta o no es válido
+     */
+    private static String[] decodificarCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            if (partes.length != 2) {
+                return null;
+            }
+            LocalDateTime.parse(partes[0]);
+            Integer.parseInt(partes[1]);
+            return partes;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
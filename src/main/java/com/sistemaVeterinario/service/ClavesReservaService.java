@@ -0,0 +1,106 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.HorarioOcupadoDTO;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.repository.CitaRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Completa la clave de reserva de las citas guardadas antes de que existiera la columna
+ * {@code clave_reserva}. La clave solo se calcula al guardar una cita, así que sin este paso
+ * las citas existentes quedarían fuera de la restricción única que impide reservar dos veces
+ * el mismo horario.
+ *
+ * <p>Se ejecuta al iniciar la aplicación, antes de atender peticiones, en bloques por ID con
+ * una transacción por bloque. Si la tabla ya tenía dos citas activas en el mismo horario, solo
+ * la de menor ID recibe la clave; las demás se registran en el log para revisarlas. Varias
+ * instancias pueden ejecutarlo a la vez: cada cita solo se actualiza si su clave sigue nula.</p>
+ */
+@Service
+public class ClavesReservaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClavesReservaService.class);
+
+    // Citas completadas por cada transacción
+    private static final int TAMANIO_BLOQUE = 500;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Asigna la clave de reserva a todas las citas no canceladas que no la tienen.
+     * @return Número de citas actualizadas
+     */
+    @PostConstruct
+    public int completarClavesFaltantes() {
+        int actualizadas = 0;
+        int duplicadas = 0;
+        Integer ultimoId = 0;
+        List<HorarioOcupadoDTO> bloque;
+        do {
+            bloque = citaRepository.findSinClaveReserva(ultimoId, PageRequest.of(0, TAMANIO_BLOQUE));
+            if (bloque.isEmpty()) {
+                break;
+            }
+            ultimoId = bloque.get(bloque.size() - 1).idCita();
+
+            // La primera cita de cada horario conserva la clave; el resto son duplicados previos
+            Map<String, Integer> porClave = new LinkedHashMap<>();
+            List<Integer> repetidas = new ArrayList<>();
+            for (HorarioOcupadoDTO cita : bloque) {
+                if (porClave.putIfAbsent(Cita.claveReserva(cita.idServicio(), cita.fechaHora()), cita.idCita()) != null) {
+                    repetidas.add(cita.idCita());
+                }
+            }
+            try {
+                Integer filas = transactionTemplate.execute(estado -> asignar(porClave, repetidas));
+                actualizadas += filas != null ? filas : 0;
+            } catch (DataIntegrityViolationException e) {
+                logger.warn("No se pudieron completar las claves de reserva de las citas {} a {}: {}",
+                        bloque.get(0).idCita(), ultimoId, e.getMessage());
+            }
+            duplicadas += repetidas.size();
+            if (!repetidas.isEmpty()) {
+                logger.warn("Citas activas en un horario ya ocupado, se dejan sin clave de reserva: {}", repetidas);
+            }
+        } while (bloque.size() == TAMANIO_BLOQUE);
+
+        if (actualizadas > 0 || duplicadas > 0) {
+            logger.info("Claves de reserva completadas: {} citas ({} en horarios duplicados)", actualizadas, duplicadas);
+        }
+        return actualizadas;
+    }
+
+    /**
+     * Asigna las claves de un bloque que no estén ya en uso por otra cita.
+     */
+    private int asignar(Map<String, Integer> porClave, List<Integer> repetidas) {
+        Set<String> asignadas = new HashSet<>(citaRepository.findClavesReservaAsignadas(porClave.keySet()));
+        int filas = 0;
+        for (Map.Entry<String, Integer> entrada : porClave.entrySet()) {
+            if (asignadas.contains(entrada.getKey())) {
+                repetidas.add(entrada.getValue());
+            } else {
+                filas += citaRepository.asignarClaveReserva(entrada.getValue(), entrada.getKey());
+            }
+        }
+        return filas;
+    }
+}
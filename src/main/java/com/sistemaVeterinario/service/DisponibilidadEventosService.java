@@ -0,0 +1,312 @@
+package com.sistemaVeterinario.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servicio que envía por Server-Sent Events los cambios de disponibilidad de horarios.
+ *
+ * <p>Cada suscriptor escucha una fecha y un servicio (o todos los servicios). Publicar un
+ * cambio solo encola el evento en el búfer acotado de cada suscriptor; el envío a la red
+ * lo hace un hilo virtual por suscriptor con eventos pendientes, de modo que quien guarda la
+ * cita nunca espera a los clientes y un cliente que no lee no retiene a los demás. Si un
+ * suscriptor se atrasa y su búfer se llena, se descartan sus eventos pendientes y se le pide
+ * recargar la disponibilidad completa. Si un envío queda bloqueado más de
+ * {@value #TIEMPO_MAX_ENVIO_MS} ms, la conexión se descarta y el navegador se reconecta.</p>
+ *
+ * <p>Además del límite global, cada usuario puede tener como mucho
+ * {@value #MAX_SUSCRIPTORES_POR_USUARIO} conexiones abiertas, para que una sola cuenta no agote
+ * las conexiones de todos.</p>
+ */
+@Service
+public class DisponibilidadEventosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DisponibilidadEventosService.class);
+
+    // Eventos pendientes que puede acumular cada suscriptor
+    private static final int CAPACIDAD_BUFER = 32;
+
+    // Máximo de conexiones abiertas simultáneamente
+    private static final int MAX_SUSCRIPTORES = 2000;
+
+    // Máximo de conexiones abiertas por usuario, suficiente para varias pestañas
+    static final int MAX_SUSCRIPTORES_POR_USUARIO = 8;
+
+    // Las conexiones se cierran tras 30 minutos; el navegador se reconecta solo
+    private static final long TIEMPO_CONEXION_MS = 30 * 60 * 1000L;
+
+    // Tiempo máximo que puede tardar un envío antes de descartar la conexión
+    private static final long TIEMPO_MAX_ENVIO_MS = 10 * 1000L;
+
+    private final Map<Canal, Set<Suscriptor>> suscriptores = new ConcurrentHashMap<>();
+    private final AtomicInteger totalSuscriptores = new AtomicInteger();
+    private final Map<Integer, AtomicInteger> suscriptoresPorUsuario = new ConcurrentHashMap<>();
+
+    // Un envío bloqueado solo retiene su propio hilo virtual
+    private final ExecutorService envios = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("sse-disponibilidad-", 0).factory());
+
+    /**
+     * Registra un nuevo suscriptor para los cambios de una fecha y servicio.
+     * @param fecha La fecha observada
+     * @param servicioId El ID del servicio, o null para todos los servicios
+     * @param idUsuario El ID del usuario que abre la conexión
+     * @return El emisor SSE asociado a la conexión, o null si se alcanzó el límite de conexiones
+     *         global o el del usuario
+     */
+    public SseEmitter suscribir(LocalDate fecha, Integer servicioId, Integer idUsuario) {
+        if (!reservarConexion(idUsuario)) {
+            return null;
+        }
+        if (totalSuscriptores.incrementAndGet() > MAX_SUSCRIPTORES) {
+            totalSuscriptores.decrementAndGet();
+            liberarConexion(idUsuario);
+            return null;
+        }
+
+        Canal canal = new Canal(fecha, servicioId);
+        SseEmitter emitter = new SseEmitter(TIEMPO_CONEXION_MS);
+        Suscriptor suscriptor = new Suscriptor(canal, emitter, idUsuario);
+
+        suscriptores.computeIfAbsent(canal, c -> ConcurrentHashMap.newKeySet()).add(suscriptor);
+        emitter.onCompletion(() -> desuscribir(suscriptor));
+        emitter.onTimeout(() -> desuscribir(suscriptor));
+        emitter.onError(error -> desuscribir(suscriptor));
+        return emitter;
+    }
+
+    /**
+     * Publica el nuevo estado de un horario a los suscriptores de la fecha y servicio.
+     * No bloquea: el evento solo se encola.
+     * @param fecha La fecha del horario
+     * @param servicioId El ID del servicio, o null para el canal de todos los servicios
+     * @param hora La hora de inicio del horario
+     * @param disponible Si el horario quedó libre
+     */
+    public void publicar(LocalDate fecha, Integer servicioId, LocalTime hora, boolean disponible) {
+        Set<Suscriptor> destinatarios = suscriptores.get(new Canal(fecha, servicioId));
+        if (destinatarios == null || destinatarios.isEmpty()) {
+            return;
+        }
+
+        Evento evento = new Evento("horario", Map.of("hora", hora.toString(), "disponible", disponible));
+        for (Suscriptor suscriptor : destinatarios) {
+            suscriptor.encolar(evento);
+        }
+    }
+
+    /**
+     * Envía periódicamente un comentario a cada conexión para detectar clientes desconectados
+     * y evitar que los proxys cierren conexiones inactivas.
+     */
+    @Scheduled(fixedRate = 25 * 1000)
+    public void enviarLatidos() {
+        for (Set<Suscriptor> canal : suscriptores.values()) {
+            for (Suscriptor suscriptor : canal) {
+                suscriptor.encolar(Evento.LATIDO);
+            }
+        }
+    }
+
+    /**
+     * Descarta las conexiones cuyo envío en curso lleva más del tiempo máximo bloqueado,
+     * por ejemplo porque el cliente dejó de leer sin cerrar la conexión.
+     */
+    @Scheduled(fixedRate = 5 * 1000)
+    public void descartarLentos() {
+        long ahora = System.nanoTime();
+        for (Set<Suscriptor> canal : suscriptores.values()) {
+            for (Suscriptor suscriptor : canal) {
+                if (suscriptor.bloqueado(ahora)) {
+                    suscriptor.descartar();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cantidad de conexiones abiertas.
+     * @return Número de suscriptores activos
+     */
+    public int contarSuscriptores() {
+        return totalSuscriptores.get();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        envios.shutdownNow();
+    }
+
+    /**
+     * Cantidad de conexiones abiertas por un usuario.
+     * @param idUsuario El ID del usuario
+     * @return Número de suscriptores activos del usuario
+     */
+    public int contarSuscriptores(Integer idUsuario) {
+        AtomicInteger conexiones = suscriptoresPorUsuario.get(idUsuario);
+        return conexiones != null ? conexiones.get() : 0;
+    }
+
+    // Cuenta una conexión más del usuario si no supera su límite
+    private boolean reservarConexion(Integer idUsuario) {
+        boolean[] reservada = {false};
+        suscriptoresPorUsuario.compute(idUsuario, (id, conexiones) -> {
+            AtomicInteger actual = conexiones != null ? conexiones : new AtomicInteger();
+            if (actual.get() < MAX_SUSCRIPTORES_POR_USUARIO) {
+                actual.incrementAndGet();
+                reservada[0] = true;
+            }
+            return actual.get() > 0 ? actual : null;
+        });
+        return reservada[0];
+    }
+
+    private void liberarConexion(Integer idUsuario) {
+        suscriptoresPorUsuario.computeIfPresent(idUsuario,
+                (id, conexiones) -> conexiones.decrementAndGet() > 0 ? conexiones : null);
+    }
+
+    private void desuscribir(Suscriptor suscriptor) {
+        Set<Suscriptor> canal = suscriptores.get(suscriptor.canal);
+        if (canal != null && canal.remove(suscriptor)) {
+            totalSuscriptores.decrementAndGet();
+            liberarConexion(suscriptor.idUsuario);
+            if (canal.isEmpty()) {
+                suscriptores.remove(suscriptor.canal, canal);
+            }
+        }
+    }
+
+    /**
+     * Fecha y servicio observados por un grupo de suscriptores.
+     */
+    private record Canal(LocalDate fecha, Integer servicioId) {
+    }
+
+    /**
+     * Evento pendiente de envío. Un nombre nulo representa un comentario de latido.
+     */
+    private record Evento(String nombre, Object datos) {
+        static final Evento LATIDO = new Evento(null, "latido");
+        static final Evento RESINCRONIZAR = new Evento("resincronizar", Map.of());
+    }
+
+    /**
+     * Conexión abierta con su búfer acotado de eventos pendientes.
+     */
+    private final class Suscriptor {
+
+        private final Canal canal;
+        private final SseEmitter emitter;
+        private final Integer idUsuario;
+        private final Queue<Evento> pendientes = new ArrayBlockingQueue<>(CAPACIDAD_BUFER);
+        private final AtomicBoolean enviando = new AtomicBoolean();
+
+        // Inicio (System.nanoTime) del envío en curso, o 0 si no hay ninguno
+        private volatile long inicioEnvio;
+        private volatile boolean descartado;
+
+        Suscriptor(Canal canal, SseEmitter emitter, Integer idUsuario) {
+            this.canal = canal;
+            this.emitter = emitter;
+            this.idUsuario = idUsuario;
+        }
+
+        void encolar(Evento evento) {
+            if (descartado) {
+                return;
+            }
+            if (!pendientes.offer(evento)) {
+                if (bloqueado(System.nanoTime())) {
+                    descartar();
+                    return;
+                }
+                // Suscriptor lento: se descarta lo pendiente y se pide recargar todo
+                pendientes.clear();
+                pendientes.offer(Evento.RESINCRONIZAR);
+            }
+            programarEnvio();
+        }
+
+        boolean bloqueado(long ahora) {
+            long inicio = inicioEnvio;
+            return inicio != 0 && ahora - inicio > TimeUnit.MILLISECONDS.toNanos(TIEMPO_MAX_ENVIO_MS);
+        }
+
+        /**
+         * Deja de enviar a la conexión y la cierra. El cierre espera a que termine el envío
+         * bloqueado, por lo que se hace en otro hilo virtual.
+         */
+        void descartar() {
+            if (descartado) {
+                return;
+            }
+            descartado = true;
+            pendientes.clear();
+            desuscribir(this);
+            logger.debug("Suscriptor SSE descartado: un envío tardó más de {} ms", TIEMPO_MAX_ENVIO_MS);
+            try {
+                envios.execute(emitter::complete);
+            } catch (RuntimeException e) {
+                logger.debug("No se pudo cerrar el suscriptor SSE descartado: {}", e.getMessage());
+            }
+        }
+
+        private void programarEnvio() {
+            if (enviando.compareAndSet(false, true)) {
+                try {
+                    envios.execute(this::enviarPendientes);
+                } catch (RuntimeException e) {
+                    enviando.set(false);
+                }
+            }
+        }
+
+        private void enviarPendientes() {
+            try {
+                Evento evento;
+                while (!descartado && (evento = pendientes.poll()) != null) {
+                    inicioEnvio = System.nanoTime();
+                    if (evento.nombre() == null) {
+                        emitter.send(SseEmitter.event().comment(Objects.toString(evento.datos())));
+                    } else {
+                        emitter.send(SseEmitter.event().name(evento.nombre()).data(evento.datos()));
+                    }
+                    inicioEnvio = 0;
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Suscriptor SSE desconectado: {}", e.getMessage());
+                desuscribir(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                inicioEnvio = 0;
+                enviando.set(false);
+            }
+
+            // Eventos que llegaron mientras se liberaba la bandera
+            if (!descartado && !pendientes.isEmpty()) {
+                programarEnvio();
+            }
+        }
+    }
+}
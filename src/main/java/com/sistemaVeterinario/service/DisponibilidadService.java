@@ -0,0 +1,508 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.HorarioOcupadoDTO;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.VersionDisponibilidad;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.VersionDisponibilidadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice en memoria de los horarios ocupados por fecha y servicio.
+ *
+ * <p>Cada día del horizonte reservable se representa con una máscara de bits por servicio,
+ * donde el bit {@code i} indica que el intervalo de 30 minutos número {@code i} del día
+ * está ocupado. El índice se reconstruye desde la base de datos al iniciar la aplicación
+ * y se actualiza de forma incremental cada vez que {@link CitaService} guarda una cita.</p>
+ *
+ * <p>Para que varias instancias compartan la misma base de datos, cada cambio incrementa en su
+ * transacción la versión del día en {@code versiones_disponibilidad}. Antes de validar una
+ * reserva se compara la versión de ese día, por lo que las reservas nunca deciden con un día
+ * desactualizado. El resto del horizonte se compara cada
+ * {@code veterinaria.disponibilidad.sincronizacion-ms} (30 segundos por defecto): ese intervalo
+ * es el retraso máximo con el que la matriz de horarios y los suscriptores de esta instancia ven
+ * un cambio hecho en otra. La versión compartida forma parte del ETag, por lo que una respuesta
+ * en caché deja de ser válida en todos los nodos.</p>
+ */
+@Service
+public class DisponibilidadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DisponibilidadService.class);
+
+    /** Duración de cada intervalo de agenda en minutos. */
+    public static final int MINUTOS_POR_SLOT = 30;
+
+    /** Cantidad de intervalos en un día completo (cabe en un {@code long}). */
+    public static final int SLOTS_POR_DIA = 24 * 60 / MINUTOS_POR_SLOT;
+
+    /** Días mantenidos en memoria: hoy más los 14 días que ofrece el formulario de reserva. */
+    public static final int HORIZONTE_DIAS = 15;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private DisponibilidadEventosService disponibilidadEventosService;
+
+    @Autowired
+    private CalendarioClinicaService calendarioClinicaService;
+
+    @Autowired
+    private VersionDisponibilidadRepository versionDisponibilidadRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Ocupación de cada día cargado en memoria
+    private final Map<LocalDate, OcupacionDia> dias = new ConcurrentHashMap<>();
+
+    // Último intervalo registrado para cada cita, necesario para mover o cancelar
+    private final Map<Integer, SlotReservado> slotPorCita = new ConcurrentHashMap<>();
+
+    // Última versión compartida conocida de cada día del horizonte
+    private final Map<LocalDate, Long> versiones = new ConcurrentHashMap<>();
+
+    /**
+     * Obtiene la máscara de intervalos ocupados de una fecha.
+     * @param fecha La fecha a consultar
+     * @param servicioId El ID del servicio, o null para considerar todos los servicios
+     * @return Máscara de bits con los intervalos ocupados
+     */
+    public long obtenerOcupados(LocalDate fecha, Integer servicioId) {
+        if (!dentroDelHorizonte(fecha)) {
+            // Fuera del horizonte se consulta directamente la base de datos sin cachear
+            return cargarDia(fecha, false).ocupados(servicioId);
+        }
+        return dias.computeIfAbsent(fecha, f -> cargarDia(f, true)).ocupados(servicioId);
+    }
+
+    /**
+     * Genera una etiqueta de versión (ETag fuerte) para la disponibilidad de una fecha.
+     * Se forma solo con datos compartidos (la versión del día, la del calendario, la fecha y el
+     * servicio), por lo que todas las instancias dan la misma etiqueta para el mismo estado y
+     * sobrevive a los reinicios. Antes de formarla se recargan el día y el calendario si otra
+     * instancia los cambió, para que la respuesta que la acompaña no sea más antigua que ella.
+     * @param fecha La fecha consultada
+     * @param servicioId El ID del servicio, o null para considerar todos los servicios
+     * @return La etiqueta entre comillas, o null si la fecha está fuera del horizonte en memoria
+     */
+    public String obtenerEtag(LocalDate fecha, Integer servicioId) {
+        if (!dentroDelHorizonte(fecha)) {
+            return null;
+        }
+        calendarioClinicaService.sincronizar();
+        long version = sincronizar(fecha);
+        return "\"" + calendarioClinicaService.getVersion() + "-" + fecha
+                + "-" + (servicioId != null ? servicioId : "todos") + "-" + version + "\"";
+    }
+
+    /**
+     * Indica si un horario está ocupado por una cita distinta a la indicada.
+     * @param idCita El ID de la cita que se quiere ubicar (null si es nueva)
+     * @param fechaHora La fecha y hora solicitadas
+     * @param servicioId El ID del servicio solicitado
+     * @return true si otra cita ocupa ese horario para el servicio
+     */
+    public boolean estaOcupado(Integer idCita, LocalDateTime fechaHora, Integer servicioId) {
+        int slot = indiceSlot(fechaHora.toLocalTime());
+        if ((obtenerOcupados(fechaHora.toLocalDate(), servicioId) & (1L << slot)) == 0) {
+            return false;
+        }
+        // El horario lo ocupa la misma cita que se está guardando de nuevo
+        SlotReservado propio = idCita != null ? slotPorCita.get(idCita) : null;
+        return propio == null || !propio.equals(
+                new SlotReservado(fechaHora.toLocalDate(), servicioId, slot));
+    }
+
+    /**
+     * Obtiene las máscaras de intervalos ocupados de un rango de fechas.
+     * Los días del horizonte que aún no están en memoria se cargan con una
+     * única consulta de rango.
+     * @param desde Primera fecha del rango (inclusive)
+     * @param hasta Última fecha del rango (inclusive)
+     * @param servicioId El ID del servicio, o null para considerar todos los servicios
+     * @return Mapa ordenado por fecha con la máscara de intervalos ocupados de cada día
+     */
+    public Map<LocalDate, Long> obtenerOcupadosRango(LocalDate desde, LocalDate hasta, Integer servicioId) {
+        Map<LocalDate, OcupacionDia> faltantes = new HashMap<>();
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            if (!dias.containsKey(fecha)) {
+                faltantes.put(fecha, new OcupacionDia());
+            }
+        }
+
+        if (!faltantes.isEmpty()) {
+            cargarRango(desde, hasta, faltantes);
+        }
+
+        Map<LocalDate, Long> resultado = new TreeMap<>();
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            OcupacionDia dia = dias.getOrDefault(fecha, faltantes.get(fecha));
+            resultado.put(fecha, dia.ocupados(servicioId));
+        }
+        return resultado;
+    }
+
+    /**
+     * Registra en el índice el estado actual de una cita recién guardada.
+     * Libera el intervalo anterior de la cita (si lo tenía) y ocupa el nuevo
+     * salvo que la cita esté cancelada.
+     * @param cita La cita guardada
+     */
+    public void registrar(Cita cita) {
+        if (cita.getIdCita() == null) {
+            return;
+        }
+
+        SlotReservado nuevo = null;
+        if (cita.getEstado() != Cita.EstadoCita.Cancelada
+                && cita.getFechaHora() != null && cita.getServicio() != null
+                && dentroDelHorizonte(cita.getFechaHora().toLocalDate())) {
+            nuevo = new SlotReservado(cita.getFechaHora().toLocalDate(), cita.getServicio().getIdServicio(),
+                    indiceSlot(cita.getFechaHora().toLocalTime()));
+        }
+
+        SlotReservado anterior = slotPorCita.remove(cita.getIdCita());
+        if (anterior != null && !anterior.equals(nuevo)) {
+            OcupacionDia dia = dias.get(anterior.fecha());
+            if (dia != null) {
+                dia.liberar(anterior.servicioId(), anterior.slot());
+                notificar(anterior, dia, true);
+            }
+        }
+
+        if (nuevo == null) {
+            return;
+        }
+
+        OcupacionDia dia = dias.computeIfAbsent(nuevo.fecha(), f -> cargarDia(f, true));
+        dia.ocupar(nuevo.servicioId(), nuevo.slot());
+        slotPorCita.put(cita.getIdCita(), nuevo);
+        if (!nuevo.equals(anterior)) {
+            notificar(nuevo, dia, false);
+        }
+    }
+
+    /**
+     * Libera en el índice los horarios de un lote de citas canceladas en bloque, sin
+     * necesidad de cargarlas.
+     * @param idsCita IDs de las citas canceladas
+     */
+    public void liberar(Collection<Integer> idsCita) {
+        for (Integer idCita : idsCita) {
+            SlotReservado anterior = slotPorCita.remove(idCita);
+            if (anterior == null) {
+                continue;
+            }
+            OcupacionDia dia = dias.get(anterior.fecha());
+            if (dia != null) {
+                dia.liberar(anterior.servicioId(), anterior.slot());
+                notificar(anterior, dia, true);
+            }
+        }
+    }
+
+    /**
+     * Incrementa la versión compartida de los días afectados por el cambio de una cita, para
+     * que las demás instancias vuelvan a cargarlos. Debe llamarse dentro de la transacción que
+     * guarda la cita.
+     * @param fechaHora Fecha y hora actual de la cita
+     * @param fechaHoraAnterior Fecha y hora que tenía antes del cambio, o null
+     */
+    public void marcarCambio(LocalDateTime fechaHora, LocalDateTime fechaHoraAnterior) {
+        Set<LocalDate> fechas = new HashSet<>(2);
+        fechas.add(fechaHora.toLocalDate());
+        if (fechaHoraAnterior != null) {
+            fechas.add(fechaHoraAnterior.toLocalDate());
+        }
+        for (LocalDate fecha : fechas) {
+            if (dentroDelHorizonte(fecha)) {
+                versionDisponibilidadRepository.incrementar(fecha);
+            }
+        }
+    }
+
+    /**
+     * Incrementa con una sola sentencia la versión compartida de los días de un lote de citas
+     * modificadas en bloque. Debe llamarse dentro de la transacción que las modifica.
+     * @param idsCita IDs de las citas modificadas
+     */
+    public void marcarCambio(Collection<Integer> idsCita) {
+        if (idsCita.isEmpty()) {
+            return;
+        }
+        LocalDate hoy = LocalDate.now();
+        versionDisponibilidadRepository.incrementarPorCitas(idsCita, hoy.atStartOfDay(),
+                hoy.plusDays(HORIZONTE_DIAS).atStartOfDay());
+    }
+
+    /**
+     * Compara las versiones compartidas del horizonte con las conocidas y vuelve a cargar los
+     * días que cambió otra instancia (o esta misma, sin efecto visible). Es una sola consulta
+     * por rango, con un intervalo amplio para no cargar la base de datos desde cada nodo.
+     */
+    @Scheduled(fixedDelayString = "${veterinaria.disponibilidad.sincronizacion-ms:30000}",
+            initialDelayString = "${veterinaria.disponibilidad.sincronizacion-ms:30000}")
+    public void sincronizar() {
+        LocalDate hoy = LocalDate.now();
+        for (VersionDisponibilidad remota : versionDisponibilidadRepository.findByFechaBetween(
+                hoy, hoy.plusDays(HORIZONTE_DIAS - 1))) {
+            Long conocida = versiones.get(remota.getFecha());
+            if (!remota.getVersion().equals(conocida)) {
+                recargarDia(remota.getFecha(), remota.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Compara la versión compartida de un solo día con la conocida y lo vuelve a cargar si otra
+     * instancia lo cambió. Es una consulta por clave primaria, pensada para hacerse antes de
+     * validar una reserva o de responder con un ETag.
+     * @param fecha El día a comprobar
+     * @return Versión compartida del día, o 0 si nunca cambió o está fuera del horizonte
+     */
+    public long sincronizar(LocalDate fecha) {
+        if (!dentroDelHorizonte(fecha)) {
+            return 0L;
+        }
+        long remota = versionDisponibilidadRepository.findById(fecha)
+                .map(VersionDisponibilidad::getVersion).orElse(0L);
+        if (remota != versiones.getOrDefault(fecha, 0L)) {
+            recargarDia(fecha, remota);
+        }
+        return remota;
+    }
+
+    /**
+     * Reconstruye el índice completo a partir de la base de datos al iniciar la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        dias.clear();
+        slotPorCita.clear();
+
+        LocalDate hoy = LocalDate.now();
+        // Las versiones se leen antes que las citas: un cambio intermedio se recarga en la siguiente sincronización
+        versiones.clear();
+        versionDisponibilidadRepository.findByFechaBetween(hoy, hoy.plusDays(HORIZONTE_DIAS - 1))
+                .forEach(version -> versiones.put(version.getFecha(), version.getVersion()));
+        Map<LocalDate, OcupacionDia> faltantes = new HashMap<>();
+        for (int i = 0; i < HORIZONTE_DIAS; i++) {
+            faltantes.put(hoy.plusDays(i), new OcupacionDia());
+        }
+        cargarRango(hoy, hoy.plusDays(HORIZONTE_DIAS - 1), faltantes);
+        logger.info("Índice de disponibilidad reconstruido para {} días", HORIZONTE_DIAS);
+    }
+
+    /**
+     * Desplaza el horizonte cada medianoche: descarta los días pasados
+     * y precarga el nuevo último día reservable.
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void desplazarHorizonte() {
+        LocalDate hoy = LocalDate.now();
+        dias.keySet().removeIf(fecha -> fecha.isBefore(hoy));
+        slotPorCita.values().removeIf(slot -> slot.fecha().isBefore(hoy));
+        versiones.keySet().removeIf(fecha -> fecha.isBefore(hoy));
+        transactionTemplate.executeWithoutResult(estado -> versionDisponibilidadRepository.eliminarAnteriores(hoy));
+
+        LocalDate ultimo = hoy.plusDays(HORIZONTE_DIAS - 1);
+        dias.computeIfAbsent(ultimo, f -> cargarDia(f, true));
+    }
+
+    /**
+     * Calcula el índice del intervalo de 30 minutos al que pertenece una hora.
+     * @param hora La hora del día
+     * @return Índice del intervalo (0 a {@link #SLOTS_POR_DIA} - 1)
+     */
+    public static int indiceSlot(LocalTime hora) {
+        return (hora.getHour() * 60 + hora.getMinute()) / MINUTOS_POR_SLOT;
+    }
+
+    /**
+     * Obtiene la hora de inicio de un intervalo.
+     * @param slot Índice del intervalo
+     * @return Hora de inicio del intervalo
+     */
+    public static LocalTime horaDeSlot(int slot) {
+        return LocalTime.of(0, 0).plusMinutes((long) slot * MINUTOS_POR_SLOT);
+    }
+
+    /**
+     * Publica el cambio de un horario a los suscriptores del servicio y a los
+     * de la vista de todos los servicios.
+     */
+    private void notificar(SlotReservado slot, OcupacionDia dia, boolean liberado) {
+        LocalTime hora = horaDeSlot(slot.slot());
+        disponibilidadEventosService.publicar(slot.fecha(), slot.servicioId(), hora, liberado);
+
+        // Para todos los servicios el horario solo queda libre si ningún servicio lo ocupa
+        boolean libreEnTodos = (dia.ocupados(null) & (1L << slot.slot())) == 0;
+        disponibilidadEventosService.publicar(slot.fecha(), null, hora, libreEnTodos);
+    }
+
+    /**
+     * Sustituye un día del índice por su estado en la base de datos y avisa a los suscriptores
+     * de los horarios que cambiaron. Un día que aún no estaba en memoria solo registra la
+     * versión, ya que se cargará completo en la primera consulta.
+     * @param fecha El día modificado
+     * @param version Versión compartida leída para el día
+     */
+    private void recargarDia(LocalDate fecha, long version) {
+        OcupacionDia anterior = dias.get(fecha);
+        if (anterior == null) {
+            versiones.put(fecha, version);
+            return;
+        }
+
+        OcupacionDia nuevo = new OcupacionDia();
+        Map<Integer, SlotReservado> slots = new HashMap<>();
+        for (HorarioOcupadoDTO horario : citaRepository.findHorariosOcupados(
+                fecha.atStartOfDay(), LocalDateTime.of(fecha, LocalTime.of(23, 59)))) {
+            SlotReservado slot = new SlotReservado(fecha, horario.idServicio(),
+                    indiceSlot(horario.fechaHora().toLocalTime()));
+            nuevo.ocupar(slot.servicioId(), slot.slot());
+            slots.put(horario.idCita(), slot);
+        }
+
+        dias.put(fecha, nuevo);
+        slotPorCita.values().removeIf(slot -> slot.fecha().equals(fecha));
+        slotPorCita.putAll(slots);
+        versiones.put(fecha, version);
+
+        Set<Integer> servicios = new HashSet<>(anterior.servicios());
+        servicios.addAll(nuevo.servicios());
+        servicios.add(null);
+        for (Integer servicioId : servicios) {
+            long antes = anterior.ocupados(servicioId);
+            long despues = nuevo.ocupados(servicioId);
+            for (long cambios = antes ^ despues; cambios != 0; cambios &= cambios - 1) {
+                int slot = Long.numberOfTrailingZeros(cambios);
+                disponibilidadEventosService.publicar(fecha, servicioId, horaDeSlot(slot),
+                        (despues & (1L << slot)) == 0);
+            }
+        }
+    }
+
+    /**
+     * Indica si una fecha pertenece al horizonte mantenido en memoria.
+     */
+    private boolean dentroDelHorizonte(LocalDate fecha) {
+        LocalDate hoy = LocalDate.now();
+        return !fecha.isBefore(hoy) && fecha.isBefore(hoy.plusDays(HORIZONTE_DIAS));
+    }
+
+    /**
+     * Carga la ocupación de un día desde la base de datos.
+     * @param fecha La fecha a cargar
+     * @param indexar Si se deben registrar las citas en el mapa de intervalos por cita
+     */
+    private OcupacionDia cargarDia(LocalDate fecha, boolean indexar) {
+        LocalDateTime inicioDia = LocalDateTime.of(fecha, LocalTime.MIN);
+        LocalDateTime finDia = LocalDateTime.of(fecha, LocalTime.of(23, 59));
+
+        OcupacionDia dia = new OcupacionDia();
+        List<HorarioOcupadoDTO> horarios = citaRepository.findHorariosOcupados(inicioDia, finDia);
+        for (HorarioOcupadoDTO horario : horarios) {
+            SlotReservado slot = new SlotReservado(fecha, horario.idServicio(),
+                    indiceSlot(horario.fechaHora().toLocalTime()));
+            dia.ocupar(slot.servicioId(), slot.slot());
+            if (indexar) {
+                slotPorCita.put(horario.idCita(), slot);
+            }
+        }
+        return dia;
+    }
+
+    /**
+     * Carga con una sola consulta los días faltantes de un rango y publica en el
+     * índice los que pertenecen al horizonte.
+     * @param desde Primera fecha del rango
+     * @param hasta Última fecha del rango
+     * @param faltantes Días a completar, indexados por fecha
+     */
+    private void cargarRango(LocalDate desde, LocalDate hasta, Map<LocalDate, OcupacionDia> faltantes) {
+        LocalDateTime inicio = LocalDateTime.of(desde, LocalTime.MIN);
+        LocalDateTime fin = LocalDateTime.of(hasta, LocalTime.of(23, 59));
+
+        Map<LocalDate, Map<Integer, SlotReservado>> slotsPorDia = new HashMap<>();
+        for (HorarioOcupadoDTO horario : citaRepository.findHorariosOcupados(inicio, fin)) {
+            LocalDate fecha = horario.fechaHora().toLocalDate();
+            OcupacionDia dia = faltantes.get(fecha);
+            if (dia == null) {
+                continue;
+            }
+            SlotReservado slot = new SlotReservado(fecha, horario.idServicio(),
+                    indiceSlot(horario.fechaHora().toLocalTime()));
+            dia.ocupar(slot.servicioId(), slot.slot());
+            slotsPorDia.computeIfAbsent(fecha, f -> new HashMap<>()).put(horario.idCita(), slot);
+        }
+
+        for (Map.Entry<LocalDate, OcupacionDia> entry : faltantes.entrySet()) {
+            LocalDate fecha = entry.getKey();
+            // Si otro hilo cargó el día mientras tanto, se conserva su versión
+            if (dentroDelHorizonte(fecha) && dias.putIfAbsent(fecha, entry.getValue()) == null) {
+                slotPorCita.putAll(slotsPorDia.getOrDefault(fecha, Map.of()));
+            }
+        }
+    }
+
+    /**
+     * Intervalo ocupado por una cita dentro del índice.
+     */
+    private record SlotReservado(LocalDate fecha, Integer servicioId, int slot) {
+    }
+
+    /**
+     * Máscaras de ocupación de un día, una por servicio.
+     */
+    private static final class OcupacionDia {
+
+        private final Map<Integer, Long> porServicio = new HashMap<>();
+
+        synchronized Set<Integer> servicios() {
+            return new HashSet<>(porServicio.keySet());
+        }
+
+        synchronized long ocupados(Integer servicioId) {
+            if (servicioId != null) {
+                return porServicio.getOrDefault(servicioId, 0L);
+            }
+            long todos = 0L;
+            for (long mascara : porServicio.values()) {
+                todos |= mascara;
+            }
+            return todos;
+        }
+
+        synchronized void ocupar(Integer servicioId, int slot) {
+            porServicio.merge(servicioId, 1L << slot, (a, b) -> a | b);
+        }
+
+        synchronized void liberar(Integer servicioId, int slot) {
+            porServicio.computeIfPresent(servicioId, (id, mascara) -> {
+                long resto = mascara & ~(1L << slot);
+                return resto == 0L ? null : resto;
+            });
+        }
+    }
+}
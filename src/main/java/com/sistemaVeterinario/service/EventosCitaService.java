@@ -0,0 +1,204 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.EventoCita;
+import com.sistemaVeterinario.repository.EventoCitaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bandeja de salida de los eventos del ciclo de vida de las citas.
+ *
+ * <p>{@link CitaService} registra el evento en la tabla {@code eventos_cita} dentro de la misma
+ * transacción que guarda la cita, por lo que nunca se pierde un evento de una cita confirmada
+ * ni se publica uno de una cita que no se guardó. Un proceso en segundo plano de la instancia
+ * líder lee la tabla en lotes, publica cada evento como {@link EventoCitaPublicado} a los
+ * {@code @EventListener} de la aplicación y lo borra después. Si un suscriptor falla, el evento
+ * se vuelve a entregar en el siguiente ciclo (al menos una vez), por lo que los suscriptores
+ * deben tolerar duplicados usando {@code idEvento}.</p>
+ *
+ * <p>Un evento que falla {@value #MAX_INTENTOS} veces queda agotado: se registra como error, se
+ * cuenta en la métrica {@code veterinaria.eventos.cita.agotados} y se conserva en la tabla sin
+ * bloquear a los siguientes. La métrica {@code veterinaria.eventos.cita.retenidos} indica cuántos
+ * hay; una vez corregida la causa, {@link #reintentarAgotados()} los vuelve a entregar.</p>
+ */
+@Service
+public class EventosCitaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventosCitaService.class);
+
+    // Eventos leídos por consulta
+    private static final int TAMANIO_LOTE = 100;
+
+    // Entregas fallidas tras las que un evento se deja de reintentar
+    private static final int MAX_INTENTOS = 10;
+
+    @Autowired
+    private EventoCitaRepository eventoCitaRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LiderazgoService liderazgoService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter entregados;
+    private Counter fallidos;
+    private Counter agotados;
+
+    /**
+     * Evento del ciclo de vida de una cita entregado a los suscriptores.
+     * @param idEvento ID único del evento, útil para descartar entregas repetidas
+     * @param idCita ID de la cita
+     * @param tipo Tipo de evento
+     * @param estado Estado de la cita al generarse el evento
+     * @param fechaHora Fecha y hora de la cita al generarse el evento
+     * @param fechaHoraAnterior Fecha y hora previa si el evento reprogramó la cita, o null
+     * @param idServicio ID del servicio de la cita
+     * @param fechaCreacion Fecha y hora en que se registró el evento
+     */
+    public record EventoCitaPublicado(Long idEvento, Integer idCita, EventoCita.TipoEvento tipo,
+                                      Cita.EstadoCita estado, LocalDateTime fechaHora,
+                                      LocalDateTime fechaHoraAnterior, Integer idServicio, LocalDateTime fechaCreacion) {
+    }
+
+    @PostConstruct
+    public void registrarMetricas() {
+        entregados = Counter.builder("veterinaria.eventos.cita.entregados")
+                .description("Eventos de citas entregados a los suscriptores")
+                .register(meterRegistry);
+        fallidos = Counter.builder("veterinaria.eventos.cita.fallidos")
+                .description("Entregas de eventos de citas que fallaron y se reintentarán")
+                .register(meterRegistry);
+        agotados = Counter.builder("veterinaria.eventos.cita.agotados")
+                .description("Eventos de citas que agotaron sus intentos y dejaron de entregarse")
+                .register(meterRegistry);
+        Gauge.builder("veterinaria.eventos.cita.retenidos", this, EventosCitaService::contarAgotados)
+                .description("Eventos de citas agotados que siguen en la bandeja de salida")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra en la bandeja de salida el evento de una cita recién guardada.
+     * Debe llamarse dentro de la transacción que guarda la cita.
+     * @param cita La cita guardada
+     * @param nueva Si la cita se acaba de crear
+     * @param fechaHoraAnterior Fecha y hora que tenía la cita antes de guardarla, o null si es nueva
+     */
+    public void registrar(Cita cita, boolean nueva, LocalDateTime fechaHoraAnterior) {
+        EventoCita evento = new EventoCita();
+        evento.setIdCita(cita.getIdCita());
+        evento.setTipo(nueva ? EventoCita.TipoEvento.AGENDADA
+                : cita.getEstado() == Cita.EstadoCita.Cancelada ? EventoCita.TipoEvento.CANCELADA
+                : EventoCita.TipoEvento.ACTUALIZADA);
+        evento.setEstado(cita.getEstado());
+        evento.setFechaHora(cita.getFechaHora());
+        if (fechaHoraAnterior != null && !fechaHoraAnterior.equals(cita.getFechaHora())) {
+            evento.setFechaHoraAnterior(fechaHoraAnterior);
+        }
+        evento.setIdServicio(cita.getServicio().getIdServicio());
+        evento.setFechaCreacion(LocalDateTime.now());
+        eventoCitaRepository.save(evento);
+    }
+
+    /**
+     * Entrega a los suscriptores los eventos pendientes, en orden y por lotes.
+     * Solo la instancia líder despacha, para que cada evento se procese en un solo nodo.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void despachar() {
+        if (!liderazgoService.esLider()) {
+            return;
+        }
+
+        List<EventoCita> lote;
+        do {
+            lote = eventoCitaRepository.findPendientes(MAX_INTENTOS, PageRequest.of(0, TAMANIO_LOTE));
+            if (!entregarLote(lote)) {
+                return;
+            }
+        } while (lote.size() == TAMANIO_LOTE);
+    }
+
+    /**
+     * Cuenta los eventos que agotaron sus intentos y siguen sin entregar.
+     * @return Número de eventos agotados
+     */
+    public long contarAgotados() {
+        return eventoCitaRepository.contarAgotados(MAX_INTENTOS);
+    }
+
+    /**
+     * Devuelve a la cola de entrega los eventos que agotaron sus intentos, por ejemplo después de
+     * corregir el suscriptor que fallaba. Se entregan en el siguiente ciclo, en su orden original.
+     * @return Número de eventos que se volverán a entregar
+     */
+    public int reintentarAgotados() {
+        Integer reiniciados = transactionTemplate.execute(estado ->
+                eventoCitaRepository.reiniciarAgotados(MAX_INTENTOS));
+        if (reiniciados != null && reiniciados > 0) {
+            logger.info("{} eventos de citas agotados vuelven a la cola de entrega", reiniciados);
+        }
+        return reiniciados != null ? reiniciados : 0;
+    }
+
+    /**
+     * Publica un lote y borra los eventos entregados. Se detiene en el primer fallo para
+     * conservar el orden de los eventos siguientes.
+     * @return true si se entregó el lote completo
+     */
+    private boolean entregarLote(List<EventoCita> lote) {
+        List<Long> entregadosLote = new ArrayList<>();
+        boolean completo = true;
+        for (EventoCita evento : lote) {
+            try {
+                eventPublisher.publishEvent(new EventoCitaPublicado(evento.getIdEvento(), evento.getIdCita(),
+                        evento.getTipo(), evento.getEstado(), evento.getFechaHora(),
+                        evento.getFechaHoraAnterior(), evento.getIdServicio(), evento.getFechaCreacion()));
+                entregadosLote.add(evento.getIdEvento());
+            } catch (RuntimeException e) {
+                int intento = evento.getIntentos() + 1;
+                Integer actualizados = transactionTemplate.execute(estado ->
+                        eventoCitaRepository.incrementarIntentos(evento.getIdEvento(), MAX_INTENTOS));
+                fallidos.increment();
+                if (intento >= MAX_INTENTOS && actualizados != null && actualizados > 0) {
+                    logger.error("El evento {} de la cita {} agotó sus {} intentos y deja de entregarse",
+                            evento.getIdEvento(), evento.getIdCita(), MAX_INTENTOS, e);
+                    agotados.increment();
+                } else {
+                    logger.warn("Falló la entrega del evento {} de la cita {} (intento {}): {}",
+                            evento.getIdEvento(), evento.getIdCita(), intento, e.getMessage());
+                }
+                completo = false;
+                break;
+            }
+        }
+
+        if (!entregadosLote.isEmpty()) {
+            transactionTemplate.executeWithoutResult(estado ->
+                    eventoCitaRepository.deleteAllByIdInBatch(entregadosLote));
+            entregados.increment(entregadosLote.size());
+        }
+        return completo;
+    }
+}
@@ -0,0 +1,279 @@
+package com.sistemaVeterinario.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sistemaVeterinario.dto.ExportacionCitaDTO;
+import com.sistemaVeterinario.dto.ExportacionMascotaDTO;
+import com.sistemaVeterinario.dto.ExportacionUsuarioDTO;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación de usuarios, mascotas y citas en CSV o JSON.
+ *
+ * <p>Las filas se leen de la base de datos con un flujo de proyecciones, por lotes y sin entidades
+ * administradas, y se escriben directamente en la respuesta, por lo que la memoria usada no
+ * depende del número de filas. Se limita cuántas exportaciones corren a la vez para no ocupar
+ * todas las conexiones de la base de datos.</p>
+ */
+@Service
+public class ExportacionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacionService.class);
+
+    // Límites usados cuando no se filtran las citas por fecha (rango de DATETIME en MySQL)
+    private static final LocalDateTime FECHA_MINIMA = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime FECHA_MAXIMA = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final int TAMANIO_BUFER = 64 * 1024;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${veterinaria.exportaciones.maximo-simultaneas:2}")
+    private int maximoSimultaneas;
+
+    private TransactionTemplate lectura;
+    private Semaphore simultaneas;
+
+    // Escritor JSON que no vacía la respuesta después de cada valor
+    private ObjectWriter escritorJson;
+
+    /**
+     * Datos que se pueden exportar.
+     */
+    public enum TipoExportacion {
+        USUARIOS, MASCOTAS, CITAS;
+
+        /**
+         * @return Nombre en minúsculas, usado en el archivo y en las métricas
+         */
+        public String getNombre() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Formatos de exportación.
+     */
+    public enum FormatoExportacion {
+        CSV("text/csv", "csv"), JSON("application/json", "json");
+
+        private final String tipoContenido;
+        private final String extension;
+
+        FormatoExportacion(String tipoContenido, String extension) {
+            this.tipoContenido = tipoContenido;
+            this.extension = extension;
+        }
+
+        public String getTipoContenido() {
+            return tipoContenido;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Columnas de un tipo de fila y cómo obtener sus valores.
+     */
+    private record Columnas<T>(List<String> nombres, Function<T, Object[]> valores) {
+    }
+
+    private static final Columnas<ExportacionUsuarioDTO> COLUMNAS_USUARIOS = new Columnas<>(
+            List.of("idUsuario", "nombre", "apellido", "email", "telefono", "fechaRegistro"),
+            u -> new Object[]{u.idUsuario(), u.nombre(), u.apellido(), u.email(), u.telefono(), u.fechaRegistro()});
+
+    private static final Columnas<ExportacionMascotaDTO> COLUMNAS_MASCOTAS = new Columnas<>(
+            List.of("idMascota", "nombre", "especie", "raza", "fechaNacimiento", "sexo", "idPropietario"),
+            m -> new Object[]{m.idMascota(), m.nombre(), m.especie(), m.raza(), m.fechaNacimiento(), m.sexo(),
+                    m.idPropietario()});
+
+    private static final Columnas<ExportacionCitaDTO> COLUMNAS_CITAS = new Columnas<>(
+            List.of("idCita", "fechaHora", "estado", "idMascota", "nombreMascota", "idPropietario", "idServicio",
+                    "nombreServicio"),
+            c -> new Object[]{c.idCita(), c.fechaHora(), c.estado(), c.idMascota(), c.nombreMascota(),
+                    c.idPropietario(), c.idServicio(), c.nombreServicio()});
+
+    @PostConstruct
+    public void iniciar() {
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        simultaneas = new Semaphore(maximoSimultaneas);
+        escritorJson = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Prepara una exportación. Reserva un cupo de inmediato, para que la petición se pueda rechazar
+     * antes de empezar a responder, y lo libera al terminar de escribir.
+     * @param tipo Datos a exportar
+     * @param formato Formato de salida
+     * @param comprimir Si la salida se comprime con gzip
+     * @param desde Primer día incluido, o null para no limitarlo (usuarios por registro, citas por fecha)
+     * @param hasta Último día incluido, o null para no limitarlo
+     * @return Cuerpo de la respuesta que escribe las filas, o null si ya hay demasiadas exportaciones en curso
+     */
+    public StreamingResponseBody exportar(TipoExportacion tipo, FormatoExportacion formato, boolean comprimir,
+                                          LocalDate desde, LocalDate hasta) {
+        if (!simultaneas.tryAcquire()) {
+            return null;
+        }
+        LocalDateTime inicio = desde != null ? desde.atStartOfDay() : null;
+        LocalDateTime fin = hasta != null ? hasta.plusDays(1).atStartOfDay() : null;
+
+        return salida -> {
+            long comienzo = System.nanoTime();
+            try {
+                OutputStream destino = comprimir ? new GZIPOutputStream(salida, TAMANIO_BUFER) : salida;
+                long filas = lectura.execute(estado -> switch (tipo) {
+                    case USUARIOS -> escribir(usuarioRepository.exportar(inicio, fin), COLUMNAS_USUARIOS, formato, destino);
+                    case MASCOTAS -> escribir(mascotaRepository.exportar(), COLUMNAS_MASCOTAS, formato, destino);
+                    case CITAS -> escribir(citaRepository.exportar(inicio != null ? inicio : FECHA_MINIMA,
+                            fin != null ? fin : FECHA_MAXIMA), COLUMNAS_CITAS, formato, destino);
+                });
+                if (destino instanceof GZIPOutputStream gzip) {
+                    gzip.finish();
+                }
+                Counter.builder("veterinaria.exportaciones.filas")
+                        .description("Filas exportadas")
+                        .tag("tipo", tipo.getNombre())
+                        .register(meterRegistry)
+                        .increment(filas);
+                logger.info("Exportación de {} en {}: {} filas en {} ms", tipo.getNombre(), formato.getExtension(),
+                        filas, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - comienzo));
+            } catch (UncheckedIOException e) {
+                // El cliente cerró la conexión o la red falló; la respuesta ya empezó y no se puede cambiar
+                logger.warn("Exportación de {} interrumpida: {}", tipo.getNombre(), e.getMessage());
+                throw e.getCause();
+            } finally {
+                Timer.builder("veterinaria.exportaciones.duracion")
+                        .description("Duración de cada exportación")
+                        .tag("tipo", tipo.getNombre())
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - comienzo, TimeUnit.NANOSECONDS);
+                simultaneas.release();
+            }
+        };
+    }
+
+    /**
+     * Escribe las filas del flujo y lo cierra.
+     * @return Filas escritas
+     */
+    private <T> long escribir(Stream<T> filas, Columnas<T> columnas, FormatoExportacion formato, OutputStream salida) {
+        try (filas) {
+            return formato == FormatoExportacion.CSV
+                    ? escribirCsv(filas, columnas, salida)
+                    : escribirJson(filas, columnas, salida);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> long escribirCsv(Stream<T> filas, Columnas<T> columnas, OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFER);
+        escribirLineaCsv(escritor, columnas.nombres().toArray());
+        long total = 0;
+        for (T fila : (Iterable<T>) filas::iterator) {
+            escribirLineaCsv(escritor, columnas.valores().apply(fila));
+            total++;
+        }
+        escritor.flush();
+        return total;
+    }
+
+    private <T> long escribirJson(Stream<T> filas, Columnas<T> columnas, OutputStream salida) throws IOException {
+        JsonGenerator generador = escritorJson.createGenerator(salida);
+        // El flujo de la respuesta lo cierra el servidor
+        generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generador.writeStartArray();
+        long total = 0;
+        for (T fila : (Iterable<T>) filas::iterator) {
+            Object[] valores = columnas.valores().apply(fila);
+            generador.writeStartObject();
+            for (int i = 0; i < valores.length; i++) {
+                generador.writeFieldName(columnas.nombres().get(i));
+                escritorJson.writeValue(generador, valores[i]);
+            }
+            generador.writeEndObject();
+            total++;
+        }
+        generador.writeEndArray();
+        generador.flush();
+        return total;
+    }
+
+    private static void escribirLineaCsv(Writer escritor, Object[] valores) throws IOException {
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            if (valores[i] != null) {
+                escritor.write(campoCsv(valores[i].toString()));
+            }
+        }
+        escritor.write("\r\n");
+    }
+
+    /**
+     * Escapa un campo según RFC 4180. Los valores que empiezan como una fórmula se preceden de un
+     * apóstrofo para que una hoja de cálculo no los ejecute.
+     */
+    static String campoCsv(String valor) {
+        if (!valor.isEmpty() && "=+-@\t\r".indexOf(valor.charAt(0)) >= 0) {
+            valor = "'" + valor;
+        }
+        if (valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0 || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0) {
+            return '"' + valor.replace("\"", "\"\"") + '"';
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,403 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.config.CodificadorContrasenas;
+import com.sistemaVeterinario.dto.ErrorImportacionDTO;
+import com.sistemaVeterinario.dto.ResultadoImportacionDTO;
+import com.sistemaVeterinario.dto.UsuarioDTO;
+import com.sistemaVeterinario.models.Role;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Importación masiva de usuarios desde un archivo CSV.
+ *
+ * <p>Cada fila se valida con las mismas restricciones de {@link UsuarioDTO} que el formulario.
+ * Los emails y teléfonos repetidos dentro del archivo se descartan en memoria, y los ya
+ * registrados se consultan por lotes en lugar de fila por fila. Las contraseñas de cada lote se
+ * cifran en paralelo y los usuarios se insertan con sentencias JDBC por lotes, cada lote en su
+ * propia transacción. Si un lote choca con un usuario creado al mismo tiempo por otra vía, sus
+ * filas se insertan una por una para saber cuál falló.</p>
+ */
+@Service
+public class ImportacionUsuariosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacionUsuariosService.class);
+
+    // Errores por fila incluidos en el resultado; el resto solo se cuenta
+    public static final int MAX_ERRORES = 1000;
+
+    private static final int TAMANIO_LOTE = 500;
+
+    private static final List<String> COLUMNAS = List.of("nombre", "apellido", "email", "telefono", "contrasena");
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private CodificadorContrasenas codificadorContrasenas;
+
+    @Autowired
+    private BusquedaUsuariosService busquedaUsuariosService;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private MessageSource messageSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaccion;
+
+    private Counter importados;
+    private Counter rechazados;
+
+    /**
+     * Fila válida del archivo, pendiente de guardar.
+     */
+    private record FilaImportacion(long numero, UsuarioDTO datos) {
+    }
+
+    /**
+     * Progreso de una importación.
+     */
+    private static final class Progreso {
+        private long filas;
+        private long importados;
+        private long rechazados;
+        private final List<ErrorImportacionDTO> errores = new ArrayList<>();
+        // Fila en que apareció cada email (en minúsculas) y cada teléfono
+        private final Map<String, Long> emails = new HashMap<>();
+        private final Map<String, Long> telefonos = new HashMap<>();
+
+        void rechazar(long fila, String email, String mensaje) {
+            rechazados++;
+            if (errores.size() < MAX_ERRORES) {
+                errores.add(new ErrorImportacionDTO(fila, email, mensaje));
+            }
+        }
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        transaccion = new TransactionTemplate(transactionManager);
+        importados = contadorFilas("importada");
+        rechazados = contadorFilas("rechazada");
+    }
+
+    /**
+     * Importa los usuarios de un archivo CSV con cabecera. Las columnas se reconocen por su
+     * nombre (nombre, apellido, email, telefono, contrasena) y el separador puede ser coma o punto
+     * y coma. Los usuarios creados reciben el rol USER.
+     * @param archivo Contenido del archivo
+     * @return Resumen con los usuarios creados y los errores por fila
+     * @throws IOException Si no se puede leer el archivo
+     * @throws IllegalArgumentException Si el archivo está vacío o le faltan columnas
+     */
+    public ResultadoImportacionDTO importar(Reader archivo) throws IOException {
+        long inicio = System.nanoTime();
+        LectorCsv lector = new LectorCsv(archivo);
+
+        List<String> cabecera = lector.siguiente();
+        if (cabecera == null) {
+            throw new IllegalArgumentException(mensaje("adminImport.error.empty"));
+        }
+        int[] posiciones = posiciones(cabecera);
+        Role rolUsuario = roleService.obtenerRolUsuario();
+
+        Progreso progreso = new Progreso();
+        List<FilaImportacion> lote = new ArrayList<>(TAMANIO_LOTE);
+        List<String> campos;
+        while ((campos = lector.siguiente()) != null) {
+            if (campos.size() == 1 && campos.get(0).isBlank()) {
+                continue;
+            }
+            progreso.filas++;
+            FilaImportacion fila = new FilaImportacion(lector.getRegistro(), leerFila(campos, posiciones));
+            if (validar(fila, progreso)) {
+                lote.add(fila);
+                if (lote.size() == TAMANIO_LOTE) {
+                    guardarLote(lote, rolUsuario, progreso);
+                    lote.clear();
+                }
+            }
+        }
+        guardarLote(lote, rolUsuario, progreso);
+
+        long milisegundos = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        ResultadoImportacionDTO resultado = new ResultadoImportacionDTO(progreso.filas, progreso.importados,
+                progreso.rechazados, List.copyOf(progreso.errores), milisegundos);
+        importados.increment(progreso.importados);
+        rechazados.increment(progreso.rechazados);
+        logger.info("Importación de usuarios: {} filas, {} importadas, {} rechazadas en {} ms ({} filas/s)",
+                resultado.filas(), resultado.importados(), resultado.rechazados(), milisegundos,
+                resultado.filasPorSegundo());
+        return resultado;
+    }
+
+    private int[] posiciones(List<String> cabecera) {
+        List<String> nombres = cabecera.stream()
+                .map(nombre -> nombre.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        int[] posiciones = new int[COLUMNAS.size()];
+        List<String> faltantes = new ArrayList<>();
+        for (int i = 0; i < COLUMNAS.size(); i++) {
+            posiciones[i] = nombres.indexOf(COLUMNAS.get(i));
+            if (posiciones[i] < 0) {
+                faltantes.add(COLUMNAS.get(i));
+            }
+        }
+        if (!faltantes.isEmpty()) {
+            throw new IllegalArgumentException(mensaje("adminImport.error.columns", String.join(", ", faltantes)));
+        }
+        return posiciones;
+    }
+
+    private static UsuarioDTO leerFila(List<String> campos, int[] posiciones) {
+        UsuarioDTO dto = new UsuarioDTO();
+        dto.setNombre(campo(campos, posiciones[0]));
+        dto.setApellido(campo(campos, posiciones[1]));
+        dto.setEmail(campo(campos, posiciones[2]));
+        dto.setTelefono(campo(campos, posiciones[3]));
+        // La contraseña se toma tal cual; los espacios la harían inválida
+        dto.setContrasena(posiciones[4] < campos.size() ? campos.get(posiciones[4]) : "");
+        return dto;
+    }
+
+    private static String campo(List<String> campos, int posicion) {
+        return posicion < campos.size() ? campos.get(posicion).trim() : "";
+    }
+
+    /**
+     * Valida la fila y descarta emails y teléfonos ya vistos en el archivo.
+     * @return true si la fila se puede guardar
+     */
+    private boolean validar(FilaImportacion fila, Progreso progreso) {
+        UsuarioDTO datos = fila.datos();
+        Set<ConstraintViolation<UsuarioDTO>> violaciones = validator.validate(datos);
+        if (!violaciones.isEmpty()) {
+            progreso.rechazar(fila.numero(), datos.getEmail(), violaciones.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return false;
+        }
+
+        Long filaEmail = progreso.emails.putIfAbsent(datos.getEmail().toLowerCase(Locale.ROOT), fila.numero());
+        if (filaEmail != null) {
+            progreso.rechazar(fila.numero(), datos.getEmail(), mensaje("adminImport.error.duplicateEmail", filaEmail));
+            return false;
+        }
+        Long filaTelefono = progreso.telefonos.putIfAbsent(datos.getTelefono(), fila.numero());
+        if (filaTelefono != null) {
+            progreso.rechazar(fila.numero(), datos.getEmail(), mensaje("adminImport.error.duplicatePhone", filaTelefono));
+            return false;
+        }
+        return true;
+    }
+
+    private void guardarLote(List<FilaImportacion> lote, Role rolUsuario, Progreso progreso) {
+        if (lote.isEmpty()) {
+            return;
+        }
+
+        // Emails y teléfonos ya registrados, con una consulta por lote
+        Set<String> emailsRegistrados = usuarioRepository.findEmailsRegistrados(
+                        lote.stream().map(fila -> fila.datos().getEmail()).toList()).stream()
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toCollection(HashSet::new));
+        Set<String> telefonosRegistrados = new HashSet<>(usuarioRepository.findTelefonosRegistrados(
+                lote.stream().map(fila -> fila.datos().getTelefono()).toList()));
+
+        List<FilaImportacion> nuevas = new ArrayList<>(lote.size());
+        for (FilaImportacion fila : lote) {
+            UsuarioDTO datos = fila.datos();
+            if (emailsRegistrados.contains(datos.getEmail().toLowerCase(Locale.ROOT))) {
+                progreso.rechazar(fila.numero(), datos.getEmail(), mensaje("error.email.existing"));
+            } else if (telefonosRegistrados.contains(datos.getTelefono())) {
+                progreso.rechazar(fila.numero(), datos.getEmail(), mensaje("error.phone.existing"));
+            } else {
+                nuevas.add(fila);
+            }
+        }
+        if (nuevas.isEmpty()) {
+            return;
+        }
+
+        // Las contraseñas se cifran antes de abrir la transacción, para no retener una conexión
+        List<String> hashes = codificadorContrasenas.codificarTodas(
+                nuevas.stream().map(fila -> fila.datos().getContrasena()).toList());
+        List<Usuario> usuarios = new ArrayList<>(nuevas.size());
+        for (int i = 0; i < nuevas.size(); i++) {
+            usuarios.add(nuevoUsuario(nuevas.get(i).datos(), hashes.get(i), rolUsuario));
+        }
+
+        try {
+            insertar(usuarios);
+            progreso.importados += usuarios.size();
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Conflicto al insertar un lote de usuarios; se reintenta fila por fila", e);
+            for (int i = 0; i < nuevas.size(); i++) {
+                Usuario usuario = nuevoUsuario(nuevas.get(i).datos(), hashes.get(i), rolUsuario);
+                try {
+                    insertar(List.of(usuario));
+                    progreso.importados++;
+                } catch (DataIntegrityViolationException conflicto) {
+                    progreso.rechazar(nuevas.get(i).numero(), usuario.getEmail(), mensaje("adminImport.error.conflict"));
+                }
+            }
+        }
+    }
+
+    private void insertar(List<Usuario> usuarios) {
+        transaccion.executeWithoutResult(estado -> {
+            usuarioRepository.insertarLote(usuarios);
+            usuarios.forEach(busquedaUsuariosService::usuarioGuardado);
+        });
+    }
+
+    private static Usuario nuevoUsuario(UsuarioDTO datos, String hash, Role rolUsuario) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre(datos.getNombre());
+        usuario.setApellido(datos.getApellido());
+        usuario.setEmail(datos.getEmail());
+        usuario.setTelefono(datos.getTelefono());
+        usuario.setContrasena(hash);
+        usuario.getRoles().add(rolUsuario);
+        return usuario;
+    }
+
+    private String mensaje(String clave, Object... argumentos) {
+        return messageSource.getMessage(clave, argumentos, LocaleContextHolder.getLocale());
+    }
+
+    private Counter contadorFilas(String resultado) {
+        return Counter.builder("veterinaria.importaciones.filas")
+                .description("Filas de importaciones de usuarios")
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lector de registros CSV según RFC 4180: campos entre comillas con comas, saltos de línea y
+     * comillas dobladas. El separador (coma o punto y coma) se toma del primer registro, y se
+     * ignora la marca de orden de bytes que agregan algunas hojas de cálculo.
+     */
+    static final class LectorCsv {
+
+        private final Reader entrada;
+        private char separador;
+        private long registro;
+        private int siguiente = -2;
+
+        LectorCsv(Reader entrada) {
+            this.entrada = entrada;
+        }
+
+        /**
+         * @return Número del último registro leído, empezando en 1
+         */
+        long getRegistro() {
+            return registro;
+        }
+
+        /**
+         * Lee el siguiente registro.
+         * @return Campos del registro, o null al final del archivo
+         */
+        List<String> siguiente() throws IOException {
+            int c = leer();
+            if (registro == 0 && c == '\uFEFF') {
+                c = leer();
+            }
+            if (c < 0) {
+                return null;
+            }
+
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false;
+            while (true) {
+                if (entreComillas) {
+                    if (c < 0) {
+                        break;
+                    }
+                    if (c == '"') {
+                        int despues = leer();
+                        if (despues == '"') {
+                            campo.append('"');
+                        } else {
+                            entreComillas = false;
+                            c = despues;
+                            continue;
+                        }
+                    } else {
+                        campo.append((char) c);
+                    }
+                } else if (c < 0 || c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        int despues = leer();
+                        if (despues != '\n') {
+                            siguiente = despues;
+                        }
+                    }
+                    break;
+                } else if (c == '"' && campo.isEmpty()) {
+                    entreComillas = true;
+                } else if (c == separador || (separador == 0 && (c == ',' || c == ';'))) {
+                    separador = (char) c;
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else {
+                    campo.append((char) c);
+                }
+                c = leer();
+            }
+            campos.add(campo.toString());
+            registro++;
+            return campos;
+        }
+
+        private int leer() throws IOException {
+            if (siguiente != -2) {
+                int c = siguiente;
+                siguiente = -2;
+                return c;
+            }
+            return entrada.read();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.repository.ArrendamientoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio que elige, entre varias instancias de la aplicación, la única que ejecuta
+ * las tareas programadas sobre la base de datos.
+ *
+ * <p>El líder posee un arrendamiento guardado en la tabla {@code arrendamientos} y lo renueva
+ * cada pocos segundos. Tomarlo o renovarlo es una sola sentencia UPDATE condicional, por lo que
+ * dos instancias nunca lo obtienen a la vez. Si el líder se detiene, el arrendamiento vence y otra
+ * instancia lo toma en su siguiente intento. Como cada instancia compara con su propio reloj,
+ * los servidores deben tener la hora sincronizada.</p>
+ *
+ * <p>La renovación corre en un hilo propio, separado del planificador de Spring, para que una
+ * tarea larga no retrase la renovación hasta que el arrendamiento venza. Por la misma razón el
+ * evento {@link LiderazgoAdquirido} se publica en otro hilo: sus suscriptores pueden tardar sin
+ * bloquear la renovación. Las tareas largas deben comprobar {@link #esLider()} entre lotes.</p>
+ */
+@Service
+public class LiderazgoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiderazgoService.class);
+
+    private static final String ARRENDAMIENTO_PLANIFICADOR = "planificador";
+
+    // Intervalo entre intentos de renovación; debe ser bastante menor que la duración
+    private static final long INTERVALO_RENOVACION_MS = 5000;
+
+    @Value("${veterinaria.liderazgo.duracion-segundos:15}")
+    private long duracionSegundos;
+
+    @Autowired
+    private ArrendamientoRepository arrendamientoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String nodo = generarIdNodo();
+
+    private volatile boolean lider;
+
+    // Instante (System.nanoTime) hasta el que esta instancia puede considerarse líder sin renovar
+    private volatile long vigenteHastaNanos;
+
+    // Hilo dedicado a renovar el arrendamiento
+    private final ScheduledExecutorService renovacion = Executors.newSingleThreadScheduledExecutor(
+            hilo("liderazgo-renovacion"));
+
+    // Hilo donde se atiende el evento de liderazgo adquirido, fuera de la renovación
+    private final ExecutorService tareasLiderazgo = Executors.newSingleThreadExecutor(hilo("liderazgo-tareas"));
+
+    private Counter adquiridos;
+    private Counter renovados;
+    private Counter rechazados;
+    private Counter errores;
+    private Counter perdidos;
+    private Timer duracionIntento;
+
+    /**
+     * Evento publicado cuando esta instancia pasa a ser líder.
+     * @param nodo Identificador de la instancia
+     */
+    public record LiderazgoAdquirido(String nodo) {
+    }
+
+    @PostConstruct
+    public void registrarMetricas() {
+        adquiridos = contador("adquirido");
+        renovados = contador("renovado");
+        rechazados = contador("rechazado");
+        errores = contador("error");
+        perdidos = Counter.builder("veterinaria.liderazgo.perdidas")
+                .description("Veces que esta instancia dejó de ser líder")
+                .register(meterRegistry);
+        duracionIntento = Timer.builder("veterinaria.liderazgo.duracion")
+                .description("Tiempo de cada intento de tomar o renovar el liderazgo")
+                .register(meterRegistry);
+        Gauge.builder("veterinaria.liderazgo.lider", this, servicio -> servicio.esLider() ? 1 : 0)
+                .description("1 si esta instancia ejecuta las tareas programadas")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Comienza a renovar el arrendamiento apenas la aplicación está lista, sin esperar al primer intervalo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        renovacion.scheduleAtFixedRate(this::renovarSinFallar, 0, INTERVALO_RENOVACION_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Un error no controlado cancelaría la renovación periódica, así que solo se registra.
+     */
+    private void renovarSinFallar() {
+        try {
+            renovar();
+        } catch (RuntimeException e) {
+            logger.error("Error inesperado al renovar el liderazgo", e);
+        }
+    }
+
+    /**
+     * Renueva el arrendamiento o intenta tomarlo si está vencido.
+     */
+    public void renovar() {
+        long inicio = System.nanoTime();
+        boolean eraLider = lider;
+        boolean obtenido;
+        try {
+            obtenido = intentarAdquirir(ARRENDAMIENTO_PLANIFICADOR, nodo, LocalDateTime.now());
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo renovar el liderazgo: {}", e.getMessage());
+            errores.increment();
+            obtenido = false;
+        }
+        duracionIntento.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+
+        if (obtenido) {
+            vigenteHastaNanos = inicio + duracionSegundos * 1_000_000_000L;
+            lider = true;
+            (eraLider ? renovados : adquiridos).increment();
+            if (!eraLider) {
+                logger.info("La instancia {} es ahora líder de las tareas programadas", nodo);
+                tareasLiderazgo.execute(this::publicarAdquirido);
+            }
+        } else {
+            lider = false;
+            rechazados.increment();
+            if (eraLider) {
+                perdidos.increment();
+                logger.warn("La instancia {} dejó de ser líder de las tareas programadas", nodo);
+            }
+        }
+    }
+
+    private void publicarAdquirido() {
+        // Si el liderazgo se perdió mientras el evento esperaba, ya no hay nada que inicializar
+        if (!esLider()) {
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(new LiderazgoAdquirido(nodo));
+        } catch (RuntimeException e) {
+            logger.error("Falló la inicialización de las tareas del líder", e);
+        }
+    }
+
+    /**
+     * Indica si esta instancia debe ejecutar las tareas programadas. Deja de serlo en cuanto
+     * su arrendamiento vence localmente, aunque la renovación todavía no haya fallado.
+     * @return true si esta instancia es el líder vigente
+     */
+    public boolean esLider() {
+        return lider && System.nanoTime() - vigenteHastaNanos < 0;
+    }
+
+    /**
+     * Identificador de esta instancia.
+     * @return El identificador del nodo
+     */
+    public String getNodo() {
+        return nodo;
+    }
+
+    /**
+     * Libera el arrendamiento al detener la aplicación para que otra instancia lo tome sin esperar.
+     */
+    @PreDestroy
+    public void liberar() {
+        renovacion.shutdownNow();
+        tareasLiderazgo.shutdownNow();
+        if (!lider) {
+            return;
+        }
+        lider = false;
+        try {
+            transactionTemplate.executeWithoutResult(estado -> arrendamientoRepository.liberar(
+                    ARRENDAMIENTO_PLANIFICADOR, nodo, LocalDateTime.now()));
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo liberar el liderazgo: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Renueva o toma un arrendamiento para un nodo, creándolo si no existe.
+     * @param nombre Nombre del arrendamiento
+     * @param nodo Identificador de la instancia
+     * @param ahora Fecha/hora actual
+     * @return true si el nodo quedó como propietario
+     */
+    boolean intentarAdquirir(String nombre, String nodo, LocalDateTime ahora) {
+        LocalDateTime expiracion = ahora.plusSeconds(duracionSegundos);
+        Integer filas = transactionTemplate.execute(estado -> arrendamientoRepository.renovarOTomar(
+                nombre, nodo, expiracion, ahora));
+        if (filas != null && filas == 1) {
+            return true;
+        }
+        if (arrendamientoRepository.existsById(nombre)) {
+            return false;
+        }
+
+        // Primera vez: la clave primaria garantiza que solo una instancia lo crea
+        try {
+            transactionTemplate.executeWithoutResult(estado -> arrendamientoRepository.crear(
+                    nombre, nodo, expiracion));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private Counter contador(String resultado) {
+        return Counter.builder("veterinaria.liderazgo.intentos")
+                .description("Intentos de tomar o renovar el liderazgo de las tareas programadas")
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+
+    private static ThreadFactory hilo(String nombre) {
+        return tarea -> {
+            Thread hilo = new Thread(tarea, nombre);
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+
+    private static String generarIdNodo() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "desconocido";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
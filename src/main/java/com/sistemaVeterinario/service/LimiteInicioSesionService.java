@@ -0,0 +1,292 @@
+package com.sistemaVeterinario.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio que limita los intentos fallidos de inicio de sesión por cuenta y por dirección IP.
+ *
+ * <p>Cada cuenta y cada IP tienen una cubeta de fichas: un intento fallido gasta una ficha y las
+ * fichas se recuperan a ritmo constante. Con la cubeta vacía, {@link #estaBloqueado(String, String)}
+ * rechaza el intento antes de verificar la contraseña, de modo que un ataque de relleno de
+ * credenciales no consume CPU en BCrypt. Un inicio de sesión correcto vacía el historial de la cuenta.</p>
+ *
+ * <p>Las cubetas se guardan en una {@link TablaCubetas} de tamaño fijo, por lo que la memoria no
+ * crece con el número de cuentas o IPs atacantes. El estado vive en cada instancia de la aplicación.</p>
+ */
+@Service
+public class LimiteInicioSesionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LimiteInicioSesionService.class);
+
+    @Value("${veterinaria.login.cuenta.rafaga:5}")
+    private int rafagaCuenta;
+
+    @Value("${veterinaria.login.cuenta.intervalo-segundos:60}")
+    private long intervaloCuentaSegundos;
+
+    @Value("${veterinaria.login.ip.rafaga:20}")
+    private int rafagaIp;
+
+    @Value("${veterinaria.login.ip.intervalo-segundos:6}")
+    private long intervaloIpSegundos;
+
+    @Value("${veterinaria.login.capacidad:1048576}")
+    private int capacidad;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TablaCubetas cuentas;
+    private TablaCubetas ips;
+
+    private Counter bloqueadosCuenta;
+    private Counter bloqueadosIp;
+    private Counter fallos;
+
+    @PostConstruct
+    public void iniciar() {
+        cuentas = new TablaCubetas(capacidad, rafagaCuenta, TimeUnit.SECONDS.toNanos(intervaloCuentaSegundos));
+        ips = new TablaCubetas(capacidad, rafagaIp, TimeUnit.SECONDS.toNanos(intervaloIpSegundos));
+
+        bloqueadosCuenta = contadorBloqueados("cuenta");
+        bloqueadosIp = contadorBloqueados("ip");
+        fallos = Counter.builder("veterinaria.login.fallos")
+                .description("Inicios de sesión con credenciales incorrectas")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indica si se debe rechazar un intento de inicio de sesión sin verificar la contraseña.
+     * @param email Email con el que se intenta iniciar sesión (puede ser null)
+     * @param ip Dirección IP del cliente
+     * @return true si la cuenta o la IP agotaron sus intentos
+     */
+    public boolean estaBloqueado(String email, String ip) {
+        return estaBloqueado(email, ip, System.nanoTime());
+    }
+
+    boolean estaBloqueado(String email, String ip, long ahora) {
+        if (ip != null && ips.agotada(ip, ahora)) {
+            bloqueadosIp.increment();
+            return true;
+        }
+        if (email != null && cuentas.agotada(normalizar(email), ahora)) {
+            bloqueadosCuenta.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registra un intento fallido para la cuenta y la IP.
+     * @param email Email usado en el intento
+     * @param ip Dirección IP del cliente
+     */
+    public void registrarFallo(String email, String ip) {
+        registrarFallo(email, ip, System.nanoTime());
+    }
+
+    void registrarFallo(String email, String ip, long ahora) {
+        fallos.increment();
+        if (ip != null) {
+            ips.consumir(ip, ahora);
+        }
+        if (email != null) {
+            cuentas.consumir(normalizar(email), ahora);
+        }
+    }
+
+    /**
+     * Olvida los intentos fallidos de una cuenta tras un inicio de sesión correcto.
+     * @param email Email de la cuenta
+     */
+    public void registrarExito(String email) {
+        if (email != null) {
+            cuentas.reiniciar(normalizar(email));
+        }
+    }
+
+    @EventListener
+    public void alFallarAutenticacion(AuthenticationFailureBadCredentialsEvent evento) {
+        Authentication autenticacion = evento.getAuthentication();
+        registrarFallo(autenticacion.getName(), ip(autenticacion));
+        logger.debug("Inicio de sesión fallido para {}", autenticacion.getName());
+    }
+
+    @EventListener
+    public void alAutenticar(AuthenticationSuccessEvent evento) {
+        registrarExito(evento.getAuthentication().getName());
+    }
+
+    private static String ip(Authentication autenticacion) {
+        return autenticacion.getDetails() instanceof WebAuthenticationDetails detalles
+                ? detalles.getRemoteAddress() : null;
+    }
+
+    private static String normalizar(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private Counter contadorBloqueados(String tipo) {
+        return Counter.builder("veterinaria.login.bloqueados")
+                .description("Intentos de inicio de sesión rechazados sin verificar la contraseña")
+                .tag("tipo", tipo)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tabla de cubetas de fichas con memoria fija, dividida en franjas con su propio cerrojo.
+     *
+     * <p>Cada cubeta se guarda como dos {@code long}: el hash de 64 bits de la clave y el instante
+     * teórico en que la cubeta vuelve a estar llena (algoritmo GCRA). Una cubeta llena equivale a
+     * una clave ausente, así que su posición se reutiliza. Si las posiciones de sondeo de una clave
+     * están todas ocupadas, se reemplaza la cubeta más próxima a llenarse.</p>
+     */
+    static final class TablaCubetas {
+
+        // Posiciones revisadas por cada clave dentro de su franja
+        private static final int SONDEO = 8;
+
+        private static final int FRANJAS = 256;
+
+        private final long[] claves;
+        private final long[] llenaEn;
+        private final Object[] cerrojos = new Object[FRANJAS];
+        private final int tamanioFranja;
+        private final int rafaga;
+        private final long intervaloNanos;
+
+        /**
+         * @param capacidad Cubetas totales; se redondea a una potencia de dos
+         * @param rafaga Intentos permitidos seguidos con la cubeta llena
+         * @param intervaloNanos Tiempo en recuperar una ficha
+         */
+        TablaCubetas(int capacidad, int rafaga, long intervaloNanos) {
+            int total = Integer.highestOneBit(Math.max(capacidad - 1, FRANJAS * SONDEO - 1)) << 1;
+            this.claves = new long[total];
+            this.llenaEn = new long[total];
+            this.tamanioFranja = total / FRANJAS;
+            this.rafaga = rafaga;
+            this.intervaloNanos = intervaloNanos;
+            for (int i = 0; i < FRANJAS; i++) {
+                cerrojos[i] = new Object();
+            }
+        }
+
+        /**
+         * Indica si la cubeta de la clave no tiene fichas para un intento más.
+         */
+        boolean agotada(String clave, long ahora) {
+            long hash = hash(clave);
+            int franja = franja(hash);
+            synchronized (cerrojos[franja]) {
+                int posicion = buscar(hash, franja);
+                return posicion >= 0 && llenaEn[posicion] - ahora > (rafaga - 1) * intervaloNanos;
+            }
+        }
+
+        /**
+         * Gasta una ficha de la cubeta de la clave.
+         */
+        void consumir(String clave, long ahora) {
+            long hash = hash(clave);
+            int franja = franja(hash);
+            synchronized (cerrojos[franja]) {
+                int posicion = buscar(hash, franja);
+                if (posicion < 0) {
+                    posicion = elegirLibre(hash, franja, ahora);
+                    claves[posicion] = hash;
+                    llenaEn[posicion] = ahora;
+                }
+                long base = llenaEn[posicion] - ahora > 0 ? llenaEn[posicion] : ahora;
+                // La cubeta no se vacía por debajo de cero aunque sigan llegando fallos
+                llenaEn[posicion] = Math.min(base + intervaloNanos, ahora + rafaga * intervaloNanos);
+            }
+        }
+
+        /**
+         * Deja la cubeta de la clave llena.
+         */
+        void reiniciar(String clave) {
+            long hash = hash(clave);
+            int franja = franja(hash);
+            synchronized (cerrojos[franja]) {
+                int posicion = buscar(hash, franja);
+                if (posicion >= 0) {
+                    claves[posicion] = 0;
+                    llenaEn[posicion] = 0;
+                }
+            }
+        }
+
+        /**
+         * Cubetas que la tabla puede guardar.
+         */
+        int getCapacidad() {
+            return claves.length;
+        }
+
+        private int buscar(long hash, int franja) {
+            int inicio = franja * tamanioFranja;
+            int desplazamiento = (int) hash & (tamanioFranja - 1);
+            for (int i = 0; i < SONDEO; i++) {
+                int posicion = inicio + ((desplazamiento + i) & (tamanioFranja - 1));
+                if (claves[posicion] == hash) {
+                    return posicion;
+                }
+            }
+            return -1;
+        }
+
+        private int elegirLibre(long hash, int franja, long ahora) {
+            int inicio = franja * tamanioFranja;
+            int desplazamiento = (int) hash & (tamanioFranja - 1);
+            int candidata = -1;
+            for (int i = 0; i < SONDEO; i++) {
+                int posicion = inicio + ((desplazamiento + i) & (tamanioFranja - 1));
+                if (claves[posicion] == 0 || llenaEn[posicion] - ahora <= 0) {
+                    return posicion;
+                }
+                if (candidata < 0 || llenaEn[posicion] - llenaEn[candidata] < 0) {
+                    candidata = posicion;
+                }
+            }
+            return candidata;
+        }
+
+        private static int franja(long hash) {
+            return (int) (hash >>> 56) & (FRANJAS - 1);
+        }
+
+        /**
+         * Hash FNV-1a de 64 bits con mezcla final, para repartir también los bits bajos.
+         * El 0 se reserva para las posiciones vacías.
+         */
+        private static long hash(String clave) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < clave.length(); i++) {
+                hash ^= clave.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return hash != 0 ? hash : 1;
+        }
+    }
+}
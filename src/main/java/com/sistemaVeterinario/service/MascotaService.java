@@ -1,14 +1,17 @@
 package com.sistemaVeterinario.service;
 
+import com.sistemaVeterinario.models.Cita;
 import com.sistemaVeterinario.models.Mascota;
-import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.EventoCitaRepository;
 import com.sistemaVeterinario.repository.MascotaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Servicio para la gestión de mascotas en el sistema veterinario.
@@ -20,16 +23,31 @@ public class MascotaService {
     @Autowired
     private MascotaRepository mascotaRepository;
 
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private EventoCitaRepository eventoCitaRepository;
+
+    @Autowired
+    private BusquedaUsuariosService busquedaUsuariosService;
+
+    @Autowired
+    private DisponibilidadService disponibilidadService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * Busca mascotas por propietario.
-     * @param propietario El propietario de las mascotas (como Optional)
-     * @return Lista de mascotas del propietario. Lista vacía si el Optional está vacío.
+     * @param idUsuario El ID del propietario de las mascotas
+     * @return Lista de mascotas del propietario. Lista vacía si el ID es null.
      */
-    public List<Mascota> findByPropietario(Optional<Usuario> propietario) {
-        if (!propietario.isPresent()) {
+    public List<Mascota> findByPropietario(Integer idUsuario) {
+        if (idUsuario == null) {
             return new ArrayList<>();
         }
-        return mascotaRepository.findByPropietario(propietario.get());
+        return mascotaRepository.findByPropietarioIdUsuario(idUsuario);
     }
 
     /**
@@ -47,15 +65,50 @@ public class MascotaService {
      * @return La mascota guardada/actualizada
      */
     public Mascota save(Mascota mascota) {
-        return mascotaRepository.save(mascota);
+        return transactionTemplate.execute(estado -> {
+            Mascota guardada = mascotaRepository.save(mascota);
+            busquedaUsuariosService.mascotasCambiadas(guardada.getPropietario().getIdUsuario());
+            return guardada;
+        });
     }
 
     /**
-     * Elimina una mascota por su ID.
+     * Elimina (archiva) una mascota por su ID.
      * @param id El ID de la mascota a eliminar
      */
     public void delete(Integer id) {
-        mascotaRepository.deleteById(id);
+        mascotaRepository.findById(id).ifPresent(this::delete);
+    }
+
+    /**
+     * Elimina una mascota ya cargada, sin volver a consultarla. La mascota se archiva y sus
+     * citas programadas se cancelan con un número fijo de sentencias, sin importar cuántas
+     * citas tenga; {@link PurgaMascotasService} la elimina físicamente más tarde.
+     *
+     * <p>La mascota se archiva antes de buscar sus citas: la fila queda bloqueada, así que una
+     * reserva concurrente ({@link CitaService#reservar}) o termina antes y su cita se cancela
+     * aquí, o espera y ya no encuentra la mascota.</p>
+     * @param mascota La mascota a eliminar
+     */
+    public void delete(Mascota mascota) {
+        List<Integer> canceladas = transactionTemplate.execute(estado -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            if (mascotaRepository.archivar(mascota.getIdMascota(), ahora) == 0) {
+                // Ya archivada por otra eliminación
+                return List.<Integer>of();
+            }
+            List<Integer> ids = citaRepository.findIdsByMascotaAndEstado(
+                    mascota.getIdMascota(), Cita.EstadoCita.Programada);
+            if (!ids.isEmpty()) {
+                // Las citas y sus eventos de cancelación se confirman junto con el archivado
+                citaRepository.cancelarCitas(ids, Cita.EstadoCita.Programada);
+                eventoCitaRepository.registrarCancelaciones(ids, ahora);
+                disponibilidadService.marcarCambio(ids);
+            }
+            busquedaUsuariosService.mascotasCambiadas(mascota.getPropietario().getIdUsuario());
+            return ids;
+        });
+        disponibilidadService.liberar(canceladas);
     }
 
     /**
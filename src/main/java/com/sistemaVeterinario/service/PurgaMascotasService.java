@@ -0,0 +1,150 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tarea que elimina físicamente las mascotas archivadas y sus citas una vez cumplido el
+ * plazo de retención.
+ *
+ * <p>Las mascotas se toman por lotes y sus citas se borran en bloques acotados por clave
+ * primaria, cada uno en su propia transacción, de modo que ninguna sentencia bloquea muchas
+ * filas. Al terminar cada lote se recalcula el resumen de ocupación de las horas afectadas,
+ * para que coincida con la tabla de citas.</p>
+ */
+@Service
+public class PurgaMascotasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PurgaMascotasService.class);
+
+    // Mascotas archivadas tomadas por cada lote
+    private static final int MASCOTAS_POR_LOTE = 100;
+
+    // Citas eliminadas por cada sentencia DELETE
+    private static final int CITAS_POR_BLOQUE = 1000;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ResumenOcupacionService resumenOcupacionService;
+
+    @Autowired
+    private LiderazgoService liderazgoService;
+
+    // Días que una mascota archivada se conserva antes de eliminarla
+    @Value("${veterinaria.mascotas.dias-retencion:30}")
+    private int diasRetencion;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean();
+
+    /**
+     * Tarea automática que se ejecuta cada día de madrugada en la instancia líder.
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgarProgramado() {
+        if (liderazgoService.esLider()) {
+            purgar(LocalDateTime.now().minusDays(diasRetencion), liderazgoService::esLider);
+        }
+    }
+
+    /**
+     * Elimina las mascotas archivadas antes de una fecha, junto con sus citas.
+     * @param limite Fecha de eliminación máxima (exclusiva) de las mascotas a purgar
+     * @return Número de mascotas eliminadas, o 0 si la tarea ya estaba en ejecución
+     */
+    public int purgar(LocalDateTime limite) {
+        return purgar(limite, () -> true);
+    }
+
+    /**
+     * Elimina las mascotas archivadas antes de una fecha, deteniéndose entre bloques en cuanto
+     * la condición deja de cumplirse. Lo pendiente se purga en la siguiente ejecución.
+     * @param limite Fecha de eliminación máxima (exclusiva) de las mascotas a purgar
+     * @param continuar Condición comprobada antes de cada bloque, por ejemplo seguir siendo líder
+     * @return Número de mascotas eliminadas, o 0 si la tarea ya estaba en ejecución
+     */
+    public int purgar(LocalDateTime limite, BooleanSupplier continuar) {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            logger.info("La purga de mascotas archivadas ya está en ejecución");
+            return 0;
+        }
+        try {
+            int mascotas = 0;
+            long[] citas = new long[1];
+            List<Integer> lote;
+            do {
+                if (!continuar.getAsBoolean()) {
+                    logger.info("Purga de mascotas archivadas detenida; continuará en la siguiente ejecución");
+                    break;
+                }
+                lote = mascotaRepository.findIdsArchivadasAntesDe(limite, MASCOTAS_POR_LOTE);
+                if (lote.isEmpty()) {
+                    break;
+                }
+                if (!purgarCitas(lote, continuar, citas)) {
+                    break;
+                }
+                List<Integer> ids = lote;
+                Integer eliminadas = transactionTemplate.execute(estado -> mascotaRepository.eliminarArchivadas(ids));
+                mascotas += eliminadas != null ? eliminadas : 0;
+            } while (lote.size() == MASCOTAS_POR_LOTE);
+
+            if (mascotas > 0) {
+                logger.info("Purga de mascotas archivadas: {} mascotas y {} citas eliminadas", mascotas, citas[0]);
+            }
+            return mascotas;
+        } finally {
+            enEjecucion.set(false);
+        }
+    }
+
+    /**
+     * Elimina por bloques las citas de un lote de mascotas y actualiza el resumen de ocupación.
+     * @return true si se eliminaron todas las citas del lote, false si se detuvo antes
+     */
+    private boolean purgarCitas(List<Integer> idsMascota, BooleanSupplier continuar, long[] eliminadas) {
+        Set<LocalDateTime> horas = new HashSet<>();
+        List<Integer> bloque;
+        do {
+            if (!continuar.getAsBoolean()) {
+                resumenOcupacionService.registrarTransiciones(horas);
+                return false;
+            }
+            bloque = citaRepository.findIdsByMascotas(idsMascota, PageRequest.of(0, CITAS_POR_BLOQUE));
+            if (bloque.isEmpty()) {
+                break;
+            }
+            List<Integer> ids = bloque;
+            Integer filas = transactionTemplate.execute(estado -> {
+                horas.addAll(citaRepository.findFechasHora(ids));
+                return citaRepository.eliminarCitas(ids);
+            });
+            eliminadas[0] += filas != null ? filas : 0;
+        } while (bloque.size() == CITAS_POR_BLOQUE);
+
+        resumenOcupacionService.registrarTransiciones(horas);
+        return true;
+    }
+}
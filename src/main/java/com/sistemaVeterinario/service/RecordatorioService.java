@@ -0,0 +1,324 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.RecordatorioCitaDTO;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.repository.CitaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio que envía por correo el recordatorio de las citas del día siguiente.
+ *
+ * <p>{@link #encolarPendientes()} busca las citas programadas de las próximas 24 horas que
+ * aún no tienen recordatorio y las deja en una cola acotada. Un hilo propio vacía la cola en
+ * lotes que se envían por una sola conexión SMTP, respetando un máximo de correos por minuto.
+ * Los correos que fallan se reintentan con espera exponencial. Ningún envío ocurre en el hilo
+ * de una petición web.</p>
+ *
+ * <p>Cada correo se redacta en el último idioma que el propietario eligió en la aplicación;
+ * si nunca eligió uno, se usa {@code veterinaria.recordatorios.idioma}.</p>
+ *
+ * <p>Si no hay servidor de correo configurado ({@code spring.mail.host}), el servicio queda
+ * desactivado.</p>
+ */
+@Service
+public class RecordatorioService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordatorioService.class);
+
+    // Anticipación con la que se recuerdan las citas
+    private static final int HORAS_ANTICIPACION = 24;
+
+    // Recordatorios que pueden esperar en la cola
+    private static final int CAPACIDAD_COLA = 1000;
+
+    // Correos enviados por cada conexión SMTP
+    private static final int TAMANIO_LOTE = 20;
+
+    // Intentos por correo antes de dejarlo para el siguiente ciclo de búsqueda
+    private static final int MAX_INTENTOS = 5;
+
+    // Espera antes del primer reintento; se duplica en cada intento
+    private static final long ESPERA_INICIAL_MS = 2000;
+
+    private static final long VENTANA_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    @Value("${veterinaria.recordatorios.por-minuto:60}")
+    private int enviosPorMinuto;
+
+    @Value("${veterinaria.recordatorios.remitente:no-reply@vetplanet.com}")
+    private String remitente;
+
+    // Idioma de los propietarios que nunca eligieron uno
+    @Value("${veterinaria.recordatorios.idioma:es}")
+    private Locale idiomaPorDefecto;
+
+    @Autowired
+    private ObjectProvider<JavaMailSender> mailSenderProvider;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private MessageSource messageSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final BlockingQueue<Recordatorio> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+
+    // Citas en la cola o esperando reintento, para no encolarlas dos veces
+    private final Set<Integer> enCurso = ConcurrentHashMap.newKeySet();
+
+    private JavaMailSender mailSender;
+    private ScheduledExecutorService ejecutor;
+    private volatile boolean activo;
+
+    // Límite de envíos por minuto; solo los usa el hilo de envío
+    private long inicioVentana = System.nanoTime();
+    private int enviadosEnVentana;
+
+    private Timer tiempoEnvio;
+    private Counter enviados;
+    private Counter reintentos;
+    private Counter fallidos;
+
+    /**
+     * Recordatorio pendiente junto con el número de intento.
+     */
+    private record Recordatorio(RecordatorioCitaDTO datos, int intento) {
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        mailSender = mailSenderProvider.getIfAvailable();
+        if (mailSender == null) {
+            logger.info("No hay servidor de correo configurado; los recordatorios de citas están desactivados");
+            return;
+        }
+
+        Gauge.builder("veterinaria.recordatorios.cola", cola, BlockingQueue::size)
+                .description("Recordatorios esperando envío")
+                .register(meterRegistry);
+        tiempoEnvio = Timer.builder("veterinaria.recordatorios.envio")
+                .description("Tiempo de envío de cada lote de recordatorios")
+                .register(meterRegistry);
+        enviados = Counter.builder("veterinaria.recordatorios.enviados").register(meterRegistry);
+        reintentos = Counter.builder("veterinaria.recordatorios.reintentos").register(meterRegistry);
+        fallidos = Counter.builder("veterinaria.recordatorios.fallidos").register(meterRegistry);
+
+        ejecutor = Executors.newScheduledThreadPool(2, tarea -> {
+            Thread hilo = new Thread(tarea, "recordatorios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        activo = true;
+        ejecutor.execute(this::procesarCola);
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Busca las citas de las próximas horas sin recordatorio y las encola para su envío.
+     * @return Número de recordatorios encolados
+     */
+    public int encolarPendientes() {
+        if (mailSender == null) {
+            return 0;
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<RecordatorioCitaDTO> pendientes = citaRepository.findRecordatoriosPendientes(
+                ahora, ahora.plusHours(HORAS_ANTICIPACION), Cita.EstadoCita.Programada,
+                PageRequest.of(0, CAPACIDAD_COLA));
+
+        int encolados = 0;
+        for (RecordatorioCitaDTO datos : pendientes) {
+            if (!enCurso.add(datos.idCita())) {
+                continue;
+            }
+            if (!cola.offer(new Recordatorio(datos, 1))) {
+                // Cola llena: el resto se encolará en el siguiente ciclo
+                enCurso.remove(datos.idCita());
+                break;
+            }
+            encolados++;
+        }
+        if (encolados > 0) {
+            logger.info("Se encolaron {} recordatorios de citas", encolados);
+        }
+        return encolados;
+    }
+
+    /**
+     * Cantidad de recordatorios esperando envío.
+     * @return Tamaño de la cola
+     */
+    public int getTamanioCola() {
+        return cola.size();
+    }
+
+    private void procesarCola() {
+        while (activo && !Thread.currentThread().isInterrupted()) {
+            try {
+                int disponibles = esperarCupo();
+                Recordatorio primero = cola.poll(1, TimeUnit.SECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                List<Recordatorio> lote = new ArrayList<>();
+                lote.add(primero);
+                cola.drainTo(lote, Math.min(TAMANIO_LOTE, disponibles) - 1);
+                enviadosEnVentana += lote.size();
+                enviarLote(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Error al procesar los recordatorios de citas", e);
+            }
+        }
+    }
+
+    /**
+     * Espera hasta que quede cupo en la ventana del minuto actual.
+     * @return Correos que todavía se pueden enviar en la ventana
+     */
+    private int esperarCupo() throws InterruptedException {
+        while (true) {
+            long transcurrido = System.nanoTime() - inicioVentana;
+            if (transcurrido >= VENTANA_NANOS) {
+                inicioVentana = System.nanoTime();
+                enviadosEnVentana = 0;
+            }
+            int disponibles = enviosPorMinuto - enviadosEnVentana;
+            if (disponibles > 0) {
+                return disponibles;
+            }
+            TimeUnit.NANOSECONDS.sleep(VENTANA_NANOS - transcurrido);
+        }
+    }
+
+    private void enviarLote(List<Recordatorio> lote) {
+        Map<SimpleMailMessage, Recordatorio> porMensaje = new IdentityHashMap<>();
+        for (Recordatorio recordatorio : lote) {
+            porMensaje.put(redactar(recordatorio.datos()), recordatorio);
+        }
+
+        List<Recordatorio> fallaron = new ArrayList<>();
+        long inicio = System.nanoTime();
+        try {
+            mailSender.send(porMensaje.keySet().toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                fallaron.addAll(lote);
+            } else {
+                for (Object mensaje : e.getFailedMessages().keySet()) {
+                    Recordatorio recordatorio = porMensaje.get(mensaje);
+                    if (recordatorio != null) {
+                        fallaron.add(recordatorio);
+                    }
+                }
+            }
+            logger.warn("Fallaron {} de {} recordatorios: {}", fallaron.size(), lote.size(), e.getMessage());
+        } catch (MailException e) {
+            fallaron.addAll(lote);
+            logger.warn("No se pudo enviar el lote de recordatorios: {}", e.getMessage());
+        } finally {
+            tiempoEnvio.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+
+        List<Integer> exitosos = new ArrayList<>();
+        for (Recordatorio recordatorio : lote) {
+            if (!fallaron.contains(recordatorio)) {
+                exitosos.add(recordatorio.datos().idCita());
+            }
+        }
+        if (!exitosos.isEmpty()) {
+            transactionTemplate.executeWithoutResult(estado -> citaRepository.marcarRecordatorioEnviado(exitosos));
+            exitosos.forEach(enCurso::remove);
+            enviados.increment(exitosos.size());
+        }
+
+        for (Recordatorio recordatorio : fallaron) {
+            reintentar(recordatorio);
+        }
+    }
+
+    private void reintentar(Recordatorio recordatorio) {
+        Integer idCita = recordatorio.datos().idCita();
+        if (recordatorio.intento() >= MAX_INTENTOS) {
+            fallidos.increment();
+            enCurso.remove(idCita);
+            logger.warn("Se agotaron los intentos del recordatorio de la cita {}", idCita);
+            return;
+        }
+
+        reintentos.increment();
+        long espera = ESPERA_INICIAL_MS << (recordatorio.intento() - 1);
+        Recordatorio siguiente = new Recordatorio(recordatorio.datos(), recordatorio.intento() + 1);
+        ejecutor.schedule(() -> {
+            if (!cola.offer(siguiente)) {
+                enCurso.remove(idCita);
+            }
+        }, espera, TimeUnit.MILLISECONDS);
+    }
+
+    private SimpleMailMessage redactar(RecordatorioCitaDTO datos) {
+        Locale idioma = datos.idioma() != null ? Locale.forLanguageTag(datos.idioma()) : idiomaPorDefecto;
+        String fecha = datos.fechaHora().format(
+                DateTimeFormatter.ofLocalizedDate(FormatStyle.FULL).withLocale(idioma));
+        String hora = datos.fechaHora().format(DateTimeFormatter.ofPattern("HH:mm"));
+
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(remitente);
+        mensaje.setTo(datos.email());
+        mensaje.setSubject(messageSource.getMessage("reminder.subject",
+                new Object[]{datos.nombreMascota()}, idioma));
+        mensaje.setText(messageSource.getMessage("reminder.body",
+                new Object[]{datos.nombrePropietario(), datos.nombreMascota(), datos.nombreServicio(), fecha, hora},
+                idioma));
+        return mensaje;
+    }
+}
@@ -0,0 +1,363 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.ConteoOcupacionDTO;
+import com.sistemaVeterinario.dto.OcupacionDiariaDTO;
+import com.sistemaVeterinario.models.ResumenOcupacion;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.ResumenOcupacionRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Resumen de ocupación por hora y servicio para el panel de administración.
+ *
+ * <p>La tabla {@code resumen_ocupacion} guarda cuántas citas programadas, canceladas y completadas
+ * tiene cada servicio en cada hora, de modo que el panel lee unos cientos de filas en lugar de
+ * agrupar la tabla de citas. Cada cambio vuelve a contar solo las horas afectadas desde la tabla de
+ * citas: los eventos de {@link EventosCitaService} (la hora nueva y, si se reprogramó, la anterior)
+ * y los lotes de citas completadas por las tareas programadas. Volver a contar una hora da el mismo
+ * resultado sin importar cuántas veces o en qué orden llegue el aviso, por lo que las entregas
+ * repetidas de eventos no alteran el resumen.</p>
+ *
+ * <p>La reconstrucción recalcula toda la tabla en bloques de días procesados en paralelo, cada uno
+ * en su propia transacción. Mientras dura, las actualizaciones por hora esperan a que termine.
+ * La reconstrucción inicial del líder se lanza en segundo plano y se abandona entre bloques si la
+ * instancia pierde el liderazgo.</p>
+ */
+@Service
+public class ResumenOcupacionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumenOcupacionService.class);
+
+    // Días recalculados por cada tarea de la reconstrucción
+    static final int DIAS_POR_BLOQUE = 31;
+
+    // Intentos de cada bloque de la reconstrucción ante escrituras simultáneas de otra instancia
+    private static final int INTENTOS_POR_BLOQUE = 3;
+
+    @Autowired
+    private ResumenOcupacionRepository resumenOcupacionRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LiderazgoService liderazgoService;
+
+    @Value("${veterinaria.ocupacion.hilos-reconstruccion:0}")
+    private int hilosReconstruccion;
+
+    // Serializa las escrituras del resumen dentro de la instancia
+    private final Lock candado = new ReentrantLock();
+
+    private final AtomicBoolean reconstruyendo = new AtomicBoolean();
+
+    // Hilo de la reconstrucción inicial, para no retener el hilo que entrega el liderazgo
+    private final ExecutorService reconstruccionInicial = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "ocupacion-reconstruccion");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /**
+     * Actualiza las horas afectadas por un evento de una cita.
+     * @param evento Evento entregado por la bandeja de salida
+     */
+    @EventListener
+    public void alPublicarEvento(EventosCitaService.EventoCitaPublicado evento) {
+        List<LocalDateTime> horas = new ArrayList<>(2);
+        horas.add(evento.fechaHora());
+        if (evento.fechaHoraAnterior() != null) {
+            horas.add(evento.fechaHoraAnterior());
+        }
+        recalcularHoras(horas);
+    }
+
+    /**
+     * Al obtener el liderazgo, construye en segundo plano el resumen si todavía está vacío y hay
+     * citas. La reconstrucción se detiene si la instancia deja de ser líder.
+     */
+    @EventListener(LiderazgoService.LiderazgoAdquirido.class)
+    public void alAdquirirLiderazgo() {
+        reconstruccionInicial.execute(() -> {
+            try {
+                if (resumenOcupacionRepository.count() == 0 && citaRepository.count() > 0) {
+                    reconstruir(liderazgoService::esLider);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Falló la reconstrucción inicial del resumen de ocupación", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        reconstruccionInicial.shutdownNow();
+    }
+
+    /**
+     * Vuelve a contar las horas que contienen las fechas indicadas. Las horas consecutivas se
+     * recalculan juntas, en una sola transacción.
+     * @param fechas Fechas y horas de citas que cambiaron
+     */
+    public void recalcularHoras(Collection<LocalDateTime> fechas) {
+        if (fechas.isEmpty()) {
+            return;
+        }
+        TreeSet<LocalDateTime> horas = fechas.stream()
+                .map(fecha -> fecha.truncatedTo(ChronoUnit.HOURS))
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        candado.lock();
+        try {
+            transactionTemplate.executeWithoutResult(estado -> {
+                LocalDateTime desde = horas.first();
+                LocalDateTime hasta = desde.plusHours(1);
+                for (LocalDateTime hora : horas.tailSet(desde, false)) {
+                    if (!hora.equals(hasta)) {
+                        recalcular(desde, hasta);
+                        desde = hora;
+                    }
+                    hasta = hora.plusHours(1);
+                }
+                recalcular(desde, hasta);
+            });
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Actualiza las horas de las citas que una tarea programada cambió de estado. Un fallo se
+     * registra en el log sin interrumpir la tarea; esas horas se corrigen con su siguiente
+     * cambio o con la reconstrucción.
+     * @param fechas Fechas y horas de las citas actualizadas
+     */
+    public void registrarTransiciones(Collection<LocalDateTime> fechas) {
+        try {
+            recalcularHoras(fechas);
+        } catch (RuntimeException e) {
+            logger.warn("No se pudo actualizar el resumen de ocupación de {} horas: {}", fechas.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Recalcula todo el resumen desde la tabla de citas, en paralelo por bloques de días.
+     * @return Filas del resumen escritas, o -1 si ya había una reconstrucción en curso
+     */
+    public int reconstruir() {
+        return reconstruir(() -> true);
+    }
+
+    /**
+     * Recalcula todo el resumen comprobando la condición antes de cada bloque. Si deja de
+     * cumplirse, los bloques pendientes se omiten y no se eliminan filas fuera de rango.
+     * @param continuar Condición comprobada antes de cada bloque, por ejemplo seguir siendo líder
+     * @return Filas del resumen escritas, o -1 si ya había una reconstrucción en curso o se detuvo
+     */
+    public int reconstruir(BooleanSupplier continuar) {
+        if (!reconstruyendo.compareAndSet(false, true)) {
+            logger.info("La reconstrucción del resumen de ocupación ya está en ejecución");
+            return -1;
+        }
+        candado.lock();
+        try {
+            return reconstruirBloques(continuar);
+        } finally {
+            candado.unlock();
+            reconstruyendo.set(false);
+        }
+    }
+
+    /**
+     * Obtiene la ocupación por día y servicio de un rango de días.
+     * @param desde Primer día incluido
+     * @param hasta Último día incluido
+     * @return Ocupación ordenada por día y nombre de servicio
+     */
+    public List<OcupacionDiariaDTO> obtenerOcupacion(LocalDate desde, LocalDate hasta) {
+        List<ResumenOcupacion> filas = resumenOcupacionRepository.findEnRango(
+                desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay());
+        Map<Integer, String> nombres = servicioRepository.findAll().stream()
+                .collect(Collectors.toMap(Servicio::getIdServicio, Servicio::getNombre));
+
+        // Las filas llegan ordenadas por hora, así que los días quedan en orden
+        Map<LocalDate, Map<Integer, List<ResumenOcupacion>>> porDia = new LinkedHashMap<>();
+        for (ResumenOcupacion fila : filas) {
+            porDia.computeIfAbsent(fila.getHora().toLocalDate(), dia -> new HashMap<>())
+                    .computeIfAbsent(fila.getIdServicio(), id -> new ArrayList<>())
+                    .add(fila);
+        }
+
+        List<OcupacionDiariaDTO> ocupacion = new ArrayList<>();
+        porDia.forEach((dia, porServicio) -> {
+            List<OcupacionDiariaDTO> delDia = new ArrayList<>();
+            porServicio.forEach((idServicio, horas) -> delDia.add(
+                    sumarDia(dia, idServicio, nombres.getOrDefault(idServicio, "#" + idServicio), horas)));
+            delDia.sort((a, b) -> a.servicio().compareToIgnoreCase(b.servicio()));
+            ocupacion.addAll(delDia);
+        });
+        return ocupacion;
+    }
+
+    private static OcupacionDiariaDTO sumarDia(LocalDate dia, Integer idServicio, String nombre,
+                                               List<ResumenOcupacion> horas) {
+        long programadas = 0, canceladas = 0, completadas = 0;
+        Integer horaPico = null;
+        int maximo = 0;
+        for (ResumenOcupacion hora : horas) {
+            programadas += hora.getProgramadas();
+            canceladas += hora.getCanceladas();
+            completadas += hora.getCompletadas();
+            int activas = hora.getProgramadas() + hora.getCompletadas();
+            if (activas > maximo) {
+                maximo = activas;
+                horaPico = hora.getHora().getHour();
+            }
+        }
+        return new OcupacionDiariaDTO(dia, idServicio, nombre, programadas, canceladas, completadas, horaPico);
+    }
+
+    private int reconstruirBloques(BooleanSupplier continuar) {
+        long inicio = System.nanoTime();
+        LocalDateTime minima = citaRepository.findFechaHoraMinima();
+        LocalDateTime maxima = citaRepository.findFechaHoraMaxima();
+        if (minima == null) {
+            transactionTemplate.executeWithoutResult(estado -> resumenOcupacionRepository.deleteAllInBatch());
+            logger.info("Resumen de ocupación reconstruido: no hay citas");
+            return 0;
+        }
+        LocalDateTime desde = minima.toLocalDate().atStartOfDay();
+        LocalDateTime hasta = maxima.toLocalDate().plusDays(1).atStartOfDay();
+
+        AtomicBoolean detenida = new AtomicBoolean();
+        List<Callable<Integer>> bloques = new ArrayList<>();
+        for (LocalDateTime bloque = desde; bloque.isBefore(hasta); bloque = bloque.plusDays(DIAS_POR_BLOQUE)) {
+            LocalDateTime inicioBloque = bloque;
+            LocalDateTime finBloque = bloque.plusDays(DIAS_POR_BLOQUE).isBefore(hasta)
+                    ? bloque.plusDays(DIAS_POR_BLOQUE) : hasta;
+            bloques.add(() -> {
+                if (detenida.get() || !continuar.getAsBoolean()) {
+                    detenida.set(true);
+                    return 0;
+                }
+                return recalcularBloque(inicioBloque, finBloque);
+            });
+        }
+
+        int hilos = Math.min(bloques.size(), hilosReconstruccion > 0
+                ? hilosReconstruccion : Runtime.getRuntime().availableProcessors());
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        int filas = 0;
+        try {
+            for (Future<Integer> resultado : ejecutor.invokeAll(bloques)) {
+                filas += resultado.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconstrucción del resumen de ocupación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló la reconstrucción del resumen de ocupación", e.getCause());
+        } finally {
+            ejecutor.shutdownNow();
+        }
+
+        if (detenida.get()) {
+            logger.info("Reconstrucción del resumen de ocupación detenida tras escribir {} filas", filas);
+            return -1;
+        }
+        transactionTemplate.executeWithoutResult(estado ->
+                resumenOcupacionRepository.eliminarFueraDeRango(desde, hasta));
+
+        logger.info("Resumen de ocupación reconstruido: {} filas en {} bloques con {} hilos en {} ms",
+                filas, bloques.size(), hilos, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        return filas;
+    }
+
+    /**
+     * Recalcula un bloque de la reconstrucción en su propia transacción. El candado solo
+     * serializa las escrituras de esta instancia: si otra actualiza a la vez una hora del bloque,
+     * la clave única rechaza una de las dos y el bloque se vuelve a contar desde la tabla de citas.
+     * @return Filas escritas
+     */
+    private int recalcularBloque(LocalDateTime desde, LocalDateTime hasta) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(estado -> recalcular(desde, hasta));
+            } catch (DataIntegrityViolationException e) {
+                if (intento == INTENTOS_POR_BLOQUE) {
+                    throw e;
+                }
+                logger.info("Escritura simultánea en el bloque {} - {} del resumen; reintentando", desde, hasta);
+            }
+        }
+    }
+
+    /**
+     * Reemplaza las filas del resumen de un rango de horas por los conteos actuales de la tabla
+     * de citas. Debe llamarse dentro de una transacción.
+     * @return Filas escritas
+     */
+    private int recalcular(LocalDateTime desde, LocalDateTime hasta) {
+        Map<String, ResumenOcupacion> filas = new LinkedHashMap<>();
+        for (ConteoOcupacionDTO conteo : citaRepository.contarOcupacion(desde, hasta)) {
+            if (conteo.estado() == null) {
+                continue;
+            }
+            LocalDateTime hora = conteo.fecha().atTime(conteo.hora(), 0);
+            ResumenOcupacion fila = filas.computeIfAbsent(hora + "|" + conteo.idServicio(), clave -> {
+                ResumenOcupacion nueva = new ResumenOcupacion();
+                nueva.setHora(hora);
+                nueva.setIdServicio(conteo.idServicio());
+                return nueva;
+            });
+            int total = conteo.total().intValue();
+            switch (conteo.estado()) {
+                case Programada -> fila.setProgramadas(total);
+                case Cancelada -> fila.setCanceladas(total);
+                case Completada -> fila.setCompletadas(total);
+            }
+        }
+
+        resumenOcupacionRepository.eliminarRango(desde, hasta);
+        resumenOcupacionRepository.saveAll(filas.values());
+        return filas.size();
+    }
+}
@@ -2,18 +2,55 @@ package com.sistemaVeterinario.service;
 
 import com.sistemaVeterinario.models.Role;
 import com.sistemaVeterinario.repository.RoleRepository;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Servicio para la gestión de roles de usuario en el sistema veterinario.
  * Proporciona métodos para obtener roles específicos del sistema.
+ *
+ * <p>Los roles casi nunca cambian, así que se cargan una vez al iniciar en un registro inmutable
+ * en memoria y se consultan desde ahí sin ir a la base de datos. El registro se vuelve a cargar
+ * cuando se confirma un cambio en la tabla {@code roles} hecho a través de JPA.</p>
+ *
+ * <p>La invalidación solo alcanza a la instancia que hizo el cambio: las demás instancias siguen
+ * con los roles anteriores hasta reiniciarse o llamar a {@link #recargar()}. Los roles se crean
+ * al instalar la aplicación y no se editan desde ella.</p>
  */
 @Service
 public class RoleService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RoleService.class);
+
     private final RoleRepository roleRepository;
 
+    private volatile Registro registro;
+
+    /**
+     * Roles cargados, por ID y por nombre.
+     */
+    private record Registro(List<Role> todos, Map<Integer, Role> porId, Map<String, Role> porNombre) {
+    }
+
     /**
      * Constructor para inyección de dependencias.
      * @param roleRepository Repositorio de roles
@@ -23,13 +60,122 @@ public class RoleService {
         this.roleRepository = roleRepository;
     }
 
+    /**
+     * Carga los roles apenas la aplicación está lista.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        recargar();
+    }
+
+    /**
+     * Vuelve a cargar los roles desde la base de datos.
+     */
+    public synchronized void recargar() {
+        List<Role> roles = roleRepository.findAll();
+        registro = new Registro(
+                List.copyOf(roles),
+                roles.stream().collect(Collectors.toUnmodifiableMap(Role::getIdRol, Function.identity())),
+                roles.stream().collect(Collectors.toUnmodifiableMap(Role::getNombreRol, Function.identity())));
+        logger.info("Registro de roles cargado con {} roles", roles.size());
+    }
+
+    /**
+     * Obtiene todos los roles del sistema.
+     * @return Lista inmutable de roles
+     */
+    public List<Role> findAll() {
+        return registro().todos();
+    }
+
+    /**
+     * Busca un rol por su nombre exacto.
+     * @param nombreRol Nombre del rol
+     * @return El rol, o vacío si no existe
+     */
+    public Optional<Role> findByNombre(String nombreRol) {
+        return Optional.ofNullable(registro().porNombre().get(nombreRol));
+    }
+
+    /**
+     * Obtiene los roles con los IDs indicados, ignorando los que no existen.
+     * @param ids IDs de los roles (puede ser null)
+     * @return Conjunto de roles encontrados
+     */
+    public Set<Role> findAllById(Collection<Integer> ids) {
+        Set<Role> roles = new LinkedHashSet<>();
+        if (ids != null) {
+            Map<Integer, Role> porId = registro().porId();
+            for (Integer id : ids) {
+                Role rol = porId.get(id);
+                if (rol != null) {
+                    roles.add(rol);
+                }
+            }
+        }
+        return roles;
+    }
+
     /**
      * Obtiene el rol básico de usuario (USER).
      * @return Entidad Role correspondiente al rol USER
      * @throws IllegalStateException Si el rol USER no existe en la base de datos
      */
     public Role obtenerRolUsuario() {
-        return roleRepository.findByNombreRol("USER")
+        return findByNombre("USER")
                 .orElseThrow(() -> new IllegalStateException("El rol de usuario no existe"));
     }
-}
\ No newline at end of file
+
+    private Registro registro() {
+        Registro actual = registro;
+        if (actual == null) {
+            synchronized (this) {
+                if (registro == null) {
+                    recargar();
+                }
+                actual = registro;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Descarta el registro para que la siguiente consulta lo vuelva a cargar. Si hay una
+     * transacción activa, espera a que se confirme. Solo afecta a esta instancia.
+     */
+    private void invalidar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    descartar();
+                }
+            });
+        } else {
+            descartar();
+        }
+    }
+
+    // Sincronizado para no quedar detrás de una recarga que leyó los datos anteriores
+    private synchronized void descartar() {
+        registro = null;
+    }
+
+    /**
+     * Escucha de JPA registrada en {@link Role} que invalida el registro cuando cambia un rol.
+     * El servicio se obtiene al usarlo porque la escucha se crea junto con el EntityManagerFactory,
+     * antes que el propio servicio.
+     */
+    public static class CambiosRolListener {
+
+        @Autowired
+        private ObjectProvider<RoleService> roleService;
+
+        @PostPersist
+        @PostUpdate
+        @PostRemove
+        public void alCambiar(Role role) {
+            roleService.getObject().invalidar();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.Scheduler.RuedaTemporizadores;
+import com.sistemaVeterinario.dto.HorarioOcupadoDTO;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.repository.CitaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servicio que marca cada cita como "Completada" cuando termina su horario.
+ *
+ * <p>Las citas programadas del horizonte cercano se cargan en una rueda jerárquica de
+ * temporizadores con resolución de un minuto. {@link CitaService} la mantiene al día cada
+ * vez que una cita se agenda, se reprograma o se cancela, y cada minuto se actualizan en
+ * lotes pequeños solo las citas que vencieron. Las horas de esas citas se recalculan después
+ * en el resumen de ocupación ({@link ResumenOcupacionService}).</p>
+ *
+ * <p>Solo la instancia líder mantiene la rueda: las demás ignoran las citas que guardan, y el
+ * líder las incorpora en su siguiente reconstrucción.</p>
+ */
+@Service
+public class TransicionCitasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransicionCitasService.class);
+
+    // Días hacia adelante que se cargan en la rueda; el resto entra en reconstrucciones posteriores
+    private static final int HORIZONTE_DIAS = DisponibilidadService.HORIZONTE_DIAS + 1;
+
+    // Citas actualizadas por cada sentencia UPDATE
+    private static final int TAMANIO_LOTE = 500;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ResumenOcupacionService resumenOcupacionService;
+
+    @Autowired
+    private LiderazgoService liderazgoService;
+
+    private RuedaTemporizadores<Integer> rueda = new RuedaTemporizadores<>(minutoActual());
+
+    // Minuto de vencimiento vigente de cada cita; las entradas de la rueda que no coinciden se ignoran
+    private final Map<Integer, Long> vencimientos = new ConcurrentHashMap<>();
+
+    /**
+     * Programa, reprograma o retira el vencimiento de una cita recién guardada. Fuera de la
+     * instancia líder no hace nada, porque nadie avanzaría ni vaciaría la rueda.
+     * @param cita La cita guardada
+     */
+    public void programar(Cita cita) {
+        if (cita.getIdCita() == null || !liderazgoService.esLider()) {
+            return;
+        }
+        if (cita.getEstado() != Cita.EstadoCita.Programada
+                || cita.getFechaHora().isAfter(LocalDateTime.now().plusDays(HORIZONTE_DIAS))) {
+            vencimientos.remove(cita.getIdCita());
+            return;
+        }
+
+        long minuto = minutoDeFin(cita.getFechaHora());
+        synchronized (this) {
+            Long anterior = vencimientos.put(cita.getIdCita(), minuto);
+            if (anterior == null || anterior != minuto) {
+                rueda.agregar(cita.getIdCita(), minuto);
+            }
+        }
+    }
+
+    /**
+     * Avanza la rueda hasta el minuto actual y marca como completadas las citas vencidas.
+     * @return Número de citas actualizadas
+     */
+    public int avanzar() {
+        List<Integer> vencidas = new ArrayList<>();
+        synchronized (this) {
+            for (Integer idCita : rueda.avanzar(minutoActual())) {
+                Long minuto = vencimientos.get(idCita);
+                // Solo vence si la entrada corresponde al último horario programado de la cita
+                if (minuto != null && minuto <= rueda.getTickActual() && vencimientos.remove(idCita, minuto)) {
+                    vencidas.add(idCita);
+                }
+            }
+        }
+        return completar(vencidas);
+    }
+
+    /**
+     * Reconstruye la rueda desde la base de datos con las citas programadas que terminan
+     * dentro del horizonte. Se usa al obtener el liderazgo y periódicamente, para incluir
+     * las citas guardadas en otras instancias.
+     */
+    public void reconstruir() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<HorarioOcupadoDTO> programadas = citaRepository.findHorariosPorEstado(
+                ahora.minusMinutes(DisponibilidadService.MINUTOS_POR_SLOT),
+                ahora.plusDays(HORIZONTE_DIAS),
+                Cita.EstadoCita.Programada);
+
+        RuedaTemporizadores<Integer> nueva = new RuedaTemporizadores<>(minutoActual());
+        Map<Integer, Long> nuevosVencimientos = new ConcurrentHashMap<>();
+        for (HorarioOcupadoDTO cita : programadas) {
+            long minuto = minutoDeFin(cita.fechaHora());
+            nueva.agregar(cita.idCita(), minuto);
+            nuevosVencimientos.put(cita.idCita(), minuto);
+        }
+
+        synchronized (this) {
+            rueda = nueva;
+            vencimientos.clear();
+            vencimientos.putAll(nuevosVencimientos);
+        }
+        logger.debug("Rueda de citas reconstruida con {} citas programadas", programadas.size());
+    }
+
+    /**
+     * Cantidad de citas esperando su vencimiento.
+     * @return Número de citas programadas en la rueda
+     */
+    public int contarPendientes() {
+        return vencimientos.size();
+    }
+
+    /**
+     * Actualiza en lotes el estado de las citas vencidas. Cada lote tiene su propia transacción
+     * y la consulta vuelve a comprobar estado y horario, por lo que una cita reprogramada o
+     * cancelada mientras tanto no se modifica.
+     */
+    private int completar(List<Integer> ids) {
+        int actualizadas = 0;
+        List<LocalDateTime> horas = new ArrayList<>();
+        LocalDateTime inicioMaximo = LocalDateTime.now().minusMinutes(DisponibilidadService.MINUTOS_POR_SLOT);
+        for (int desde = 0; desde < ids.size(); desde += TAMANIO_LOTE) {
+            List<Integer> lote = ids.subList(desde, Math.min(desde + TAMANIO_LOTE, ids.size()));
+            Integer filas = transactionTemplate.execute(estado -> {
+                // Solo las horas de las citas que la actualización va a modificar
+                List<LocalDateTime> horasLote = citaRepository.findFechasHoraACompletar(
+                        lote, Cita.EstadoCita.Programada, inicioMaximo);
+                if (horasLote.isEmpty()) {
+                    return 0;
+                }
+                horas.addAll(horasLote);
+                return citaRepository.completarCitas(
+                        lote, Cita.EstadoCita.Completada, Cita.EstadoCita.Programada, inicioMaximo);
+            });
+            actualizadas += filas != null ? filas : 0;
+        }
+        if (actualizadas > 0) {
+            logger.info("Se marcaron {} citas como completadas", actualizadas);
+            resumenOcupacionService.registrarTransiciones(horas);
+        }
+        return actualizadas;
+    }
+
+    private static long minutoDeFin(LocalDateTime fechaHora) {
+        return fechaHora.plusMinutes(DisponibilidadService.MINUTOS_POR_SLOT)
+                .atZone(ZoneId.systemDefault()).toEpochSecond() / 60;
+    }
+
+    private static long minutoActual() {
+        return System.currentTimeMillis() / 60_000;
+    }
+}
@@ -4,7 +4,9 @@ import com.sistemaVeterinario.models.Usuario;
 import com.sistemaVeterinario.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Locale;
 import java.util.Optional;
 
 /**
@@ -26,4 +28,28 @@ public class UsuarioService {
     public Optional<Usuario> findByEmail(String email) {
         return usuarioRepository.findByEmail(email);
     }
+
+    /**
+     * Obtiene una referencia al usuario sin consultarlo, para asignarlo en relaciones.
+     *
+     * @param idUsuario El ID del usuario
+     * @return Referencia al usuario con ese ID
+     */
+    public Usuario getReferencia(Integer idUsuario) {
+        return usuarioRepository.getReferenceById(idUsuario);
+    }
+
+    /**
+     * Recuerda el idioma elegido por el usuario, para redactar en él los correos que se le
+     * envían fuera de una petición, como los recordatorios de citas.
+     *
+     * @param idUsuario El ID del usuario
+     * @param locale El idioma elegido
+     */
+    @Transactional
+    public void registrarIdioma(Integer idUsuario, Locale locale) {
+        if (idUsuario != null && locale != null && !locale.getLanguage().isEmpty()) {
+            usuarioRepository.actualizarIdioma(idUsuario, locale.getLanguage());
+        }
+    }
 }
\ No newline at end of file
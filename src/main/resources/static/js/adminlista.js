@@ -0,0 +1,65 @@
+// SUGERENCIAS DEL BUSCADOR DE USUARIOS
+document.addEventListener('DOMContentLoaded', function () {
+    const buscador = document.getElementById('buscador');
+    const sugerencias = document.getElementById('sugerencias');
+    if (!buscador || !sugerencias) {
+        return;
+    }
+
+    let ultimaConsulta = 0;
+
+    function ocultar() {
+        sugerencias.classList.add('d-none');
+        sugerencias.replaceChildren();
+    }
+
+    function mostrar(usuarios) {
+        sugerencias.replaceChildren();
+        usuarios.forEach(usuario => {
+            const enlace = document.createElement('a');
+            enlace.className = 'list-group-item list-group-item-action';
+            enlace.href = buscador.dataset.editar + usuario.idUsuario;
+
+            const nombre = document.createElement('div');
+            nombre.textContent = usuario.nombre + ' ' + usuario.apellido;
+            const detalle = document.createElement('div');
+            detalle.className = 'sugerencia-detalle';
+            detalle.textContent = [usuario.email, usuario.telefono].concat(usuario.mascotas).join(' · ');
+
+            enlace.append(nombre, detalle);
+            sugerencias.append(enlace);
+        });
+        sugerencias.classList.toggle('d-none', usuarios.length === 0);
+    }
+
+    buscador.addEventListener('input', function () {
+        const texto = buscador.value.trim();
+        if (texto.length === 0) {
+            ocultar();
+            return;
+        }
+        // Se descartan las respuestas que llegan después de una consulta más reciente
+        const consulta = ++ultimaConsulta;
+        fetch(buscador.dataset.sugerencias + '?q=' + encodeURIComponent(texto), {headers: {'Accept': 'application/json'}})
+            .then(respuesta => respuesta.ok ? respuesta.json() : [])
+            .then(usuarios => {
+                if (consulta === ultimaConsulta) {
+                    mostrar(usuarios);
+                }
+            })
+            .catch(ocultar);
+    });
+
+    buscador.addEventListener('keydown', function (e) {
+        if (e.key === 'Escape') {
+            ocultar();
+        }
+    });
+
+    // Cerrar las sugerencias cuando se hace clic fuera
+    document.addEventListener('click', function (e) {
+        if (!sugerencias.contains(e.target) && e.target !== buscador) {
+            ocultar();
+        }
+    });
+});
@@ -8,6 +8,13 @@ $(document).ready(function() {
         hora: /*[[${#temporals.format(cita.fechaHora, 'HH:mm')}]]*/ null
     };
 
+    // Matriz de disponibilidad de todas las fechas ofrecidas (una sola petición)
+    var disponibilidadRango = null;
+    // Conexión SSE con los cambios de la fecha seleccionada
+    var fuenteEventos = null;
+    cargarDisponibilidadRango();
+    suscribirCambios($('#fechaSeleccionada').val());
+
     // Cargar horarios para la fecha y servicio inicial
     if (citaActual.fecha) {
         cargarHorarios(citaActual.fecha);
@@ -23,16 +30,15 @@ $(document).ready(function() {
             $('#servicioDescripcion').html('');
         }
 
-        // Si ya hay fecha seleccionada, actualizar horarios
-        var fecha = $('#fechaSeleccionada').val();
-        if (fecha) {
-            cargarHorarios(fecha);
-        }
+        // Recargar la disponibilidad del rango para el nuevo servicio
+        cargarDisponibilidadRango();
+        suscribirCambios($('#fechaSeleccionada').val());
     });
 
     // Cargar horarios al seleccionar fecha
     $('#fechaSeleccionada').change(function() {
         var fecha = $(this).val();
+        suscribirCambios(fecha);
         if (fecha) {
             cargarHorarios(fecha);
             $('#fechaSeleccionInfo').hide();
@@ -44,6 +50,12 @@ $(document).ready(function() {
 
     // Función para cargar horarios disponibles
     function cargarHorarios(fecha) {
+        // Si la disponibilidad del día ya está en memoria no se hace otra petición
+        if (disponibilidadRango && disponibilidadRango.dias[fecha]) {
+            renderizarHorarios(horariosDesdeMatriz(fecha));
+            return;
+        }
+
         var servicioId = $('#servicioId').val();
 
         $.ajax({
@@ -63,6 +75,75 @@ $(document).ready(function() {
         });
     }
 
+    // Consultar en una sola petición la disponibilidad de todas las fechas ofrecidas
+    function cargarDisponibilidadRango() {
+        var fechas = $('#fechaSeleccionada option').map(function() {
+            return $(this).val();
+        }).get().filter(function(valor) {
+            return valor;
+        });
+
+        if (fechas.length === 0) {
+            return;
+        }
+
+        // Descartar la matriz anterior mientras llega la del nuevo servicio
+        disponibilidadRango = null;
+        var servicioId = $('#servicioId').val();
+
+        $.ajax({
+            url: '/citas/horarios',
+            method: 'GET',
+            data: {
+                desde: fechas[0],
+                hasta: fechas[fechas.length - 1],
+                servicioId: servicioId || ''
+            },
+            success: function(response) {
+                disponibilidadRango = response;
+                marcarFechasCompletas(response.completos);
+
+                var fecha = $('#fechaSeleccionada').val();
+                if (fecha) {
+                    cargarHorarios(fecha);
+                }
+            },
+            error: function(error) {
+                // Sin la matriz se sigue consultando fecha por fecha
+                console.error('Error al cargar disponibilidad del rango:', error);
+                disponibilidadRango = null;
+            }
+        });
+    }
+
+    // Deshabilitar las fechas que no tienen horarios libres
+    function marcarFechasCompletas(completos) {
+        $('#fechaSeleccionada option').each(function() {
+            var valor = $(this).val();
+            if (!valor) {
+                return;
+            }
+            var completo = completos.indexOf(valor) !== -1 && !$(this).is(':selected');
+            $(this).prop('disabled', completo);
+            $(this).toggleClass('text-muted', completo);
+        });
+    }
+
+    // Convertir la matriz compacta de un día al formato de horas y disponibilidad
+    function horariosDesdeMatriz(fecha) {
+        var matriz = disponibilidadRango.dias[fecha];
+        var horas = [];
+        var disponibilidad = {};
+        disponibilidadRango.horas.forEach(function(hora, i) {
+            // '-' indica que la clínica no atiende a esa hora ese día
+            if (matriz.charAt(i) !== '-') {
+                horas.push(hora);
+                disponibilidad[hora] = matriz.charAt(i) === '1';
+            }
+        });
+        return { horas: horas, disponibilidad: disponibilidad };
+    }
+
     // Renderizar los horarios en la interfaz
     function renderizarHorarios(data) {
         var html = '';
@@ -93,7 +174,7 @@ $(document).ready(function() {
                 var clasesAdicionales = isSelected ? 'selected' : (disponible ? 'available' : 'unavailable');
                 var horaFormateada = formatearHora(hora);
 
-                html += '<div class="time-slot ' + clasesAdicionales + '" ' +
+                html += '<div class="time-slot ' + clasesAdicionales + '" data-hora="' + hora + '" ' +
                     ((disponible || isSelected) ? 'onclick="seleccionarHora(\'' + hora + '\', this)"' : '') +
                     '>' + horaFormateada + '</div>';
             });
@@ -107,7 +188,7 @@ $(document).ready(function() {
                 var clasesAdicionales = isSelected ? 'selected' : (disponible ? 'available' : 'unavailable');
                 var horaFormateada = formatearHora(hora);
 
-                html += '<div class="time-slot ' + clasesAdicionales + '" ' +
+                html += '<div class="time-slot ' + clasesAdicionales + '" data-hora="' + hora + '" ' +
                     ((disponible || isSelected) ? 'onclick="seleccionarHora(\'' + hora + '\', this)"' : '') +
                     '>' + horaFormateada + '</div>';
             });
@@ -117,6 +198,61 @@ $(document).ready(function() {
         $('#horariosContainer').html(html);
     }
 
+    // Escuchar en tiempo real los horarios que se ocupan o liberan en la fecha elegida
+    function suscribirCambios(fecha) {
+        if (fuenteEventos) {
+            fuenteEventos.close();
+            fuenteEventos = null;
+        }
+        if (!fecha || !window.EventSource) {
+            return;
+        }
+
+        var servicioId = $('#servicioId').val();
+        var url = '/citas/horarios/' + fecha + '/eventos' + (servicioId ? '?servicioId=' + servicioId : '');
+        fuenteEventos = new EventSource(url);
+
+        fuenteEventos.addEventListener('horario', function(evento) {
+            aplicarCambioHorario(fecha, JSON.parse(evento.data));
+        });
+
+        fuenteEventos.addEventListener('resincronizar', function() {
+            cargarDisponibilidadRango();
+        });
+    }
+
+    // Actualizar la matriz en memoria y el botón del horario afectado
+    function aplicarCambioHorario(fecha, datos) {
+        if (disponibilidadRango && disponibilidadRango.dias[fecha]) {
+            var indice = disponibilidadRango.horas.indexOf(datos.hora);
+            if (indice !== -1) {
+                var matriz = disponibilidadRango.dias[fecha];
+                disponibilidadRango.dias[fecha] = matriz.substring(0, indice) +
+                    (datos.disponible ? '1' : '0') + matriz.substring(indice + 1);
+            }
+        }
+
+        if (datos.hora === citaActual.hora) {
+            return;
+        }
+        var elemento = $('.time-slot[data-hora="' + datos.hora + '"]');
+        if (elemento.length === 0) {
+            return;
+        }
+
+        if (datos.disponible) {
+            elemento.removeClass('unavailable').addClass('available');
+            elemento.attr('onclick', 'seleccionarHora(\'' + datos.hora + '\', this)');
+        } else {
+            elemento.removeClass('available selected').addClass('unavailable');
+            elemento.removeAttr('onclick');
+            // Si se ocupó la hora elegida, el usuario debe escoger otra
+            if ($('#horaSeleccionada').val() === datos.hora && datos.hora !== citaActual.hora) {
+                $('#horaSeleccionada').val('');
+            }
+        }
+    }
+
     // Exponer función de selección de hora al ámbito global
     window.seleccionarHora = function(hora, elemento) {
         // Limpiar selección anterior
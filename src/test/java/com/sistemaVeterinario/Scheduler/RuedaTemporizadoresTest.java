@@ -0,0 +1,82 @@
+package com.sistemaVeterinario.Scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de {@link RuedaTemporizadores}: vencimiento exacto en cada nivel, bajada entre
+ * niveles, vencimientos más allá del último nivel y elementos reprogramados.
+ */
+class RuedaTemporizadoresTest {
+
+    // Tick inicial no alineado con ninguna casilla, para que las bajadas ocurran a mitad de camino
+    private static final long INICIO = 1_000_003;
+
+    // Ticks que cubre cada nivel: 64, 64 × 64 y 64 × 64 × 64
+    private static final long NIVEL_1 = 64;
+    private static final long NIVEL_2 = 64 * 64;
+    private static final long NIVEL_3 = 64 * 64 * 64;
+
+    @Test
+    void cadaNivelVenceEnSuTickExacto() {
+        RuedaTemporizadores<String> rueda = new RuedaTemporizadores<>(INICIO);
+        rueda.agregar("pasado", INICIO - 10);
+        rueda.agregar("nivel1", INICIO + 10);
+        rueda.agregar("nivel2", INICIO + NIVEL_1 + 37);
+        rueda.agregar("nivel3", INICIO + NIVEL_2 + 1234);
+        assertEquals(4, rueda.getTamanio());
+
+        // Un vencimiento ya pasado sale en el siguiente tick
+        assertEquals(List.of("pasado"), rueda.avanzar(INICIO + 1));
+        assertEquals(List.of(), rueda.avanzar(INICIO + 9));
+        assertEquals(List.of("nivel1"), rueda.avanzar(INICIO + 10));
+        assertEquals(List.of(), rueda.avanzar(INICIO + NIVEL_1 + 36));
+        assertEquals(List.of("nivel2"), rueda.avanzar(INICIO + NIVEL_1 + 37));
+        assertEquals(List.of(), rueda.avanzar(INICIO + NIVEL_2 + 1233));
+        assertEquals(List.of("nivel3"), rueda.avanzar(INICIO + NIVEL_2 + 1234));
+        assertEquals(0, rueda.getTamanio());
+    }
+
+    @Test
+    void avanceEnUnSoloPasoDevuelveEnOrdenDeVencimiento() {
+        RuedaTemporizadores<Integer> rueda = new RuedaTemporizadores<>(INICIO);
+        rueda.agregar(3, INICIO + NIVEL_2 + 5);
+        rueda.agregar(1, INICIO + 2);
+        rueda.agregar(2, INICIO + NIVEL_1 + 5);
+
+        assertEquals(List.of(1, 2, 3), rueda.avanzar(INICIO + NIVEL_3));
+        assertEquals(INICIO + NIVEL_3, rueda.getTickActual());
+    }
+
+    @Test
+    void vencimientosMasAllaDelUltimoNivelSeReubican() {
+        RuedaTemporizadores<String> rueda = new RuedaTemporizadores<>(INICIO);
+        rueda.agregar("lejano", INICIO + NIVEL_3 + 12_345);
+        rueda.agregar("muyLejano", INICIO + 4 * NIVEL_3 + 7);
+        rueda.agregar("cercano", INICIO + 3);
+
+        assertEquals(List.of("cercano"), rueda.avanzar(INICIO + NIVEL_3 + 12_344));
+        assertEquals(List.of("lejano"), rueda.avanzar(INICIO + NIVEL_3 + 12_345));
+        assertEquals(1, rueda.getTamanio());
+        assertEquals(List.of(), rueda.avanzar(INICIO + 4 * NIVEL_3 + 6));
+        assertEquals(List.of("muyLejano"), rueda.avanzar(INICIO + 4 * NIVEL_3 + 7));
+        assertEquals(0, rueda.getTamanio());
+    }
+
+    @Test
+    void elementoReprogramadoVenceEnAmbosTicks() {
+        // La rueda no retira entradas: quien la usa descarta las que ya no son vigentes
+        RuedaTemporizadores<String> rueda = new RuedaTemporizadores<>(INICIO);
+        rueda.agregar("cita", INICIO + NIVEL_2 + 100);
+        rueda.agregar("cita", INICIO + 20);
+        assertEquals(2, rueda.getTamanio());
+
+        assertEquals(List.of("cita"), rueda.avanzar(INICIO + 20));
+        assertEquals(List.of(), rueda.avanzar(INICIO + NIVEL_2 + 99));
+        assertEquals(List.of("cita"), rueda.avanzar(INICIO + NIVEL_2 + 100));
+        assertEquals(0, rueda.getTamanio());
+    }
+}
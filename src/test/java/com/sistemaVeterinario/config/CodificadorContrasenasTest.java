@@ -0,0 +1,251 @@
+package com.sistemaVeterinario.config;
+
+import com.sistemaVeterinario.dto.UsuarioDTO;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import com.sistemaVeterinario.service.AdminUsuarioService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+/**
+ * Pruebas del hash de contraseñas en un grupo de hilos acotado y de la actualización
+ * del coste de BCrypt al iniciar sesión.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CodificadorContrasenasTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodificadorContrasenasTest.class);
+
+    private static final String EMAIL = "hash@example.com";
+    private static final String CONTRASENA = "Secreta123";
+
+    private static final int INICIOS_SESION = 64;
+    private static final int HILOS_CLIENTE = 16;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoSpyBean
+    private CodificadorContrasenas codificador;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AdminUsuarioService adminUsuarioService;
+
+    private Usuario usuario;
+
+    @BeforeEach
+    void prepararUsuario() {
+        usuario = new Usuario();
+        usuario.setNombre("Hugo");
+        usuario.setApellido("Prueba");
+        usuario.setEmail(EMAIL);
+        usuario.setTelefono("3000000003");
+        // Hash con un coste menor al configurado, como los guardados antes de calibrar
+        usuario.setContrasena(new BCryptPasswordEncoder(4).encode(CONTRASENA));
+        usuario = usuarioRepository.save(usuario);
+    }
+
+    @AfterEach
+    void limpiarUsuario() {
+        usuarioRepository.delete(usuario);
+    }
+
+    @Test
+    void inicioSesionActualizaHashConCosteAntiguo() throws Exception {
+        assertTrue(codificador.upgradeEncoding(usuario.getContrasena()));
+
+        mockMvc.perform(formLogin().user(EMAIL).password(CONTRASENA))
+                .andExpect(authenticated());
+
+        String hash = usuarioRepository.findByEmail(EMAIL).orElseThrow().getContrasena();
+        assertTrue(hash.startsWith(String.format("$2a$%02d$", codificador.getCoste())), hash);
+        assertFalse(codificador.upgradeEncoding(hash));
+        assertTrue(codificador.matches(CONTRASENA, hash));
+    }
+
+    @Test
+    void iniciosSesionConcurrentes() throws Exception {
+        Timer espera = meterRegistry.get("veterinaria.contrasenas.espera").tag("operacion", "comparar").timer();
+        long comparacionesPrevias = espera.count();
+
+        AtomicInteger exitosos = new AtomicInteger();
+        ExecutorService clientes = Executors.newFixedThreadPool(HILOS_CLIENTE);
+        long inicio = System.nanoTime();
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < INICIOS_SESION; i++) {
+                tareas.add(clientes.submit(() -> {
+                    mockMvc.perform(formLogin().user(EMAIL).password(CONTRASENA))
+                            .andExpect(authenticated());
+                    exitosos.incrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            clientes.shutdown();
+        }
+        long milis = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), 1);
+
+        assertEquals(INICIOS_SESION, exitosos.get());
+        assertTrue(espera.count() - comparacionesPrevias >= INICIOS_SESION);
+        logger.info("{} inicios de sesión con {} clientes en {} ms ({}/s), espera media en cola {} ms",
+                INICIOS_SESION, HILOS_CLIENTE, milis, String.format("%.1f", INICIOS_SESION * 1000.0 / milis),
+                String.format("%.2f", espera.mean(TimeUnit.MILLISECONDS)));
+    }
+
+    @Test
+    void colaLlenaRechazaOperaciones() throws Exception {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        CodificadorContrasenas saturado = new CodificadorContrasenas(10, 1, 1, registro);
+        String hash = new BCryptPasswordEncoder(10).encode(CONTRASENA);
+
+        AtomicInteger rechazadas = new AtomicInteger();
+        ExecutorService clientes = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tareas.add(clientes.submit(() -> {
+                    try {
+                        assertTrue(saturado.matches(CONTRASENA, hash));
+                    } catch (AuthenticationServiceException e) {
+                        rechazadas.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            clientes.shutdown();
+            saturado.cerrar();
+        }
+
+        assertTrue(rechazadas.get() > 0);
+        assertEquals(rechazadas.get(), registro.get("veterinaria.contrasenas.rechazadas").counter().count());
+    }
+
+    @Test
+    void codificadorSaturadoNoRetieneTransaccionNiFallaElRegistro() throws Exception {
+        AtomicBoolean transaccionAbierta = new AtomicBoolean();
+        doAnswer(invocacion -> {
+            transaccionAbierta.compareAndSet(false, TransactionSynchronizationManager.isActualTransactionActive());
+            throw new AuthenticationServiceException("Hay demasiadas contraseñas en proceso; intente de nuevo");
+        }).when(codificador).encode(any());
+
+        mockMvc.perform(post("/register").with(csrf())
+                        .param("nombre", "Marta")
+                        .param("apellido", "Prueba")
+                        .param("email", "saturado@example.com")
+                        .param("telefono", "3000000027")
+                        .param("contrasena", CONTRASENA))
+                .andExpect(status().isOk())
+                .andExpect(view().name("public/registrationForm"))
+                .andExpect(model().attributeExists("contrasenaError"));
+        assertFalse(usuarioRepository.existsByEmail("saturado@example.com"));
+
+        UsuarioDTO datos = new UsuarioDTO();
+        datos.setNombre("Marta");
+        datos.setApellido("Prueba");
+        datos.setEmail("saturado@example.com");
+        datos.setTelefono("3000000027");
+        datos.setContrasena(CONTRASENA);
+        assertThrows(AuthenticationServiceException.class, () -> adminUsuarioService.createUsuario(datos, Set.of()));
+
+        Usuario cambios = new Usuario();
+        cambios.setNombre("Hugo");
+        cambios.setApellido("Cambiado");
+        cambios.setEmail(EMAIL);
+        cambios.setTelefono(usuario.getTelefono());
+        cambios.setContrasena("Nueva12345");
+        assertThrows(AuthenticationServiceException.class,
+                () -> adminUsuarioService.updateUsuario(usuario.getIdUsuario(), cambios, null));
+        assertEquals("Prueba", usuarioRepository.findById(usuario.getIdUsuario()).orElseThrow().getApellido());
+
+        assertFalse(transaccionAbierta.get(), "La contraseña se cifró con una transacción abierta");
+    }
+
+    @Test
+    void colaSeDimensionaConLaEsperaMaxima() {
+        // 4 hilos de 250 ms vacían 32 operaciones en 2 s
+        assertEquals(32, CodificadorContrasenas.calcularCapacidadCola(4, Duration.ofSeconds(2), Duration.ofMillis(250)));
+        assertEquals(1, CodificadorContrasenas.calcularCapacidadCola(1, Duration.ofMillis(100), Duration.ofMillis(250)));
+    }
+
+    @Test
+    void esperaMaximaAbandonaOperaciones() throws Exception {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        // Un hilo y cola amplia: solo el tiempo máximo limita la espera
+        CodificadorContrasenas lento = new CodificadorContrasenas(12, 1, 16, 1, Duration.ofMillis(50), registro);
+        String hash = new BCryptPasswordEncoder(12).encode(CONTRASENA);
+
+        AtomicInteger expiradas = new AtomicInteger();
+        ExecutorService clientes = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                tareas.add(clientes.submit(() -> {
+                    try {
+                        lento.matches(CONTRASENA, hash);
+                    } catch (AuthenticationServiceException e) {
+                        expiradas.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            clientes.shutdown();
+            lento.cerrar();
+        }
+
+        assertTrue(expiradas.get() > 0);
+        assertEquals(expiradas.get(), registro.get("veterinaria.contrasenas.expiradas").counter().count());
+    }
+}
@@ -0,0 +1,233 @@
+package com.sistemaVeterinario.controller;
+
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Comprueba que las acciones sobre mascotas y citas resuelven la propiedad y los datos en una
+ * sola consulta, y que un usuario no puede ver ni modificar las mascotas o citas de otro.
+ *
+ * <p>Usa el mismo contador de sentencias por hilo que {@link SentenciasPorVistaTest}.</p>
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.sistemaVeterinario.controller.SentenciasPorVistaTest$ContadorSentencias")
+@AutoConfigureMockMvc
+class AccesoPropietarioTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    private Usuario propietario;
+    private Usuario intruso;
+    private Mascota mascota;
+    private Mascota mascotaIntruso;
+    private Servicio servicio;
+    private Cita cita;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = usuario("propietario@acceso.com", "3000000024");
+        intruso = usuario("intruso@acceso.com", "3000000025");
+        mascota = mascota("Luna", propietario);
+        mascotaIntruso = mascota("Rocky", intruso);
+
+        servicio = new Servicio();
+        servicio.setNombre("Consulta acceso");
+        servicio.setDescripcion("Servicio de prueba");
+        servicio = servicioRepository.save(servicio);
+
+        cita = new Cita();
+        cita.setMascota(mascota);
+        cita.setServicio(servicio);
+        cita.setFechaHora(LocalDate.now().plusDays(10).atTime(10, 0));
+        cita.setEstado(Cita.EstadoCita.Programada);
+        cita = citaRepository.save(cita);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        citaRepository.deleteAll(citaRepository.findByMascotaPropietarioIdUsuario(propietario.getIdUsuario()));
+        citaRepository.deleteAll(citaRepository.findByMascotaPropietarioIdUsuario(intruso.getIdUsuario()));
+        mascotaRepository.deleteAll(mascotaRepository.findByPropietarioIdUsuario(propietario.getIdUsuario()));
+        mascotaRepository.deleteAll(mascotaRepository.findByPropietarioIdUsuario(intruso.getIdUsuario()));
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+        usuarioRepository.delete(intruso);
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @CsvSource({
+            // método, ruta, tipo de ID, redirección esperada
+            "GET,  /mascotas/editar/{id},    mascota, /mascotas",
+            "GET,  /mascotas/eliminar/{id},  mascota, /mascotas",
+            "GET,  /mascotas/detalles/{id},  mascota, /mascotas",
+            "GET,  /citas/cancelar/{id},     cita,    /citas/mis-citas?error",
+            "GET,  /citas/editar/{id},       cita,    /citas/mis-citas?error",
+            "POST, /citas/actualizar/{id},   cita,    /citas/mis-citas?error"
+    })
+    void otroUsuarioEsRechazadoConUnaSolaConsulta(String metodo, String ruta, String tipo, String redireccion)
+            throws Exception {
+        Integer id = "mascota".equals(tipo) ? mascota.getIdMascota() : cita.getIdCita();
+        MockHttpServletRequestBuilder peticion = "POST".equals(metodo)
+                ? post(ruta, id).with(csrf())
+                .param("fechaSeleccionada", LocalDate.now().plusDays(11).toString())
+                .param("horaSeleccionada", "11:00")
+                .param("mascotaId", mascotaIntruso.getIdMascota().toString())
+                .param("servicioId", servicio.getIdServicio().toString())
+                : get(ruta, id);
+
+        SentenciasPorVistaTest.ContadorSentencias.reiniciar();
+        mockMvc.perform(peticion.with(user(principal(intruso))))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl(redireccion));
+        long sentencias = SentenciasPorVistaTest.ContadorSentencias.total();
+
+        assertEquals(1, sentencias, "La comprobación de propiedad debe ser una sola consulta");
+        assertTrue(mascotaRepository.existsById(mascota.getIdMascota()));
+        Cita guardada = citaRepository.findConDetallesByIdCita(cita.getIdCita()).orElseThrow();
+        assertEquals(Cita.EstadoCita.Programada, guardada.getEstado());
+        assertEquals(cita.getFechaHora(), guardada.getFechaHora());
+        assertEquals(mascota.getIdMascota(), guardada.getMascota().getIdMascota());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+            // ruta, tipo de ID, máximo de sentencias
+            "/mascotas/editar/{id},   mascota, 1",
+            "/mascotas/detalles/{id}, mascota, 3",
+            "/citas/editar/{id},      cita,    3"
+    })
+    void propietarioAccedeSinConsultasExtra(String ruta, String tipo, long maximo) throws Exception {
+        Integer id = "mascota".equals(tipo) ? mascota.getIdMascota() : cita.getIdCita();
+
+        SentenciasPorVistaTest.ContadorSentencias.reiniciar();
+        mockMvc.perform(get(ruta, id).with(user(principal(propietario))))
+                .andExpect(status().isOk());
+        long sentencias = SentenciasPorVistaTest.ContadorSentencias.total();
+
+        assertTrue(sentencias <= maximo,
+                "La vista " + ruta + " ejecutó " + sentencias + " sentencias (máximo " + maximo + ")");
+    }
+
+    @Test
+    void propietarioCancelaSuCita() throws Exception {
+        mockMvc.perform(get("/citas/cancelar/{id}", cita.getIdCita()).with(user(principal(propietario))))
+                .andExpect(redirectedUrl("/citas/mis-citas?cancelada"));
+
+        assertEquals(Cita.EstadoCita.Cancelada,
+                citaRepository.findById(cita.getIdCita()).orElseThrow().getEstado());
+    }
+
+    @Test
+    void noSeAgendaNiMueveUnaCitaAUnaMascotaAjena() throws Exception {
+        String fecha = LocalDate.now().plusDays(12).toString();
+
+        mockMvc.perform(post("/citas/guardar").with(csrf()).with(user(principal(propietario)))
+                        .param("fechaSeleccionada", fecha)
+                        .param("horaSeleccionada", "10:00")
+                        .param("mascotaId", mascotaIntruso.getIdMascota().toString())
+                        .param("servicioId", servicio.getIdServicio().toString()))
+                .andExpect(redirectedUrl("/citas/mis-citas?error"));
+        assertTrue(citaRepository.findByMascotaPropietarioIdUsuario(intruso.getIdUsuario()).isEmpty());
+
+        mockMvc.perform(post("/citas/actualizar/{id}", cita.getIdCita()).with(csrf()).with(user(principal(propietario)))
+                        .param("fechaSeleccionada", fecha)
+                        .param("horaSeleccionada", "10:00")
+                        .param("mascotaId", mascotaIntruso.getIdMascota().toString())
+                        .param("servicioId", servicio.getIdServicio().toString()))
+                .andExpect(redirectedUrl("/citas/mis-citas?error"));
+        assertEquals(mascota.getIdMascota(),
+                citaRepository.findConDetallesByIdCita(cita.getIdCita()).orElseThrow().getMascota().getIdMascota());
+    }
+
+    @Test
+    void servicioInexistenteEsUnaPeticionInvalida() throws Exception {
+        String fecha = LocalDate.now().plusDays(12).toString();
+        String servicioInexistente = String.valueOf(servicio.getIdServicio() + 1000);
+
+        mockMvc.perform(post("/citas/guardar").with(csrf()).with(user(principal(propietario)))
+                        .param("fechaSeleccionada", fecha)
+                        .param("horaSeleccionada", "10:00")
+                        .param("mascotaId", mascota.getIdMascota().toString())
+                        .param("servicioId", servicioInexistente))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/citas/actualizar/{id}", cita.getIdCita()).with(csrf()).with(user(principal(propietario)))
+                        .param("fechaSeleccionada", fecha)
+                        .param("horaSeleccionada", "10:00")
+                        .param("mascotaId", mascota.getIdMascota().toString())
+                        .param("servicioId", servicioInexistente))
+                .andExpect(status().isBadRequest());
+        assertEquals(1, citaRepository.findByMascotaPropietarioIdUsuario(propietario.getIdUsuario()).size());
+        assertEquals(servicio.getIdServicio(),
+                citaRepository.findConDetallesByIdCita(cita.getIdCita()).orElseThrow().getServicio().getIdServicio());
+    }
+
+    private UsuarioPrincipal principal(Usuario usuario) {
+        return new UsuarioPrincipal(usuario.getIdUsuario(), usuario.getEmail(), usuario.getNombre(), null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    private Usuario usuario(String email, String telefono) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Acceso");
+        usuario.setApellido("Prueba");
+        usuario.setEmail(email);
+        usuario.setTelefono(telefono);
+        usuario.setContrasena("x");
+        return usuarioRepository.save(usuario);
+    }
+
+    private Mascota mascota(String nombre, Usuario dueno) {
+        Mascota mascota = new Mascota();
+        mascota.setNombre(nombre);
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2021, 1, 1));
+        mascota.setSexo(Mascota.SexoMascota.Macho);
+        mascota.setPropietario(dueno);
+        return mascotaRepository.save(mascota);
+    }
+}
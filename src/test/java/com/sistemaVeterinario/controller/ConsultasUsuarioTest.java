@@ -0,0 +1,129 @@
+package com.sistemaVeterinario.controller;
+
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Comprueba que las páginas del usuario autenticado no vuelven a consultar al usuario en la
+ * base de datos.
+ *
+ * <p>Usa el mismo contador de sentencias por hilo que {@link SentenciasPorVistaTest}, para no
+ * sumar las que ejecutan las tareas programadas mientras se atiende la petición.</p>
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.sistemaVeterinario.controller.SentenciasPorVistaTest$ContadorSentencias")
+@AutoConfigureMockMvc
+class ConsultasUsuarioTest {
+
+    // Sentencias máximas por página: mascotas, citas y los datos de cada una
+    private static final long MAX_SENTENCIAS = 6;
+
+    // Sentencias que cargan al usuario: la tabla como origen o sus columnas en la selección
+    // (un join que solo filtra por propietario no lo carga)
+    private static final Pattern CARGA_USUARIO = Pattern.compile(
+            "\\bfrom usuarios\\b|\\.fecha_registro\\b", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio servicio;
+    private Cita cita;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("Carla");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("consultas@example.com");
+        propietario.setTelefono("3000000013");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Toby");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2021, 5, 1));
+        mascota.setSexo(Mascota.SexoMascota.Macho);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        servicio = new Servicio();
+        servicio.setNombre("Vacunación");
+        servicio.setDescripcion("Servicio de prueba");
+        servicio = servicioRepository.save(servicio);
+
+        cita = new Cita();
+        cita.setMascota(mascota);
+        cita.setServicio(servicio);
+        cita.setFechaHora(LocalDateTime.now().plusDays(20).withHour(9).withMinute(0).withSecond(0).withNano(0));
+        cita.setEstado(Cita.EstadoCita.Programada);
+        cita = citaRepository.save(cita);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        citaRepository.delete(cita);
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/mascotas", "/mascotas/editar/{id}", "/mascotas/detalles/{id}",
+            "/citas/agendar", "/citas/mis-citas"})
+    void paginaNoConsultaAlUsuario(String ruta) throws Exception {
+        UsuarioPrincipal principal = new UsuarioPrincipal(propietario.getIdUsuario(), propietario.getEmail(),
+                propietario.getNombre(), null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        SentenciasPorVistaTest.ContadorSentencias.reiniciar();
+        mockMvc.perform(get(ruta, mascota.getIdMascota()).with(user(principal)))
+                .andExpect(status().isOk());
+        List<String> sentencias = SentenciasPorVistaTest.ContadorSentencias.sentencias();
+
+        assertTrue(sentencias.stream().noneMatch(sql -> CARGA_USUARIO.matcher(sql).find()),
+                "La página " + ruta + " consultó al usuario: " + sentencias);
+        assertTrue(sentencias.size() <= MAX_SENTENCIAS,
+                "La página " + ruta + " ejecutó " + sentencias.size() + " sentencias");
+    }
+}
@@ -0,0 +1,175 @@
+package com.sistemaVeterinario.controller;
+
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import com.sistemaVeterinario.repository.VersionDisponibilidadRepository;
+import com.sistemaVeterinario.service.CalendarioClinicaService;
+import com.sistemaVeterinario.service.CitaService;
+import com.sistemaVeterinario.service.DisponibilidadService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Comprueba que el ETag de los horarios disponibles depende solo del estado compartido: se
+ * mantiene tras reconstruir el índice y cambia con una reserva hecha en esta o en otra instancia.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class HorariosDisponiblesEtagTest {
+
+    private static final String RUTA = "/citas/horarios/{fecha}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private DisponibilidadService disponibilidadService;
+
+    @Autowired
+    private CalendarioClinicaService calendarioClinicaService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private VersionDisponibilidadRepository versionDisponibilidadRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio servicio;
+    private LocalDate fecha;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("Etag");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("etag@horarios.com");
+        propietario.setTelefono("3000000026");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Kira");
+        mascota.setEspecie("Gato");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2021, 3, 1));
+        mascota.setSexo(Mascota.SexoMascota.Hembra);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        servicio = new Servicio();
+        servicio.setNombre("Consulta ETag");
+        servicio.setDescripcion("Servicio de prueba");
+        servicio = servicioRepository.save(servicio);
+
+        fecha = calendarioClinicaService.obtenerFechasReservables(LocalDate.now().plusDays(1), 14).get(2);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        citaRepository.deleteAll(citaRepository.findByMascotaPropietarioIdUsuario(propietario.getIdUsuario()));
+        versionDisponibilidadRepository.deleteAll();
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+        disponibilidadService.reconstruir();
+    }
+
+    @Test
+    void respondeNoModificadoHastaQueSeReservaUnHorario() throws Exception {
+        String etag = consultar(null, true);
+
+        // Reconstruir el índice equivale a reiniciar la instancia o consultar otra
+        disponibilidadService.reconstruir();
+        mockMvc.perform(get(RUTA, fecha).param("servicioId", servicio.getIdServicio().toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag).with(user("etag@horarios.com").roles("USER")))
+                .andExpect(status().isNotModified());
+
+        assertEquals(CitaService.ResultadoReserva.RESERVADA,
+                citaService.reservar(nuevaCita(LocalDateTime.of(fecha, LocalTime.of(9, 0)))));
+        String trasReservar = consultar(etag, false);
+        assertNotEquals(etag, trasReservar);
+
+        // Otra instancia reserva sin pasar por el índice en memoria de esta
+        transactionTemplate.executeWithoutResult(estado -> {
+            Cita cita = nuevaCita(LocalDateTime.of(fecha, LocalTime.of(10, 0)));
+            cita.actualizarClaveReserva();
+            citaRepository.save(cita);
+            versionDisponibilidadRepository.incrementar(fecha);
+        });
+        mockMvc.perform(get(RUTA, fecha).param("servicioId", servicio.getIdServicio().toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, trasReservar).with(user("etag@horarios.com").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.disponibilidad['10:00']").value(false));
+    }
+
+    /**
+     * Consulta los horarios del día con el ETag indicado y espera una respuesta completa.
+     * @param etag ETag que el cliente ya tiene, o null
+     * @param libreALasNueve Disponibilidad esperada del horario de las 09:00
+     * @return El ETag de la respuesta
+     */
+    private String consultar(String etag, boolean libreALasNueve) throws Exception {
+        MockHttpServletRequestBuilder peticion = get(RUTA, fecha)
+                .param("servicioId", servicio.getIdServicio().toString())
+                .with(user("etag@horarios.com").roles("USER"));
+        if (etag != null) {
+            peticion.header(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        String respuesta = mockMvc.perform(peticion)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.disponibilidad['09:00']").value(libreALasNueve))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(respuesta);
+        return respuesta;
+    }
+
+    private Cita nuevaCita(LocalDateTime fechaHora) {
+        Cita cita = new Cita();
+        cita.setMascota(mascota);
+        cita.setServicio(servicio);
+        cita.setFechaHora(fechaHora);
+        cita.setEstado(Cita.EstadoCita.Programada);
+        return cita;
+    }
+}
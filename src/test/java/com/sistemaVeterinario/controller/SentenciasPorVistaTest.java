@@ -0,0 +1,210 @@
+package com.sistemaVeterinario.controller;
+
+import com.sistemaVeterinario.dto.UsuarioPrincipal;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Role;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.RoleRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import com.sistemaVeterinario.service.RoleService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Fija el máximo de sentencias SQL de cada vista con listas. Los datos tienen varias filas por
+ * lista, de modo que una consulta por fila (N+1) supera el máximo y hace fallar la prueba. Sin
+ * open-session-in-view, una asociación no incluida en el plan de consulta falla al mostrarse.
+ *
+ * <p>Las sentencias se cuentan por hilo con un {@link StatementInspector}, para no sumar las que
+ * ejecutan las tareas programadas mientras se atiende la petición.</p>
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.sistemaVeterinario.controller.SentenciasPorVistaTest$ContadorSentencias")
+@AutoConfigureMockMvc
+public class SentenciasPorVistaTest {
+
+    private static final int USUARIOS = 25;
+    private static final int MASCOTAS = 3;
+    private static final int CITAS_POR_MASCOTA = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    private final List<Role> rolesCreados = new ArrayList<>();
+    private final List<Usuario> usuarios = new ArrayList<>();
+    private final List<Mascota> mascotas = new ArrayList<>();
+    private final List<Servicio> servicios = new ArrayList<>();
+    private final List<Cita> citas = new ArrayList<>();
+
+    @BeforeEach
+    void prepararDatos() {
+        Role admin = rol("ADMIN");
+        Role cliente = rol("USER");
+
+        for (int i = 0; i < USUARIOS; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setNombre("Vista");
+            usuario.setApellido("Prueba");
+            usuario.setEmail("vista" + i + "@sentencias.com");
+            usuario.setTelefono(String.valueOf(3300000000L + i));
+            usuario.setContrasena("x");
+            usuario.setRoles(new HashSet<>(i % 5 == 0 ? Set.of(admin, cliente) : Set.of(cliente)));
+            usuarios.add(usuarioRepository.save(usuario));
+        }
+
+        for (String nombre : List.of("Consulta", "Vacunación")) {
+            Servicio servicio = new Servicio();
+            servicio.setNombre(nombre);
+            servicio.setDescripcion("Servicio de prueba");
+            servicios.add(servicioRepository.save(servicio));
+        }
+
+        LocalDateTime inicio = LocalDateTime.now().plusDays(20).withHour(9).withMinute(0).withSecond(0).withNano(0);
+        for (int i = 0; i < MASCOTAS; i++) {
+            Mascota mascota = new Mascota();
+            mascota.setNombre("Mascota" + i);
+            mascota.setEspecie("Perro");
+            mascota.setRaza("Criollo");
+            mascota.setFechaNacimiento(LocalDate.of(2020, 1, 1));
+            mascota.setSexo(Mascota.SexoMascota.Hembra);
+            mascota.setPropietario(usuarios.get(0));
+            mascota = mascotaRepository.save(mascota);
+            mascotas.add(mascota);
+
+            for (int j = 0; j < CITAS_POR_MASCOTA; j++) {
+                Cita cita = new Cita();
+                cita.setMascota(mascota);
+                cita.setServicio(servicios.get(j % servicios.size()));
+                cita.setFechaHora(inicio.plusDays(i).plusHours(j));
+                cita.setEstado(Cita.EstadoCita.Programada);
+                citas.add(citaRepository.save(cita));
+            }
+        }
+
+        // Si se crearon roles, el registro se recarga aquí y no durante la petición medida
+        roleService.findAll();
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        citaRepository.deleteAll(citas);
+        mascotaRepository.deleteAll(mascotas);
+        servicioRepository.deleteAll(servicios);
+        usuarioRepository.deleteAll(usuarios);
+        roleRepository.deleteAll(rolesCreados);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+            // ruta, ID usado en la ruta, máximo de sentencias
+            "/admin/usuarios,                 ninguno, 3",
+            "/admin/usuarios?search=vista,    ninguno, 3",
+            "/admin/usuarios/editar/{id},     usuario, 1",
+            "/mascotas,                       ninguno, 1",
+            "/mascotas/detalles/{id},         mascota, 3",
+            "/mascotas/detalles/{id}?estado=Programada, mascota, 3",
+            "/citas/mis-citas,                ninguno, 2",
+            "/citas/editar/{id},              cita,    3",
+            "/citas/agendar,                  ninguno, 2"
+    })
+    void vistaNoSuperaElMaximoDeSentencias(String ruta, String id, long maximo) throws Exception {
+        Usuario propietario = usuarios.get(0);
+        UsuarioPrincipal principal = new UsuarioPrincipal(propietario.getIdUsuario(), propietario.getEmail(),
+                propietario.getNombre(), null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"),
+                new SimpleGrantedAuthority("ROLE_USER")));
+        Object[] variables = switch (id) {
+            case "usuario" -> new Object[]{propietario.getIdUsuario()};
+            case "mascota" -> new Object[]{mascotas.get(0).getIdMascota()};
+            case "cita" -> new Object[]{citas.get(0).getIdCita()};
+            default -> new Object[0];
+        };
+
+        ContadorSentencias.reiniciar();
+        mockMvc.perform(get(ruta, variables).with(user(principal)))
+                .andExpect(status().isOk());
+
+        long sentencias = ContadorSentencias.total();
+        assertTrue(sentencias <= maximo,
+                "La vista " + ruta + " ejecutó " + sentencias + " sentencias (máximo " + maximo + ")");
+    }
+
+    private Role rol(String nombre) {
+        return roleRepository.findByNombreRol(nombre).orElseGet(() -> {
+            Role rol = new Role();
+            rol.setNombreRol(nombre);
+            rol.setDescripcion("Rol de prueba");
+            rol = roleRepository.save(rol);
+            rolesCreados.add(rol);
+            return rol;
+        });
+    }
+
+    /**
+     * Cuenta las sentencias SQL preparadas en el hilo actual y conserva su texto.
+     */
+    public static class ContadorSentencias implements StatementInspector {
+
+        private static final ThreadLocal<List<String>> SENTENCIAS = ThreadLocal.withInitial(ArrayList::new);
+
+        public static void reiniciar() {
+            SENTENCIAS.get().clear();
+        }
+
+        public static long total() {
+            return SENTENCIAS.get().size();
+        }
+
+        public static List<String> sentencias() {
+            return List.copyOf(SENTENCIAS.get());
+        }
+
+        @Override
+        public String inspect(String sql) {
+            SENTENCIAS.get().add(sql);
+            return sql;
+        }
+    }
+}
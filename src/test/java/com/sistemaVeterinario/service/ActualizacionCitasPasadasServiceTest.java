@@ -0,0 +1,145 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.ProgresoTarea;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ProgresoTareaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comprueba que {@link ActualizacionCitasPasadasService} se detiene entre lotes cuando la
+ * condición deja de cumplirse y que la siguiente ejecución continúa desde el avance guardado en
+ * {@code progreso_tareas}, con la misma fecha de corte y sin repetir los rangos ya confirmados.
+ */
+@SpringBootTest
+class ActualizacionCitasPasadasServiceTest {
+
+    private static final String NOMBRE_TAREA = "actualizar-citas-pasadas";
+
+    // Más de dos lotes de IDs consecutivos
+    private static final int CITAS = 2500;
+    private static final LocalDateTime PRIMERA_CITA = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    @Autowired
+    private ActualizacionCitasPasadasService actualizacionCitasPasadasService;
+
+    @Autowired
+    private ProgresoTareaRepository progresoTareaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio servicio;
+
+    @BeforeEach
+    void prepararDatos() {
+        progresoTareaRepository.deleteById(NOMBRE_TAREA);
+
+        propietario = new Usuario();
+        propietario.setNombre("Lotes");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("lotes@progreso.com");
+        propietario.setTelefono("3000000031");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Nala");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Mestizo");
+        mascota.setFechaNacimiento(LocalDate.of(2020, 8, 12));
+        mascota.setSexo(Mascota.SexoMascota.Hembra);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        servicio = new Servicio();
+        servicio.setNombre("Consulta por lotes");
+        servicio.setDescripcion("Servicio de prueba");
+        servicio = servicioRepository.save(servicio);
+
+        List<Object[]> filas = new ArrayList<>(CITAS);
+        for (int i = 0; i < CITAS; i++) {
+            LocalDateTime fechaHora = PRIMERA_CITA.plusMinutes(10L * i);
+            filas.add(new Object[]{mascota.getIdMascota(), servicio.getIdServicio(), Timestamp.valueOf(fechaHora),
+                    servicio.getIdServicio() + "|" + fechaHora});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO citas (id_mascota, id_servicio, fecha_hora, estado, recordatorio_enviado, " +
+                "clave_reserva) VALUES (?, ?, ?, 'Programada', FALSE, ?)", filas);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        progresoTareaRepository.deleteById(NOMBRE_TAREA);
+        jdbcTemplate.update("DELETE FROM citas WHERE id_mascota = ?", mascota.getIdMascota());
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+    }
+
+    @Test
+    void reanudaDesdeElUltimoLoteConfirmadoSinRepetirlo() {
+        // Corte a mitad de las citas: solo las anteriores se completan
+        LocalDateTime corte = PRIMERA_CITA.plusMinutes(10L * (CITAS - 100));
+
+        // Se detiene antes del lote siguiente al primero que actualiza citas de esta prueba
+        int primera = actualizacionCitasPasadasService.ejecutar(corte, () -> contar("Completada") == 0);
+        ProgresoTarea detenida = progresoTareaRepository.findById(NOMBRE_TAREA).orElseThrow();
+        assertFalse(detenida.getTerminada());
+        assertTrue(primera > 0 && primera < CITAS - 100, "Citas del primer tramo: " + primera);
+        assertEquals(primera, detenida.getFilasActualizadas());
+        assertEquals(primera, contar("Completada"));
+
+        // Una cita de un rango ya confirmado que vuelve a estar programada no debe tocarse
+        Integer idRepetida = jdbcTemplate.queryForObject(
+                "SELECT MIN(id_cita) FROM citas WHERE id_mascota = ? AND estado = 'Completada'",
+                Integer.class, mascota.getIdMascota());
+        jdbcTemplate.update("UPDATE citas SET estado = 'Programada' WHERE id_cita = ?", idRepetida);
+
+        // La reanudación conserva la fecha de corte original aunque se pida otra
+        int segunda = actualizacionCitasPasadasService.ejecutar(LocalDateTime.now());
+        ProgresoTarea terminada = progresoTareaRepository.findById(NOMBRE_TAREA).orElseThrow();
+        assertTrue(terminada.getTerminada());
+        assertEquals(corte, terminada.getFechaReferencia());
+        assertEquals(detenida.getIdMaximo(), terminada.getUltimoId());
+        assertEquals(CITAS - 100 - primera, segunda);
+        assertEquals((long) CITAS - 100, terminada.getFilasActualizadas());
+        assertEquals("Programada", jdbcTemplate.queryForObject(
+                "SELECT estado FROM citas WHERE id_cita = ?", String.class, idRepetida));
+        assertEquals(CITAS - 100 - 1, contar("Completada"));
+        assertEquals(100 + 1, contar("Programada"));
+    }
+
+    private int contar(String estado) {
+        Integer total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM citas WHERE id_mascota = ? AND estado = ?",
+                Integer.class, mascota.getIdMascota(), estado);
+        return total != null ? total : 0;
+    }
+}
@@ -0,0 +1,187 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.PaginaUsuariosDTO;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import com.sistemaVeterinario.repository.UsuarioSpecifications;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la búsqueda paginada por clave de {@link AdminUsuarioService} y de los filtros de
+ * {@link UsuarioSpecifications}: continuación del cursor en ambos sentidos, empates en la
+ * columna de orden, cursores alterados, tope del conteo y escape de comodines de LIKE.
+ */
+@SpringBootTest
+class AdminUsuarioServiceTest {
+
+    private static final int USUARIOS = 25;
+    private static final int TAMANIO = AdminUsuarioService.TAMANIO_MINIMO;
+
+    // Pocos nombres distintos, para que los límites de página caigan dentro de un empate
+    private static final String[] NOMBRES = {"Kpana", "Kpbeto"};
+
+    @Autowired
+    private AdminUsuarioService adminUsuarioService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void limpiarDatos() {
+        jdbcTemplate.update("DELETE FROM usuarios WHERE email LIKE '%@paginacion.com'");
+    }
+
+    @Test
+    void elCursorRecorreTodasLasPaginasEnAmbosSentidos() {
+        List<Usuario> usuarios = crearUsuarios();
+
+        for (AdminUsuarioService.OrdenUsuarios orden : AdminUsuarioService.OrdenUsuarios.values()) {
+            for (boolean descendente : new boolean[]{false, true}) {
+                Comparator<Usuario> comparador = Comparator.comparing(campo(orden))
+                        .thenComparing(Usuario::getIdUsuario);
+                List<Integer> esperados = usuarios.stream()
+                        .sorted(descendente ? comparador.reversed() : comparador)
+                        .map(Usuario::getIdUsuario).toList();
+
+                List<Integer> recorridos = recorrer(orden, descendente);
+                assertEquals(esperados, recorridos, orden + (descendente ? " descendente" : " ascendente"));
+                assertEquals(USUARIOS, new HashSet<>(recorridos).size());
+            }
+        }
+    }
+
+    @Test
+    void losEmpatesSeDesempatanPorId() {
+        crearUsuarios();
+        PaginaUsuariosDTO primera = adminUsuarioService.buscarUsuarios("Kp", AdminUsuarioService.OrdenUsuarios.NOMBRE,
+                false, null, TAMANIO);
+        // La primera página termina a mitad de los trece "Kpana"; el apellido empata en todos
+        assertEquals("Kpana", primera.usuarios().get(TAMANIO - 1).getNombre());
+        PaginaUsuariosDTO segunda = adminUsuarioService.buscarUsuarios("Kp", AdminUsuarioService.OrdenUsuarios.NOMBRE,
+                false, primera.siguiente(), TAMANIO);
+        assertEquals("Kpana", segunda.usuarios().get(0).getNombre());
+        assertTrue(segunda.usuarios().get(0).getIdUsuario() > primera.usuarios().get(TAMANIO - 1).getIdUsuario());
+    }
+
+    @Test
+    void unCursorAlteradoVuelveALaPrimeraPagina() {
+        crearUsuarios();
+        List<Integer> primera = ids(adminUsuarioService.buscarUsuarios("Kp", AdminUsuarioService.OrdenUsuarios.EMAIL,
+                false, null, TAMANIO));
+
+        for (String cursor : List.of("%%no-es-base64%%", codificar("abc|Kpana"), codificar("17"), "")) {
+            assertEquals(primera, ids(adminUsuarioService.buscarUsuarios("Kp", AdminUsuarioService.OrdenUsuarios.EMAIL,
+                    false, cursor, TAMANIO)), "Cursor: " + cursor);
+        }
+    }
+
+    @Test
+    void elConteoSeDetieneEnElTope() {
+        List<Usuario> lote = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            lote.add(usuario("Kqtope", "kq" + i + "@paginacion.com", String.valueOf(3_200_000_000L + i)));
+        }
+        transactionTemplate.executeWithoutResult(estado -> usuarioRepository.insertarLote(lote));
+
+        PaginaUsuariosDTO pagina = adminUsuarioService.buscarUsuarios("Kqtope", AdminUsuarioService.OrdenUsuarios.ID,
+                false, null, TAMANIO);
+        assertEquals(1000, pagina.total());
+        assertTrue(pagina.totalSuperado());
+        assertEquals(TAMANIO, pagina.usuarios().size());
+
+        jdbcTemplate.update("DELETE FROM usuarios WHERE email = 'kq0@paginacion.com'");
+        pagina = adminUsuarioService.buscarUsuarios("Kqtope", AdminUsuarioService.OrdenUsuarios.ID,
+                false, null, TAMANIO);
+        assertEquals(1000, pagina.total());
+        assertFalse(pagina.totalSuperado());
+    }
+
+    @Test
+    void losComodinesDeLikeSeBuscanLiteralmente() {
+        usuarioRepository.saveAll(List.of(
+                usuario("Kr%cento", "porcentaje@paginacion.com", "3150000101"),
+                usuario("Krxcento", "equis@paginacion.com", "3150000102"),
+                usuario("Kr_bajo", "guion@paginacion.com", "3150000103"),
+                usuario("Kr\\barra", "barra@paginacion.com", "3150000104")));
+
+        assertEquals(List.of("Kr%cento"), nombres("Kr%"));
+        assertEquals(List.of("Kr_bajo"), nombres("Kr_"));
+        assertEquals(List.of("Kr\\barra"), nombres("Kr\\"));
+        assertEquals(4, nombres("Kr").size());
+    }
+
+    private List<Integer> recorrer(AdminUsuarioService.OrdenUsuarios orden, boolean descendente) {
+        List<Integer> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaUsuariosDTO pagina = adminUsuarioService.buscarUsuarios("Kp", orden, descendente, cursor, TAMANIO);
+            assertEquals(USUARIOS, pagina.total());
+            assertFalse(pagina.totalSuperado());
+            ids.addAll(ids(pagina));
+            cursor = pagina.siguiente();
+        } while (cursor != null && ids.size() <= USUARIOS);
+        return ids;
+    }
+
+    private List<Usuario> crearUsuarios() {
+        List<Usuario> usuarios = new ArrayList<>();
+        for (int i = 0; i < USUARIOS; i++) {
+            usuarios.add(usuario(NOMBRES[i % NOMBRES.length], String.format("kp%02d@paginacion.com", USUARIOS - i),
+                    String.valueOf(3_150_000_000L + i)));
+        }
+        return usuarioRepository.saveAll(usuarios);
+    }
+
+    private List<String> nombres(String termino) {
+        return usuarioRepository.findAll(UsuarioSpecifications.comienzaCon(termino)).stream()
+                .map(Usuario::getNombre).sorted().toList();
+    }
+
+    private static Function<Usuario, String> campo(AdminUsuarioService.OrdenUsuarios orden) {
+        return switch (orden) {
+            case ID -> u -> "";
+            case NOMBRE -> Usuario::getNombre;
+            case APELLIDO -> Usuario::getApellido;
+            case EMAIL -> Usuario::getEmail;
+        };
+    }
+
+    private static List<Integer> ids(PaginaUsuariosDTO pagina) {
+        return pagina.usuarios().stream().map(Usuario::getIdUsuario).toList();
+    }
+
+    private static String codificar(String texto) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Usuario usuario(String nombre, String email, String telefono) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre(nombre);
+        usuario.setApellido("Kppaginada");
+        usuario.setEmail(email);
+        usuario.setTelefono(telefono);
+        usuario.setContrasena("x");
+        return usuario;
+    }
+}
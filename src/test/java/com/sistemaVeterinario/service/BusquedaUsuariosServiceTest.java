@@ -0,0 +1,229 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.SugerenciaUsuarioDTO;
+import com.sistemaVeterinario.dto.UsuarioDTO;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del índice de búsqueda instantánea de {@link BusquedaUsuariosService}.
+ */
+@SpringBootTest
+class BusquedaUsuariosServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusquedaUsuariosServiceTest.class);
+
+    private static final String[] NOMBRES = {"Juan", "María", "José", "Ana", "Luis", "Carmen", "Pedro",
+            "Lucía", "Andrés", "Sofía", "Jorge", "Valentina", "Camilo", "Daniela", "Felipe", "Natalia"};
+    private static final String[] APELLIDOS = {"Pérez", "Gómez", "Rodríguez", "López", "Martínez", "García",
+            "Hernández", "Ramírez", "Torres", "Castro", "Vargas", "Rojas", "Moreno", "Jiménez", "Ortiz"};
+    private static final String[] MASCOTAS = {"Firulais", "Luna", "Max", "Rocky", "Toby", "Nala", "Simba",
+            "Kira", "Bruno", "Canela", "Lola", "Thor"};
+
+    private static final int USUARIOS = 200_000;
+    private static final int CONSULTAS = 20_000;
+
+    @Autowired
+    private BusquedaUsuariosService busquedaUsuariosService;
+
+    @Autowired
+    private AdminUsuarioService adminUsuarioService;
+
+    @Autowired
+    private MascotaService mascotaService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private PurgaMascotasService purgaMascotasService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void buscaPorPartesSinTildesYOrdenaPorRelevancia() {
+        BusquedaUsuariosService.IndiceTrigramas indice = new BusquedaUsuariosService.IndiceTrigramas();
+        indice.guardar(new SugerenciaUsuarioDTO(1, "José", "Pérez", "jose@ejemplo.com", "3001112233", List.of("Luna")));
+        indice.guardar(new SugerenciaUsuarioDTO(2, "Josefina", "Martínez", "fina@ejemplo.com", "3004445566", List.of()));
+        indice.guardar(new SugerenciaUsuarioDTO(3, "Ana", "Lopez", "ana.perezgil@ejemplo.com", "3007778899", List.of()));
+
+        // La palabra completa va antes que el inicio de una palabra
+        assertEquals(List.of(1, 2), ids(indice.buscar("JOSE", 10)));
+        // Dentro de una palabra solo a partir de tres letras
+        assertEquals(List.of(3), ids(indice.buscar("rezgil", 10)));
+        assertEquals(List.of(), ids(indice.buscar("ez", 10)));
+        assertEquals(List.of(2), ids(indice.buscar("jo mart", 10)));
+        assertEquals(List.of(1), ids(indice.buscar("lun", 10)));
+        assertEquals(List.of(3), ids(indice.buscar("777", 10)));
+        assertEquals(List.of(1), ids(indice.buscar("pérez j", 1)));
+    }
+
+    @Test
+    void actualizarQuitaLosTrigramasAnteriores() {
+        BusquedaUsuariosService.IndiceTrigramas indice = new BusquedaUsuariosService.IndiceTrigramas();
+        indice.guardar(new SugerenciaUsuarioDTO(7, "Carlos", "Ruiz", "carlos@ejemplo.com", "3000000007", List.of("Toby")));
+
+        indice.actualizarUsuario(new SugerenciaUsuarioDTO(7, "Andrés", "Ruiz", "andres@ejemplo.com", "3000000007"));
+        assertEquals(List.of(), ids(indice.buscar("carlos", 10)));
+        assertEquals(List.of(7), ids(indice.buscar("andres toby", 10)));
+
+        indice.actualizarMascotas(7, List.of("Kira"));
+        assertEquals(List.of(), ids(indice.buscar("toby", 10)));
+        assertEquals(List.of(7), ids(indice.buscar("kira", 10)));
+    }
+
+    @Test
+    void trigramasFrecuentesEnMapaDeBits() {
+        BusquedaUsuariosService.IndiceTrigramas indice = new BusquedaUsuariosService.IndiceTrigramas();
+        for (int i = 1; i <= 2_000; i++) {
+            indice.guardar(new SugerenciaUsuarioDTO(i, i % 2 == 0 ? "Ana" : "Anabel", "Ruiz",
+                    "ana" + i + "@ejemplo.com", String.valueOf(3_100_000_000L + i), List.of()));
+        }
+
+        // Primero las palabras completas y, a igual puntaje, los ID menores
+        assertEquals(List.of(2, 4, 6), ids(indice.buscar("ana ruiz", 3)));
+        indice.actualizarUsuario(new SugerenciaUsuarioDTO(4, "Beatriz", "Ruiz", "bea@ejemplo.com", "3100000004"));
+        assertEquals(List.of(2, 6, 8), ids(indice.buscar("ana ruiz", 3)));
+        assertEquals(List.of(1, 3), ids(indice.buscar("anabel", 2)));
+        assertEquals(List.of(1999), ids(indice.buscar("ana1999", 5)));
+    }
+
+    @Test
+    void memoriaYTiempoDeConsulta() {
+        BusquedaUsuariosService.IndiceTrigramas indice = new BusquedaUsuariosService.IndiceTrigramas();
+        Random aleatorio = new Random(42);
+        for (int i = 1; i <= USUARIOS; i++) {
+            String nombre = NOMBRES[aleatorio.nextInt(NOMBRES.length)];
+            String apellido = APELLIDOS[aleatorio.nextInt(APELLIDOS.length)];
+            indice.guardar(new SugerenciaUsuarioDTO(i, nombre, apellido,
+                    nombre.toLowerCase() + "." + apellido.toLowerCase() + i + "@ejemplo.com",
+                    String.valueOf(3_000_000_000L + i), List.of(MASCOTAS[aleatorio.nextInt(MASCOTAS.length)])));
+        }
+        BusquedaUsuariosService.EstadisticasIndice estadisticas = indice.estadisticas();
+        assertEquals(USUARIOS, estadisticas.usuarios());
+
+        String[] consultas = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            consultas[i] = switch (i % 4) {
+                case 0 -> NOMBRES[aleatorio.nextInt(NOMBRES.length)].substring(0, 3) + " "
+                        + APELLIDOS[aleatorio.nextInt(APELLIDOS.length)].substring(0, 2);
+                case 1 -> "30000" + aleatorio.nextInt(100_000);
+                case 2 -> APELLIDOS[aleatorio.nextInt(APELLIDOS.length)].toLowerCase() + (aleatorio.nextInt(USUARIOS) + 1);
+                default -> MASCOTAS[aleatorio.nextInt(MASCOTAS.length)] + " " + NOMBRES[aleatorio.nextInt(NOMBRES.length)];
+            };
+        }
+
+        // Calentamiento del JIT
+        for (String consulta : consultas) {
+            indice.buscar(consulta, 8);
+        }
+        long inicio = System.nanoTime();
+        for (String consulta : consultas) {
+            indice.buscar(consulta, 8);
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        logger.info("{} usuarios, {} trigramas, {} KB ({} bytes por usuario); {} µs por consulta",
+                estadisticas.usuarios(), estadisticas.trigramas(), estadisticas.bytes() / 1024,
+                estadisticas.bytesPorUsuario(), String.format("%.1f", nanos / 1000.0 / CONSULTAS));
+    }
+
+    @Test
+    void indexaUsuariosYMascotasAlGuardar() {
+        UsuarioDTO datos = new UsuarioDTO();
+        datos.setNombre("Eustaquio");
+        datos.setApellido("Zabaleta");
+        datos.setEmail("eustaquio@example.com");
+        datos.setTelefono("3000000018");
+        datos.setContrasena("Segura123");
+        Usuario usuario = adminUsuarioService.createUsuario(datos, Set.of());
+
+        Mascota mascota = new Mascota();
+        mascota.setNombre("Pimpinela");
+        mascota.setEspecie("Gato");
+        mascota.setRaza("Mestizo");
+        mascota.setFechaNacimiento(LocalDate.of(2020, 1, 1));
+        mascota.setSexo(Mascota.SexoMascota.Hembra);
+        mascota.setPropietario(usuario);
+        try {
+            assertEquals(List.of(usuario.getIdUsuario()), ids(busquedaUsuariosService.buscar("zabal", 8)));
+
+            mascota = mascotaService.save(mascota);
+            assertEquals(List.of(usuario.getIdUsuario()), ids(busquedaUsuariosService.buscar("pimpi eus", 8)));
+
+            mascotaService.delete(mascota.getIdMascota());
+            assertEquals(List.of(), ids(busquedaUsuariosService.buscar("pimpinela", 8)));
+        } finally {
+            mascotaRepository.findById(mascota.getIdMascota() != null ? mascota.getIdMascota() : -1)
+                    .ifPresent(mascotaRepository::delete);
+            // La mascota eliminada queda archivada hasta la purga
+            purgaMascotasService.purgar(LocalDateTime.now().plusMinutes(1));
+            usuarioRepository.deleteById(usuario.getIdUsuario());
+        }
+    }
+
+    @Test
+    void incorporaCambiosHechosEnOtraInstancia() {
+        UsuarioDTO datos = new UsuarioDTO();
+        datos.setNombre("Anacleto");
+        datos.setApellido("Villanueva");
+        datos.setEmail("villanueva.a@example.com");
+        datos.setTelefono("3000000028");
+        datos.setContrasena("Segura123");
+        Usuario usuario = adminUsuarioService.createUsuario(datos, Set.of());
+        Integer id = usuario.getIdUsuario();
+
+        Mascota mascota = new Mascota();
+        mascota.setNombre("Cascabel");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Beagle");
+        mascota.setFechaNacimiento(LocalDate.of(2019, 5, 1));
+        mascota.setSexo(Mascota.SexoMascota.Macho);
+        mascota.setPropietario(usuario);
+        try {
+            // Otra instancia edita al usuario y le agrega una mascota sin pasar por este índice
+            transactionTemplate.executeWithoutResult(estado ->
+                    usuarioRepository.findById(id).orElseThrow().setNombre("Bartolomé"));
+            transactionTemplate.executeWithoutResult(estado -> {
+                mascotaRepository.save(mascota);
+                usuarioRepository.marcarActualizado(id, LocalDateTime.now());
+            });
+            assertEquals(List.of(), ids(busquedaUsuariosService.buscar("bartolome", 8)));
+            assertEquals(List.of(), ids(busquedaUsuariosService.buscar("cascabel", 8)));
+
+            busquedaUsuariosService.sincronizar();
+            assertEquals(List.of(id), ids(busquedaUsuariosService.buscar("bartolome villa", 8)));
+            assertEquals(List.of(id), ids(busquedaUsuariosService.buscar("cascabel", 8)));
+            assertEquals(List.of(), ids(busquedaUsuariosService.buscar("anacleto", 8)));
+        } finally {
+            if (mascota.getIdMascota() != null) {
+                mascotaRepository.deleteById(mascota.getIdMascota());
+            }
+            usuarioRepository.deleteById(id);
+        }
+    }
+
+    private static List<Integer> ids(List<SugerenciaUsuarioDTO> sugerencias) {
+        return sugerencias.stream().map(SugerenciaUsuarioDTO::idUsuario).toList();
+    }
+}
@@ -0,0 +1,71 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.HorarioAtencion;
+import com.sistemaVeterinario.repository.HorarioAtencionRepository;
+import com.sistemaVeterinario.repository.VersionCalendarioRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la validación y la inicialización del calendario de {@link CalendarioClinicaService}.
+ */
+@SpringBootTest
+class CalendarioClinicaServiceTest {
+
+    @Autowired
+    private CalendarioClinicaService calendarioClinicaService;
+
+    @Autowired
+    private HorarioAtencionRepository horarioAtencionRepository;
+
+    @Autowired
+    private VersionCalendarioRepository versionCalendarioRepository;
+
+    @ParameterizedTest(name = "{0}-{1}, descanso {2}-{3}")
+    @CsvSource({
+            // apertura, cierre, inicio de descanso, fin de descanso
+            "08:15, 17:00,      ,      ",
+            "08:00, 16:45,      ,      ",
+            "08:00, 17:00, 12:10, 13:00",
+            "08:00, 17:00, 12:00, 13:00:30"
+    })
+    void rechazaHorasFueraDeLosIntervalos(LocalTime apertura, LocalTime cierre,
+                                          LocalTime inicioDescanso, LocalTime finDescanso) {
+        HorarioAtencion horario = new HorarioAtencion();
+        horario.setDiaSemana(DayOfWeek.SATURDAY);
+        horario.setHoraApertura(apertura);
+        horario.setHoraCierre(cierre);
+        horario.setInicioDescanso(inicioDescanso);
+        horario.setFinDescanso(finDescanso);
+        long horarios = horarioAtencionRepository.count();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> calendarioClinicaService.guardarHorario(horario));
+
+        assertTrue(error.getMessage().contains("30 minutos"), error.getMessage());
+        assertEquals(horarios, horarioAtencionRepository.count());
+    }
+
+    @Test
+    void inicializarDeNuevoNoDuplicaElHorarioPorDefecto() {
+        calendarioClinicaService.inicializar();
+        calendarioClinicaService.inicializar();
+
+        assertTrue(versionCalendarioRepository.obtenerVersion().orElse(0L) > 0);
+        Map<DayOfWeek, Long> generalesPorDia = horarioAtencionRepository.findAll().stream()
+                .filter(horario -> horario.getServicio() == null)
+                .collect(Collectors.groupingBy(HorarioAtencion::getDiaSemana, Collectors.counting()));
+        assertFalse(generalesPorDia.isEmpty());
+        generalesPorDia.values().forEach(cantidad -> assertEquals(1L, cantidad));
+    }
+}
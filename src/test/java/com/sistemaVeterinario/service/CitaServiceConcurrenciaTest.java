@@ -0,0 +1,340 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.DiaFestivo;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.DiaFestivoRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import com.sistemaVeterinario.repository.VersionCalendarioRepository;
+import com.sistemaVeterinario.repository.VersionDisponibilidadRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de concurrencia de la reserva de horarios de {@link CitaService}.
+ */
+@SpringBootTest
+class CitaServiceConcurrenciaTest {
+
+    private static final int RESERVAS = 2000;
+    private static final int HILOS = 32;
+    private static final int HORARIOS = 8;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private DisponibilidadService disponibilidadService;
+
+    @Autowired
+    private CalendarioClinicaService calendarioClinicaService;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private VersionDisponibilidadRepository versionDisponibilidadRepository;
+
+    @Autowired
+    private DiaFestivoRepository diaFestivoRepository;
+
+    @Autowired
+    private VersionCalendarioRepository versionCalendarioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ClavesReservaService clavesReservaService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio servicio;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("Ana");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("concurrencia@example.com");
+        propietario.setTelefono("3000000001");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Luna");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2020, 1, 1));
+        mascota.setSexo(Mascota.SexoMascota.Hembra);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        servicio = new Servicio();
+        servicio.setNombre("Consulta General");
+        servicio.setDescripcion("Consulta de prueba");
+        servicio = servicioRepository.save(servicio);
+
+        disponibilidadService.reconstruir();
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        citaRepository.deleteAll();
+        versionDisponibilidadRepository.deleteAll();
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+        disponibilidadService.reconstruir();
+    }
+
+    @Test
+    void reservasConcurrentesNoDuplicanHorarios() throws Exception {
+        LocalDate fecha = fechaReservable(0);
+        List<LocalDateTime> horarios = new ArrayList<>();
+        for (int i = 0; i < HORARIOS; i++) {
+            horarios.add(LocalDateTime.of(fecha, LocalTime.of(8, 0).plusMinutes(30L * i)));
+        }
+
+        AtomicInteger reservadas = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < RESERVAS; i++) {
+                LocalDateTime fechaHora = horarios.get(i % HORARIOS);
+                tareas.add(executor.submit(() -> {
+                    if (citaService.reservar(nuevaCita(fechaHora)) == CitaService.ResultadoReserva.RESERVADA) {
+                        reservadas.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(HORARIOS, reservadas.get());
+
+        Map<LocalDateTime, Long> citasPorHorario = citaRepository.findAll().stream()
+                .collect(Collectors.groupingBy(Cita::getFechaHora, Collectors.counting()));
+        assertEquals(HORARIOS, citasPorHorario.size());
+        citasPorHorario.values().forEach(cantidad -> assertEquals(1L, cantidad));
+    }
+
+    @Test
+    void baseDeDatosRechazaHorarioDuplicado() {
+        LocalDateTime fechaHora = LocalDateTime.of(fechaReservable(1), LocalTime.of(9, 0));
+        Cita primera = nuevaCita(fechaHora);
+        primera.actualizarClaveReserva();
+        citaRepository.saveAndFlush(primera);
+
+        Cita duplicada = nuevaCita(fechaHora);
+        duplicada.actualizarClaveReserva();
+        assertThrows(DataIntegrityViolationException.class, () -> citaRepository.saveAndFlush(duplicada));
+    }
+
+    @Test
+    void otrasViolacionesDeIntegridadNoSeReportanComoOcupado() {
+        LocalDateTime fechaHora = LocalDateTime.of(fechaReservable(1), LocalTime.of(10, 30));
+        Cita primera = nuevaCita(fechaHora);
+        primera.actualizarClaveReserva();
+        citaRepository.saveAndFlush(primera);
+        // Guardada por otra instancia, sin pasar por el índice de esta: la clave de reserva la rechaza
+        assertEquals(CitaService.ResultadoReserva.HORARIO_OCUPADO, citaService.reservar(nuevaCita(fechaHora)));
+
+        // Una cita sin mascota viola una columna obligatoria, no el horario
+        Cita invalida = nuevaCita(fechaHora.plusMinutes(30));
+        invalida.setMascota(null);
+        assertThrows(DataIntegrityViolationException.class, () -> citaService.reservar(invalida));
+    }
+
+    @Test
+    void soloCambiarElHorarioReiniciaElRecordatorio() {
+        LocalDateTime fechaHora = LocalDateTime.of(fechaReservable(6), LocalTime.of(14, 0));
+        Cita cita = nuevaCita(fechaHora);
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(cita));
+        transactionTemplate.executeWithoutResult(estado ->
+                citaRepository.marcarRecordatorioEnviado(List.of(cita.getIdCita())));
+
+        // Editar la cita sin mover el horario no vuelve a enviar el recordatorio
+        Cita editada = citaService.findById(cita.getIdCita());
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(editada));
+        assertTrue(citaRepository.findById(cita.getIdCita()).orElseThrow().getRecordatorioEnviado());
+
+        editada = citaService.findById(cita.getIdCita());
+        editada.setFechaHora(fechaHora.plusMinutes(30));
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(editada));
+        assertFalse(citaRepository.findById(cita.getIdCita()).orElseThrow().getRecordatorioEnviado());
+    }
+
+    @Test
+    void cancelarLiberaElHorario() {
+        LocalDateTime fechaHora = LocalDateTime.of(fechaReservable(2), LocalTime.of(10, 0));
+        Cita cita = nuevaCita(fechaHora);
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(cita));
+        assertEquals(CitaService.ResultadoReserva.HORARIO_OCUPADO, citaService.reservar(nuevaCita(fechaHora)));
+
+        cita.setEstado(Cita.EstadoCita.Cancelada);
+        citaService.save(cita);
+
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(nuevaCita(fechaHora)));
+    }
+
+    @Test
+    void rechazaHorasQueNoInicianUnIntervalo() {
+        LocalDateTime inicio = LocalDateTime.of(fechaReservable(5), LocalTime.of(9, 0));
+
+        // 09:10 caería en el intervalo de 09:00 con otra clave de reserva
+        assertEquals(CitaService.ResultadoReserva.FUERA_DE_HORARIO,
+                citaService.reservar(nuevaCita(inicio.plusMinutes(10))));
+        assertEquals(CitaService.ResultadoReserva.FUERA_DE_HORARIO,
+                citaService.reservar(nuevaCita(inicio.plusSeconds(1))));
+        assertEquals(0, citaRepository.count());
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(nuevaCita(inicio)));
+    }
+
+    @Test
+    void cambioDeOtraInstanciaSeVeAlSincronizar() {
+        LocalDateTime fechaHora = LocalDateTime.of(fechaReservable(3), LocalTime.of(11, 0));
+        Integer servicioId = servicio.getIdServicio();
+        String etagAnterior = disponibilidadService.obtenerEtag(fechaHora.toLocalDate(), servicioId);
+
+        // Otra instancia guarda la cita sin pasar por el índice en memoria de esta
+        transactionTemplate.executeWithoutResult(estado -> {
+            Cita cita = nuevaCita(fechaHora);
+            cita.actualizarClaveReserva();
+            citaRepository.save(cita);
+            versionDisponibilidadRepository.incrementar(fechaHora.toLocalDate());
+        });
+        disponibilidadService.sincronizar();
+
+        assertTrue(disponibilidadService.estaOcupado(null, fechaHora, servicioId));
+        assertNotEquals(etagAnterior, disponibilidadService.obtenerEtag(fechaHora.toLocalDate(), servicioId));
+        assertEquals(CitaService.ResultadoReserva.HORARIO_OCUPADO, citaService.reservar(nuevaCita(fechaHora)));
+    }
+
+    @Test
+    void liberacionDeOtraInstanciaSeVeAlReservar() {
+        LocalDateTime fechaHora = LocalDateTime.of(fechaReservable(3), LocalTime.of(15, 0));
+        Cita cita = nuevaCita(fechaHora);
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(cita));
+
+        // Otra instancia cancela la cita; esta no sincroniza el horizonte antes de reservar
+        transactionTemplate.executeWithoutResult(estado -> {
+            Cita cancelada = citaRepository.findById(cita.getIdCita()).orElseThrow();
+            cancelada.setEstado(Cita.EstadoCita.Cancelada);
+            cancelada.actualizarClaveReserva();
+            citaRepository.save(cancelada);
+            versionDisponibilidadRepository.incrementar(fechaHora.toLocalDate());
+        });
+
+        assertEquals(CitaService.ResultadoReserva.RESERVADA, citaService.reservar(nuevaCita(fechaHora)));
+    }
+
+    @Test
+    void festivoDeOtraInstanciaSeRespetaAlReservar() {
+        LocalDate fecha = fechaReservable(7);
+        DiaFestivo festivo = new DiaFestivo();
+        festivo.setFecha(fecha);
+        festivo.setDescripcion("Festivo de otra instancia");
+
+        // Otra instancia registra el festivo; esta no recompila su calendario
+        DiaFestivo guardado = transactionTemplate.execute(estado -> {
+            DiaFestivo resultado = diaFestivoRepository.save(festivo);
+            versionCalendarioRepository.incrementar();
+            return resultado;
+        });
+        try {
+            assertEquals(CitaService.ResultadoReserva.FUERA_DE_HORARIO,
+                    citaService.reservar(nuevaCita(LocalDateTime.of(fecha, LocalTime.of(9, 0)))));
+            assertEquals(0, citaRepository.count());
+        } finally {
+            calendarioClinicaService.eliminarFestivo(guardado.getIdFestivo());
+        }
+    }
+
+    @Test
+    void citasAnterioresRecibenSuClaveDeReserva() {
+        LocalDateTime fechaHora = LocalDateTime.of(fechaReservable(4), LocalTime.of(12, 30));
+        // Citas guardadas antes de la columna: la segunda ocupa el mismo horario que la primera
+        Integer primera = insertarSinClave(fechaHora, "Programada");
+        Integer repetida = insertarSinClave(fechaHora, "Programada");
+        Integer cancelada = insertarSinClave(fechaHora.plusMinutes(30), "Cancelada");
+
+        assertTrue(clavesReservaService.completarClavesFaltantes() >= 1);
+
+        assertEquals(Cita.claveReserva(servicio.getIdServicio(), fechaHora), claveReserva(primera));
+        assertNull(claveReserva(repetida));
+        assertNull(claveReserva(cancelada));
+        assertThrows(DataIntegrityViolationException.class, () -> {
+            Cita duplicada = nuevaCita(fechaHora);
+            duplicada.actualizarClaveReserva();
+            citaRepository.saveAndFlush(duplicada);
+        });
+    }
+
+    private Integer insertarSinClave(LocalDateTime fechaHora, String estado) {
+        jdbcTemplate.update("INSERT INTO citas (id_mascota, id_servicio, fecha_hora, estado, recordatorio_enviado) " +
+                "VALUES (?, ?, ?, ?, FALSE)", mascota.getIdMascota(), servicio.getIdServicio(),
+                Timestamp.valueOf(fechaHora), estado);
+        return jdbcTemplate.queryForObject("SELECT MAX(id_cita) FROM citas WHERE id_mascota = ?",
+                Integer.class, mascota.getIdMascota());
+    }
+
+    private String claveReserva(Integer idCita) {
+        return jdbcTemplate.queryForObject("SELECT clave_reserva FROM citas WHERE id_cita = ?", String.class, idCita);
+    }
+
+    private LocalDate fechaReservable(int indice) {
+        return calendarioClinicaService.obtenerFechasReservables(LocalDate.now().plusDays(1), 14).get(indice);
+    }
+
+    private Cita nuevaCita(LocalDateTime fechaHora) {
+        Cita cita = new Cita();
+        cita.setMascota(mascota);
+        cita.setServicio(servicio);
+        cita.setFechaHora(fechaHora);
+        cita.setEstado(Cita.EstadoCita.Programada);
+        return cita;
+    }
+}
@@ -0,0 +1,176 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.HistorialCitaDTO;
+import com.sistemaVeterinario.dto.PaginaHistorialDTO;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del historial de citas de una mascota paginado por clave de {@link CitaService}.
+ */
+@SpringBootTest
+class CitaServiceHistorialTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CitaServiceHistorialTest.class);
+
+    private static final int CITAS = 5000;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio consulta;
+    private Servicio vacunacion;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("Hugo");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("historial@example.com");
+        propietario.setTelefono("3000000023");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Canela");
+        mascota.setEspecie("Gato");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2010, 1, 1));
+        mascota.setSexo(Mascota.SexoMascota.Hembra);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        consulta = servicio("Consulta historial");
+        vacunacion = servicio("Vacunación historial");
+
+        // Cada horario se repite con los dos servicios, para que el ID desempate el orden
+        LocalDateTime inicio = LocalDate.now().minusYears(10).atTime(9, 0);
+        List<Object[]> filas = new ArrayList<>(CITAS);
+        for (int i = 0; i < CITAS; i++) {
+            Servicio servicio = i % 2 == 0 ? consulta : vacunacion;
+            LocalDateTime fechaHora = inicio.plusDays(i / 2);
+            String estado = i % 3 == 0 ? "Cancelada" : "Completada";
+            filas.add(new Object[]{mascota.getIdMascota(), servicio.getIdServicio(), Timestamp.valueOf(fechaHora),
+                    estado, "Cancelada".equals(estado) ? null : "historial|" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO citas (id_mascota, id_servicio, fecha_hora, estado, " +
+                "recordatorio_enviado, clave_reserva) VALUES (?, ?, ?, ?, FALSE, ?)", filas);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        jdbcTemplate.update("DELETE FROM citas WHERE id_mascota = ?", mascota.getIdMascota());
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(consulta);
+        servicioRepository.delete(vacunacion);
+        usuarioRepository.delete(propietario);
+    }
+
+    @Test
+    void recorreTodoElHistorialEnOrdenSinRepetir() {
+        List<HistorialCitaDTO> todas = recorrer(null, null);
+
+        assertEquals(CITAS, todas.size());
+        assertEquals(CITAS, new HashSet<>(todas.stream().map(HistorialCitaDTO::idCita).toList()).size());
+        for (int i = 1; i < todas.size(); i++) {
+            HistorialCitaDTO anterior = todas.get(i - 1);
+            HistorialCitaDTO actual = todas.get(i);
+            assertTrue(anterior.fechaHora().isAfter(actual.fechaHora())
+                    || (anterior.fechaHora().equals(actual.fechaHora()) && anterior.idCita() > actual.idCita()));
+        }
+    }
+
+    @Test
+    void filtraPorEstadoYServicio() {
+        List<HistorialCitaDTO> filtradas = recorrer(Cita.EstadoCita.Cancelada, consulta.getIdServicio());
+
+        // Canceladas: i % 3 == 0; consulta: i % 2 == 0
+        long esperadas = 0;
+        for (int i = 0; i < CITAS; i++) {
+            if (i % 6 == 0) {
+                esperadas++;
+            }
+        }
+        assertEquals(esperadas, filtradas.size());
+        assertTrue(filtradas.stream().allMatch(c -> c.estado() == Cita.EstadoCita.Cancelada
+                && c.idServicio().equals(consulta.getIdServicio())));
+        assertEquals(Set.of(consulta.getIdServicio(), vacunacion.getIdServicio()),
+                new HashSet<>(citaService.obtenerServiciosHistorial(mascota.getIdMascota()).stream()
+                        .map(Servicio::getIdServicio).toList()));
+    }
+
+    @Test
+    void cursorInvalidoDevuelveLaPrimeraPagina() {
+        PaginaHistorialDTO primera = citaService.obtenerHistorial(mascota.getIdMascota(), null, null, null);
+        PaginaHistorialDTO invalida = citaService.obtenerHistorial(mascota.getIdMascota(), null, null, "no-es-un-cursor");
+
+        assertEquals(CitaService.TAMANIO_HISTORIAL, primera.citas().size());
+        assertEquals(primera, invalida);
+    }
+
+    private List<HistorialCitaDTO> recorrer(Cita.EstadoCita estado, Integer idServicio) {
+        List<HistorialCitaDTO> todas = new ArrayList<>();
+        String cursor = null;
+        long primeraPagina = 0;
+        long ultimaPagina = 0;
+        do {
+            long inicio = System.nanoTime();
+            PaginaHistorialDTO pagina = citaService.obtenerHistorial(mascota.getIdMascota(), estado, idServicio, cursor);
+            long nanos = System.nanoTime() - inicio;
+            if (cursor == null) {
+                primeraPagina = nanos;
+            }
+            ultimaPagina = nanos;
+            assertTrue(pagina.citas().size() <= CitaService.TAMANIO_HISTORIAL);
+            todas.addAll(pagina.citas());
+            cursor = pagina.siguiente();
+        } while (cursor != null);
+        logger.info("Historial de {} citas: primera página {} ms, última página {} ms",
+                todas.size(), String.format("%.2f", primeraPagina / 1e6), String.format("%.2f", ultimaPagina / 1e6));
+        return todas;
+    }
+
+    private Servicio servicio(String nombre) {
+        Servicio servicio = new Servicio();
+        servicio.setNombre(nombre);
+        servicio.setDescripcion("Servicio de prueba");
+        return servicioRepository.save(servicio);
+    }
+}
@@ -0,0 +1,107 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.controller.SentenciasPorVistaTest;
+import com.sistemaVeterinario.dto.UsuarioDTO;
+import com.sistemaVeterinario.models.Role;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.RoleRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comprueba que crear y registrar usuarios toma los roles del registro en memoria de
+ * {@link RoleService}, sin consultar la tabla {@code roles}.
+ *
+ * <p>Usa el mismo contador de sentencias por hilo que {@link SentenciasPorVistaTest}.</p>
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.sistemaVeterinario.controller.SentenciasPorVistaTest$ContadorSentencias")
+class ConsultasRolTest {
+
+    // Sentencias que leen la tabla de roles; la tabla de unión usuario_rol no cuenta
+    private static final Pattern CONSULTA_ROLES = Pattern.compile("\\broles\\b", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private AdminUsuarioService adminUsuarioService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Role rolUsuario;
+    private boolean rolCreado;
+
+    @BeforeEach
+    void prepararDatos() {
+        rolUsuario = roleRepository.findByNombreRol("USER").orElseGet(() -> {
+            Role rol = new Role();
+            rol.setNombreRol("USER");
+            rol.setDescripcion("Cliente");
+            rolCreado = true;
+            return roleRepository.save(rol);
+        });
+        // El registro se carga una vez; después ya no se consulta la tabla
+        roleService.findAll();
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        jdbcTemplate.update("DELETE FROM usuario_rol WHERE id_usuario IN " +
+                "(SELECT id_usuario FROM usuarios WHERE email LIKE '%@roles.com')");
+        jdbcTemplate.update("DELETE FROM usuarios WHERE email LIKE '%@roles.com'");
+        if (rolCreado) {
+            roleRepository.delete(rolUsuario);
+        }
+    }
+
+    @Test
+    void crearYRegistrarUsuariosNoConsultaLosRoles() {
+        SentenciasPorVistaTest.ContadorSentencias.reiniciar();
+        Usuario creado = adminUsuarioService.createUsuario(
+                datos("creado@roles.com", "3000000029"), Set.of(rolUsuario.getIdRol()));
+        List<String> alCrear = SentenciasPorVistaTest.ContadorSentencias.sentencias();
+
+        SentenciasPorVistaTest.ContadorSentencias.reiniciar();
+        Usuario registrado = authService.registrarUsuario(datos("registrado@roles.com", "3000000030"));
+        List<String> alRegistrar = SentenciasPorVistaTest.ContadorSentencias.sentencias();
+
+        assertEquals(List.of("USER"), creado.getRoles().stream().map(Role::getNombreRol).toList());
+        assertEquals(List.of("USER"), registrado.getRoles().stream().map(Role::getNombreRol).toList());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM usuario_rol WHERE id_usuario = ?",
+                Integer.class, registrado.getIdUsuario()));
+        // Las inserciones sí se cuentan: el contador está activo
+        assertFalse(alCrear.isEmpty());
+        assertTrue(alCrear.stream().noneMatch(sql -> CONSULTA_ROLES.matcher(sql).find()),
+                "Crear el usuario consultó los roles: " + alCrear);
+        assertTrue(alRegistrar.stream().noneMatch(sql -> CONSULTA_ROLES.matcher(sql).find()),
+                "Registrar el usuario consultó los roles: " + alRegistrar);
+    }
+
+    private static UsuarioDTO datos(String email, String telefono) {
+        UsuarioDTO datos = new UsuarioDTO();
+        datos.setNombre("Rosario");
+        datos.setApellido("Prueba");
+        datos.setEmail(email);
+        datos.setTelefono(telefono);
+        datos.setContrasena("Segura123");
+        return datos;
+    }
+}
@@ -0,0 +1,52 @@
+package com.sistemaVeterinario.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del límite de conexiones por usuario de {@link DisponibilidadEventosService}.
+ */
+class DisponibilidadEventosServiceTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 1, 15);
+    private static final int LIMITE = DisponibilidadEventosService.MAX_SUSCRIPTORES_POR_USUARIO;
+
+    private final DisponibilidadEventosService servicio = new DisponibilidadEventosService();
+
+    @AfterEach
+    void cerrar() {
+        servicio.cerrar();
+    }
+
+    @Test
+    void cadaUsuarioTieneSuPropioLimiteDeConexiones() throws InterruptedException {
+        List<SseEmitter> conexiones = new ArrayList<>();
+        for (int i = 0; i < LIMITE; i++) {
+            conexiones.add(servicio.suscribir(FECHA, i % 2 == 0 ? 1 : null, 7));
+        }
+        assertTrue(conexiones.stream().allMatch(c -> c != null));
+        assertNull(servicio.suscribir(FECHA, 1, 7));
+        assertEquals(LIMITE, servicio.contarSuscriptores(7));
+
+        // Otro usuario no se ve afectado
+        assertNotNull(servicio.suscribir(FECHA, 1, 8));
+        assertEquals(LIMITE + 1, servicio.contarSuscriptores());
+
+        // Una conexión cerrada se detecta al enviarle un evento y libera su lugar
+        conexiones.get(0).complete();
+        servicio.publicar(FECHA, 1, LocalTime.of(9, 0), false);
+        for (int i = 0; i < 100 && servicio.contarSuscriptores(7) == LIMITE; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(LIMITE - 1, servicio.contarSuscriptores(7));
+        assertNotNull(servicio.suscribir(FECHA, 1, 7));
+    }
+}
@@ -0,0 +1,109 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.EventoCita;
+import com.sistemaVeterinario.repository.EventoCitaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Pruebas de los reintentos de {@link EventosCitaService}: un evento que falla se reintenta sin
+ * entregar los siguientes, al agotar sus intentos deja de bloquearlos y queda retenido, y
+ * {@link EventosCitaService#reintentarAgotados()} lo vuelve a entregar.
+ */
+@SpringBootTest
+class EventosCitaServiceTest {
+
+    // Citas inexistentes: solo identifican los eventos de esta prueba
+    private static final int CITA_FALLIDA = -1201;
+    private static final int CITA_SIGUIENTE = -1202;
+
+    private static final int MAX_INTENTOS = 10;
+
+    @Autowired
+    private EventosCitaService eventosCitaService;
+
+    @Autowired
+    private EventoCitaRepository eventoCitaRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoSpyBean
+    private LiderazgoService liderazgoService;
+
+    private EventoCita fallido;
+    private EventoCita siguiente;
+
+    @BeforeEach
+    void prepararEventos() {
+        doReturn(true).when(liderazgoService).esLider();
+        SuscriptorEventosCitaPrueba.CITAS_QUE_FALLAN.add(CITA_FALLIDA);
+        fallido = eventoCitaRepository.save(evento(CITA_FALLIDA));
+        siguiente = eventoCitaRepository.save(evento(CITA_SIGUIENTE));
+        // Los ID se repiten entre contextos porque cada uno vuelve a crear las tablas
+        SuscriptorEventosCitaPrueba.ENTREGADOS.removeAll(List.of(fallido.getIdEvento(), siguiente.getIdEvento()));
+    }
+
+    @AfterEach
+    void limpiarEventos() {
+        SuscriptorEventosCitaPrueba.CITAS_QUE_FALLAN.remove(CITA_FALLIDA);
+        eventoCitaRepository.deleteAllByIdInBatch(List.of(fallido.getIdEvento(), siguiente.getIdEvento()));
+    }
+
+    @Test
+    void reintentaAgotaYVuelveAEntregar() {
+        // Mientras el primero falla, el siguiente espera para conservar el orden
+        eventosCitaService.despachar();
+        // Otra instancia de prueba también puede despachar, por eso no se exige un solo intento
+        assertTrue(intentos(fallido) >= 1);
+        assertTrue(eventoCitaRepository.existsById(siguiente.getIdEvento()));
+        assertFalse(SuscriptorEventosCitaPrueba.ENTREGADOS.contains(siguiente.getIdEvento()));
+
+        for (int i = 0; i < 2 * MAX_INTENTOS && intentos(fallido) < MAX_INTENTOS; i++) {
+            eventosCitaService.despachar();
+        }
+        assertEquals(MAX_INTENTOS, intentos(fallido));
+        assertTrue(eventosCitaService.contarAgotados() >= 1);
+        assertTrue(meterRegistry.get("veterinaria.eventos.cita.retenidos").gauge().value() >= 1);
+
+        // Agotado, ya no bloquea a los siguientes ni se vuelve a intentar
+        eventosCitaService.despachar();
+        assertFalse(eventoCitaRepository.existsById(siguiente.getIdEvento()));
+        assertTrue(SuscriptorEventosCitaPrueba.ENTREGADOS.contains(siguiente.getIdEvento()));
+        assertEquals(MAX_INTENTOS, intentos(fallido));
+
+        // Corregida la causa, se vuelve a entregar
+        SuscriptorEventosCitaPrueba.CITAS_QUE_FALLAN.remove(CITA_FALLIDA);
+        assertTrue(eventosCitaService.reintentarAgotados() >= 1);
+        eventosCitaService.despachar();
+        assertFalse(eventoCitaRepository.existsById(fallido.getIdEvento()));
+        assertTrue(SuscriptorEventosCitaPrueba.ENTREGADOS.contains(fallido.getIdEvento()));
+    }
+
+    private int intentos(EventoCita evento) {
+        return eventoCitaRepository.findById(evento.getIdEvento()).map(EventoCita::getIntentos).orElse(-1);
+    }
+
+    private static EventoCita evento(int idCita) {
+        EventoCita evento = new EventoCita();
+        evento.setIdCita(idCita);
+        evento.setTipo(EventoCita.TipoEvento.AGENDADA);
+        evento.setEstado(Cita.EstadoCita.Programada);
+        evento.setFechaHora(LocalDateTime.of(2031, 3, 3, 9, 0));
+        evento.setIdServicio(1);
+        evento.setFechaCreacion(LocalDateTime.now());
+        return evento;
+    }
+}
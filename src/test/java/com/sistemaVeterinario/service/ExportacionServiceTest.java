@@ -0,0 +1,257 @@
+package com.sistemaVeterinario.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.forwardedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pruebas de la exportación por flujo de {@link ExportacionService}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ExportacionServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacionServiceTest.class);
+
+    private static final int CITAS = 300_000;
+    // Tres días de citas, suficientes para las pruebas que no miden memoria
+    private static final int CITAS_BASE = 3 * 144;
+    private static final LocalDateTime PRIMERA_CITA = LocalDateTime.of(2024, 1, 1, 8, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio servicio;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("=Exporta");
+        propietario.setApellido("Prueba, \"Comillas\"");
+        propietario.setEmail("exportacion@example.com");
+        propietario.setTelefono("3000000005");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Toby");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Beagle");
+        mascota.setFechaNacimiento(LocalDate.of(2021, 5, 3));
+        mascota.setSexo(Mascota.SexoMascota.Macho);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        servicio = new Servicio();
+        servicio.setNombre("Vacunación");
+        servicio.setDescripcion("Servicio de prueba");
+        servicio = servicioRepository.save(servicio);
+
+        insertarCitas(0, CITAS_BASE);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        jdbcTemplate.update("DELETE FROM citas WHERE id_mascota = ?", mascota.getIdMascota());
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+    }
+
+    @Test
+    void exportaCsvConFiltroDeFechasYCampoEscapado() throws Exception {
+        MvcResult inicio = mockMvc.perform(get("/admin/exportaciones/citas")
+                        .param("desde", "2024-01-02").param("hasta", "2024-01-02")
+                        .with(user("admin").roles("ADMIN")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult resultado = mockMvc.perform(asyncDispatch(inicio))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition",
+                        org.hamcrest.Matchers.startsWith("attachment; filename=\"citas-")))
+                .andReturn();
+
+        String[] lineas = resultado.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\r\n");
+        // Cabecera y las 144 citas de un día
+        assertEquals(145, lineas.length);
+        assertEquals("idCita,fechaHora,estado,idMascota,nombreMascota,idPropietario,idServicio,nombreServicio", lineas[0]);
+        assertTrue(lineas[1].contains(",2024-01-02T00:00,Programada,"));
+        assertTrue(lineas[144].contains(",2024-01-02T23:50,Programada,"));
+
+        String usuario = exportarUsuarios();
+        assertTrue(usuario.contains(",'=Exporta,\"Prueba, \"\"Comillas\"\"\",exportacion@example.com,"), usuario);
+    }
+
+    @Test
+    void exportaJsonComprimido() throws Exception {
+        MvcResult inicio = mockMvc.perform(get("/admin/exportaciones/mascotas")
+                        .param("formato", "json").param("gzip", "true")
+                        .with(user("admin").roles("ADMIN")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult resultado = mockMvc.perform(asyncDispatch(inicio))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/gzip"))
+                .andReturn();
+
+        JsonNode mascotas = objectMapper.readTree(new GZIPInputStream(
+                new ByteArrayInputStream(resultado.getResponse().getContentAsByteArray())));
+        JsonNode toby = null;
+        for (JsonNode nodo : mascotas) {
+            if (nodo.get("idMascota").asInt() == mascota.getIdMascota()) {
+                toby = nodo;
+            }
+        }
+        assertNotNull(toby);
+        assertEquals("Toby", toby.get("nombre").asText());
+        assertEquals("2021-05-03", toby.get("fechaNacimiento").asText());
+        assertEquals(propietario.getIdUsuario(), toby.get("idPropietario").asInt());
+    }
+
+    @Test
+    void rangoInvalidoYTipoInexistente() throws Exception {
+        mockMvc.perform(get("/admin/exportaciones/citas")
+                        .param("desde", "2024-02-01").param("hasta", "2024-01-01")
+                        .with(user("admin").roles("ADMIN")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/admin/exportaciones/facturas").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/admin/exportaciones/citas").with(user("cliente").roles("USER")))
+                .andExpect(forwardedUrl("/error/403"));
+    }
+
+    @Test
+    void memoriaConstanteConMuchasCitas() throws Exception {
+        insertarCitas(CITAS_BASE, CITAS);
+        Runtime runtime = Runtime.getRuntime();
+        // Heap ocupado tras el primer bloque escrito y el máximo medido después
+        long[] primero = {-1};
+        long[] maximo = {0};
+        long[] bytes = {0};
+
+        // Mide el heap ocupado cada pocos MB escritos, mientras la exportación sigue abierta. El
+        // primer bloque incluye lo que reserva la base de datos embebida al abrir la consulta
+        OutputStream medidor = new OutputStream() {
+            private long siguienteMedicion = 0;
+
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int desde, int largo) {
+                bytes[0] += largo;
+                if (bytes[0] >= siguienteMedicion) {
+                    siguienteMedicion += 2 * 1024 * 1024;
+                    System.gc();
+                    long usado = runtime.totalMemory() - runtime.freeMemory();
+                    if (primero[0] < 0) {
+                        primero[0] = usado;
+                    }
+                    maximo[0] = Math.max(maximo[0], usado);
+                }
+            }
+        };
+
+        long comienzo = System.nanoTime();
+        StreamingResponseBody cuerpo = exportacionService.exportar(ExportacionService.TipoExportacion.CITAS,
+                ExportacionService.FormatoExportacion.CSV, false, null, null);
+        assertNotNull(cuerpo);
+        cuerpo.writeTo(medidor);
+        long milisegundos = (System.nanoTime() - comienzo) / 1_000_000;
+
+        long crecimiento = maximo[0] - primero[0];
+        logger.info("{} citas exportadas: {} MB en {} ms, crecimiento del heap {} KB",
+                CITAS, bytes[0] >> 20, milisegundos, crecimiento >> 10);
+        assertTrue(bytes[0] > 16L * 1024 * 1024);
+        // El heap no crece con las filas escritas: ni entidades administradas ni filas acumuladas
+        assertTrue(crecimiento < 2L * 1024 * 1024, "Crecimiento del heap: " + crecimiento);
+    }
+
+    /**
+     * Inserta en bloque una cita cada diez minutos desde la primera, de la posición
+     * {@code desde} (inclusive) a la {@code hasta} (exclusiva).
+     */
+    private void insertarCitas(int desde, int hasta) {
+        List<Object[]> filas = new ArrayList<>(hasta - desde);
+        for (int i = desde; i < hasta; i++) {
+            LocalDateTime fechaHora = PRIMERA_CITA.plusMinutes(10L * i);
+            filas.add(new Object[]{mascota.getIdMascota(), servicio.getIdServicio(), Timestamp.valueOf(fechaHora),
+                    servicio.getIdServicio() + "|" + fechaHora});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO citas (id_mascota, id_servicio, fecha_hora, estado, recordatorio_enviado, " +
+                "clave_reserva) VALUES (?, ?, ?, 'Programada', FALSE, ?)", filas);
+    }
+
+    private String exportarUsuarios() throws Exception {
+        MvcResult inicio = mockMvc.perform(get("/admin/exportaciones/usuarios").with(user("admin").roles("ADMIN")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(inicio)).andExpect(status().isOk());
+        StringBuilder contenido = new StringBuilder();
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(inicio.getResponse().getContentAsByteArray()), StandardCharsets.UTF_8))) {
+            lector.lines().forEach(linea -> contenido.append(linea).append('\n'));
+        }
+        return contenido.toString();
+    }
+}
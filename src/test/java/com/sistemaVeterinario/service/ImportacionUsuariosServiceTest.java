@@ -0,0 +1,152 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.ErrorImportacionDTO;
+import com.sistemaVeterinario.dto.ResultadoImportacionDTO;
+import com.sistemaVeterinario.dto.SugerenciaUsuarioDTO;
+import com.sistemaVeterinario.models.Role;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.RoleRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la importación masiva de usuarios de {@link ImportacionUsuariosService}.
+ */
+@SpringBootTest
+class ImportacionUsuariosServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacionUsuariosServiceTest.class);
+
+    private static final int USUARIOS_RENDIMIENTO = 2000;
+
+    @Autowired
+    private ImportacionUsuariosService importacionUsuariosService;
+
+    @Autowired
+    private BusquedaUsuariosService busquedaUsuariosService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Role rolUsuario;
+    private boolean rolCreado;
+    private Usuario existente;
+
+    @BeforeEach
+    void prepararDatos() {
+        rolUsuario = roleRepository.findByNombreRol("USER").orElseGet(() -> {
+            Role rol = new Role();
+            rol.setNombreRol("USER");
+            rol.setDescripcion("Cliente");
+            rolCreado = true;
+            return roleRepository.save(rol);
+        });
+
+        existente = new Usuario();
+        existente.setNombre("Previo");
+        existente.setApellido("Registrado");
+        existente.setEmail("previo@importacion.com");
+        existente.setTelefono("3100000000");
+        existente.setContrasena("x");
+        existente = usuarioRepository.save(existente);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        jdbcTemplate.update("DELETE FROM usuario_rol WHERE id_usuario IN " +
+                "(SELECT id_usuario FROM usuarios WHERE email LIKE '%@importacion.com')");
+        jdbcTemplate.update("DELETE FROM usuarios WHERE email LIKE '%@importacion.com'");
+        if (rolCreado) {
+            roleRepository.delete(rolUsuario);
+        }
+        busquedaUsuariosService.reconstruir();
+    }
+
+    @Test
+    void importaFilasValidasEInformaErroresPorFila() throws Exception {
+        String csv = "\uFEFF\"Nombre\";Apellido;Email;Telefono;Contrasena\r\n" +
+                "Laura;\"De La Cruz\";laura@importacion.com;3100000001;Clave1234\r\n" +
+                "Li;Corto;corto@importacion.com;3100000002;Clave1234\r\n" +
+                "Mario;Rossi;LAURA@importacion.com;3100000003;Clave1234\r\n" +
+                "Pedro;Perez;pedro@importacion.com;3100000001;Clave1234\r\n" +
+                "Otro;Previo;previo@importacion.com;3100000004;Clave1234\r\n" +
+                "\r\n" +
+                "Sofia;Mendez;sofia@importacion.com;3100000005;Clave1234\n";
+
+        ResultadoImportacionDTO resultado = importacionUsuariosService.importar(new StringReader(csv));
+
+        assertEquals(6, resultado.filas());
+        assertEquals(2, resultado.importados());
+        assertEquals(4, resultado.rechazados());
+        Map<Long, ErrorImportacionDTO> errores = resultado.errores().stream()
+                .collect(Collectors.toMap(ErrorImportacionDTO::fila, error -> error));
+        assertEquals(List.of(3L, 4L, 5L, 6L), errores.keySet().stream().sorted().toList());
+        assertEquals("corto@importacion.com", errores.get(3L).email());
+        assertTrue(errores.get(4L).mensaje().contains("2"), errores.get(4L).mensaje());
+        assertTrue(errores.get(5L).mensaje().contains("2"), errores.get(5L).mensaje());
+
+        Usuario laura = usuarioRepository.findByEmail("laura@importacion.com").orElseThrow();
+        assertEquals("De La Cruz", laura.getApellido());
+        assertNotNull(laura.getFechaRegistro());
+        assertTrue(passwordEncoder.matches("Clave1234", laura.getContrasena()));
+        assertEquals(List.of("USER"), transactionTemplate.execute(estado ->
+                usuarioRepository.findById(laura.getIdUsuario()).orElseThrow().getRoles().stream()
+                        .map(Role::getNombreRol).toList()));
+
+        List<SugerenciaUsuarioDTO> sugerencias = busquedaUsuariosService.buscar("sofia mendez", 5);
+        assertEquals("sofia@importacion.com", sugerencias.get(0).email());
+    }
+
+    @Test
+    void cabeceraIncompleta() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> importacionUsuariosService.importar(new StringReader("nombre,apellido,email\n")));
+        assertTrue(error.getMessage().contains("telefono, contrasena"), error.getMessage());
+    }
+
+    @Test
+    void rendimientoDeMilesDeFilas() throws Exception {
+        StringBuilder csv = new StringBuilder("nombre,apellido,email,telefono,contrasena\n");
+        for (int i = 0; i < USUARIOS_RENDIMIENTO; i++) {
+            csv.append("Cliente,Sucursal,cliente").append(i).append("@importacion.com,")
+                    .append(3200000000L + i).append(",Clave").append(1000 + i).append('\n');
+        }
+
+        ResultadoImportacionDTO resultado = importacionUsuariosService.importar(new StringReader(csv.toString()));
+
+        logger.info("{} usuarios importados en {} ms ({} filas/s)",
+                resultado.importados(), resultado.milisegundos(), resultado.filasPorSegundo());
+        assertEquals(USUARIOS_RENDIMIENTO, resultado.importados());
+        assertEquals(USUARIOS_RENDIMIENTO, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM usuario_rol ur " +
+                "JOIN usuarios u ON u.id_usuario = ur.id_usuario WHERE u.email LIKE 'cliente%@importacion.com' " +
+                "AND ur.id_rol = ?", Integer.class, rolUsuario.getIdRol()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.repository.ArrendamientoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del arrendamiento que elige la instancia líder de {@link LiderazgoService}.
+ */
+@SpringBootTest
+class LiderazgoServiceTest {
+
+    private static final String ARRENDAMIENTO = "prueba-liderazgo";
+
+    @Autowired
+    private LiderazgoService liderazgoService;
+
+    @Autowired
+    private ArrendamientoRepository arrendamientoRepository;
+
+    @AfterEach
+    void limpiar() {
+        arrendamientoRepository.deleteById(ARRENDAMIENTO);
+    }
+
+    @Test
+    void soloElPropietarioRenuevaMientrasEstaVigente() {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        assertTrue(liderazgoService.intentarAdquirir(ARRENDAMIENTO, "nodo-a", ahora));
+        assertFalse(liderazgoService.intentarAdquirir(ARRENDAMIENTO, "nodo-b", ahora.plusSeconds(5)));
+        assertTrue(liderazgoService.intentarAdquirir(ARRENDAMIENTO, "nodo-a", ahora.plusSeconds(10)));
+        assertEquals("nodo-a", arrendamientoRepository.findById(ARRENDAMIENTO).orElseThrow().getPropietario());
+    }
+
+    @Test
+    void otroNodoLoTomaCuandoVence() {
+        LocalDateTime ahora = LocalDateTime.now();
+        assertTrue(liderazgoService.intentarAdquirir(ARRENDAMIENTO, "nodo-a", ahora));
+
+        // El nodo A dejó de renovar: al vencer, B lo toma y A ya no puede recuperarlo
+        LocalDateTime vencido = ahora.plusMinutes(1);
+        assertTrue(liderazgoService.intentarAdquirir(ARRENDAMIENTO, "nodo-b", vencido));
+        assertFalse(liderazgoService.intentarAdquirir(ARRENDAMIENTO, "nodo-a", vencido));
+        assertEquals("nodo-b", arrendamientoRepository.findById(ARRENDAMIENTO).orElseThrow().getPropietario());
+    }
+
+    @Test
+    void soloUnNodoGanaEntreIntentosSimultaneos() throws Exception {
+        LocalDateTime ahora = LocalDateTime.now();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> intentos = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String nodo = "nodo-" + i;
+                intentos.add(() -> liderazgoService.intentarAdquirir(ARRENDAMIENTO, nodo, ahora));
+            }
+
+            int ganadores = 0;
+            for (Future<Boolean> resultado : executor.invokeAll(intentos)) {
+                if (resultado.get()) {
+                    ganadores++;
+                }
+            }
+            assertEquals(1, ganadores);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
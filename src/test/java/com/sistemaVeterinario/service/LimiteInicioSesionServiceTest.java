@@ -0,0 +1,161 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.unauthenticated;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+
+/**
+ * Pruebas del límite de intentos de inicio de sesión de {@link LimiteInicioSesionService}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class LimiteInicioSesionServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LimiteInicioSesionServiceTest.class);
+
+    private static final long SEGUNDO = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int HILOS = 16;
+    private static final int OPERACIONES_POR_HILO = 200_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void cubetaSeAgotaYSeRecupera() {
+        LimiteInicioSesionService.TablaCubetas tabla = new LimiteInicioSesionService.TablaCubetas(4096, 3, 10 * SEGUNDO);
+        long ahora = 0;
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(tabla.agotada("ana@example.com", ahora));
+            tabla.consumir("ana@example.com", ahora);
+        }
+        assertTrue(tabla.agotada("ana@example.com", ahora));
+        assertFalse(tabla.agotada("otra@example.com", ahora));
+
+        // Tras un intervalo se recupera exactamente un intento
+        ahora += 10 * SEGUNDO;
+        assertFalse(tabla.agotada("ana@example.com", ahora));
+        tabla.consumir("ana@example.com", ahora);
+        assertTrue(tabla.agotada("ana@example.com", ahora));
+
+        tabla.reiniciar("ana@example.com");
+        assertFalse(tabla.agotada("ana@example.com", ahora));
+    }
+
+    @Test
+    void memoriaFijaConMillonesDeClaves() {
+        LimiteInicioSesionService.TablaCubetas tabla = new LimiteInicioSesionService.TablaCubetas(1 << 16, 5, 60 * SEGUNDO);
+        long ahora = 0;
+        for (int i = 0; i < 5; i++) {
+            tabla.consumir("10.0.0.1", ahora);
+        }
+
+        // Millones de claves de un solo intento no desplazan a la clave bloqueada
+        for (int i = 0; i < 3_000_000; i++) {
+            tabla.consumir("ataque-" + i, ahora);
+        }
+
+        assertEquals(1 << 16, tabla.getCapacidad());
+        assertTrue(tabla.agotada("10.0.0.1", ahora));
+    }
+
+    @Test
+    void contencionEntreHilos() throws Exception {
+        LimiteInicioSesionService.TablaCubetas tabla = new LimiteInicioSesionService.TablaCubetas(1 << 20, 5, 60 * SEGUNDO);
+        String[] claves = new String[100_000];
+        for (int i = 0; i < claves.length; i++) {
+            claves[i] = "usuario" + i + "@example.com";
+        }
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(HILOS);
+        long inicio = System.nanoTime();
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < HILOS; h++) {
+                tareas.add(ejecutor.submit(() -> {
+                    ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERACIONES_POR_HILO; i++) {
+                        String clave = claves[aleatorio.nextInt(claves.length)];
+                        long ahora = System.nanoTime();
+                        if (!tabla.agotada(clave, ahora)) {
+                            tabla.consumir(clave, ahora);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            ejecutor.shutdown();
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        long operaciones = (long) HILOS * OPERACIONES_POR_HILO;
+        logger.info("{} consultas con {} hilos en {} ms ({} millones/s)",
+                operaciones, HILOS, TimeUnit.NANOSECONDS.toMillis(nanos),
+                String.format("%.1f", operaciones * 1000.0 / nanos));
+    }
+
+    @Test
+    void cuentaBloqueadaNoVerificaContrasena() throws Exception {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Iris");
+        usuario.setApellido("Prueba");
+        usuario.setEmail("bloqueo@example.com");
+        usuario.setTelefono("3000000004");
+        usuario.setContrasena(passwordEncoder.encode("Correcta123"));
+        usuario = usuarioRepository.save(usuario);
+
+        try {
+            for (int i = 0; i < 5; i++) {
+                mockMvc.perform(formLogin().user("bloqueo@example.com").password("Incorrecta" + i))
+                        .andExpect(redirectedUrl("/login?error"));
+            }
+
+            double hashesPrevios = meterRegistry.get("veterinaria.contrasenas.hash")
+                    .tag("operacion", "comparar").timer().count();
+
+            // Incluso con la contraseña correcta se rechaza sin calcular el hash
+            mockMvc.perform(formLogin().user("Bloqueo@Example.com").password("Correcta123"))
+                    .andExpect(unauthenticated())
+                    .andExpect(redirectedUrl("/login?bloqueado"));
+
+            assertEquals(hashesPrevios, meterRegistry.get("veterinaria.contrasenas.hash")
+                    .tag("operacion", "comparar").timer().count());
+        } finally {
+            usuarioRepository.delete(usuario);
+        }
+    }
+}
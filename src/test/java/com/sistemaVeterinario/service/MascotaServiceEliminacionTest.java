@@ -0,0 +1,262 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.controller.SentenciasPorVistaTest;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la eliminación de mascotas: el archivado con cancelación en bloque de
+ * {@link MascotaService} y la purga por lotes de {@link PurgaMascotasService}.
+ *
+ * <p>Usa el mismo contador de sentencias por hilo que {@link SentenciasPorVistaTest}.</p>
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.sistemaVeterinario.controller.SentenciasPorVistaTest$ContadorSentencias")
+class MascotaServiceEliminacionTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaServiceEliminacionTest.class);
+
+    private static final int POCAS_CITAS = 3;
+    private static final int MUCHAS_CITAS = 400;
+    private static final int CITAS_PURGA = 2500;
+    private static final int RONDAS_CARRERA = 20;
+
+    @Autowired
+    private MascotaService mascotaService;
+
+    @Autowired
+    private PurgaMascotasService purgaMascotasService;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private CalendarioClinicaService calendarioClinicaService;
+
+    @Autowired
+    private ResumenOcupacionService resumenOcupacionService;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Usuario propietario;
+    private Servicio servicio;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("Elena");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("eliminacion@example.com");
+        propietario.setTelefono("3000000026");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        servicio = new Servicio();
+        servicio.setNombre("Consulta eliminación");
+        servicio.setDescripcion("Servicio de prueba");
+        servicio = servicioRepository.save(servicio);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        jdbcTemplate.update("DELETE FROM citas WHERE id_mascota IN " +
+                "(SELECT id_mascota FROM mascotas WHERE id_propietario = ?)", propietario.getIdUsuario());
+        jdbcTemplate.update("DELETE FROM mascotas WHERE id_propietario = ?", propietario.getIdUsuario());
+        jdbcTemplate.update("DELETE FROM resumen_ocupacion WHERE id_servicio = ?", servicio.getIdServicio());
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+    }
+
+    @Test
+    void eliminarUsaLasMismasSentenciasSinImportarLasCitas() {
+        Mascota pocas = mascota("Pocas", POCAS_CITAS, 0);
+        Mascota muchas = mascota("Muchas", MUCHAS_CITAS, POCAS_CITAS);
+
+        long sentenciasPocas = contarSentenciasAlEliminar(pocas);
+        long sentenciasMuchas = contarSentenciasAlEliminar(muchas);
+        assertEquals(sentenciasPocas, sentenciasMuchas);
+        // Incluye la marca del propietario para el índice de búsqueda de las demás instancias
+        assertTrue(sentenciasMuchas <= 7, "Se ejecutaron " + sentenciasMuchas + " sentencias");
+
+        // Archivada: fuera de las consultas pero conservada hasta la purga
+        assertNull(mascotaService.findById(muchas.getIdMascota()));
+        assertTrue(mascotaService.findByPropietario(propietario.getIdUsuario()).isEmpty());
+        assertEquals(1, contar("SELECT COUNT(*) FROM mascotas WHERE id_mascota = ? AND fecha_eliminacion IS NOT NULL",
+                muchas.getIdMascota()));
+
+        // Las citas futuras se cancelan y liberan su horario; el historial se conserva
+        assertEquals(0, contar("SELECT COUNT(*) FROM citas WHERE id_mascota = ? AND estado = 'Programada'",
+                muchas.getIdMascota()));
+        assertEquals(MUCHAS_CITAS / 2, contar("SELECT COUNT(*) FROM citas WHERE id_mascota = ? " +
+                "AND estado = 'Cancelada' AND clave_reserva IS NULL", muchas.getIdMascota()));
+        assertEquals(MUCHAS_CITAS / 2, contar("SELECT COUNT(*) FROM citas WHERE id_mascota = ? " +
+                "AND estado = 'Completada'", muchas.getIdMascota()));
+    }
+
+    @Test
+    void purgaEliminaPorBloquesSoloLasMascotasVencidas() throws InterruptedException {
+        // Archivada hace más que el plazo de retención
+        Mascota vencida = mascota("Vencida", CITAS_PURGA, 0);
+        jdbcTemplate.update("UPDATE mascotas SET fecha_eliminacion = ? WHERE id_mascota = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(40)), vencida.getIdMascota());
+        Mascota reciente = mascota("Reciente", POCAS_CITAS, CITAS_PURGA);
+        mascotaService.delete(reciente);
+
+        // Las cancelaciones las entrega la instancia líder, que puede ser otro contexto de prueba
+        esperarEventosEntregados();
+        resumenOcupacionService.reconstruir();
+        assertEquals(CITAS_PURGA + POCAS_CITAS, contarResumen());
+
+        long inicio = System.nanoTime();
+        int purgadas = purgaMascotasService.purgar(LocalDateTime.now().minusDays(30));
+        logger.info("Purga de una mascota con {} citas: {} ms",
+                CITAS_PURGA, (System.nanoTime() - inicio) / 1_000_000);
+
+        assertEquals(1, purgadas);
+        assertEquals(0, contar("SELECT COUNT(*) FROM mascotas WHERE id_mascota = ?", vencida.getIdMascota()));
+        assertEquals(0, contar("SELECT COUNT(*) FROM citas WHERE id_mascota = ?", vencida.getIdMascota()));
+        assertEquals(1, contar("SELECT COUNT(*) FROM mascotas WHERE id_mascota = ?", reciente.getIdMascota()));
+        assertEquals(POCAS_CITAS, contar("SELECT COUNT(*) FROM citas WHERE id_mascota = ?", reciente.getIdMascota()));
+        // El resumen de ocupación ya no cuenta las citas purgadas
+        assertEquals(POCAS_CITAS, contarResumen());
+    }
+
+    @Test
+    void reservaConcurrenteNoDejaCitasEnUnaMascotaEliminada() throws Exception {
+        List<LocalDate> fechas = calendarioClinicaService.obtenerFechasReservables(LocalDate.now().plusDays(1), 14);
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < RONDAS_CARRERA; i++) {
+                Mascota mascota = mascota("Carrera" + i, 0, 0);
+                Cita cita = new Cita();
+                cita.setMascota(mascota);
+                cita.setServicio(servicio);
+                cita.setFechaHora(fechas.get(i % fechas.size()).atTime(9, 0).plusMinutes(30L * (i / fechas.size())));
+                cita.setEstado(Cita.EstadoCita.Programada);
+
+                CountDownLatch salida = new CountDownLatch(1);
+                Future<CitaService.ResultadoReserva> reserva = hilos.submit(() -> {
+                    salida.await();
+                    return citaService.reservar(cita);
+                });
+                Future<?> eliminacion = hilos.submit(() -> {
+                    salida.await();
+                    mascotaService.delete(mascota);
+                    return null;
+                });
+                salida.countDown();
+                eliminacion.get(30, TimeUnit.SECONDS);
+                CitaService.ResultadoReserva resultado = reserva.get(30, TimeUnit.SECONDS);
+
+                // Gane quien gane, la mascota eliminada no conserva citas programadas
+                assertTrue(resultado == CitaService.ResultadoReserva.RESERVADA
+                        || resultado == CitaService.ResultadoReserva.MASCOTA_ELIMINADA, resultado.toString());
+                assertEquals(0, contar("SELECT COUNT(*) FROM citas WHERE id_mascota = ? AND estado = 'Programada'",
+                        mascota.getIdMascota()));
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @Test
+    void noSeReservaParaUnaMascotaYaEliminada() {
+        Mascota mascota = mascota("Eliminada", 0, 0);
+        mascotaService.delete(mascota);
+
+        Cita cita = new Cita();
+        cita.setMascota(mascota);
+        cita.setServicio(servicio);
+        cita.setFechaHora(calendarioClinicaService.obtenerFechasReservables(LocalDate.now().plusDays(1), 14)
+                .get(0).atTime(10, 0));
+        cita.setEstado(Cita.EstadoCita.Programada);
+        assertEquals(CitaService.ResultadoReserva.MASCOTA_ELIMINADA, citaService.reservar(cita));
+        assertEquals(0, contar("SELECT COUNT(*) FROM citas WHERE id_mascota = ?", mascota.getIdMascota()));
+    }
+
+    private long contarSentenciasAlEliminar(Mascota mascota) {
+        SentenciasPorVistaTest.ContadorSentencias.reiniciar();
+        mascotaService.delete(mascota);
+        return SentenciasPorVistaTest.ContadorSentencias.total();
+    }
+
+    /**
+     * Crea una mascota con citas insertadas en bloque: la mitad ya completadas y la mitad
+     * programadas a futuro, cada una en un horario distinto a partir del desplazamiento dado.
+     */
+    private Mascota mascota(String nombre, int citas, int desplazamiento) {
+        Mascota mascota = new Mascota();
+        mascota.setNombre(nombre);
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2019, 1, 1));
+        mascota.setSexo(Mascota.SexoMascota.Hembra);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        LocalDateTime pasado = LocalDate.now().minusYears(3).atTime(8, 0);
+        LocalDateTime futuro = LocalDate.now().plusYears(3).atTime(8, 0);
+        List<Object[]> filas = new ArrayList<>(citas);
+        for (int i = 0; i < citas; i++) {
+            boolean programada = i % 2 == 1;
+            LocalDateTime fechaHora = (programada ? futuro : pasado).plusMinutes(30L * (desplazamiento + i));
+            filas.add(new Object[]{mascota.getIdMascota(), servicio.getIdServicio(), Timestamp.valueOf(fechaHora),
+                    programada ? "Programada" : "Completada", servicio.getIdServicio() + "|" + fechaHora});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO citas (id_mascota, id_servicio, fecha_hora, estado, " +
+                "recordatorio_enviado, clave_reserva) VALUES (?, ?, ?, ?, FALSE, ?)", filas);
+        return mascota;
+    }
+
+    private void esperarEventosEntregados() throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (contar("SELECT COUNT(*) FROM eventos_cita") > 0 && System.nanoTime() < limite) {
+            Thread.sleep(100);
+        }
+    }
+
+    private long contarResumen() {
+        return contar("SELECT COALESCE(SUM(programadas + canceladas + completadas), 0) " +
+                "FROM resumen_ocupacion WHERE id_servicio = ?", servicio.getIdServicio());
+    }
+
+    private long contar(String sql, Object... parametros) {
+        return jdbcTemplate.queryForObject(sql, Long.class, parametros);
+    }
+}
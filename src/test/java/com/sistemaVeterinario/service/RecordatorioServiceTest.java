@@ -0,0 +1,147 @@
+package com.sistemaVeterinario.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.CitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del envío de recordatorios de {@link RecordatorioService} contra un servidor SMTP local.
+ */
+@SpringBootTest
+class RecordatorioServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @DynamicPropertySource
+    static void configurarCorreo(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.host", () -> "localhost");
+        registry.add("spring.mail.port", () -> ServerSetupTest.SMTP.getPort());
+    }
+
+    @Autowired
+    private RecordatorioService recordatorioService;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio servicio;
+    private Cita cita;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("Ana");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("recordatorio@example.com");
+        propietario.setTelefono("3000000002");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Luna");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2020, 1, 1));
+        mascota.setSexo(Mascota.SexoMascota.Hembra);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        servicio = new Servicio();
+        servicio.setNombre("Vacunación");
+        servicio.setDescripcion("Servicio de prueba");
+        servicio = servicioRepository.save(servicio);
+
+        cita = new Cita();
+        cita.setMascota(mascota);
+        cita.setServicio(servicio);
+        cita.setFechaHora(LocalDateTime.now().plusHours(2).truncatedTo(ChronoUnit.HOURS));
+        cita = citaRepository.save(cita);
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        citaRepository.deleteAll();
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(servicio);
+        usuarioRepository.delete(propietario);
+    }
+
+    @Test
+    void enviaUnRecordatorioLocalizadoPorCita() throws Exception {
+        assertEquals(1, recordatorioService.encolarPendientes());
+
+        assertTrue(greenMail.waitForIncomingEmail(10000, 1));
+        MimeMessage recibido = greenMail.getReceivedMessages()[0];
+        assertEquals("recordatorio@example.com", recibido.getAllRecipients()[0].toString());
+        assertEquals("Recordatorio: cita de Luna en VetPlanet", recibido.getSubject());
+        assertTrue(recibido.getContent().toString().contains("Vacunación"));
+
+        // El recordatorio queda marcado y no se vuelve a enviar
+        long limite = System.currentTimeMillis() + 5000;
+        while (!citaRepository.findById(cita.getIdCita()).orElseThrow().getRecordatorioEnviado()
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertTrue(citaRepository.findById(cita.getIdCita()).orElseThrow().getRecordatorioEnviado());
+        assertEquals(0, recordatorioService.encolarPendientes());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void usaElIdiomaElegidoPorElPropietario() throws Exception {
+        transactionTemplate.executeWithoutResult(estado ->
+                usuarioRepository.actualizarIdioma(propietario.getIdUsuario(), "it"));
+
+        assertEquals(1, recordatorioService.encolarPendientes());
+
+        assertTrue(greenMail.waitForIncomingEmail(10000, 1));
+        MimeMessage recibido = greenMail.getReceivedMessages()[0];
+        assertEquals("Promemoria: appuntamento di Luna presso VetPlanet", recibido.getSubject());
+    }
+
+    @Test
+    void noRecuerdaCitasCanceladas() {
+        cita.setEstado(Cita.EstadoCita.Cancelada);
+        citaRepository.save(cita);
+
+        assertEquals(0, recordatorioService.encolarPendientes());
+    }
+}
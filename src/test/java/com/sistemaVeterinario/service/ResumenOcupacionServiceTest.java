@@ -0,0 +1,231 @@
+package com.sistemaVeterinario.service;
+
+import com.sistemaVeterinario.dto.OcupacionDiariaDTO;
+import com.sistemaVeterinario.models.Cita;
+import com.sistemaVeterinario.models.EventoCita;
+import com.sistemaVeterinario.models.Mascota;
+import com.sistemaVeterinario.models.ResumenOcupacion;
+import com.sistemaVeterinario.models.Servicio;
+import com.sistemaVeterinario.models.Usuario;
+import com.sistemaVeterinario.repository.EventoCitaRepository;
+import com.sistemaVeterinario.repository.MascotaRepository;
+import com.sistemaVeterinario.repository.ResumenOcupacionRepository;
+import com.sistemaVeterinario.repository.ServicioRepository;
+import com.sistemaVeterinario.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del resumen de ocupación de {@link ResumenOcupacionService}: la actualización por
+ * eventos y tareas programadas debe dejar la misma tabla que una reconstrucción completa.
+ */
+@SpringBootTest
+class ResumenOcupacionServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumenOcupacionServiceTest.class);
+
+    private static final int CITAS_MASIVAS = 50_000;
+    private static final int DIAS_MASIVOS = 400;
+
+    @Autowired
+    private ResumenOcupacionService resumenOcupacionService;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private EventoCitaRepository eventoCitaRepository;
+
+    @Autowired
+    private ResumenOcupacionRepository resumenOcupacionRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Usuario propietario;
+    private Mascota mascota;
+    private Servicio consulta;
+    private Servicio vacunacion;
+
+    @BeforeEach
+    void prepararDatos() {
+        propietario = new Usuario();
+        propietario.setNombre("Olga");
+        propietario.setApellido("Prueba");
+        propietario.setEmail("ocupacion@example.com");
+        propietario.setTelefono("3000000021");
+        propietario.setContrasena("x");
+        propietario = usuarioRepository.save(propietario);
+
+        mascota = new Mascota();
+        mascota.setNombre("Toby");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Criollo");
+        mascota.setFechaNacimiento(LocalDate.of(2020, 1, 1));
+        mascota.setSexo(Mascota.SexoMascota.Macho);
+        mascota.setPropietario(propietario);
+        mascota = mascotaRepository.save(mascota);
+
+        consulta = servicio("Consulta ocupación");
+        vacunacion = servicio("Vacunación ocupación");
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        jdbcTemplate.update("DELETE FROM citas WHERE id_mascota = ?", mascota.getIdMascota());
+        jdbcTemplate.update("DELETE FROM resumen_ocupacion WHERE id_servicio IN (?, ?)",
+                consulta.getIdServicio(), vacunacion.getIdServicio());
+        mascotaRepository.delete(mascota);
+        servicioRepository.delete(consulta);
+        servicioRepository.delete(vacunacion);
+        usuarioRepository.delete(propietario);
+    }
+
+    @Test
+    void actualizacionIncrementalCoincideConReconstruccion() {
+        LocalDateTime dia = LocalDate.now().plusDays(30).atTime(10, 0);
+
+        Cita primera = citaService.save(cita(consulta, dia));
+        Cita reprogramada = citaService.save(cita(consulta, dia.plusMinutes(30)));
+        Cita cancelada = citaService.save(cita(vacunacion, dia.plusHours(1)));
+        // Cita ya terminada que completará la tarea de citas pasadas
+        Cita pasada = citaService.save(cita(vacunacion, LocalDate.now().minusDays(1).atTime(8, 0)));
+        entregarEventos();
+
+        reprogramada.setFechaHora(dia.plusDays(1).withHour(9));
+        citaService.save(reprogramada);
+        cancelada.setEstado(Cita.EstadoCita.Cancelada);
+        citaService.save(cancelada);
+        entregarEventos();
+        // Una entrega repetida no cambia el resumen
+        resumenOcupacionService.recalcularHoras(List.of(primera.getFechaHora()));
+        // La completa esta tarea o, si ya la atendió, la rueda de vencimientos
+        citaService.actualizarCitasPasadas();
+        assertEquals(Cita.EstadoCita.Completada, citaService.findById(pasada.getIdCita()).getEstado());
+
+        Map<String, String> incremental = leerResumen();
+        assertEquals(Map.of(
+                LocalDate.now().minusDays(1).atTime(8, 0) + "|" + vacunacion.getIdServicio(), "0/0/1",
+                dia + "|" + consulta.getIdServicio(), "1/0/0",
+                dia.plusHours(1) + "|" + vacunacion.getIdServicio(), "0/1/0",
+                dia.plusDays(1).withHour(9) + "|" + consulta.getIdServicio(), "1/0/0"), incremental);
+
+        assertTrue(resumenOcupacionService.reconstruir() >= incremental.size());
+        assertEquals(incremental, leerResumen());
+
+        List<OcupacionDiariaDTO> ocupacion =
+                resumenOcupacionService.obtenerOcupacion(dia.toLocalDate(), dia.toLocalDate());
+        OcupacionDiariaDTO delServicio = ocupacion.stream()
+                .filter(o -> o.idServicio().equals(consulta.getIdServicio())).findFirst().orElseThrow();
+        assertEquals(1, delServicio.programadas());
+        assertEquals(10, delServicio.horaPico());
+    }
+
+    @Test
+    void reconstruccionParalelaDeMuchasCitas() {
+        LocalDateTime inicio = LocalDate.now().plusYears(2).atTime(8, 0);
+        List<Object[]> filas = new ArrayList<>(CITAS_MASIVAS);
+        for (int i = 0; i < CITAS_MASIVAS; i++) {
+            Servicio servicio = i % 2 == 0 ? consulta : vacunacion;
+            LocalDateTime fechaHora = inicio.plusDays(i % DIAS_MASIVOS).plusMinutes((i / DIAS_MASIVOS) * 5L % 600);
+            String estado = i % 10 == 0 ? "Cancelada" : "Programada";
+            filas.add(new Object[]{mascota.getIdMascota(), servicio.getIdServicio(), Timestamp.valueOf(fechaHora),
+                    estado, "Cancelada".equals(estado) ? null : "masiva|" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO citas (id_mascota, id_servicio, fecha_hora, estado, " +
+                "recordatorio_enviado, clave_reserva) VALUES (?, ?, ?, ?, FALSE, ?)", filas);
+
+        long comienzo = System.nanoTime();
+        int escritas = resumenOcupacionService.reconstruir();
+        long milisegundos = (System.nanoTime() - comienzo) / 1_000_000;
+        logger.info("Resumen reconstruido desde {} citas: {} filas en {} ms",
+                CITAS_MASIVAS, escritas, milisegundos);
+
+        long total = 0;
+        long canceladas = 0;
+        for (ResumenOcupacion fila : resumenOcupacionRepository.findAll()) {
+            if (Set.of(consulta.getIdServicio(), vacunacion.getIdServicio()).contains(fila.getIdServicio())) {
+                total += fila.getProgramadas() + fila.getCanceladas() + fila.getCompletadas();
+                canceladas += fila.getCanceladas();
+            }
+        }
+        assertEquals(CITAS_MASIVAS, total);
+        assertEquals(CITAS_MASIVAS / 10, canceladas);
+        // Unos cientos de filas por mes en lugar de miles de citas
+        assertTrue(escritas < CITAS_MASIVAS / 2);
+    }
+
+    /**
+     * Entrega al resumen los eventos pendientes de las citas de la prueba, como lo haría la
+     * bandeja de salida en la instancia líder, y los descarta.
+     */
+    private void entregarEventos() {
+        List<Integer> propias = jdbcTemplate.queryForList("SELECT id_cita FROM citas WHERE id_mascota = ?",
+                Integer.class, mascota.getIdMascota());
+        List<EventoCita> eventos = eventoCitaRepository.findAll().stream()
+                .filter(evento -> propias.contains(evento.getIdCita()))
+                .sorted(Comparator.comparing(EventoCita::getIdEvento))
+                .toList();
+        for (EventoCita evento : eventos) {
+            resumenOcupacionService.alPublicarEvento(new EventosCitaService.EventoCitaPublicado(evento.getIdEvento(),
+                    evento.getIdCita(), evento.getTipo(), evento.getEstado(), evento.getFechaHora(),
+                    evento.getFechaHoraAnterior(), evento.getIdServicio(), evento.getFechaCreacion()));
+        }
+        eventoCitaRepository.deleteAllInBatch(eventos);
+    }
+
+    private Map<String, String> leerResumen() {
+        Map<String, String> resumen = new TreeMap<>();
+        for (ResumenOcupacion fila : resumenOcupacionRepository.findAll()) {
+            if (fila.getIdServicio().equals(consulta.getIdServicio())
+                    || fila.getIdServicio().equals(vacunacion.getIdServicio())) {
+                resumen.put(fila.getHora().truncatedTo(ChronoUnit.HOURS) + "|" + fila.getIdServicio(),
+                        fila.getProgramadas() + "/" + fila.getCanceladas() + "/" + fila.getCompletadas());
+            }
+        }
+        return resumen;
+    }
+
+    private Cita cita(Servicio servicio, LocalDateTime fechaHora) {
+        Cita cita = new Cita();
+        cita.setMascota(mascota);
+        cita.setServicio(servicio);
+        cita.setFechaHora(fechaHora);
+        return cita;
+    }
+
+    private Servicio servicio(String nombre) {
+        Servicio servicio = new Servicio();
+        servicio.setNombre(nombre);
+        servicio.setDescripcion("Servicio de prueba");
+        return servicioRepository.save(servicio);
+    }
+}
@@ -0,0 +1,29 @@
+package com.sistemaVeterinario.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Suscriptor de eventos de citas para las pruebas de la bandeja de salida. Está en todos los
+ * contextos de prueba, de modo que la entrega falla igual sin importar qué instancia despache.
+ */
+@Component
+public class SuscriptorEventosCitaPrueba {
+
+    /** Citas cuyos eventos hacen fallar la entrega. */
+    static final Set<Integer> CITAS_QUE_FALLAN = ConcurrentHashMap.newKeySet();
+
+    /** Eventos entregados con éxito. */
+    static final Set<Long> ENTREGADOS = ConcurrentHashMap.newKeySet();
+
+    @EventListener
+    public void alPublicarEvento(EventosCitaService.EventoCitaPublicado evento) {
+        if (CITAS_QUE_FALLAN.contains(evento.idCita())) {
+            throw new IllegalStateException("Fallo simulado para la cita " + evento.idCita());
+        }
+        ENTREGADOS.add(evento.idEvento());
+    }
+}